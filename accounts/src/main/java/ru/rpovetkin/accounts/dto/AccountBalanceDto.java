@@ -0,0 +1,22 @@
+package ru.rpovetkin.accounts.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.rpovetkin.accounts.enums.Currency;
+
+import java.math.BigDecimal;
+
+/**
+ * Баланс одного счета пользователя (ответ GET /api/accounts/{login}/{currency})
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountBalanceDto {
+    private Long id;
+    private Currency currency;
+    private BigDecimal balance;
+}
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import ru.rpovetkin.accounts.enums.OperationErrorCode;
 
 import java.util.List;
 
@@ -14,6 +15,7 @@ import java.util.List;
 public class AccountOperationResponse {
     private boolean success;
     private String message;
+    private OperationErrorCode errorCode; // только при success = false
     private List<String> errors;
     private AccountDto account;
 }
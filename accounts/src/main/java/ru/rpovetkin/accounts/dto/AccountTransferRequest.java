@@ -0,0 +1,22 @@
+package ru.rpovetkin.accounts.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.rpovetkin.accounts.enums.Currency;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountTransferRequest {
+    private String fromLogin;
+    private String toLogin;
+    private Currency fromCurrency;
+    private Currency toCurrency;
+    private BigDecimal amountFrom; // списывается со счета отправителя
+    private BigDecimal amountTo;   // зачисляется на счет получателя (после конвертации)
+}
@@ -0,0 +1,20 @@
+package ru.rpovetkin.accounts.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountTransferResponse {
+    private boolean success;
+    private String message;
+    private List<String> errors;
+    private AccountDto fromAccount;
+    private AccountDto toAccount;
+}
@@ -0,0 +1,27 @@
+package ru.rpovetkin.accounts.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.rpovetkin.accounts.enums.LedgerOperation;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * Строка выписки (ответ GET /api/accounts/{login}/{currency}/statement).
+ * createdAt и id последней строки передаются в before и beforeId для следующей страницы
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerEntryDto {
+    private Long id;
+    private LedgerOperation operation;
+    private BigDecimal amount;
+    private BigDecimal balanceAfter;
+    private String reference;
+    private OffsetDateTime createdAt;
+}
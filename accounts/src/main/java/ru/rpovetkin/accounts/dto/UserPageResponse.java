@@ -0,0 +1,24 @@
+package ru.rpovetkin.accounts.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Страница справочника пользователей
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPageResponse {
+    private List<UserDto> users;
+
+    /**
+     * Login последнего пользователя страницы для запроса следующей (after), null - страниц больше нет
+     */
+    private String nextAfter;
+}
@@ -0,0 +1,43 @@
+package ru.rpovetkin.accounts.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * Часть баланса счета в режиме stripes (см. UserAccount.stripeCount).
+ * Строки создаются до включения режима и не удаляются, поэтому зачисление всегда находит свою строку
+ */
+@Entity
+@Table(name = "account_stripes")
+@IdClass(AccountStripe.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountStripe {
+
+    @Id
+    @Column(name = "account_id")
+    private Long accountId;
+
+    @Id
+    private Integer stripe;
+
+    @Builder.Default
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal balance = BigDecimal.ZERO;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long accountId;
+        private Integer stripe;
+    }
+}
@@ -0,0 +1,45 @@
+package ru.rpovetkin.accounts.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Результат операции, выполненной с заголовком Idempotency-Key (см. IdempotencyService)
+ */
+@Entity
+@Table(name = "idempotency_keys")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+
+    /**
+     * Ключ в пространстве пользователя: login:Idempotency-Key
+     */
+    @Id
+    private String id;
+
+    @Column(nullable = false, length = 32)
+    private String operation;
+
+    /**
+     * SHA-256 тела запроса: повтор ключа с другим запросом отклоняется
+     */
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    /**
+     * Ответ операции в JSON; пуст, пока транзакция операции не завершилась
+     */
+    @Column(columnDefinition = "text")
+    private String response;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private OffsetDateTime createdAt;
+}
@@ -0,0 +1,56 @@
+package ru.rpovetkin.accounts.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+import ru.rpovetkin.accounts.enums.LedgerOperation;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * Проводка журнала счета. Записи только добавляются (см. LedgerEntryRepository), сущность используется для чтения
+ */
+@Entity
+@Immutable
+@Table(name = "ledger_entries")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerEntry {
+
+    /**
+     * Номер из последовательности; вместе с created_at образует первичный ключ секционированной таблицы
+     */
+    @Id
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private LedgerOperation operation;
+
+    /**
+     * Сумма со знаком: зачисление положительное, списание отрицательное
+     */
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal amount;
+
+    @Column(name = "balance_after", nullable = false, precision = 19, scale = 4)
+    private BigDecimal balanceAfter;
+
+    /**
+     * Общий идентификатор двух проводок одного перевода
+     */
+    @Column(length = 64)
+    private String reference;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+}
@@ -36,6 +36,13 @@ public class UserAccount {
     @Column(nullable = false, precision = 19, scale = 4)
     private BigDecimal balance = BigDecimal.ZERO;
     
+    /**
+     * Число строк account_stripes, по которым распределяются зачисления; 1 - обычный счет
+     */
+    @Builder.Default
+    @Column(name = "stripe_count", nullable = false)
+    private int stripeCount = 1;
+    
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private OffsetDateTime createdAt;
@@ -0,0 +1,15 @@
+package ru.rpovetkin.accounts.enums;
+
+/**
+ * Тип проводки в журнале ledger_entries
+ */
+public enum LedgerOperation {
+    /**
+     * Баланс счета на момент появления журнала
+     */
+    OPENING,
+    DEPOSIT,
+    WITHDRAWAL,
+    TRANSFER_OUT,
+    TRANSFER_IN
+}
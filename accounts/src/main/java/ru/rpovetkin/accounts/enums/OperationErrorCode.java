@@ -0,0 +1,20 @@
+package ru.rpovetkin.accounts.enums;
+
+/**
+ * Причина отказа в операции со счетом. Клиенты (cash) выбирают ответ пользователю по коду, а не по тексту message
+ */
+public enum OperationErrorCode {
+    VALIDATION_FAILED,
+    USER_NOT_FOUND,
+    ACCOUNT_NOT_FOUND,
+    ACCOUNT_ALREADY_EXISTS,
+    INSUFFICIENT_FUNDS,
+    /**
+     * Операция с этим Idempotency-Key еще выполняется (409)
+     */
+    IDEMPOTENCY_IN_PROGRESS,
+    /**
+     * Idempotency-Key уже использован для другого запроса или слишком длинный (422)
+     */
+    IDEMPOTENCY_KEY_REJECTED
+}
@@ -0,0 +1,13 @@
+package ru.rpovetkin.accounts.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Проекция счета: id и баланс (после атомарного изменения - новый баланс из RETURNING)
+ */
+public interface AccountBalanceView {
+
+    Long getId();
+
+    BigDecimal getBalance();
+}
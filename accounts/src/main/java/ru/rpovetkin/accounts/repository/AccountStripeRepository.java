@@ -0,0 +1,79 @@
+package ru.rpovetkin.accounts.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.rpovetkin.accounts.entity.AccountStripe;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * Части баланса счетов в режиме stripes. Зачисление меняет одну строку, выбранную по seed,
+ * поэтому параллельные зачисления на один счет не ждут друг друга
+ */
+@Repository
+public interface AccountStripeRepository extends JpaRepository<AccountStripe, AccountStripe.Key> {
+
+    /**
+     * Зачислить сумму в строку mod(seed, stripe_count) счета.
+     *
+     * @return баланс счета после зачисления (без учета незакоммиченных параллельных операций);
+     * пустой результат - у счета нет такой строки
+     */
+    @Query(value = """
+            WITH target AS (
+                SELECT id, stripe_count FROM user_accounts WHERE id = :accountId
+            ), credited AS (
+                UPDATE account_stripes s
+                SET balance = s.balance + :amount
+                FROM target t
+                WHERE s.account_id = t.id AND s.stripe = mod(:seed, t.stripe_count)
+                RETURNING s.account_id
+            )
+            SELECT ua.balance + :amount
+                   + COALESCE((SELECT SUM(s.balance) FROM account_stripes s WHERE s.account_id = ua.id), 0)
+            FROM user_accounts ua
+            JOIN credited c ON c.account_id = ua.id
+            """, nativeQuery = true)
+    Optional<BigDecimal> creditStripe(@Param("accountId") Long accountId,
+                                      @Param("seed") int seed,
+                                      @Param("amount") BigDecimal amount);
+
+    /**
+     * Обнулить строки счета и вернуть снятую с них сумму; ее нужно перенести в user_accounts.balance.
+     * Вызывается под блокировкой строки счета в user_accounts
+     */
+    @Query(value = """
+            WITH drained AS (
+                SELECT stripe, balance FROM account_stripes
+                WHERE account_id = :accountId AND balance <> 0
+                ORDER BY stripe
+                FOR UPDATE
+            ), cleared AS (
+                UPDATE account_stripes s
+                SET balance = 0
+                FROM drained d
+                WHERE s.account_id = :accountId AND s.stripe = d.stripe
+                RETURNING d.balance AS moved
+            )
+            SELECT COALESCE(SUM(moved), 0) FROM cleared
+            """, nativeQuery = true)
+    BigDecimal drainStripes(@Param("accountId") Long accountId);
+
+    /**
+     * Создать недостающие строки 0..count-1
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO account_stripes (account_id, stripe, balance)
+            SELECT :accountId, stripe, 0 FROM generate_series(0, :count - 1) AS stripe
+            ON CONFLICT (account_id, stripe) DO NOTHING
+            """, nativeQuery = true)
+    int ensureStripes(@Param("accountId") Long accountId, @Param("count") int count);
+
+    @Query("SELECT COALESCE(SUM(s.balance), 0) FROM AccountStripe s WHERE s.accountId = :accountId")
+    BigDecimal sumByAccountId(@Param("accountId") Long accountId);
+}
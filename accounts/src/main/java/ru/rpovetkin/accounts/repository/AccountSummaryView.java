@@ -0,0 +1,17 @@
+package ru.rpovetkin.accounts.repository;
+
+import ru.rpovetkin.accounts.enums.Currency;
+
+import java.math.BigDecimal;
+
+/**
+ * Проекция счета пользователя: id, валюта и полный баланс (с учетом account_stripes)
+ */
+public interface AccountSummaryView {
+
+    Long getId();
+
+    Currency getCurrency();
+
+    BigDecimal getBalance();
+}
@@ -0,0 +1,38 @@
+package ru.rpovetkin.accounts.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.rpovetkin.accounts.entity.IdempotencyRecord;
+
+import java.time.OffsetDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    /**
+     * Занять ключ. Если ключ занят незавершенной транзакцией, INSERT ждет ее окончания,
+     * поэтому параллельные повторы выполняются по очереди, а не одновременно.
+     *
+     * @return 1 - ключ занят этой транзакцией, 0 - ключ уже использован
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO idempotency_keys (id, operation, request_hash, created_at)
+            VALUES (:id, :operation, :requestHash, CURRENT_TIMESTAMP)
+            ON CONFLICT (id) DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("id") String id,
+                       @Param("operation") String operation,
+                       @Param("requestHash") String requestHash);
+
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.response = :response WHERE r.id = :id")
+    int complete(@Param("id") String id, @Param("response") String response);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") OffsetDateTime before);
+}
@@ -0,0 +1,115 @@
+package ru.rpovetkin.accounts.repository;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.rpovetkin.accounts.entity.LedgerEntry;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Журнал проводок. Проводки пополнения и снятия пишутся вместе с изменением баланса
+ * (см. UserAccountRepository.creditByLogin / debitByLogin), проводки перевода - {@link #appendTransfer}
+ */
+@Repository
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    /**
+     * Записать обе проводки перевода одним INSERT
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO ledger_entries (account_id, operation, amount, balance_after, reference)
+            VALUES (:fromAccountId, 'TRANSFER_OUT', -CAST(:amountFrom AS numeric), :fromBalanceAfter, :reference),
+                   (:toAccountId, 'TRANSFER_IN', :amountTo, :toBalanceAfter, :reference)
+            """, nativeQuery = true)
+    int appendTransfer(@Param("fromAccountId") Long fromAccountId,
+                       @Param("amountFrom") BigDecimal amountFrom,
+                       @Param("fromBalanceAfter") BigDecimal fromBalanceAfter,
+                       @Param("toAccountId") Long toAccountId,
+                       @Param("amountTo") BigDecimal amountTo,
+                       @Param("toBalanceAfter") BigDecimal toBalanceAfter,
+                       @Param("reference") String reference);
+
+    /**
+     * Первая страница выписки: последние проводки счета
+     */
+    @Query("""
+            SELECT e FROM LedgerEntry e
+            WHERE e.accountId = :accountId
+            ORDER BY e.createdAt DESC, e.id DESC
+            """)
+    List<LedgerEntry> findStatement(@Param("accountId") Long accountId, Limit limit);
+
+    /**
+     * Следующая страница выписки: проводки раньше (createdAt, id) последней полученной
+     */
+    @Query("""
+            SELECT e FROM LedgerEntry e
+            WHERE e.accountId = :accountId
+              AND (e.createdAt < :beforeCreatedAt OR (e.createdAt = :beforeCreatedAt AND e.id < :beforeId))
+            ORDER BY e.createdAt DESC, e.id DESC
+            """)
+    List<LedgerEntry> findStatementBefore(@Param("accountId") Long accountId,
+                                          @Param("beforeCreatedAt") OffsetDateTime beforeCreatedAt,
+                                          @Param("beforeId") Long beforeId,
+                                          Limit limit);
+
+    /**
+     * Создать секцию журнала на месяц, если ее еще нет
+     *
+     * @return имя секции
+     */
+    @Query(value = "SELECT ensure_ledger_partition(:month)", nativeQuery = true)
+    String ensurePartition(@Param("month") LocalDate month);
+
+    /**
+     * Не дать двум экземплярам сервиса строить контрольные точки одновременно (до конца транзакции)
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryCheckpointLock(@Param("key") long key);
+
+    /**
+     * Добавить к контрольным точкам проводки от прошлой границы до CURRENT_TIMESTAMP - lag.
+     * lag должен превышать длительность транзакции: проводка получает время начала своей транзакции
+     * и становится видна только после commit
+     *
+     * @return количество обновленных счетов
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO ledger_checkpoints (account_id, balance, entry_count, covered_until, updated_at)
+            SELECT e.account_id, SUM(e.amount), COUNT(*),
+                   CURRENT_TIMESTAMP - :lagSeconds * INTERVAL '1 second', CURRENT_TIMESTAMP
+            FROM ledger_entries e
+            WHERE e.created_at >= (SELECT COALESCE(MAX(c.covered_until), CAST('-infinity' AS timestamptz))
+                                   FROM ledger_checkpoints c)
+              AND e.created_at < CURRENT_TIMESTAMP - :lagSeconds * INTERVAL '1 second'
+            GROUP BY e.account_id
+            ON CONFLICT (account_id) DO UPDATE
+            SET balance = ledger_checkpoints.balance + EXCLUDED.balance,
+                entry_count = ledger_checkpoints.entry_count + EXCLUDED.entry_count,
+                covered_until = EXCLUDED.covered_until,
+                updated_at = EXCLUDED.updated_at
+            """, nativeQuery = true)
+    int checkpoint(@Param("lagSeconds") long lagSeconds);
+
+    /**
+     * Баланс счета по журналу: контрольная точка плюс проводки после нее
+     */
+    @Query(value = """
+            SELECT COALESCE((SELECT c.balance FROM ledger_checkpoints c WHERE c.account_id = :accountId), 0)
+                 + COALESCE((SELECT SUM(e.amount) FROM ledger_entries e
+                             WHERE e.account_id = :accountId
+                               AND e.created_at >= COALESCE((SELECT c.covered_until FROM ledger_checkpoints c
+                                                             WHERE c.account_id = :accountId),
+                                                            CAST('-infinity' AS timestamptz))), 0)
+            """, nativeQuery = true)
+    BigDecimal replayBalance(@Param("accountId") Long accountId);
+}
@@ -0,0 +1,25 @@
+package ru.rpovetkin.accounts.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.rpovetkin.accounts.entity.OutboxMessage;
+
+import java.util.List;
+
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    /**
+     * Заблокировать самые старые сообщения outbox до конца транзакции.
+     * SKIP LOCKED: несколько экземпляров relay разбирают outbox параллельно, не дожидаясь друг друга
+     */
+    @Query(value = """
+            SELECT * FROM notification_outbox
+            ORDER BY id
+            LIMIT :batchSize
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<OutboxMessage> lockBatch(@Param("batchSize") int batchSize);
+}
@@ -1,10 +1,17 @@
 package ru.rpovetkin.accounts.repository;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.rpovetkin.accounts.entity.UserAccount;
 import ru.rpovetkin.accounts.enums.Currency;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,4 +23,144 @@ public interface UserAccountRepository extends JpaRepository<UserAccount, Long>
     Optional<UserAccount> findByUserIdAndCurrency(Long userId, Currency currency);
     
     List<UserAccount> findByUserLogin(String login);
+    
+    /**
+     * Счета пользователя с полным балансом (с учетом account_stripes) одним запросом
+     */
+    @Query("""
+            SELECT ua.id AS id, ua.currency AS currency,
+                   ua.balance + COALESCE((SELECT SUM(s.balance) FROM AccountStripe s WHERE s.accountId = ua.id), 0) AS balance
+            FROM UserAccount ua
+            WHERE ua.user.id = :userId
+            """)
+    List<AccountSummaryView> findSummariesByUserId(@Param("userId") Long userId);
+    
+    /**
+     * Баланс счета пользователя в валюте одним запросом, без загрузки сущностей пользователя и счета.
+     * Для счета в режиме stripes баланс включает сумму account_stripes
+     */
+    @Query("""
+            SELECT ua.id AS id,
+                   ua.balance + COALESCE((SELECT SUM(s.balance) FROM AccountStripe s WHERE s.accountId = ua.id), 0) AS balance
+            FROM UserAccount ua
+            WHERE ua.user.login = :login AND ua.currency = :currency
+            """)
+    Optional<AccountBalanceView> findBalanceByLoginAndCurrency(@Param("login") String login,
+                                                               @Param("currency") Currency currency);
+    
+    /**
+     * Атомарно зачислить сумму на счет пользователя и записать проводку DEPOSIT одним запросом.
+     * Счет в режиме stripes получает зачисление в строку account_stripes mod(seed, stripe_count),
+     * а не в user_accounts, поэтому параллельные зачисления на него не ждут одну строку.
+     * Пустой результат означает, что счет (или пользователь) не найден.
+     */
+    @Transactional
+    @Query(value = """
+            WITH account AS (
+                SELECT ua.id, ua.stripe_count
+                FROM user_accounts ua
+                JOIN users u ON u.id = ua.user_id
+                WHERE u.login = :login
+                  AND ua.currency = :currency
+            ), striped AS (
+                UPDATE account_stripes s
+                SET balance = s.balance + :amount
+                FROM account a
+                WHERE a.stripe_count > 1 AND s.account_id = a.id AND s.stripe = mod(:seed, a.stripe_count)
+                RETURNING s.account_id AS id
+            ), plain AS (
+                UPDATE user_accounts ua
+                SET balance = ua.balance + :amount, updated_at = CURRENT_TIMESTAMP
+                FROM account a
+                WHERE ua.id = a.id AND a.stripe_count = 1
+                RETURNING ua.id, ua.balance
+            ), updated AS (
+                SELECT id, balance FROM plain
+                UNION ALL
+                SELECT ua.id, ua.balance + :amount
+                       + COALESCE((SELECT SUM(s.balance) FROM account_stripes s WHERE s.account_id = ua.id), 0)
+                FROM striped st
+                JOIN user_accounts ua ON ua.id = st.id
+            ), entry AS (
+                INSERT INTO ledger_entries (account_id, operation, amount, balance_after)
+                SELECT id, 'DEPOSIT', :amount, balance FROM updated
+            )
+            SELECT id AS id, balance AS balance FROM updated
+            """, nativeQuery = true)
+    Optional<AccountBalanceView> creditByLogin(@Param("login") String login,
+                                               @Param("currency") String currency,
+                                               @Param("amount") BigDecimal amount,
+                                               @Param("seed") int seed);
+    
+    /**
+     * Атомарно списать сумму со счета пользователя и записать проводку WITHDRAWAL одним запросом.
+     * Строка меняется только при достаточном балансе, поэтому параллельные
+     * списания не могут увести баланс в минус и не теряют обновления.
+     * Списание идет только из user_accounts.balance; у счета в режиме stripes недостающая сумма
+     * сначала переносится из account_stripes (см. AccountStripeRepository.drainStripes).
+     * Пустой результат означает, что счет не найден или средств недостаточно.
+     */
+    @Transactional
+    @Query(value = """
+            WITH updated AS (
+                UPDATE user_accounts ua
+                SET balance = ua.balance - :amount, updated_at = CURRENT_TIMESTAMP
+                FROM users u
+                WHERE u.id = ua.user_id
+                  AND u.login = :login
+                  AND ua.currency = :currency
+                  AND ua.balance >= :amount
+                RETURNING ua.id,
+                          ua.balance + COALESCE((SELECT SUM(s.balance) FROM account_stripes s WHERE s.account_id = ua.id), 0)
+                              AS balance
+            ), entry AS (
+                INSERT INTO ledger_entries (account_id, operation, amount, balance_after)
+                SELECT id, 'WITHDRAWAL', -CAST(:amount AS numeric), balance FROM updated
+            )
+            SELECT id AS id, balance AS balance FROM updated
+            """, nativeQuery = true)
+    Optional<AccountBalanceView> debitByLogin(@Param("login") String login,
+                                              @Param("currency") String currency,
+                                              @Param("amount") BigDecimal amount);
+    
+    /**
+     * Заблокировать счета отправителя и получателя для перевода.
+     * Строки блокируются в порядке возрастания id, поэтому встречные переводы
+     * между одними и теми же счетами не приводят к взаимной блокировке.
+     * Счет получателя в режиме stripes не блокируется: зачисление на него идет в account_stripes
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+            SELECT ua FROM UserAccount ua
+            WHERE (ua.user.id = :fromUserId AND ua.currency = :fromCurrency)
+               OR (ua.user.id = :toUserId AND ua.currency = :toCurrency AND ua.stripeCount = 1)
+            ORDER BY ua.id
+            """)
+    List<UserAccount> findAndLockForTransfer(@Param("fromUserId") Long fromUserId,
+                                             @Param("fromCurrency") Currency fromCurrency,
+                                             @Param("toUserId") Long toUserId,
+                                             @Param("toCurrency") Currency toCurrency);
+    
+    /**
+     * id счета пользователя в валюте без загрузки и блокировки сущности
+     */
+    @Query("SELECT ua.id FROM UserAccount ua WHERE ua.user.id = :userId AND ua.currency = :currency")
+    Optional<Long> findAccountId(@Param("userId") Long userId, @Param("currency") Currency currency);
+    
+    /**
+     * Заблокировать строку счета до конца транзакции
+     */
+    @Query(value = "SELECT id FROM user_accounts WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockById(@Param("id") Long id);
+    
+    @Modifying
+    @Query(value = """
+            UPDATE user_accounts SET balance = balance + :amount, updated_at = CURRENT_TIMESTAMP
+            WHERE id = :id
+            """, nativeQuery = true)
+    int addToBalance(@Param("id") Long id, @Param("amount") BigDecimal amount);
+    
+    @Modifying
+    @Query("UPDATE UserAccount ua SET ua.stripeCount = :stripeCount WHERE ua.id = :id")
+    int updateStripeCount(@Param("id") Long id, @Param("stripeCount") int stripeCount);
 }
@@ -1,9 +1,13 @@
 package ru.rpovetkin.accounts.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.rpovetkin.accounts.entity.User;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +16,14 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByLogin(String login);
     
     boolean existsByLogin(String login);
+
+    /**
+     * Страница справочника пользователей: keyset по login (после after) и поиск по началу login или имени.
+     * prefix - шаблон LIKE в нижнем регистре с экранированными спецсимволами ('%' - все пользователи)
+     */
+    @Query("SELECT u.id AS id, u.login AS login, u.name AS name FROM User u " +
+           "WHERE u.login > :after " +
+           "AND (LOWER(u.login) LIKE :prefix ESCAPE '\\' OR LOWER(u.name) LIKE :prefix ESCAPE '\\') " +
+           "ORDER BY u.login")
+    List<UserSummaryView> findPage(@Param("after") String after, @Param("prefix") String prefix, Limit limit);
 }
@@ -0,0 +1,13 @@
+package ru.rpovetkin.accounts.repository;
+
+/**
+ * Проекция пользователя для справочника получателей (без загрузки сущности User)
+ */
+public interface UserSummaryView {
+
+    Long getId();
+
+    String getLogin();
+
+    String getName();
+}
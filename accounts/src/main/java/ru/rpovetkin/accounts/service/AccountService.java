@@ -2,15 +2,24 @@ package ru.rpovetkin.accounts.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.rpovetkin.accounts.dto.AccountBalanceDto;
 import ru.rpovetkin.accounts.dto.AccountDto;
 import ru.rpovetkin.accounts.dto.AccountOperationRequest;
 import ru.rpovetkin.accounts.dto.AccountOperationResponse;
+import ru.rpovetkin.accounts.dto.AccountTransferRequest;
+import ru.rpovetkin.accounts.dto.AccountTransferResponse;
 import ru.rpovetkin.accounts.dto.CreateAccountRequest;
 import ru.rpovetkin.accounts.entity.User;
 import ru.rpovetkin.accounts.entity.UserAccount;
 import ru.rpovetkin.accounts.enums.Currency;
+import ru.rpovetkin.accounts.enums.OperationErrorCode;
+import ru.rpovetkin.accounts.repository.AccountBalanceView;
+import ru.rpovetkin.accounts.repository.AccountStripeRepository;
+import ru.rpovetkin.accounts.repository.AccountSummaryView;
+import ru.rpovetkin.accounts.repository.LedgerEntryRepository;
 import ru.rpovetkin.accounts.repository.UserAccountRepository;
 import ru.rpovetkin.accounts.repository.UserRepository;
 
@@ -19,6 +28,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -27,8 +37,16 @@ public class AccountService {
     
     private final UserAccountRepository userAccountRepository;
     private final UserRepository userRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final AccountStripeRepository accountStripeRepository;
     private final NotificationService notificationService;
 
+    /**
+     * Максимальное число stripes у счета
+     */
+    @Value("${accounts.stripes.max-count:64}")
+    private int maxStripeCount = 64;
+
     /**
      * Получить все счета пользователя с указанием, какие валюты доступны
      */
@@ -42,18 +60,18 @@ public class AccountService {
         }
 
         User user = userOpt.get();
-        List<UserAccount> existingAccounts = userAccountRepository.findByUserId(user.getId());
+        List<AccountSummaryView> existingAccounts = userAccountRepository.findSummariesByUserId(user.getId());
         
         List<AccountDto> accounts = new ArrayList<>();
         
         // Создаем DTO для всех поддерживаемых валют
         for (Currency currency : Currency.values()) {
-            Optional<UserAccount> accountOpt = existingAccounts.stream()
+            Optional<AccountSummaryView> accountOpt = existingAccounts.stream()
                     .filter(acc -> acc.getCurrency().equals(currency))
                     .findFirst();
                     
             if (accountOpt.isPresent()) {
-                UserAccount account = accountOpt.get();
+                AccountSummaryView account = accountOpt.get();
                 accounts.add(AccountDto.builder()
                         .id(account.getId())
                         .currency(currency)
@@ -72,6 +90,19 @@ public class AccountService {
         return accounts;
     }
 
+    /**
+     * Получить баланс счета пользователя в валюте; пустой результат - счета (или пользователя) нет
+     */
+    public Optional<AccountBalanceDto> getAccountBalance(String login, Currency currency) {
+        log.debug("Getting {} balance for user: {}", currency, login);
+        return userAccountRepository.findBalanceByLoginAndCurrency(login, currency)
+                .map(account -> AccountBalanceDto.builder()
+                        .id(account.getId())
+                        .currency(currency)
+                        .balance(account.getBalance())
+                        .build());
+    }
+
     /**
      * Создать счет в указанной валюте для пользователя
      */
@@ -84,6 +115,7 @@ public class AccountService {
             return AccountOperationResponse.builder()
                     .success(false)
                     .message("User not found")
+                    .errorCode(OperationErrorCode.USER_NOT_FOUND)
                     .errors(List.of("User not found"))
                     .build();
         }
@@ -96,6 +128,7 @@ public class AccountService {
             return AccountOperationResponse.builder()
                     .success(false)
                     .message("Account already exists")
+                    .errorCode(OperationErrorCode.ACCOUNT_ALREADY_EXISTS)
                     .errors(List.of("Account in this currency already exists"))
                     .build();
         }
@@ -129,7 +162,8 @@ public class AccountService {
     }
 
     /**
-     * Пополнить счет
+     * Пополнить счет.
+     * Баланс меняется одним атомарным UPDATE ... RETURNING без предварительного чтения
      */
     @Transactional
     public AccountOperationResponse depositMoney(AccountOperationRequest request) {
@@ -140,43 +174,28 @@ public class AccountService {
             return AccountOperationResponse.builder()
                     .success(false)
                     .message("Validation failed")
+                    .errorCode(OperationErrorCode.VALIDATION_FAILED)
                     .errors(errors)
                     .build();
         }
 
-        Optional<User> userOpt = userRepository.findByLogin(request.getLogin());
-        if (userOpt.isEmpty()) {
-            return AccountOperationResponse.builder()
-                    .success(false)
-                    .message("User not found")
-                    .errors(List.of("User not found"))
-                    .build();
+        Optional<AccountBalanceView> updated = userAccountRepository.creditByLogin(
+                request.getLogin(), request.getCurrency().name(), request.getAmount(),
+                stripeSeed(Thread.currentThread().threadId()));
+        if (updated.isEmpty()) {
+            return explainFailedUpdate(request);
         }
 
-        User user = userOpt.get();
-        Optional<UserAccount> accountOpt = userAccountRepository.findByUserIdAndCurrency(user.getId(), request.getCurrency());
-        
-        if (accountOpt.isEmpty()) {
-            return AccountOperationResponse.builder()
-                    .success(false)
-                    .message("Account not found")
-                    .errors(List.of("Account in this currency does not exist"))
-                    .build();
-        }
-
-        UserAccount account = accountOpt.get();
-        account.setBalance(account.getBalance().add(request.getAmount()));
-        UserAccount savedAccount = userAccountRepository.save(account);
-
-        log.debug("Deposit successful. New balance: {} {}", savedAccount.getBalance(), savedAccount.getCurrency());
+        AccountBalanceView savedAccount = updated.get();
+        log.debug("Deposit successful. New balance: {} {}", savedAccount.getBalance(), request.getCurrency());
 
         // Отправляем уведомление о пополнении
         notificationService.sendSuccessNotification(
-            user.getLogin(),
+            request.getLogin(),
             "Счет пополнен",
             String.format("Счет пополнен на %s %s. Текущий баланс: %s %s", 
                 request.getAmount(), request.getCurrency().getTitle(),
-                savedAccount.getBalance(), savedAccount.getCurrency().getTitle())
+                savedAccount.getBalance(), request.getCurrency().getTitle())
         );
 
         return AccountOperationResponse.builder()
@@ -184,7 +203,7 @@ public class AccountService {
                 .message("Deposit successful")
                 .account(AccountDto.builder()
                         .id(savedAccount.getId())
-                        .currency(savedAccount.getCurrency())
+                        .currency(request.getCurrency())
                         .balance(savedAccount.getBalance())
                         .exists(true)
                         .build())
@@ -192,7 +211,9 @@ public class AccountService {
     }
 
     /**
-     * Снять деньги со счета
+     * Снять деньги со счета.
+     * Проверка достаточности средств выполняется в том же UPDATE, что и списание,
+     * поэтому параллельные снятия не теряют обновления и не уводят баланс в минус
      */
     @Transactional
     public AccountOperationResponse withdrawMoney(AccountOperationRequest request) {
@@ -203,53 +224,31 @@ public class AccountService {
             return AccountOperationResponse.builder()
                     .success(false)
                     .message("Validation failed")
+                    .errorCode(OperationErrorCode.VALIDATION_FAILED)
                     .errors(errors)
                     .build();
         }
 
-        Optional<User> userOpt = userRepository.findByLogin(request.getLogin());
-        if (userOpt.isEmpty()) {
-            return AccountOperationResponse.builder()
-                    .success(false)
-                    .message("User not found")
-                    .errors(List.of("User not found"))
-                    .build();
+        Optional<AccountBalanceView> updated = userAccountRepository.debitByLogin(
+                request.getLogin(), request.getCurrency().name(), request.getAmount());
+        if (updated.isEmpty() && drainStripes(request.getLogin(), request.getCurrency())) {
+            updated = userAccountRepository.debitByLogin(
+                    request.getLogin(), request.getCurrency().name(), request.getAmount());
         }
-
-        User user = userOpt.get();
-        Optional<UserAccount> accountOpt = userAccountRepository.findByUserIdAndCurrency(user.getId(), request.getCurrency());
-        
-        if (accountOpt.isEmpty()) {
-            return AccountOperationResponse.builder()
-                    .success(false)
-                    .message("Account not found")
-                    .errors(List.of("Account in this currency does not exist"))
-                    .build();
+        if (updated.isEmpty()) {
+            return explainFailedUpdate(request);
         }
 
-        UserAccount account = accountOpt.get();
-        
-        // Проверяем достаточность средств
-        if (account.getBalance().compareTo(request.getAmount()) < 0) {
-            return AccountOperationResponse.builder()
-                    .success(false)
-                    .message("Insufficient funds")
-                    .errors(List.of("Insufficient funds"))
-                    .build();
-        }
-
-        account.setBalance(account.getBalance().subtract(request.getAmount()));
-        UserAccount savedAccount = userAccountRepository.save(account);
-
-        log.debug("Withdrawal successful. New balance: {} {}", savedAccount.getBalance(), savedAccount.getCurrency());
+        AccountBalanceView savedAccount = updated.get();
+        log.debug("Withdrawal successful. New balance: {} {}", savedAccount.getBalance(), request.getCurrency());
 
         // Отправляем уведомление о снятии
         notificationService.sendInfoNotification(
-            user.getLogin(),
+            request.getLogin(),
             "Средства сняты",
             String.format("Со счета снято %s %s. Остаток: %s %s", 
                 request.getAmount(), request.getCurrency().getTitle(),
-                savedAccount.getBalance(), savedAccount.getCurrency().getTitle())
+                savedAccount.getBalance(), request.getCurrency().getTitle())
         );
 
         return AccountOperationResponse.builder()
@@ -257,13 +256,233 @@ public class AccountService {
                 .message("Withdrawal successful")
                 .account(AccountDto.builder()
                         .id(savedAccount.getId())
-                        .currency(savedAccount.getCurrency())
+                        .currency(request.getCurrency())
                         .balance(savedAccount.getBalance())
                         .exists(true)
                         .build())
                 .build();
     }
 
+    /**
+     * Перевести средства между счетами в одной транзакции.
+     * Оба счета блокируются в порядке возрастания id, списание и зачисление
+     * фиксируются одним коммитом вместе с двумя проводками журнала, поэтому откат при частичном выполнении не нужен
+     */
+    @Transactional
+    public AccountTransferResponse transferMoney(AccountTransferRequest request) {
+        log.debug("Transferring {} {} from {} to {} ({} {})", request.getAmountFrom(), request.getFromCurrency(),
+                request.getFromLogin(), request.getToLogin(), request.getAmountTo(), request.getToCurrency());
+
+        List<String> errors = validateTransferRequest(request);
+        if (!errors.isEmpty()) {
+            return transferFailure("Validation failed", errors);
+        }
+
+        Optional<User> fromUserOpt = userRepository.findByLogin(request.getFromLogin());
+        if (fromUserOpt.isEmpty()) {
+            return transferFailure("Sender not found", List.of("User not found: " + request.getFromLogin()));
+        }
+        Optional<User> toUserOpt = request.getToLogin().equals(request.getFromLogin())
+                ? fromUserOpt
+                : userRepository.findByLogin(request.getToLogin());
+        if (toUserOpt.isEmpty()) {
+            return transferFailure("Recipient not found", List.of("User not found: " + request.getToLogin()));
+        }
+
+        Long fromUserId = fromUserOpt.get().getId();
+        Long toUserId = toUserOpt.get().getId();
+        List<UserAccount> locked = userAccountRepository.findAndLockForTransfer(
+                fromUserId, request.getFromCurrency(), toUserId, request.getToCurrency());
+
+        UserAccount fromAccount = findLocked(locked, fromUserId, request.getFromCurrency());
+        if (fromAccount == null) {
+            return transferFailure("Sender account not found",
+                    List.of("Account in this currency does not exist: " + request.getFromCurrency()));
+        }
+        UserAccount toAccount = findLocked(locked, toUserId, request.getToCurrency());
+        // Не заблокирован только счет получателя в режиме stripes; его строки account_stripes не удаляются,
+        // поэтому зачисление найдет свой stripe, даже если режим выключили после блокировки
+        Long stripedToAccountId = toAccount == null
+                ? userAccountRepository.findAccountId(toUserId, request.getToCurrency()).orElse(null)
+                : null;
+        if (toAccount == null && stripedToAccountId == null) {
+            return transferFailure("Recipient account not found",
+                    List.of("Account in this currency does not exist: " + request.getToCurrency()));
+        }
+
+        if (fromAccount.getBalance().compareTo(request.getAmountFrom()) < 0) {
+            // Недостающая сумма может лежать в account_stripes отправителя
+            fromAccount.setBalance(fromAccount.getBalance().add(accountStripeRepository.drainStripes(fromAccount.getId())));
+        }
+        if (fromAccount.getBalance().compareTo(request.getAmountFrom()) < 0) {
+            return transferFailure("Insufficient funds",
+                    List.of("Available: " + fromAccount.getBalance() + " " + fromAccount.getCurrency()));
+        }
+
+        // Для перевода на тот же счет обе операции применяются к одной сущности
+        fromAccount.setBalance(fromAccount.getBalance().subtract(request.getAmountFrom()));
+        BigDecimal fromBalanceAfter = totalBalance(fromAccount);
+        AccountDto recipient;
+        if (toAccount != null) {
+            toAccount.setBalance(toAccount.getBalance().add(request.getAmountTo()));
+            recipient = toAccountDto(toAccount, totalBalance(toAccount));
+        } else {
+            // Один отправитель всегда попадает в один stripe, разные отправители - в разные
+            BigDecimal toBalance = accountStripeRepository.creditStripe(
+                            stripedToAccountId, stripeSeed(fromAccount.getId()), request.getAmountTo())
+                    .orElseThrow(() -> new IllegalStateException("Missing stripes of account " + stripedToAccountId));
+            recipient = AccountDto.builder()
+                    .id(stripedToAccountId)
+                    .currency(request.getToCurrency())
+                    .balance(toBalance)
+                    .exists(true)
+                    .build();
+        }
+        ledgerEntryRepository.appendTransfer(
+                fromAccount.getId(), request.getAmountFrom(), fromBalanceAfter,
+                recipient.getId(), request.getAmountTo(), recipient.getBalance(),
+                UUID.randomUUID().toString());
+
+        log.debug("Transfer successful. Balances: {} {} (id={}), {} {} (id={})",
+                fromBalanceAfter, fromAccount.getCurrency(), fromAccount.getId(),
+                recipient.getBalance(), recipient.getCurrency(), recipient.getId());
+
+        return AccountTransferResponse.builder()
+                .success(true)
+                .message("Transfer successful")
+                .fromAccount(toAccountDto(fromAccount, fromBalanceAfter))
+                .toAccount(recipient)
+                .build();
+    }
+
+    /**
+     * Включить режим stripes для счета (stripes > 1) или вернуть обычный режим (stripes = 1).
+     * В режиме stripes зачисления распределяются по stripes строкам account_stripes, списания
+     * идут из user_accounts.balance, куда при нехватке переносятся суммы из account_stripes.
+     * Режим нужен счетам, на которые параллельно зачисляют много отправителей
+     */
+    @Transactional
+    public AccountOperationResponse configureStripes(String login, Currency currency, int stripes) {
+        log.debug("Configuring {} stripes for {} account of user {}", stripes, currency, login);
+
+        if (stripes < 1 || stripes > maxStripeCount) {
+            return AccountOperationResponse.builder()
+                    .success(false)
+                    .message("Validation failed")
+                    .errorCode(OperationErrorCode.VALIDATION_FAILED)
+                    .errors(List.of("Stripe count must be between 1 and " + maxStripeCount))
+                    .build();
+        }
+
+        Optional<Long> accountId = userAccountRepository.findBalanceByLoginAndCurrency(login, currency)
+                .map(AccountBalanceView::getId);
+        if (accountId.isEmpty()) {
+            return AccountOperationResponse.builder()
+                    .success(false)
+                    .message("Account not found")
+                    .errorCode(OperationErrorCode.ACCOUNT_NOT_FOUND)
+                    .errors(List.of("Account in this currency does not exist"))
+                    .build();
+        }
+
+        Long id = accountId.get();
+        userAccountRepository.lockById(id);
+        if (stripes > 1) {
+            // Строки создаются до смены stripe_count: зачисление по новому числу stripes всегда найдет свою строку
+            accountStripeRepository.ensureStripes(id, stripes);
+        }
+        userAccountRepository.updateStripeCount(id, stripes);
+        if (stripes == 1) {
+            moveStripesToBalance(id);
+        }
+
+        AccountBalanceView account = userAccountRepository.findBalanceByLoginAndCurrency(login, currency).orElseThrow();
+        return AccountOperationResponse.builder()
+                .success(true)
+                .message("Stripes configured")
+                .account(AccountDto.builder()
+                        .id(account.getId())
+                        .currency(currency)
+                        .balance(account.getBalance())
+                        .exists(true)
+                        .build())
+                .build();
+    }
+
+    /**
+     * Перенести суммы из account_stripes в баланс счета перед повторной попыткой списания
+     *
+     * @return true, если что-то перенесено и списание стоит повторить
+     */
+    private boolean drainStripes(String login, Currency currency) {
+        Optional<Long> accountId = userAccountRepository.findBalanceByLoginAndCurrency(login, currency)
+                .map(AccountBalanceView::getId);
+        if (accountId.isEmpty()) {
+            return false;
+        }
+        userAccountRepository.lockById(accountId.get());
+        return moveStripesToBalance(accountId.get());
+    }
+
+    /**
+     * Вызывается под блокировкой строки счета в user_accounts
+     */
+    private boolean moveStripesToBalance(Long accountId) {
+        BigDecimal moved = accountStripeRepository.drainStripes(accountId);
+        if (moved.signum() == 0) {
+            return false;
+        }
+        userAccountRepository.addToBalance(accountId, moved);
+        log.debug("Moved {} from stripes to balance of account {}", moved, accountId);
+        return true;
+    }
+
+    private BigDecimal totalBalance(UserAccount account) {
+        return account.getStripeCount() > 1
+                ? account.getBalance().add(accountStripeRepository.sumByAccountId(account.getId()))
+                : account.getBalance();
+    }
+
+    /**
+     * Неотрицательный seed для выбора stripe: mod(seed, stripe_count)
+     */
+    static int stripeSeed(long value) {
+        return (int) ((value * 0x9E3779B97F4A7C15L) >>> 33);
+    }
+
+    /**
+     * Определить причину, по которой атомарное изменение баланса не затронуло ни одной строки.
+     * Выполняется только на неуспешном пути, успешная операция обходится одним запросом
+     */
+    private AccountOperationResponse explainFailedUpdate(AccountOperationRequest request) {
+        Optional<User> userOpt = userRepository.findByLogin(request.getLogin());
+        if (userOpt.isEmpty()) {
+            return AccountOperationResponse.builder()
+                    .success(false)
+                    .message("User not found")
+                    .errorCode(OperationErrorCode.USER_NOT_FOUND)
+                    .errors(List.of("User not found"))
+                    .build();
+        }
+
+        Optional<UserAccount> accountOpt = userAccountRepository.findByUserIdAndCurrency(userOpt.get().getId(), request.getCurrency());
+        if (accountOpt.isEmpty()) {
+            return AccountOperationResponse.builder()
+                    .success(false)
+                    .message("Account not found")
+                    .errorCode(OperationErrorCode.ACCOUNT_NOT_FOUND)
+                    .errors(List.of("Account in this currency does not exist"))
+                    .build();
+        }
+
+        return AccountOperationResponse.builder()
+                .success(false)
+                .message("Insufficient funds")
+                .errorCode(OperationErrorCode.INSUFFICIENT_FUNDS)
+                .errors(List.of("Insufficient funds"))
+                .build();
+    }
+
     private List<AccountDto> createEmptyAccountsList() {
         return Arrays.stream(Currency.values())
                 .map(currency -> AccountDto.builder()
@@ -294,6 +513,55 @@ public class AccountService {
         return errors;
     }
     
+    private List<String> validateTransferRequest(AccountTransferRequest request) {
+        List<String> errors = new ArrayList<>();
+
+        if (request.getFromLogin() == null || request.getFromLogin().trim().isEmpty()) {
+            errors.add("Sender login is required");
+        }
+
+        if (request.getToLogin() == null || request.getToLogin().trim().isEmpty()) {
+            errors.add("Recipient login is required");
+        }
+
+        if (request.getFromCurrency() == null || request.getToCurrency() == null) {
+            errors.add("Currency is required");
+        }
+
+        if (request.getAmountFrom() == null || request.getAmountTo() == null) {
+            errors.add("Amount is required");
+        } else if (request.getAmountFrom().compareTo(BigDecimal.ZERO) <= 0
+                || request.getAmountTo().compareTo(BigDecimal.ZERO) <= 0) {
+            errors.add("Amount must be positive");
+        }
+
+        return errors;
+    }
+
+    private UserAccount findLocked(List<UserAccount> locked, Long userId, Currency currency) {
+        return locked.stream()
+                .filter(acc -> acc.getUser().getId().equals(userId) && acc.getCurrency() == currency)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private AccountTransferResponse transferFailure(String message, List<String> errors) {
+        return AccountTransferResponse.builder()
+                .success(false)
+                .message(message)
+                .errors(errors)
+                .build();
+    }
+
+    private AccountDto toAccountDto(UserAccount account, BigDecimal balance) {
+        return AccountDto.builder()
+                .id(account.getId())
+                .currency(account.getCurrency())
+                .balance(balance)
+                .exists(true)
+                .build();
+    }
+    
     /**
      * Создать дефолтные счета для нового пользователя во всех поддерживаемых валютах
      */
@@ -0,0 +1,87 @@
+package ru.rpovetkin.accounts.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ограниченный кэш завершенных идемпотентных операций с TTL перед таблицей idempotency_keys.
+ * Ключи распределены по stripes - независимым LinkedHashMap со своей блокировкой, поэтому
+ * запросы с разными ключами почти не конкурируют. При переполнении stripe вытесняется самая старая запись
+ */
+final class IdempotencyCache {
+
+    record Entry(String operation, String requestHash, String response, long expiresAt) {
+    }
+
+    private final Stripe[] stripes;
+    private final long ttlNanos;
+
+    IdempotencyCache(int maxSize, int stripeCount, Duration ttl) {
+        this.stripes = new Stripe[stripeCount];
+        int stripeCapacity = Math.max(1, maxSize / stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    Entry get(String key) {
+        return get(key, System.nanoTime());
+    }
+
+    void put(String key, String operation, String requestHash, String response) {
+        put(key, operation, requestHash, response, System.nanoTime());
+    }
+
+    Entry get(String key, long now) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Entry entry = stripe.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (now - entry.expiresAt() >= 0) {
+                stripe.remove(key);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    void put(String key, String operation, String requestHash, String response, long now) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.put(key, new Entry(operation, requestHash, response, now + ttlNanos));
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeFor(String key) {
+        int hash = key.hashCode();
+        return stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)];
+    }
+
+    private static final class Stripe extends LinkedHashMap<String, Entry> {
+
+        private final int capacity;
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > capacity;
+        }
+    }
+}
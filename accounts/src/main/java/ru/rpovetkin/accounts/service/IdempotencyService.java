@@ -0,0 +1,186 @@
+package ru.rpovetkin.accounts.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.rpovetkin.accounts.entity.IdempotencyRecord;
+import ru.rpovetkin.accounts.repository.IdempotencyRecordRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Идемпотентное выполнение операций со счетами по заголовку Idempotency-Key.
+ * Ключ занимается в таблице idempotency_keys в той же транзакции, что и изменение баланса, и туда же
+ * записывается ответ: повтор запроса (retry по таймауту, hedging) получает записанный ответ, а деньги
+ * не списываются дважды. Параллельный повтор ждет завершения первой транзакции на INSERT ключа.
+ * Перед таблицей - ограниченный кэш в памяти для быстрых повторов
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+
+    private IdempotencyCache cache;
+
+    /**
+     * Сколько хранится ключ в БД; повтор после этого срока выполняется как новая операция
+     */
+    @Value("${accounts.idempotency.ttl:24h}")
+    private Duration ttl = Duration.ofHours(24);
+
+    @Value("${accounts.idempotency.cache-size:10000}")
+    private int cacheSize = 10_000;
+
+    @Value("${accounts.idempotency.cache-ttl:10m}")
+    private Duration cacheTtl = Duration.ofMinutes(10);
+
+    @Value("${accounts.idempotency.cache-stripes:16}")
+    private int cacheStripes = 16;
+
+    @PostConstruct
+    void initCache() {
+        cache = new IdempotencyCache(cacheSize, cacheStripes, cacheTtl);
+    }
+
+    /**
+     * Выполнить операцию не более одного раза для ключа пользователя.
+     * Без ключа операция выполняется как обычно
+     *
+     * @param request тело запроса; повтор ключа с другим телом отклоняется {@link IdempotencyKeyException}
+     */
+    @Transactional
+    public <T> T execute(String idempotencyKey, String login, String operation, Object request,
+                         Class<T> responseType, Supplier<T> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IdempotencyKeyException(HEADER + " длиннее " + MAX_KEY_LENGTH + " символов");
+        }
+        String id = login + ":" + idempotencyKey;
+        String requestHash = hash(operation, request);
+
+        IdempotencyCache.Entry cached = cache.get(id);
+        if (cached != null) {
+            return replay(id, cached.operation(), cached.requestHash(), cached.response(),
+                    operation, requestHash, responseType);
+        }
+
+        if (idempotencyRecordRepository.insertIfAbsent(id, operation, requestHash) == 0) {
+            IdempotencyRecord record = idempotencyRecordRepository.findById(id)
+                    .filter(stored -> stored.getResponse() != null)
+                    .orElseThrow(() -> new IdempotencyInProgressException("Операция с этим " + HEADER + " еще выполняется"));
+            cache.put(id, record.getOperation(), record.getRequestHash(), record.getResponse());
+            return replay(id, record.getOperation(), record.getRequestHash(), record.getResponse(),
+                    operation, requestHash, responseType);
+        }
+
+        T result = action.get();
+        String response = toJson(result);
+        idempotencyRecordRepository.complete(id, response);
+        cacheAfterCommit(id, operation, requestHash, response);
+        return result;
+    }
+
+    /**
+     * Удалить ключи старше ttl
+     */
+    @Scheduled(fixedDelayString = "${accounts.idempotency.cleanup-interval:1h}")
+    @Transactional
+    public int purgeExpired() {
+        int deleted = idempotencyRecordRepository.deleteCreatedBefore(OffsetDateTime.now().minus(ttl));
+        if (deleted > 0) {
+            log.info("Purged {} expired idempotency keys", deleted);
+        }
+        return deleted;
+    }
+
+    private <T> T replay(String id, String storedOperation, String storedHash, String response,
+                         String operation, String requestHash, Class<T> responseType) {
+        if (!storedOperation.equals(operation) || !storedHash.equals(requestHash)) {
+            throw new IdempotencyKeyException(HEADER + " уже использован для другого запроса");
+        }
+        log.info("Replaying recorded {} response for idempotency key {}", operation, id);
+        try {
+            return objectMapper.readValue(response, responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to read recorded response for idempotency key " + id, e);
+        }
+    }
+
+    /**
+     * В кэш попадает только закоммиченный результат: при откате ключ снова свободен
+     */
+    private void cacheAfterCommit(String id, String operation, String requestHash, String response) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.put(id, operation, requestHash, response);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.put(id, operation, requestHash, response);
+            }
+        });
+    }
+
+    private String hash(String operation, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(operation.getBytes(StandardCharsets.UTF_8));
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Failed to hash " + operation + " request", e);
+        }
+    }
+
+    private String toJson(Object response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize response", e);
+        }
+    }
+
+    /**
+     * Ключ нельзя использовать для этого запроса (слишком длинный, уже использован для другого запроса)
+     */
+    public static class IdempotencyKeyException extends RuntimeException {
+
+        public IdempotencyKeyException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Операция с этим ключом еще не завершена: результат неизвестен, запрос можно повторить позже с тем же ключом
+     */
+    public static class IdempotencyInProgressException extends IdempotencyKeyException {
+
+        public IdempotencyInProgressException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package ru.rpovetkin.accounts.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.rpovetkin.accounts.dto.LedgerEntryDto;
+import ru.rpovetkin.accounts.entity.LedgerEntry;
+import ru.rpovetkin.accounts.enums.Currency;
+import ru.rpovetkin.accounts.repository.AccountBalanceView;
+import ru.rpovetkin.accounts.repository.LedgerEntryRepository;
+import ru.rpovetkin.accounts.repository.UserAccountRepository;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Журнал проводок ledger_entries: выписка по счету и обслуживание журнала.
+ * Журнал - история всех изменений баланса; user_accounts.balance - материализованный баланс,
+ * который меняется в одной транзакции с записью проводки. Контрольные точки ledger_checkpoints
+ * позволяют пересчитать баланс по журналу, не читая всю историю счета
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerService {
+
+    private static final int MAX_STATEMENT_SIZE = 500;
+    private static final long CHECKPOINT_LOCK_KEY = 0x1ED6E4L;
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final UserAccountRepository userAccountRepository;
+
+    /**
+     * Отставание контрольной точки от текущего времени; должно превышать длительность самой долгой транзакции
+     */
+    @Value("${accounts.ledger.checkpoint-lag:1m}")
+    private Duration checkpointLag = Duration.ofMinutes(1);
+
+    /**
+     * На сколько месяцев вперед создаются секции журнала
+     */
+    @Value("${accounts.ledger.partitions-ahead:2}")
+    private int partitionsAhead = 2;
+
+    /**
+     * Выписка по счету пользователя в валюте, от новых проводок к старым; пустой результат - счета нет
+     *
+     * @param before   createdAt последней строки предыдущей страницы (null - первая страница)
+     * @param beforeId id последней строки предыдущей страницы
+     */
+    @Transactional(readOnly = true)
+    public Optional<List<LedgerEntryDto>> getStatement(String login, Currency currency,
+                                                       OffsetDateTime before, Long beforeId, int limit) {
+        Limit pageSize = Limit.of(Math.clamp(limit, 1, MAX_STATEMENT_SIZE));
+        return userAccountRepository.findBalanceByLoginAndCurrency(login, currency)
+                .map(AccountBalanceView::getId)
+                .map(accountId -> before == null || beforeId == null
+                        ? ledgerEntryRepository.findStatement(accountId, pageSize)
+                        : ledgerEntryRepository.findStatementBefore(accountId, before, beforeId, pageSize))
+                .map(entries -> entries.stream().map(this::toDto).toList());
+    }
+
+    /**
+     * Баланс счета, пересчитанный по журналу (контрольная точка плюс последующие проводки)
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal replayBalance(Long accountId) {
+        return ledgerEntryRepository.replayBalance(accountId);
+    }
+
+    /**
+     * Сдвинуть контрольные точки на проводки, появившиеся с прошлого прохода
+     *
+     * @return количество обновленных счетов
+     */
+    @Scheduled(fixedDelayString = "${accounts.ledger.checkpoint-interval:5m}")
+    @Transactional
+    public int checkpoint() {
+        return checkpoint(checkpointLag);
+    }
+
+    @Transactional
+    int checkpoint(Duration lag) {
+        if (!ledgerEntryRepository.tryCheckpointLock(CHECKPOINT_LOCK_KEY)) {
+            log.debug("Ledger checkpoint is running on another instance");
+            return 0;
+        }
+        int accounts = ledgerEntryRepository.checkpoint(lag.toSeconds());
+        if (accounts > 0) {
+            log.info("Ledger checkpoint updated for {} accounts", accounts);
+        }
+        return accounts;
+    }
+
+    /**
+     * Создать секции журнала на текущий и следующие месяцы. Без секции проводки попадают
+     * в ledger_entries_default; ensure_ledger_partition перенесет их в созданную секцию,
+     * но на время переноса вставки в DEFAULT ждут, поэтому секции создаются заранее
+     */
+    @Scheduled(fixedDelayString = "${accounts.ledger.partition-check-interval:12h}")
+    @Transactional
+    public void ensurePartitions() {
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        for (int i = 0; i <= partitionsAhead; i++) {
+            String partition = ledgerEntryRepository.ensurePartition(month.plusMonths(i));
+            log.debug("Ledger partition {} is present", partition);
+        }
+    }
+
+    private LedgerEntryDto toDto(LedgerEntry entry) {
+        return LedgerEntryDto.builder()
+                .id(entry.getId())
+                .operation(entry.getOperation())
+                .amount(entry.getAmount())
+                .balanceAfter(entry.getBalanceAfter())
+                .reference(entry.getReference())
+                .createdAt(entry.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,82 @@
+package ru.rpovetkin.accounts.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.rpovetkin.accounts.entity.OutboxMessage;
+import ru.rpovetkin.accounts.repository.OutboxMessageRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Relay transactional outbox: забирает пачку уведомлений из notification_outbox, отправляет ее в Kafka
+ * без ожидания между сообщениями (producer объединяет их по linger.ms) и удаляет подтвержденные брокером.
+ * Гарантия "At least once": при сбое после отправки, но до commit, сообщения будут отправлены повторно
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationOutboxRelay {
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+
+    @Value("${accounts.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${accounts.outbox.send-timeout:30s}")
+    private Duration sendTimeout;
+
+    /**
+     * Отправить одну пачку outbox
+     *
+     * @return количество отправленных и удаленных из outbox сообщений
+     */
+    @Scheduled(fixedDelayString = "${accounts.outbox.poll-interval:200ms}")
+    @Transactional
+    public int relay() {
+        List<OutboxMessage> batch = outboxMessageRepository.lockBatch(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        List<CompletableFuture<SendResult<String, String>>> sends = new ArrayList<>(batch.size());
+        for (OutboxMessage message : batch) {
+            sends.add(kafkaTemplate.send(message.getTopic(), message.getMessageKey(), message.getPayload()));
+        }
+
+        List<Long> sent = new ArrayList<>(batch.size());
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                sent.add(batch.get(i).getId());
+            } catch (ExecutionException | TimeoutException e) {
+                // Неотправленное сообщение остается в outbox и будет отправлено следующим проходом
+                log.warn("Failed to relay outbox message {}: {}", batch.get(i).getId(), e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        outboxMessageRepository.deleteAllByIdInBatch(sent);
+        if (sent.size() < batch.size()) {
+            log.warn("Relayed {} of {} outbox messages", sent.size(), batch.size());
+        } else {
+            log.debug("Relayed {} outbox messages", sent.size());
+        }
+        return sent.size();
+    }
+}
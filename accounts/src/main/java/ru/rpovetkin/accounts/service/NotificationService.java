@@ -1,24 +1,30 @@
 package ru.rpovetkin.accounts.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import ru.rpovetkin.accounts.dto.NotificationRequest;
+import ru.rpovetkin.accounts.entity.OutboxMessage;
+import ru.rpovetkin.accounts.repository.OutboxMessageRepository;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class NotificationService {
     
-    private final KafkaTemplate<String, NotificationRequest> kafkaTemplate;
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final ObjectMapper objectMapper;
     
     @Value("${spring.kafka.topics.notifications:account-notifications}")
     private String notificationsTopic;
     
     /**
-     * Отправить уведомление пользователю через Kafka
+     * Отправить уведомление пользователю через Kafka.
+     * Уведомление записывается в outbox в транзакции вызывающей операции: при откате операции
+     * оно не будет отправлено, а сама транзакция не ждет брокер. В Kafka его отправляет NotificationOutboxRelay
      */
     public void sendNotification(String userId, String type, String title, String message, Object metadata) {
         NotificationRequest request = NotificationRequest.builder()
@@ -30,13 +36,19 @@ public class NotificationService {
                 .metadata(metadata)
                 .build();
         
-        log.debug("Sending notification to Kafka topic {}: user={}, title={}", notificationsTopic, userId, title);
-        
+        outboxMessageRepository.save(OutboxMessage.builder()
+                .topic(notificationsTopic)
+                .messageKey(userId)
+                .payload(toJson(request))
+                .build());
+        log.debug("Notification queued in outbox for topic {}: user={}, title={}", notificationsTopic, userId, title);
+    }
+    
+    private String toJson(NotificationRequest request) {
         try {
-            kafkaTemplate.send(notificationsTopic, userId, request);
-            log.debug("Notification sent successfully to Kafka: user={}, type={}", userId, type);
-        } catch (Exception e) {
-            log.error("Failed to send notification to Kafka: {}", e.getMessage(), e);
+            return objectMapper.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize notification for user " + request.getUserId(), e);
         }
     }
     
@@ -2,6 +2,7 @@ package ru.rpovetkin.accounts.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -10,10 +11,12 @@ import ru.rpovetkin.accounts.dto.ChangePasswordResponse;
 import ru.rpovetkin.accounts.dto.UpdateUserDataRequest;
 import ru.rpovetkin.accounts.dto.UpdateUserDataResponse;
 import ru.rpovetkin.accounts.dto.UserDto;
+import ru.rpovetkin.accounts.dto.UserPageResponse;
 import ru.rpovetkin.accounts.dto.UserRegistrationRequest;
 import ru.rpovetkin.accounts.dto.UserRegistrationResponse;
 import ru.rpovetkin.accounts.entity.User;
 import ru.rpovetkin.accounts.repository.UserRepository;
+import ru.rpovetkin.accounts.repository.UserSummaryView;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -25,6 +28,8 @@ import java.util.Optional;
 @Slf4j
 public class UserService {
     
+    private static final int MAX_USERS_PAGE_SIZE = 100;
+
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final NotificationService notificationService;
@@ -108,16 +113,46 @@ public class UserService {
         return userRepository.findByLogin(login);
     }
     
-    public List<UserDto> getAllUsers() {
-        log.debug("Getting all users for transfer recipients");
-        return userRepository.findAll().stream()
-                .map(user -> UserDto.builder()
-                        .id(user.getId())
-                        .login(user.getLogin())
-                        .name(user.getName())
-                        .birthdate(user.getBirthdate())
+    /**
+     * Страница справочника получателей переводов: пользователи после login after,
+     * у которых login или имя начинается с query (без учета регистра)
+     */
+    @Transactional(readOnly = true)
+    public UserPageResponse searchUsers(String after, String query, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_USERS_PAGE_SIZE));
+        log.debug("Searching users for transfer recipients: after={}, query={}, limit={}", after, query, pageSize);
+
+        // Запрашиваем на одну запись больше, чтобы понять, есть ли следующая страница
+        List<UserSummaryView> rows = userRepository.findPage(
+                after != null ? after : "",
+                toPrefixPattern(query),
+                Limit.of(pageSize + 1));
+
+        boolean hasMore = rows.size() > pageSize;
+        List<UserDto> users = rows.stream()
+                .limit(pageSize)
+                .map(row -> UserDto.builder()
+                        .id(row.getId())
+                        .login(row.getLogin())
+                        .name(row.getName())
                         .build())
                 .toList();
+
+        return UserPageResponse.builder()
+                .users(users)
+                .nextAfter(hasMore ? users.get(users.size() - 1).getLogin() : null)
+                .build();
+    }
+
+    private String toPrefixPattern(String query) {
+        if (query == null || query.isBlank()) {
+            return "%";
+        }
+        String escaped = query.trim().toLowerCase()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return escaped + "%";
     }
     
     public boolean authenticateUser(String login, String password) {
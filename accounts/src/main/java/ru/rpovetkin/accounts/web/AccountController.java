@@ -2,15 +2,25 @@ package ru.rpovetkin.accounts.web;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.rpovetkin.accounts.dto.AccountBalanceDto;
 import ru.rpovetkin.accounts.dto.AccountDto;
 import ru.rpovetkin.accounts.dto.AccountOperationRequest;
 import ru.rpovetkin.accounts.dto.AccountOperationResponse;
+import ru.rpovetkin.accounts.dto.AccountTransferRequest;
+import ru.rpovetkin.accounts.dto.AccountTransferResponse;
 import ru.rpovetkin.accounts.dto.CreateAccountRequest;
+import ru.rpovetkin.accounts.dto.LedgerEntryDto;
 import ru.rpovetkin.accounts.enums.Currency;
+import ru.rpovetkin.accounts.enums.OperationErrorCode;
 import ru.rpovetkin.accounts.service.AccountService;
+import ru.rpovetkin.accounts.service.IdempotencyService;
+import ru.rpovetkin.accounts.service.LedgerService;
 
+import java.time.OffsetDateTime;
 import java.util.Arrays;
 import java.util.List;
 
@@ -22,6 +32,8 @@ import java.util.List;
 public class AccountController {
 
     private final AccountService accountService;
+    private final IdempotencyService idempotencyService;
+    private final LedgerService ledgerService;
 
     /**
      * Получить все счета пользователя
@@ -42,6 +54,31 @@ public class AccountController {
         return ResponseEntity.ok(Arrays.asList(Currency.values()));
     }
 
+    /**
+     * Получить баланс счета пользователя в валюте; 404, если такого счета нет
+     */
+    @GetMapping("/{login}/{currency}")
+    public ResponseEntity<AccountBalanceDto> getAccountBalance(@PathVariable String login,
+                                                               @PathVariable Currency currency) {
+        log.debug("Getting {} balance for user: {}", currency, login);
+        return ResponseEntity.of(accountService.getAccountBalance(login, currency));
+    }
+
+    /**
+     * Выписка по счету от новых проводок к старым; 404, если такого счета нет.
+     * Следующая страница: before и beforeId - createdAt и id последней строки
+     */
+    @GetMapping("/{login}/{currency}/statement")
+    public ResponseEntity<List<LedgerEntryDto>> getStatement(
+            @PathVariable String login,
+            @PathVariable Currency currency,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime before,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "50") int limit) {
+        log.debug("Getting {} statement for user: {}", currency, login);
+        return ResponseEntity.of(ledgerService.getStatement(login, currency, before, beforeId, limit));
+    }
+
     /**
      * Создать новый счет для пользователя
      */
@@ -58,14 +95,35 @@ public class AccountController {
         }
     }
 
+    /**
+     * Включить режим stripes для счета (count > 1) или выключить его (count = 1)
+     */
+    @PutMapping("/{login}/{currency}/stripes")
+    public ResponseEntity<AccountOperationResponse> configureStripes(@PathVariable String login,
+                                                                     @PathVariable Currency currency,
+                                                                     @RequestParam int count) {
+        log.debug("Configuring {} stripes for {} account of user {}", count, currency, login);
+
+        AccountOperationResponse response = accountService.configureStripes(login, currency, count);
+
+        if (response.isSuccess()) {
+            return ResponseEntity.ok(response);
+        } else {
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
     /**
      * Пополнить счет
      */
     @PostMapping("/deposit")
-    public ResponseEntity<AccountOperationResponse> depositMoney(@RequestBody AccountOperationRequest request) {
+    public ResponseEntity<AccountOperationResponse> depositMoney(
+            @RequestBody AccountOperationRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         log.debug("Deposit request: {} {} for user {}", request.getAmount(), request.getCurrency(), request.getLogin());
         
-        AccountOperationResponse response = accountService.depositMoney(request);
+        AccountOperationResponse response = idempotencyService.execute(idempotencyKey, request.getLogin(), "DEPOSIT",
+                request, AccountOperationResponse.class, () -> accountService.depositMoney(request));
         
         if (response.isSuccess()) {
             return ResponseEntity.ok(response);
@@ -78,10 +136,13 @@ public class AccountController {
      * Снять деньги со счета
      */
     @PostMapping("/withdraw")
-    public ResponseEntity<AccountOperationResponse> withdrawMoney(@RequestBody AccountOperationRequest request) {
+    public ResponseEntity<AccountOperationResponse> withdrawMoney(
+            @RequestBody AccountOperationRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         log.debug("Withdrawal request: {} {} for user {}", request.getAmount(), request.getCurrency(), request.getLogin());
         
-        AccountOperationResponse response = accountService.withdrawMoney(request);
+        AccountOperationResponse response = idempotencyService.execute(idempotencyKey, request.getLogin(), "WITHDRAW",
+                request, AccountOperationResponse.class, () -> accountService.withdrawMoney(request));
         
         if (response.isSuccess()) {
             return ResponseEntity.ok(response);
@@ -89,4 +150,52 @@ public class AccountController {
             return ResponseEntity.badRequest().body(response);
         }
     }
+
+    /**
+     * Перевести средства между счетами в одной транзакции
+     */
+    @PostMapping("/transfer")
+    public ResponseEntity<AccountTransferResponse> transferMoney(
+            @RequestBody AccountTransferRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        log.debug("Transfer request: {} {} from {} to {}", request.getAmountFrom(), request.getFromCurrency(),
+                request.getFromLogin(), request.getToLogin());
+        
+        AccountTransferResponse response = idempotencyService.execute(idempotencyKey, request.getFromLogin(), "TRANSFER",
+                request, AccountTransferResponse.class, () -> accountService.transferMoney(request));
+        
+        if (response.isSuccess()) {
+            return ResponseEntity.ok(response);
+        } else {
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    /**
+     * Операция с этим Idempotency-Key еще выполняется
+     */
+    @ExceptionHandler(IdempotencyService.IdempotencyInProgressException.class)
+    public ResponseEntity<AccountOperationResponse> handleIdempotencyInProgress(IdempotencyService.IdempotencyInProgressException e) {
+        log.warn("Idempotent request still in progress: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(AccountOperationResponse.builder()
+                .success(false)
+                .message(e.getMessage())
+                .errorCode(OperationErrorCode.IDEMPOTENCY_IN_PROGRESS)
+                .errors(List.of(e.getMessage()))
+                .build());
+    }
+
+    /**
+     * Idempotency-Key уже использован для другого запроса или слишком длинный
+     */
+    @ExceptionHandler(IdempotencyService.IdempotencyKeyException.class)
+    public ResponseEntity<AccountOperationResponse> handleIdempotencyKeyException(IdempotencyService.IdempotencyKeyException e) {
+        log.warn("Rejected idempotent request: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(AccountOperationResponse.builder()
+                .success(false)
+                .message(e.getMessage())
+                .errorCode(OperationErrorCode.IDEMPOTENCY_KEY_REJECTED)
+                .errors(List.of(e.getMessage()))
+                .build());
+    }
 }
@@ -11,12 +11,11 @@ import ru.rpovetkin.accounts.dto.ChangePasswordResponse;
 import ru.rpovetkin.accounts.dto.UpdateUserDataRequest;
 import ru.rpovetkin.accounts.dto.UpdateUserDataResponse;
 import ru.rpovetkin.accounts.dto.UserDto;
+import ru.rpovetkin.accounts.dto.UserPageResponse;
 import ru.rpovetkin.accounts.dto.UserRegistrationRequest;
 import ru.rpovetkin.accounts.dto.UserRegistrationResponse;
 import ru.rpovetkin.accounts.service.UserService;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/users")
 @RequiredArgsConstructor
@@ -57,11 +56,16 @@ public class UserController {
                 .orElse(ResponseEntity.notFound().build());
     }
     
+    /**
+     * Справочник получателей переводов: keyset-пагинация по login и поиск по началу login или имени
+     */
     @GetMapping
-    public ResponseEntity<List<UserDto>> getAllUsers() {
-        log.debug("Getting all users for transfer recipients");
-        List<UserDto> users = userService.getAllUsers();
-        return ResponseEntity.ok(users);
+    public ResponseEntity<UserPageResponse> searchUsers(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "20") int limit) {
+        log.debug("Searching users for transfer recipients: after={}, q={}, limit={}", after, q, limit);
+        return ResponseEntity.ok(userService.searchUsers(after, q, limit));
     }
     
     @PostMapping("/authenticate")
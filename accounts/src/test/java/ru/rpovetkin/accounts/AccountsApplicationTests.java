@@ -7,6 +7,10 @@ import org.springframework.boot.autoconfigure.liquibase.LiquibaseAutoConfigurati
 import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import ru.rpovetkin.accounts.repository.AccountStripeRepository;
+import ru.rpovetkin.accounts.repository.IdempotencyRecordRepository;
+import ru.rpovetkin.accounts.repository.LedgerEntryRepository;
+import ru.rpovetkin.accounts.repository.OutboxMessageRepository;
 import ru.rpovetkin.accounts.repository.UserAccountRepository;
 import ru.rpovetkin.accounts.repository.UserRepository;
 
@@ -28,4 +32,16 @@ class AccountsApplicationTests {
     @MockBean
     private UserRepository userRepository;
 
+    @MockBean
+    private OutboxMessageRepository outboxMessageRepository;
+
+    @MockBean
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @MockBean
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @MockBean
+    private AccountStripeRepository accountStripeRepository;
+
 }
@@ -30,9 +30,10 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 /**
  * Интеграционные тесты для Kafka Producer
- * Проверяет отправку сообщений с гарантией "At least once"
+ * Проверяет отправку сообщений с гарантией "At least once": уведомление пишется в outbox (H2)
+ * и доставляется в Kafka relay'ем
  */
-@SpringBootTest
+@SpringBootTest(properties = "spring.autoconfigure.exclude=")
 @EmbeddedKafka(partitions = 3, topics = {"account-notifications"}, 
                brokerProperties = {"listeners=PLAINTEXT://localhost:9092", "port=9092"})
 @ActiveProfiles("test")
@@ -0,0 +1,31 @@
+package ru.rpovetkin.accounts.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Общая основа тестов на реальном PostgreSQL: один контейнер на весь запуск (запускается при первом
+ * обращении и останавливается Testcontainers вместе с JVM) и одинаковая конфигурация, поэтому
+ * Spring context тоже переиспользуется между наследниками
+ */
+@SpringBootTest(properties = {
+        "spring.autoconfigure.exclude=",
+        "spring.liquibase.enabled=true",
+        "spring.jpa.show-sql=false"
+})
+@Testcontainers(disabledWithoutDocker = true)
+abstract class AbstractPostgresIntegrationTest {
+
+    @ServiceConnection
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    static {
+        postgres.start();
+    }
+
+    @MockBean
+    private NotificationService notificationService;
+}
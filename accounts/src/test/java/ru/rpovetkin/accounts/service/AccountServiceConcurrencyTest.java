@@ -0,0 +1,260 @@
+package ru.rpovetkin.accounts.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.rpovetkin.accounts.dto.AccountOperationRequest;
+import ru.rpovetkin.accounts.dto.AccountOperationResponse;
+import ru.rpovetkin.accounts.dto.AccountTransferRequest;
+import ru.rpovetkin.accounts.dto.AccountTransferResponse;
+import ru.rpovetkin.accounts.dto.LedgerEntryDto;
+import ru.rpovetkin.accounts.entity.User;
+import ru.rpovetkin.accounts.entity.UserAccount;
+import ru.rpovetkin.accounts.enums.Currency;
+import ru.rpovetkin.accounts.enums.LedgerOperation;
+import ru.rpovetkin.accounts.repository.UserAccountRepository;
+import ru.rpovetkin.accounts.repository.UserRepository;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Нагрузочные тесты атомарного изменения баланса на реальном PostgreSQL
+ * Проверяет отсутствие потерянных обновлений при сотнях параллельных операций
+ */
+class AccountServiceConcurrencyTest extends AbstractPostgresIntegrationTest {
+
+    private static final int THREADS = 32;
+    private static final int OPERATIONS = 400;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserAccountRepository userAccountRepository;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    private String login;
+    private String counterpartyLogin;
+
+    @BeforeEach
+    void setUp() {
+        login = createUserWithAccounts("stress-" + System.nanoTime());
+        counterpartyLogin = createUserWithAccounts("counterparty-" + System.nanoTime());
+    }
+
+    @Test
+    @DisplayName("Параллельные пополнения не теряют обновлений")
+    void concurrentDeposits_shouldNotLoseUpdates() throws Exception {
+        List<AccountOperationResponse> responses = runConcurrently(OPERATIONS, accountService::depositMoney);
+
+        assertThat(responses).allMatch(AccountOperationResponse::isSuccess);
+        assertThat(balance()).isEqualByComparingTo(BigDecimal.valueOf(OPERATIONS));
+    }
+
+    @Test
+    @DisplayName("Параллельные снятия списывают ровно доступную сумму и не уводят баланс в минус")
+    void concurrentWithdrawals_shouldNeverOverdraw() throws Exception {
+        int available = OPERATIONS / 2;
+        accountService.depositMoney(request(BigDecimal.valueOf(available)));
+
+        List<AccountOperationResponse> responses = runConcurrently(OPERATIONS, accountService::withdrawMoney);
+
+        long succeeded = responses.stream().filter(AccountOperationResponse::isSuccess).count();
+        assertThat(succeeded).isEqualTo(available);
+        assertThat(responses).filteredOn(r -> !r.isSuccess())
+                .allMatch(r -> "Insufficient funds".equals(r.getMessage()));
+        assertThat(balance()).isEqualByComparingTo(BigDecimal.ZERO);
+    }
+
+    @Test
+    @DisplayName("Неуспешные операции возвращают причину отказа")
+    void failedUpdate_shouldExplainReason() {
+        AccountOperationResponse noFunds = accountService.withdrawMoney(request(BigDecimal.TEN));
+        assertThat(noFunds.isSuccess()).isFalse();
+        assertThat(noFunds.getMessage()).isEqualTo("Insufficient funds");
+
+        AccountOperationResponse noUser = accountService.depositMoney(AccountOperationRequest.builder()
+                .login(login + "-missing")
+                .currency(Currency.RUB)
+                .amount(BigDecimal.ONE)
+                .build());
+        assertThat(noUser.isSuccess()).isFalse();
+        assertThat(noUser.getMessage()).isEqualTo("User not found");
+    }
+
+    @Test
+    @DisplayName("Параллельные повторы с одним Idempotency-Key пополняют счет один раз и получают одинаковый ответ")
+    void concurrentRetriesWithSameKey_shouldDepositOnce() throws Exception {
+        String key = "retry-" + System.nanoTime();
+
+        List<AccountOperationResponse> responses = runConcurrently(THREADS, request -> idempotencyService.execute(
+                key, login, "DEPOSIT", request, AccountOperationResponse.class, () -> accountService.depositMoney(request)));
+
+        assertThat(responses).allMatch(AccountOperationResponse::isSuccess);
+        assertThat(responses).extracting(response -> response.getAccount().getBalance())
+                .allMatch(recorded -> recorded.compareTo(BigDecimal.ONE) == 0);
+        assertThat(balance()).isEqualByComparingTo(BigDecimal.ONE);
+    }
+
+    @Test
+    @DisplayName("Повтор Idempotency-Key с другим запросом отклоняется без изменения баланса")
+    void reusedKeyWithDifferentRequest_shouldBeRejected() {
+        String key = "reuse-" + System.nanoTime();
+        AccountOperationRequest first = request(BigDecimal.TEN);
+        idempotencyService.execute(key, login, "DEPOSIT", first, AccountOperationResponse.class,
+                () -> accountService.depositMoney(first));
+
+        AccountOperationRequest second = request(BigDecimal.ONE);
+        assertThatThrownBy(() -> idempotencyService.execute(key, login, "DEPOSIT", second, AccountOperationResponse.class,
+                () -> accountService.depositMoney(second)))
+                .isInstanceOf(IdempotencyService.IdempotencyKeyException.class);
+        assertThat(balance()).isEqualByComparingTo(BigDecimal.TEN);
+    }
+
+    @Test
+    @DisplayName("Встречные параллельные переводы не приводят к взаимной блокировке и сохраняют сумму балансов")
+    void concurrentOpposingTransfers_shouldConserveTotalWithoutDeadlock() throws Exception {
+        int initial = OPERATIONS / 4;
+        accountService.depositMoney(request(BigDecimal.valueOf(initial)));
+        accountService.depositMoney(AccountOperationRequest.builder()
+                .login(counterpartyLogin)
+                .currency(Currency.RUB)
+                .amount(BigDecimal.valueOf(initial))
+                .build());
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<AccountTransferResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < OPERATIONS; i++) {
+                boolean forward = i % 2 == 0;
+                AccountTransferRequest transfer = AccountTransferRequest.builder()
+                        .fromLogin(forward ? login : counterpartyLogin)
+                        .toLogin(forward ? counterpartyLogin : login)
+                        .fromCurrency(Currency.RUB)
+                        .toCurrency(Currency.RUB)
+                        .amountFrom(BigDecimal.ONE)
+                        .amountTo(BigDecimal.ONE)
+                        .build();
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return accountService.transferMoney(transfer);
+                }));
+            }
+            start.countDown();
+
+            for (Future<AccountTransferResponse> future : futures) {
+                AccountTransferResponse response = future.get(60, TimeUnit.SECONDS);
+                assertThat(response.isSuccess() || "Insufficient funds".equals(response.getMessage())).isTrue();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        BigDecimal total = balance(login).add(balance(counterpartyLogin));
+        assertThat(total).isEqualByComparingTo(BigDecimal.valueOf(2L * initial));
+        assertThat(balance(login)).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+        assertThat(balance(counterpartyLogin)).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+        assertThat(ledgerService.replayBalance(accountId(login))).isEqualByComparingTo(balance(login));
+        assertThat(ledgerService.replayBalance(accountId(counterpartyLogin))).isEqualByComparingTo(balance(counterpartyLogin));
+    }
+
+    @Test
+    @DisplayName("Баланс, пересчитанный по журналу, совпадает с материализованным до и после контрольной точки")
+    void concurrentOperations_shouldKeepLedgerConsistent() throws Exception {
+        runConcurrently(OPERATIONS, accountService::depositMoney);
+        runConcurrently(OPERATIONS / 2, accountService::withdrawMoney);
+        Long accountId = accountId(login);
+
+        assertThat(ledgerService.replayBalance(accountId)).isEqualByComparingTo(balance());
+
+        ledgerService.checkpoint(Duration.ZERO);
+        runConcurrently(OPERATIONS / 4, accountService::withdrawMoney);
+
+        assertThat(ledgerService.replayBalance(accountId)).isEqualByComparingTo(balance());
+        assertThat(ledgerService.getStatement(login, Currency.RUB, null, null, 10)).hasValueSatisfying(entries -> {
+            assertThat(entries).hasSize(10);
+            assertThat(entries).extracting(LedgerEntryDto::getOperation).containsOnly(LedgerOperation.WITHDRAWAL);
+        });
+    }
+
+    private String createUserWithAccounts(String userLogin) {
+        User user = userRepository.save(User.builder()
+                .login(userLogin)
+                .passwordHash("hash")
+                .name("Stress Test")
+                .birthdate(LocalDate.of(1990, 1, 1))
+                .build());
+        accountService.createDefaultAccounts(user);
+        return userLogin;
+    }
+
+    private List<AccountOperationResponse> runConcurrently(
+            int operations, Function<AccountOperationRequest, AccountOperationResponse> operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<AccountOperationResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < operations; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return operation.apply(request(BigDecimal.ONE));
+                }));
+            }
+            start.countDown();
+
+            List<AccountOperationResponse> responses = new ArrayList<>();
+            for (Future<AccountOperationResponse> future : futures) {
+                responses.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return responses;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private AccountOperationRequest request(BigDecimal amount) {
+        return AccountOperationRequest.builder()
+                .login(login)
+                .currency(Currency.RUB)
+                .amount(amount)
+                .build();
+    }
+
+    private Long accountId(String userLogin) {
+        return userAccountRepository.findBalanceByLoginAndCurrency(userLogin, Currency.RUB).orElseThrow().getId();
+    }
+
+    private BigDecimal balance() {
+        return balance(login);
+    }
+
+    private BigDecimal balance(String userLogin) {
+        Long userId = userRepository.findByLogin(userLogin).orElseThrow().getId();
+        return userAccountRepository.findByUserIdAndCurrency(userId, Currency.RUB)
+                .map(UserAccount::getBalance)
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,40 @@
+package ru.rpovetkin.accounts.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyCacheTest {
+
+    private static final long TTL_NANOS = Duration.ofMinutes(1).toNanos();
+
+    @Test
+    @DisplayName("Запись отдается до истечения TTL и удаляется после")
+    void get_shouldExpireAfterTtl() {
+        IdempotencyCache cache = new IdempotencyCache(100, 4, Duration.ofMinutes(1));
+        cache.put("alice:1", "DEPOSIT", "hash", "{\"success\":true}", 0);
+
+        assertThat(cache.get("alice:1", TTL_NANOS - 1))
+                .extracting(IdempotencyCache.Entry::response)
+                .isEqualTo("{\"success\":true}");
+        assertThat(cache.get("alice:1", TTL_NANOS)).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Размер кэша ограничен: при переполнении вытесняются самые старые записи")
+    void put_shouldStayBounded() {
+        IdempotencyCache cache = new IdempotencyCache(64, 4, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 1_000; i++) {
+            cache.put("alice:" + i, "DEPOSIT", "hash", "{}", 0);
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(64);
+        assertThat(cache.get("alice:999", 0)).isNotNull();
+        assertThat(cache.get("alice:0", 0)).isNull();
+    }
+}
@@ -0,0 +1,56 @@
+package ru.rpovetkin.accounts.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.rpovetkin.accounts.repository.LedgerEntryRepository;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Создание секции журнала на месяц, проводки которого уже попали в ledger_entries_default
+ */
+class LedgerPartitionTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    @DisplayName("Секция создается и забирает строки своего месяца из DEFAULT")
+    void ensurePartition_shouldMoveDefaultRows() {
+        jdbcTemplate.update("""
+                INSERT INTO ledger_entries (account_id, operation, amount, balance_after, created_at)
+                VALUES (1, 'DEPOSIT', 10, 10, '2041-03-15T12:00:00Z'),
+                       (1, 'DEPOSIT', 5, 15, '2041-04-01T00:00:00Z')
+                """);
+
+        String partition = transactionTemplate.execute(status ->
+                ledgerEntryRepository.ensurePartition(LocalDate.of(2041, 3, 10)));
+        String again = transactionTemplate.execute(status ->
+                ledgerEntryRepository.ensurePartition(LocalDate.of(2041, 3, 1)));
+
+        assertThat(partition).isEqualTo("ledger_entries_2041_03").isEqualTo(again);
+        assertThat(count("ledger_entries_2041_03")).isEqualTo(1);
+        // Строка следующего месяца остается в DEFAULT до создания своей секции
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM ledger_entries_default WHERE created_at >= '2041-03-01' AND created_at < '2041-05-01'",
+                Long.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM ledger_entries WHERE created_at >= '2041-03-01' AND created_at < '2041-05-01'",
+                Long.class)).isEqualTo(2);
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM " + table, Long.class);
+    }
+}
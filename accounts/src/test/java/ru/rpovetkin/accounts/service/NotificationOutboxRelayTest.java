@@ -0,0 +1,90 @@
+package ru.rpovetkin.accounts.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.rpovetkin.accounts.entity.OutboxMessage;
+import ru.rpovetkin.accounts.repository.OutboxMessageRepository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class NotificationOutboxRelayTest {
+
+    private static final String TOPIC = "account-notifications";
+
+    private OutboxMessageRepository outboxMessageRepository;
+    private KafkaTemplate<String, String> kafkaTemplate;
+    private NotificationOutboxRelay relay;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        outboxMessageRepository = mock(OutboxMessageRepository.class);
+        kafkaTemplate = mock(KafkaTemplate.class);
+        relay = new NotificationOutboxRelay(outboxMessageRepository, kafkaTemplate);
+        ReflectionTestUtils.setField(relay, "batchSize", 100);
+        ReflectionTestUtils.setField(relay, "sendTimeout", Duration.ofSeconds(1));
+    }
+
+    @Test
+    @DisplayName("Отправленная пачка удаляется из outbox")
+    void relay_shouldDeleteSentMessages() {
+        given(outboxMessageRepository.lockBatch(100)).willReturn(List.of(message(1, "alice"), message(2, "bob")));
+        given(kafkaTemplate.send(anyString(), anyString(), anyString()))
+                .willReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+
+        assertThat(relay.relay()).isEqualTo(2);
+
+        verify(kafkaTemplate).send(TOPIC, "alice", "{\"userId\":\"alice\"}");
+        verify(kafkaTemplate).send(TOPIC, "bob", "{\"userId\":\"bob\"}");
+        verify(outboxMessageRepository).deleteAllByIdInBatch(List.of(1L, 2L));
+    }
+
+    @Test
+    @DisplayName("Сообщение, не подтвержденное брокером, остается в outbox")
+    void relay_shouldKeepFailedMessages() {
+        given(outboxMessageRepository.lockBatch(100)).willReturn(List.of(message(1, "alice"), message(2, "bob")));
+        given(kafkaTemplate.send(TOPIC, "alice", "{\"userId\":\"alice\"}"))
+                .willReturn(CompletableFuture.failedFuture(new IllegalStateException("broker unavailable")));
+        given(kafkaTemplate.send(TOPIC, "bob", "{\"userId\":\"bob\"}"))
+                .willReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+
+        assertThat(relay.relay()).isEqualTo(1);
+
+        verify(outboxMessageRepository).deleteAllByIdInBatch(List.of(2L));
+    }
+
+    @Test
+    @DisplayName("Пустой outbox не обращается к Kafka")
+    void relay_shouldSkipEmptyOutbox() {
+        given(outboxMessageRepository.lockBatch(anyInt())).willReturn(List.of());
+
+        assertThat(relay.relay()).isZero();
+
+        verify(kafkaTemplate, never()).send(anyString(), any(), any());
+        verify(outboxMessageRepository, never()).deleteAllByIdInBatch(any());
+    }
+
+    private static OutboxMessage message(long id, String userId) {
+        return OutboxMessage.builder()
+                .id(id)
+                .topic(TOPIC)
+                .messageKey(userId)
+                .payload("{\"userId\":\"" + userId + "\"}")
+                .build();
+    }
+}
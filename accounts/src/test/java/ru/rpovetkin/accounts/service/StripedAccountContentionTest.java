@@ -0,0 +1,179 @@
+package ru.rpovetkin.accounts.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.rpovetkin.accounts.dto.AccountBalanceDto;
+import ru.rpovetkin.accounts.dto.AccountOperationRequest;
+import ru.rpovetkin.accounts.dto.AccountOperationResponse;
+import ru.rpovetkin.accounts.dto.AccountTransferRequest;
+import ru.rpovetkin.accounts.dto.AccountTransferResponse;
+import ru.rpovetkin.accounts.entity.User;
+import ru.rpovetkin.accounts.enums.Currency;
+import ru.rpovetkin.accounts.repository.UserRepository;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Нагрузочный тест счета с большим числом параллельных зачислений на реальном PostgreSQL:
+ * 2000 переводов от 64 отправителей на один счет получателя в 32 потоках.
+ * Сравнивает обычный счет (все зачисления ждут одну строку user_accounts) со счетом в режиме 16 stripes
+ */
+@Slf4j
+class StripedAccountContentionTest extends AbstractPostgresIntegrationTest {
+
+    private static final int THREADS = 32;
+    private static final int SENDERS = 64;
+    private static final int TRANSFERS = 2000;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    @DisplayName("Зачисления на счет в режиме 16 stripes не теряются и сравниваются по пропускной способности с 1 stripe")
+    void fanInTransfers_oneVersusSixteenStripes() throws Exception {
+        long singleMillis = runFanIn(1);
+        long stripedMillis = runFanIn(16);
+
+        int measured = TRANSFERS - THREADS;
+        log.info("Fan-in of {} transfers into one account with {} threads: 1 stripe {} ms ({} tx/s), 16 stripes {} ms ({} tx/s)",
+                measured, THREADS,
+                singleMillis, measured * 1000L / Math.max(singleMillis, 1),
+                stripedMillis, measured * 1000L / Math.max(stripedMillis, 1));
+    }
+
+    @Test
+    @DisplayName("Списание со счета в режиме stripes забирает недостающую сумму из stripes")
+    void withdraw_shouldDrainStripes() throws Exception {
+        String shop = createUser("shop-drain-");
+        assertThat(accountService.configureStripes(shop, Currency.RUB, 16).isSuccess()).isTrue();
+        runConcurrently(THREADS * 4, () -> accountService.depositMoney(deposit(shop, BigDecimal.ONE)).isSuccess());
+
+        AccountOperationResponse withdrawal = accountService.withdrawMoney(deposit(shop, BigDecimal.valueOf(THREADS * 4L)));
+
+        assertThat(withdrawal.isSuccess()).isTrue();
+        assertThat(balance(shop).getBalance()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(accountService.withdrawMoney(deposit(shop, BigDecimal.ONE)).getMessage()).isEqualTo("Insufficient funds");
+        assertThat(ledgerService.replayBalance(balance(shop).getId())).isEqualByComparingTo(BigDecimal.ZERO);
+    }
+
+    private long runFanIn(int stripes) throws Exception {
+        String shop = createUser("shop-" + stripes + "-");
+        assertThat(accountService.configureStripes(shop, Currency.RUB, stripes).isSuccess()).isTrue();
+        List<String> senders = new ArrayList<>();
+        for (int i = 0; i < SENDERS; i++) {
+            String sender = createUser("sender-" + stripes + "-" + i + "-");
+            accountService.depositMoney(deposit(sender, BigDecimal.valueOf(TRANSFERS)));
+            senders.add(sender);
+        }
+
+        List<AccountTransferRequest> transfers = new ArrayList<>();
+        for (int i = 0; i < TRANSFERS; i++) {
+            transfers.add(AccountTransferRequest.builder()
+                    .fromLogin(senders.get(i % SENDERS))
+                    .toLogin(shop)
+                    .fromCurrency(Currency.RUB)
+                    .toCurrency(Currency.RUB)
+                    .amountFrom(BigDecimal.ONE)
+                    .amountTo(BigDecimal.ONE)
+                    .build());
+        }
+        // Прогрев: первые THREADS переводов выполняются последовательно и не входят в замер
+        List<AccountTransferResponse> warmUp = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            warmUp.add(accountService.transferMoney(transfers.get(i)));
+        }
+        assertThat(warmUp).allMatch(AccountTransferResponse::isSuccess);
+
+        List<AccountTransferRequest> measured = transfers.subList(THREADS, TRANSFERS);
+        long start = System.nanoTime();
+        List<Boolean> results = runEach(measured);
+        long millis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+        assertThat(results).containsOnly(true);
+        AccountBalanceDto shopBalance = balance(shop);
+        assertThat(shopBalance.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(TRANSFERS));
+        assertThat(ledgerService.replayBalance(shopBalance.getId())).isEqualByComparingTo(shopBalance.getBalance());
+        return millis;
+    }
+
+    private List<Boolean> runEach(List<AccountTransferRequest> transfers) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (AccountTransferRequest transfer : transfers) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return accountService.transferMoney(transfer).isSuccess();
+                }));
+            }
+            start.countDown();
+
+            List<Boolean> results = new ArrayList<>();
+            for (Future<Boolean> future : futures) {
+                results.add(future.get(120, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void runConcurrently(int operations, Callable<Boolean> operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < operations; i++) {
+                futures.add(executor.submit(operation));
+            }
+            for (Future<Boolean> future : futures) {
+                assertThat(future.get(60, TimeUnit.SECONDS)).isTrue();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String createUser(String prefix) {
+        User user = userRepository.save(User.builder()
+                .login(prefix + System.nanoTime())
+                .passwordHash("hash")
+                .name("Load Test")
+                .birthdate(LocalDate.of(1990, 1, 1))
+                .build());
+        accountService.createDefaultAccounts(user);
+        return user.getLogin();
+    }
+
+    private AccountOperationRequest deposit(String login, BigDecimal amount) {
+        return AccountOperationRequest.builder()
+                .login(login)
+                .currency(Currency.RUB)
+                .amount(amount)
+                .build();
+    }
+
+    private AccountBalanceDto balance(String login) {
+        return accountService.getAccountBalance(login, Currency.RUB).orElseThrow();
+    }
+}
@@ -0,0 +1,89 @@
+package ru.rpovetkin.accounts.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.rpovetkin.accounts.dto.UserDto;
+import ru.rpovetkin.accounts.dto.UserPageResponse;
+import ru.rpovetkin.accounts.entity.User;
+import ru.rpovetkin.accounts.repository.UserRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Справочник получателей на реальном PostgreSQL: keyset-пагинация по login и поиск по началу login или имени
+ */
+class UserServiceSearchTest extends AbstractPostgresIntegrationTest {
+
+    private static final int USERS = 45;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private String prefix;
+
+    @BeforeEach
+    void setUp() {
+        prefix = "dir" + System.nanoTime() + "-";
+        for (int i = 0; i < USERS; i++) {
+            createUser(prefix + String.format("%03d", i), "Получатель " + i);
+        }
+        createUser(prefix + "x_y", "Иван Петров");
+        createUser(prefix + "xay", "Анна Петрова");
+    }
+
+    @Test
+    @DisplayName("Постраничный обход возвращает каждого пользователя ровно один раз и по порядку login")
+    void searchUsers_shouldWalkAllPagesWithoutGapsOrDuplicates() {
+        List<String> logins = new ArrayList<>();
+        String after = null;
+        int pages = 0;
+        do {
+            UserPageResponse page = userService.searchUsers(after, prefix, 10);
+            page.getUsers().stream().map(UserDto::getLogin).forEach(logins::add);
+            after = page.getNextAfter();
+            pages++;
+        } while (after != null);
+
+        assertThat(pages).isEqualTo(5);
+        assertThat(logins).hasSize(USERS + 2).doesNotHaveDuplicates().isSorted();
+    }
+
+    @Test
+    @DisplayName("Поиск по началу имени не зависит от регистра, спецсимволы LIKE экранируются")
+    void searchUsers_shouldMatchNamePrefixAndEscapeWildcards() {
+        assertThat(userService.searchUsers(null, "иван", 20).getUsers())
+                .extracting(UserDto::getLogin)
+                .contains(prefix + "x_y")
+                .doesNotContain(prefix + "xay");
+
+        assertThat(userService.searchUsers(null, prefix + "x_", 20).getUsers())
+                .extracting(UserDto::getLogin)
+                .containsExactly(prefix + "x_y");
+    }
+
+    @Test
+    @DisplayName("Размер страницы ограничен сверху")
+    void searchUsers_shouldCapPageSize() {
+        UserPageResponse page = userService.searchUsers(null, null, 10_000);
+
+        assertThat(page.getUsers()).hasSizeLessThanOrEqualTo(100);
+    }
+
+    private void createUser(String login, String name) {
+        userRepository.save(User.builder()
+                .login(login)
+                .passwordHash("hash")
+                .name(name)
+                .birthdate(LocalDate.of(1990, 1, 1))
+                .build());
+    }
+}
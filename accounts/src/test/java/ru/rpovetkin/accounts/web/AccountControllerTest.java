@@ -1,6 +1,7 @@
 package ru.rpovetkin.accounts.web;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,21 +10,35 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.rpovetkin.accounts.dto.AccountBalanceDto;
 import ru.rpovetkin.accounts.dto.AccountDto;
 import ru.rpovetkin.accounts.dto.AccountOperationRequest;
 import ru.rpovetkin.accounts.dto.AccountOperationResponse;
+import ru.rpovetkin.accounts.dto.AccountTransferRequest;
+import ru.rpovetkin.accounts.dto.AccountTransferResponse;
 import ru.rpovetkin.accounts.dto.CreateAccountRequest;
+import ru.rpovetkin.accounts.dto.LedgerEntryDto;
 import ru.rpovetkin.accounts.enums.Currency;
+import ru.rpovetkin.accounts.enums.LedgerOperation;
 import ru.rpovetkin.accounts.service.AccountService;
+import ru.rpovetkin.accounts.service.IdempotencyService;
+import ru.rpovetkin.accounts.service.LedgerService;
 
 import java.math.BigDecimal;
+import java.time.OffsetDateTime;
 import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = AccountController.class)
@@ -39,6 +54,19 @@ class AccountControllerTest {
     @MockBean
     private AccountService accountService;
 
+    @MockBean
+    private IdempotencyService idempotencyService;
+
+    @MockBean
+    private LedgerService ledgerService;
+
+    @BeforeEach
+    void setUp() {
+        // Без сохраненного результата операция просто выполняется
+        given(idempotencyService.execute(any(), any(), anyString(), any(), any(), any()))
+                .willAnswer(invocation -> invocation.<Supplier<?>>getArgument(5).get());
+    }
+
     @Test
     @DisplayName("GET /api/accounts/{login} returns list of accounts")
     void getUserAccounts_shouldReturnOk() throws Exception {
@@ -54,6 +82,77 @@ class AccountControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    @DisplayName("GET /api/accounts/{login}/{currency} returns balance of a single account")
+    void getAccountBalance_shouldReturnBalance() throws Exception {
+        given(accountService.getAccountBalance("alice", Currency.USD)).willReturn(Optional.of(
+                AccountBalanceDto.builder()
+                        .id(7L)
+                        .currency(Currency.USD)
+                        .balance(new BigDecimal("12.50"))
+                        .build()));
+
+        mockMvc.perform(get("/api/accounts/alice/USD"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(7))
+                .andExpect(jsonPath("$.currency").value("USD"))
+                .andExpect(jsonPath("$.balance").value(12.50));
+    }
+
+    @Test
+    @DisplayName("GET /api/accounts/{login}/{currency} returns 404 when account does not exist")
+    void getAccountBalance_missingAccount_shouldReturnNotFound() throws Exception {
+        given(accountService.getAccountBalance("alice", Currency.CNY)).willReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/accounts/alice/CNY"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("GET /api/accounts/{login}/{currency}/statement returns the next page after the cursor")
+    void getStatement_shouldPassCursor() throws Exception {
+        OffsetDateTime before = OffsetDateTime.parse("2026-10-01T12:00:00Z");
+        given(ledgerService.getStatement(eq("alice"), eq(Currency.RUB), eq(before), eq(41L), eq(2)))
+                .willReturn(Optional.of(List.of(LedgerEntryDto.builder()
+                        .id(40L)
+                        .operation(LedgerOperation.WITHDRAWAL)
+                        .amount(new BigDecimal("-5"))
+                        .balanceAfter(new BigDecimal("95"))
+                        .createdAt(before)
+                        .build())));
+
+        mockMvc.perform(get("/api/accounts/alice/RUB/statement")
+                        .param("before", "2026-10-01T12:00:00Z")
+                        .param("beforeId", "41")
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(40))
+                .andExpect(jsonPath("$[0].operation").value("WITHDRAWAL"))
+                .andExpect(jsonPath("$[0].balanceAfter").value(95));
+    }
+
+    @Test
+    @DisplayName("GET /api/accounts/{login}/{currency}/statement returns 404 when account does not exist")
+    void getStatement_missingAccount_shouldReturnNotFound() throws Exception {
+        given(ledgerService.getStatement(eq("alice"), eq(Currency.CNY), any(), any(), eq(50))).willReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/accounts/alice/CNY/statement"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("PUT /api/accounts/{login}/{currency}/stripes returns 400 for invalid stripe count")
+    void configureStripes_invalidCount_shouldReturnBadRequest() throws Exception {
+        given(accountService.configureStripes("shop", Currency.RUB, 0)).willReturn(AccountOperationResponse.builder()
+                .success(false)
+                .message("Validation failed")
+                .build());
+
+        mockMvc.perform(put("/api/accounts/shop/RUB/stripes").param("count", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
     @Test
     @DisplayName("GET /api/accounts/currencies returns OK")
     void getCurrencies_shouldReturnOk() throws Exception {
@@ -101,4 +200,72 @@ class AccountControllerTest {
                         .content(objectMapper.writeValueAsString(req)))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    @DisplayName("POST /api/accounts/transfer returns 200 on success")
+    void transfer_success() throws Exception {
+        AccountTransferResponse resp = AccountTransferResponse.builder()
+                .success(true)
+                .message("ok")
+                .build();
+        given(accountService.transferMoney(any(AccountTransferRequest.class))).willReturn(resp);
+
+        AccountTransferRequest req = AccountTransferRequest.builder()
+                .fromLogin("alice")
+                .toLogin("bob")
+                .fromCurrency(Currency.RUB)
+                .toCurrency(Currency.RUB)
+                .amountFrom(new BigDecimal("10"))
+                .amountTo(new BigDecimal("10"))
+                .build();
+
+        mockMvc.perform(post("/api/accounts/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("POST /api/accounts/transfer returns 400 on failure")
+    void transfer_failure() throws Exception {
+        AccountTransferResponse resp = AccountTransferResponse.builder()
+                .success(false)
+                .message("Insufficient funds")
+                .build();
+        given(accountService.transferMoney(any(AccountTransferRequest.class))).willReturn(resp);
+
+        AccountTransferRequest req = AccountTransferRequest.builder()
+                .fromLogin("alice")
+                .toLogin("bob")
+                .fromCurrency(Currency.RUB)
+                .toCurrency(Currency.USD)
+                .amountFrom(new BigDecimal("1000"))
+                .amountTo(new BigDecimal("10"))
+                .build();
+
+        mockMvc.perform(post("/api/accounts/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("POST /api/accounts/withdraw passes Idempotency-Key and returns 422 when the key is reused")
+    void withdraw_reusedIdempotencyKey_shouldReturnUnprocessableEntity() throws Exception {
+        given(idempotencyService.execute(eq("key-1"), eq("alice"), eq("WITHDRAW"), any(), any(), any()))
+                .willThrow(new IdempotencyService.IdempotencyKeyException("Idempotency-Key уже использован для другого запроса"));
+
+        AccountOperationRequest req = AccountOperationRequest.builder()
+                .login("alice")
+                .currency(Currency.RUB)
+                .amount(new BigDecimal("10"))
+                .build();
+
+        mockMvc.perform(post("/api/accounts/withdraw")
+                        .header(IdempotencyService.HEADER, "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.success").value(false));
+    }
 }
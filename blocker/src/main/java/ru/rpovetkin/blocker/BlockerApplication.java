@@ -2,8 +2,10 @@ package ru.rpovetkin.blocker;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class BlockerApplication {
 
 	public static void main(String[] args) {
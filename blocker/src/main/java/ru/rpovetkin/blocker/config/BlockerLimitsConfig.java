@@ -12,7 +12,7 @@ import java.math.BigDecimal;
 public class BlockerLimitsConfig {
     
     /**
-     * Максимальная сумма перевода без блокировки
+     * Максимальная сумма перевода без блокировки (для валют, где не задан blocker.rules.thresholds.*.block-above)
      */
     private BigDecimal maxTransferAmount = new BigDecimal("50000");
 }
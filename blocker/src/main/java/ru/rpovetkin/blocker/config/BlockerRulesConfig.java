@@ -0,0 +1,70 @@
+package ru.rpovetkin.blocker.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "blocker.rules")
+public class BlockerRulesConfig {
+
+    public static final String DEFAULT_CURRENCY = "default";
+
+    /**
+     * YAML-файл с деревом blocker.rules (например ConfigMap); если задан, правила берутся из него
+     * и перечитываются при изменении файла
+     */
+    private String file;
+
+    /**
+     * Как часто проверяется изменение файла правил
+     */
+    private Duration reloadInterval = Duration.ofSeconds(30);
+
+    /**
+     * Пороги сумм по валютам; ключ default - для валют без своих порогов
+     */
+    private Map<String, Thresholds> thresholds = new LinkedHashMap<>();
+
+    /**
+     * Пользователи, переводы от и к которым блокируются
+     */
+    private List<String> deniedUsers = new ArrayList<>();
+
+    /**
+     * Слова в описании перевода, при которых перевод блокируется (без учета регистра)
+     */
+    private List<String> keywords = new ArrayList<>();
+
+    /**
+     * Типы операций (CASH, TRANSFER), которые блокируются целиком
+     */
+    private List<String> blockedTransferTypes = new ArrayList<>();
+
+    @Data
+    public static class Thresholds {
+
+        /**
+         * Сумма, свыше которой перевод блокируется; не задана - blocker.limits.max-transfer-amount
+         */
+        private BigDecimal blockAbove;
+
+        /**
+         * Сумма, свыше которой риск HIGH
+         */
+        private BigDecimal highRiskAbove;
+
+        /**
+         * Сумма, свыше которой риск MEDIUM
+         */
+        private BigDecimal mediumRiskAbove;
+    }
+}
@@ -0,0 +1,76 @@
+package ru.rpovetkin.blocker.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "blocker.velocity")
+public class VelocityRulesConfig {
+
+    /**
+     * Проверять ли количество и сумму операций пользователя за период
+     */
+    private boolean enabled = true;
+
+    /**
+     * Сколько пользователей отслеживается одновременно; память под счетчики выделяется сразу
+     */
+    private int maxUsers = 8192;
+
+    /**
+     * Количество независимых таблиц счетчиков
+     */
+    private int stripes = 16;
+
+    /**
+     * Сколько мест таблицы просматривается в поисках места пользователя
+     */
+    private int probeLength = 16;
+
+    /**
+     * Через сколько без операций место пользователя можно отдать другому (не меньше самого длинного окна)
+     */
+    private Duration idleTimeout = Duration.ofHours(25);
+
+    /**
+     * Валюты, по которым ведутся счетчики; операции в других валютах не проверяются
+     */
+    private List<String> currencies = new ArrayList<>(List.of("RUB", "USD", "CNY"));
+
+    private List<Window> windows = new ArrayList<>();
+
+    @Data
+    public static class Window {
+
+        /**
+         * Название окна в причине блокировки
+         */
+        private String name;
+
+        private Duration duration;
+
+        /**
+         * На сколько корзин делится окно; окно скользит с точностью до одной корзины
+         */
+        private int buckets = 12;
+
+        /**
+         * Максимум операций за окно (null - без ограничения)
+         */
+        private Integer maxCount;
+
+        /**
+         * Максимальная сумма операций за окно по валютам (нет валюты - без ограничения)
+         */
+        private Map<String, BigDecimal> maxAmount = new LinkedHashMap<>();
+    }
+}
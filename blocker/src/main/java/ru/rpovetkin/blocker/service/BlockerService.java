@@ -3,11 +3,10 @@ package ru.rpovetkin.blocker.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import ru.rpovetkin.blocker.config.BlockerLimitsConfig;
 import ru.rpovetkin.blocker.dto.TransferCheckRequest;
 import ru.rpovetkin.blocker.dto.TransferCheckResponse;
 
-import java.math.BigDecimal;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -15,7 +14,8 @@ import java.util.UUID;
 @Slf4j
 public class BlockerService {
     
-    private final BlockerLimitsConfig limitsConfig;
+    private final RuleEngine ruleEngine;
+    private final VelocityService velocityService;
     
    
     public TransferCheckResponse checkTransfer(TransferCheckRequest request) {
@@ -25,25 +25,24 @@ public class BlockerService {
                 request.getFromUser(), request.getToUser(), 
                 request.getAmount(), request.getCurrency(), checkId);
         
-        // Жёсткое правило: блокировать суммы свыше установленного лимита
-        if (request.getAmount() != null && request.getAmount().compareTo(limitsConfig.getMaxTransferAmount()) > 0) {
-            TransferCheckResponse response = TransferCheckResponse.builder()
-                    .blocked(true)
-                    .reason("LIMIT_EXCEEDED_BLOCK: сумма превышает лимит безопасности (" + limitsConfig.getMaxTransferAmount() + ")")
-                    .riskLevel("HIGH")
-                    .checkId(checkId)
-                    .build();
-            log.info("Transfer check result (ID: {}): blocked={}, reason={}, riskLevel={}", 
-                    checkId, true, response.getReason(), response.getRiskLevel());
-            return response;
+        // Лимит суммы, запрещенные пользователи и типы операций, ключевые слова - из blocker.rules
+        CompiledRules.Verdict verdict = ruleEngine.current().evaluate(request);
+        boolean shouldBlock = verdict.blocked();
+        String reason = verdict.reason();
+        String riskLevel = verdict.riskLevel();
+        
+        // Частота операций учитывается только для переводов, прошедших остальные правила
+        if (!shouldBlock) {
+            Optional<String> velocityViolation = velocityService.check(
+                    VelocityService.subject(request.getFromUser(), request.getToUser()),
+                    request.getCurrency(), request.getAmount());
+            if (velocityViolation.isPresent()) {
+                shouldBlock = true;
+                reason = velocityViolation.get();
+                riskLevel = "HIGH";
+            }
         }
         
-        // Блокировка по конкретным правилам
-        boolean shouldBlock = shouldBlockTransfer(request);
-        
-        String riskLevel = determineRiskLevel(request);
-        String reason = shouldBlock ? getBlockingReason(riskLevel) : "Transfer approved";
-        
         TransferCheckResponse response = TransferCheckResponse.builder()
                 .blocked(shouldBlock)
                 .reason(reason)
@@ -56,62 +55,4 @@ public class BlockerService {
         
         return response;
     }
-    
-    /**
-     * Определяет уровень риска на основе параметров перевода
-     */
-    private String determineRiskLevel(TransferCheckRequest request) {
-        BigDecimal amount = request.getAmount();
-        
-        // Логика определения уровня риска
-        if (amount.compareTo(new BigDecimal("100000")) > 0) {
-            return "HIGH";
-        } else if (amount.compareTo(new BigDecimal("10000")) > 0) {
-            return "MEDIUM";
-        } else {
-            return "LOW";
-        }
-    }
-    
-    /**
-     * Определяет, нужно ли блокировать перевод по конкретным правилам
-     */
-    private boolean shouldBlockTransfer(TransferCheckRequest request) {
-        BigDecimal amount = request.getAmount();
-        
-        // Блокируем очень крупные суммы (свыше установленного лимита)
-        if (amount.compareTo(limitsConfig.getMaxTransferAmount()) > 0) {
-            return true;
-        }
-        
-        // Блокируем подозрительные паттерны
-        if ("SUSPICIOUS_USER".equals(request.getFromUser()) || 
-            "SUSPICIOUS_USER".equals(request.getToUser())) {
-            return true;
-        }
-        
-        // Блокируем переводы с подозрительными описаниями
-        String description = request.getDescription();
-        if (description != null && (
-            description.toLowerCase().contains("подозрительно") ||
-            description.toLowerCase().contains("блокировать") ||
-            description.toLowerCase().contains("fraud"))) {
-            return true;
-        }
-        
-        // Разрешаем все остальные переводы
-        return false;
-    }
-    
-    /**
-     * Возвращает причину блокировки в зависимости от уровня риска
-     */
-    private String getBlockingReason(String riskLevel) {
-        return switch (riskLevel) {
-            case "HIGH" -> "Подозрительная операция: крупная сумма перевода";
-            case "MEDIUM" -> "Подозрительная операция: средняя сумма, требует проверки";
-            case "LOW" -> "Заблокировано по правилам безопасности";
-            default -> "Подозрительная активность";
-        };
-    }
 }
@@ -0,0 +1,147 @@
+package ru.rpovetkin.blocker.service;
+
+import ru.rpovetkin.blocker.config.BlockerRulesConfig;
+import ru.rpovetkin.blocker.dto.TransferCheckRequest;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Неизменяемый набор правил блокировки, собранный из blocker.rules.
+ * При сборке пороги разбираются в BigDecimal, списки пользователей и типов операций - в множества,
+ * ключевые слова - в {@link KeywordMatcher}, а результаты проверки создаются заранее.
+ * Проверка перевода проходит описание один раз и не создает объектов
+ */
+public final class CompiledRules {
+
+    private static final BigDecimal DEFAULT_HIGH_RISK_ABOVE = new BigDecimal("100000");
+    private static final BigDecimal DEFAULT_MEDIUM_RISK_ABOVE = new BigDecimal("10000");
+
+    private static final Verdict APPROVED_HIGH = new Verdict(false, "Transfer approved", "HIGH");
+    private static final Verdict APPROVED_MEDIUM = new Verdict(false, "Transfer approved", "MEDIUM");
+    private static final Verdict APPROVED_LOW = new Verdict(false, "Transfer approved", "LOW");
+    private static final Verdict BLOCKED_HIGH = new Verdict(true, "Подозрительная операция: крупная сумма перевода", "HIGH");
+    private static final Verdict BLOCKED_MEDIUM = new Verdict(true, "Подозрительная операция: средняя сумма, требует проверки", "MEDIUM");
+    private static final Verdict BLOCKED_LOW = new Verdict(true, "Заблокировано по правилам безопасности", "LOW");
+
+    /**
+     * Результат проверки перевода
+     */
+    public record Verdict(boolean blocked, String reason, String riskLevel) {
+    }
+
+    private record Thresholds(BigDecimal blockAbove, BigDecimal highRiskAbove, BigDecimal mediumRiskAbove,
+                              Verdict limitExceeded) {
+    }
+
+    private final Map<String, Thresholds> thresholds;
+    private final Thresholds defaultThresholds;
+    private final Set<String> deniedUsers;
+    private final Set<String> blockedTransferTypes;
+    private final KeywordMatcher keywords;
+
+    private CompiledRules(Map<String, Thresholds> thresholds, Thresholds defaultThresholds, Set<String> deniedUsers,
+                          Set<String> blockedTransferTypes, KeywordMatcher keywords) {
+        this.thresholds = thresholds;
+        this.defaultThresholds = defaultThresholds;
+        this.deniedUsers = deniedUsers;
+        this.blockedTransferTypes = blockedTransferTypes;
+        this.keywords = keywords;
+    }
+
+    /**
+     * Собрать правила из конфигурации
+     *
+     * @param maxTransferAmount лимит блокировки для валют, где block-above не задан
+     */
+    public static CompiledRules compile(BlockerRulesConfig config, BigDecimal maxTransferAmount) {
+        BlockerRulesConfig.Thresholds defaults = config.getThresholds()
+                .getOrDefault(BlockerRulesConfig.DEFAULT_CURRENCY, new BlockerRulesConfig.Thresholds());
+        Thresholds defaultThresholds = thresholds(defaults, new BlockerRulesConfig.Thresholds(), maxTransferAmount);
+        Map<String, Thresholds> byCurrency = new HashMap<>();
+        config.getThresholds().forEach((currency, currencyThresholds) -> {
+            if (!BlockerRulesConfig.DEFAULT_CURRENCY.equals(currency)) {
+                byCurrency.put(currency.toUpperCase(Locale.ROOT), thresholds(currencyThresholds, defaults, maxTransferAmount));
+            }
+        });
+        return new CompiledRules(
+                Map.copyOf(byCurrency),
+                defaultThresholds,
+                normalize(config.getDeniedUsers(), false),
+                normalize(config.getBlockedTransferTypes(), true),
+                KeywordMatcher.compile(config.getKeywords()));
+    }
+
+    /**
+     * Проверить перевод: лимит суммы в валюте, запрещенные пользователи и типы операций, ключевые слова в описании
+     */
+    public Verdict evaluate(TransferCheckRequest request) {
+        // Ключи валют и типы операций приведены к верхнему регистру при сборке правил, запрос - так же
+        Thresholds limits = request.getCurrency() == null
+                ? defaultThresholds
+                : thresholds.getOrDefault(upperCase(request.getCurrency()), defaultThresholds);
+        BigDecimal amount = request.getAmount();
+        if (amount != null && limits.blockAbove().compareTo(amount) < 0) {
+            return limits.limitExceeded();
+        }
+
+        boolean blocked = contains(deniedUsers, request.getFromUser())
+                || contains(deniedUsers, request.getToUser())
+                || contains(blockedTransferTypes, upperCase(request.getTransferType()))
+                || keywords.matches(request.getDescription());
+
+        if (amount != null && limits.highRiskAbove().compareTo(amount) < 0) {
+            return blocked ? BLOCKED_HIGH : APPROVED_HIGH;
+        }
+        if (amount != null && limits.mediumRiskAbove().compareTo(amount) < 0) {
+            return blocked ? BLOCKED_MEDIUM : APPROVED_MEDIUM;
+        }
+        return blocked ? BLOCKED_LOW : APPROVED_LOW;
+    }
+
+    public int keywordCount() {
+        return keywords.keywordCount();
+    }
+
+    public int deniedUserCount() {
+        return deniedUsers.size();
+    }
+
+    private static Thresholds thresholds(BlockerRulesConfig.Thresholds own, BlockerRulesConfig.Thresholds defaults,
+                                         BigDecimal maxTransferAmount) {
+        BigDecimal blockAbove = firstNonNull(own.getBlockAbove(), defaults.getBlockAbove(), maxTransferAmount);
+        return new Thresholds(
+                blockAbove,
+                firstNonNull(own.getHighRiskAbove(), defaults.getHighRiskAbove(), DEFAULT_HIGH_RISK_ABOVE),
+                firstNonNull(own.getMediumRiskAbove(), defaults.getMediumRiskAbove(), DEFAULT_MEDIUM_RISK_ABOVE),
+                new Verdict(true, "LIMIT_EXCEEDED_BLOCK: сумма превышает лимит безопасности (" + blockAbove + ")", "HIGH"));
+    }
+
+    private static BigDecimal firstNonNull(BigDecimal own, BigDecimal inherited, BigDecimal fallback) {
+        return own != null ? own : inherited != null ? inherited : fallback;
+    }
+
+    private static Set<String> normalize(List<String> values, boolean upperCase) {
+        return values.stream()
+                .filter(value -> value != null && !value.isBlank())
+                .map(String::trim)
+                .map(value -> upperCase ? value.toUpperCase(Locale.ROOT) : value)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Строка уже в верхнем регистре (обычный случай) возвращается без копирования
+     */
+    private static String upperCase(String value) {
+        return value == null ? null : value.toUpperCase(Locale.ROOT);
+    }
+
+    private static boolean contains(Set<String> values, String value) {
+        return value != null && !values.isEmpty() && values.contains(value);
+    }
+}
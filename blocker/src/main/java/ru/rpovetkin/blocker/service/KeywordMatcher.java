@@ -0,0 +1,160 @@
+package ru.rpovetkin.blocker.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Поиск любого из ключевых слов в тексте за один проход (автомат Ахо-Корасик), без учета регистра.
+ * Стоимость проверки зависит от длины текста, а не от количества слов. Переходы автомата хранятся
+ * в плоских массивах, отсортированных по символу; проверка не создает объектов
+ */
+final class KeywordMatcher {
+
+    /**
+     * Character.toLowerCase для всех char, чтобы не вычислять его на каждом символе описания
+     */
+    private static final char[] LOWER_CASE = new char[Character.MAX_VALUE + 1];
+
+    static {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            LOWER_CASE[c] = Character.toLowerCase((char) c);
+        }
+    }
+
+    private final int[] edgeStart;
+    private final char[] edgeChar;
+    private final int[] edgeTarget;
+    private final int[] fail;
+    private final boolean[] terminal;
+    private final int keywordCount;
+
+    private KeywordMatcher(int[] edgeStart, char[] edgeChar, int[] edgeTarget, int[] fail, boolean[] terminal,
+                           int keywordCount) {
+        this.edgeStart = edgeStart;
+        this.edgeChar = edgeChar;
+        this.edgeTarget = edgeTarget;
+        this.fail = fail;
+        this.terminal = terminal;
+        this.keywordCount = keywordCount;
+    }
+
+    static KeywordMatcher compile(Collection<String> keywords) {
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<Boolean> terminals = new ArrayList<>();
+        children.add(new TreeMap<>());
+        terminals.add(false);
+        int count = 0;
+        for (String keyword : keywords) {
+            if (keyword == null || keyword.isBlank()) {
+                continue;
+            }
+            int node = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = LOWER_CASE[keyword.charAt(i)];
+                Integer next = children.get(node).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.get(node).put(c, next);
+                    children.add(new TreeMap<>());
+                    terminals.add(false);
+                }
+                node = next;
+            }
+            terminals.set(node, true);
+            count++;
+        }
+
+        int nodes = children.size();
+        int[] fail = new int[nodes];
+        boolean[] terminal = new boolean[nodes];
+        terminal[0] = terminals.get(0);
+        // Ссылки неудач в порядке обхода в ширину: узел короче по глубине обработан раньше
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : children.get(0).values()) {
+            terminal[child] = terminals.get(child);
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (Map.Entry<Character, Integer> edge : children.get(node).entrySet()) {
+                int child = edge.getValue();
+                int state = fail[node];
+                while (state != 0 && !children.get(state).containsKey(edge.getKey())) {
+                    state = fail[state];
+                }
+                Integer target = children.get(state).get(edge.getKey());
+                fail[child] = target == null ? 0 : target;
+                // Слово, оканчивающееся на суффиксе пути, тоже совпадение
+                terminal[child] = terminals.get(child) || terminal[fail[child]];
+                queue.add(child);
+            }
+        }
+
+        int[] edgeStart = new int[nodes + 1];
+        int edges = 0;
+        for (int node = 0; node < nodes; node++) {
+            edgeStart[node] = edges;
+            edges += children.get(node).size();
+        }
+        edgeStart[nodes] = edges;
+        char[] edgeChar = new char[edges];
+        int[] edgeTarget = new int[edges];
+        for (int node = 0; node < nodes; node++) {
+            int edge = edgeStart[node];
+            for (Map.Entry<Character, Integer> entry : children.get(node).entrySet()) {
+                edgeChar[edge] = entry.getKey();
+                edgeTarget[edge] = entry.getValue();
+                edge++;
+            }
+        }
+        return new KeywordMatcher(edgeStart, edgeChar, edgeTarget, fail, terminal, count);
+    }
+
+    /**
+     * Содержит ли текст хотя бы одно ключевое слово
+     */
+    boolean matches(String text) {
+        if (text == null || keywordCount == 0) {
+            return false;
+        }
+        int state = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = LOWER_CASE[text.charAt(i)];
+            int next = next(state, c);
+            while (next < 0 && state != 0) {
+                state = fail[state];
+                next = next(state, c);
+            }
+            state = next < 0 ? 0 : next;
+            if (terminal[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int keywordCount() {
+        return keywordCount;
+    }
+
+    private int next(int state, char c) {
+        int low = edgeStart[state];
+        int high = edgeStart[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char edge = edgeChar[mid];
+            if (edge < c) {
+                low = mid + 1;
+            } else if (edge > c) {
+                high = mid - 1;
+            } else {
+                return edgeTarget[mid];
+            }
+        }
+        return -1;
+    }
+}
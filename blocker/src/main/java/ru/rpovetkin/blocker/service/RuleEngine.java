@@ -0,0 +1,103 @@
+package ru.rpovetkin.blocker.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.rpovetkin.blocker.config.BlockerLimitsConfig;
+import ru.rpovetkin.blocker.config.BlockerRulesConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * Текущие правила блокировки. Правила собираются в {@link CompiledRules} из blocker.rules при старте,
+ * а если задан blocker.rules.file - из этого файла, который перечитывается при изменении.
+ * Новые правила сначала собираются целиком и только потом заменяют прежние; проверки читают
+ * volatile ссылку без блокировок. Ошибка в файле не меняет действующие правила
+ */
+@Service
+@Slf4j
+public class RuleEngine {
+
+    private static final String RULES_PREFIX = "blocker.rules";
+
+    private final BlockerRulesConfig rulesConfig;
+    private final BlockerLimitsConfig limitsConfig;
+
+    private volatile CompiledRules rules;
+
+    /**
+     * Время изменения файла, из которого собраны текущие правила (или неудачной попытки)
+     */
+    private long fileModified = Long.MIN_VALUE;
+    private boolean fileMissing;
+
+    public RuleEngine(BlockerRulesConfig rulesConfig, BlockerLimitsConfig limitsConfig) {
+        this.rulesConfig = rulesConfig;
+        this.limitsConfig = limitsConfig;
+        reload(rulesConfig, "application config");
+        reloadIfChanged();
+    }
+
+    public CompiledRules current() {
+        return rules;
+    }
+
+    /**
+     * Перечитать файл правил, если он изменился с прошлой проверки
+     */
+    @Scheduled(fixedDelayString = "${blocker.rules.reload-interval:30s}")
+    public synchronized void reloadIfChanged() {
+        String file = rulesConfig.getFile();
+        if (file == null || file.isBlank()) {
+            return;
+        }
+        Path path = Path.of(file);
+        long modified;
+        try {
+            modified = Files.getLastModifiedTime(path).toMillis();
+        } catch (NoSuchFileException e) {
+            if (!fileMissing) {
+                log.warn("Blocker rules file {} not found, keeping current rules", file);
+                fileMissing = true;
+            }
+            return;
+        } catch (IOException e) {
+            log.error("Failed to check blocker rules file {}: {}", file, e.getMessage());
+            return;
+        }
+        fileMissing = false;
+        if (modified == fileModified) {
+            return;
+        }
+        fileModified = modified;
+        try {
+            reload(load(path), file);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to load blocker rules from {}, keeping current rules: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Собрать и применить правила
+     */
+    public synchronized void reload(BlockerRulesConfig source, String origin) {
+        CompiledRules compiled = CompiledRules.compile(source, limitsConfig.getMaxTransferAmount());
+        rules = compiled;
+        log.info("Loaded blocker rules from {}: {} keywords, {} denied users",
+                origin, compiled.keywordCount(), compiled.deniedUserCount());
+    }
+
+    private static BlockerRulesConfig load(Path path) throws IOException {
+        return new Binder(ConfigurationPropertySources.from(
+                new YamlPropertySourceLoader().load(path.toString(), new FileSystemResource(path))))
+                .bind(RULES_PREFIX, BlockerRulesConfig.class)
+                .orElseGet(BlockerRulesConfig::new);
+    }
+}
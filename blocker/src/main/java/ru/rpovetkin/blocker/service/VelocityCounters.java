@@ -0,0 +1,359 @@
+package ru.rpovetkin.blocker.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики операций пользователя в скользящих окнах (например 1 мин / 1 ч / 24 ч) по валютам.
+ * <p>
+ * Каждое окно - кольцо из {@code buckets} корзин; корзина хранит в одном long номер эпохи (младшие биты
+ * номера интервала) и значение, поэтому смена эпохи и прибавление выполняются одним CAS без блокировок.
+ * Сумма окна - сумма корзин, эпоха которых не старше размера кольца: окно скользит с точностью до корзины.
+ * <p>
+ * Пользователи распределены по stripes - независимым таблицам фиксированного размера с открытой адресацией
+ * и ограниченной длиной пробы. Память выделяется один раз при создании; место пользователя, не проявлявшего
+ * активности дольше idle-timeout, занимает новый пользователь. Если в пробе нет ни свободного, ни простаивающего
+ * места, вытесняется пользователь, дольше всех не проявлявший активности (LRU в пределах пробы): его история
+ * теряется, такие вытеснения считаются в {@link #evictions()}. На пути проверки нет аллокаций
+ */
+public final class VelocityCounters {
+
+    /**
+     * Операция учтена, лимиты не превышены
+     */
+    public static final int ALLOWED = -1;
+
+    private static final int EPOCH_BITS = 24;
+    private static final int VALUE_BITS = Long.SIZE - EPOCH_BITS;
+    private static final long EPOCH_MODULUS = (1L << EPOCH_BITS) - 1;
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+
+    /**
+     * Окно и его лимиты
+     *
+     * @param maxAmountMinor лимит суммы в копейках/центах по индексу валюты, {@link Long#MAX_VALUE} - без лимита
+     */
+    public record Window(Duration duration, int buckets, long maxCount, long[] maxAmountMinor) {
+    }
+
+    private final Stripe[] stripes;
+    private final int stripeBits;
+    private final int slotMask;
+    private final int probeLength;
+    private final long idleMillis;
+
+    private final int windowCount;
+    private final long[] bucketMillis;
+    private final int[] buckets;
+    private final int[] windowOffset;
+    private final long[] maxCount;
+    private final long[][] maxAmount;
+    private final int bucketsPerCurrency;
+    private final int bucketsPerSlot;
+    private final LongAdder evictions = new LongAdder();
+
+    public VelocityCounters(int maxUsers, int stripeCount, int probeLength, Duration idleTimeout,
+                            int currencies, List<Window> windows) {
+        if (maxUsers < 1 || stripeCount < 1 || probeLength < 1 || currencies < 1 || windows.isEmpty()) {
+            throw new IllegalArgumentException("Velocity counters need users, stripes, probes, currencies and windows");
+        }
+        int stripesPow2 = ceilPow2(stripeCount);
+        int slotsPerStripe = ceilPow2(Math.ceilDiv(maxUsers, stripesPow2));
+        this.stripeBits = Integer.numberOfTrailingZeros(stripesPow2);
+        this.slotMask = slotsPerStripe - 1;
+        this.probeLength = Math.min(probeLength, slotsPerStripe);
+
+        this.windowCount = windows.size();
+        this.bucketMillis = new long[windowCount];
+        this.buckets = new int[windowCount];
+        this.windowOffset = new int[windowCount];
+        this.maxCount = new long[windowCount];
+        this.maxAmount = new long[windowCount][];
+        long longestWindow = 0;
+        int offset = 0;
+        for (int w = 0; w < windowCount; w++) {
+            Window window = windows.get(w);
+            if (window.buckets() < 1 || window.duration().toMillis() < window.buckets()
+                    || window.maxAmountMinor().length != currencies) {
+                throw new IllegalArgumentException("Invalid velocity window " + window.duration());
+            }
+            bucketMillis[w] = window.duration().toMillis() / window.buckets();
+            buckets[w] = window.buckets();
+            windowOffset[w] = offset;
+            maxCount[w] = window.maxCount();
+            maxAmount[w] = window.maxAmountMinor().clone();
+            offset += window.buckets();
+            longestWindow = Math.max(longestWindow, window.duration().toMillis());
+        }
+        this.bucketsPerCurrency = offset;
+        this.bucketsPerSlot = Math.multiplyExact(offset, currencies);
+        // Место можно отдать другому пользователю, только когда все его корзины устарели
+        this.idleMillis = Math.max(idleTimeout.toMillis(), longestWindow);
+
+        int wordsPerStripe = Math.multiplyExact(slotsPerStripe, bucketsPerSlot);
+        this.stripes = new Stripe[stripesPow2];
+        for (int i = 0; i < stripesPow2; i++) {
+            stripes[i] = new Stripe(slotsPerStripe, wordsPerStripe);
+        }
+    }
+
+    /**
+     * Учесть операцию и проверить лимиты всех окон с ее учетом.
+     * Операция, превысившая лимит, из счетчиков убирается: заблокированные попытки не копятся
+     *
+     * @param currency    индекс валюты, 0..currencies-1
+     * @param amountMinor сумма в минимальных единицах (копейки, центы)
+     * @return {@link #ALLOWED} или номер нарушенного правила:
+     * {@code window * 2} - лимит количества, {@code window * 2 + 1} - лимит суммы
+     */
+    public int recordAndCheck(String user, int currency, long amountMinor, long nowMillis) {
+        int hash = spread(user.hashCode());
+        Stripe stripe = stripes[hash & ((1 << stripeBits) - 1)];
+        int start = hash >>> stripeBits;
+        while (true) {
+            int slot = findOrClaim(stripe, user, start, nowMillis);
+            int base = slot * bucketsPerSlot + currency * bucketsPerCurrency;
+            for (int w = 0; w < windowCount; w++) {
+                long epoch = nowMillis / bucketMillis[w];
+                int index = base + windowOffset[w] + (int) (epoch % buckets[w]);
+                add(stripe.counts, index, tag(epoch), 1);
+                add(stripe.sums, index, tag(epoch), amountMinor);
+            }
+            if (!user.equals(stripe.users.get(slot))) {
+                // Место отдали другому пользователю между поиском и записью: повторяем с новым местом
+                continue;
+            }
+            for (int w = 0; w < windowCount; w++) {
+                long epoch = nowMillis / bucketMillis[w];
+                int windowBase = base + windowOffset[w];
+                int violation = total(stripe.counts, windowBase, w, epoch) > maxCount[w] ? w * 2
+                        : total(stripe.sums, windowBase, w, epoch) > maxAmount[w][currency] ? w * 2 + 1
+                        : ALLOWED;
+                if (violation != ALLOWED) {
+                    rollback(stripe, base, amountMinor, nowMillis);
+                    return violation;
+                }
+            }
+            return ALLOWED;
+        }
+    }
+
+    /**
+     * Количество операций пользователя в окне
+     */
+    public long count(String user, int currency, int window, long nowMillis) {
+        return read(user, currency, window, nowMillis, true);
+    }
+
+    /**
+     * Сумма операций пользователя в окне, в минимальных единицах
+     */
+    public long amount(String user, int currency, int window, long nowMillis) {
+        return read(user, currency, window, nowMillis, false);
+    }
+
+    /**
+     * Сколько раз место отдавалось новому пользователю до истечения idle-timeout прежнего владельца
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Количество занятых мест во всех stripes
+     */
+    public int trackedUsers() {
+        int tracked = 0;
+        for (Stripe stripe : stripes) {
+            for (int slot = 0; slot <= slotMask; slot++) {
+                if (stripe.users.get(slot) != null) {
+                    tracked++;
+                }
+            }
+        }
+        return tracked;
+    }
+
+    private long read(String user, int currency, int window, long nowMillis, boolean counts) {
+        int hash = spread(user.hashCode());
+        Stripe stripe = stripes[hash & ((1 << stripeBits) - 1)];
+        int slot = find(stripe, user, hash >>> stripeBits);
+        if (slot < 0) {
+            return 0;
+        }
+        int windowBase = slot * bucketsPerSlot + currency * bucketsPerCurrency + windowOffset[window];
+        return total(counts ? stripe.counts : stripe.sums, windowBase, window, nowMillis / bucketMillis[window]);
+    }
+
+    private int find(Stripe stripe, String user, int start) {
+        for (int i = 0; i < probeLength; i++) {
+            int slot = (start + i) & slotMask;
+            if (user.equals(stripe.users.get(slot))) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Место пользователя в stripe: найденное, свободное, освободившееся по idle-timeout
+     * или, если таких нет, место пользователя, дольше всех не проявлявшего активности
+     */
+    private int findOrClaim(Stripe stripe, String user, int start, long nowMillis) {
+        while (true) {
+            int free = -1;
+            int oldest = -1;
+            String oldestOwner = null;
+            long oldestSeen = Long.MAX_VALUE;
+            for (int i = 0; i < probeLength; i++) {
+                int slot = (start + i) & slotMask;
+                String owner = stripe.users.get(slot);
+                if (owner == null) {
+                    if (free < 0) {
+                        free = slot;
+                    }
+                } else if (owner.equals(user)) {
+                    stripe.lastSeen.setRelease(slot, nowMillis);
+                    return slot;
+                } else {
+                    long lastSeen = stripe.lastSeen.get(slot);
+                    if (oldest < 0 || lastSeen < oldestSeen) {
+                        oldest = slot;
+                        oldestOwner = owner;
+                        oldestSeen = lastSeen;
+                    }
+                }
+            }
+            int candidate = free >= 0 ? free : oldest;
+            String previous = free >= 0 ? null : oldestOwner;
+            if (stripe.users.compareAndSet(candidate, previous, user)) {
+                if (free < 0 && nowMillis - oldestSeen <= idleMillis) {
+                    evictions.increment();
+                }
+                stripe.lastSeen.set(candidate, nowMillis);
+                clear(stripe, candidate);
+                return canonical(stripe, user, start, candidate);
+            }
+            // Место заняли параллельно - просматриваем пробу заново
+        }
+    }
+
+    /**
+     * Два потока могли одновременно занять для одного пользователя разные места;
+     * остается место, раньше стоящее в пробе, второе освобождается
+     */
+    private int canonical(Stripe stripe, String user, int start, int claimed) {
+        for (int i = 0; i < probeLength; i++) {
+            int slot = (start + i) & slotMask;
+            if (slot == claimed) {
+                return claimed;
+            }
+            if (user.equals(stripe.users.get(slot))) {
+                stripe.users.compareAndSet(claimed, user, null);
+                return slot;
+            }
+        }
+        return claimed;
+    }
+
+    private void clear(Stripe stripe, int slot) {
+        int base = slot * bucketsPerSlot;
+        for (int i = 0; i < bucketsPerSlot; i++) {
+            stripe.counts.set(base + i, 0);
+            stripe.sums.set(base + i, 0);
+        }
+    }
+
+    private void rollback(Stripe stripe, int base, long amountMinor, long nowMillis) {
+        for (int w = 0; w < windowCount; w++) {
+            long epoch = nowMillis / bucketMillis[w];
+            int index = base + windowOffset[w] + (int) (epoch % buckets[w]);
+            subtract(stripe.counts, index, tag(epoch), 1);
+            subtract(stripe.sums, index, tag(epoch), amountMinor);
+        }
+    }
+
+    private long total(AtomicLongArray words, int windowBase, int window, long epoch) {
+        int size = buckets[window];
+        long current = tag(epoch);
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            long word = words.get(windowBase + i);
+            long stored = word >>> VALUE_BITS;
+            if (stored != 0) {
+                long age = current - stored;
+                if (age < 0) {
+                    age += EPOCH_MODULUS;
+                }
+                if (age < size) {
+                    total += word & VALUE_MASK;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Прибавить к корзине; корзина с другой эпохой сначала обнуляется
+     */
+    private static void add(AtomicLongArray words, int index, long tag, long delta) {
+        while (true) {
+            long word = words.get(index);
+            long value = word >>> VALUE_BITS == tag ? word & VALUE_MASK : 0;
+            long next = tag << VALUE_BITS | Math.min(value + delta, VALUE_MASK);
+            if (words.compareAndSet(index, word, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Вычесть из корзины, если она еще не перешла на следующую эпоху
+     */
+    private static void subtract(AtomicLongArray words, int index, long tag, long delta) {
+        while (true) {
+            long word = words.get(index);
+            if (word >>> VALUE_BITS != tag) {
+                return;
+            }
+            long next = tag << VALUE_BITS | Math.max((word & VALUE_MASK) - delta, 0);
+            if (words.compareAndSet(index, word, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Метка эпохи в корзине: 1..2^24-1, 0 - пустая корзина
+     */
+    private static long tag(long epoch) {
+        return epoch % EPOCH_MODULUS + 1;
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int ceilPow2(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    private static final class Stripe {
+
+        private final AtomicReferenceArray<String> users;
+        private final AtomicLongArray lastSeen;
+        private final AtomicLongArray counts;
+        private final AtomicLongArray sums;
+
+        private Stripe(int slots, int words) {
+            this.users = new AtomicReferenceArray<>(slots);
+            this.lastSeen = new AtomicLongArray(slots);
+            this.counts = new AtomicLongArray(words);
+            this.sums = new AtomicLongArray(words);
+        }
+    }
+}
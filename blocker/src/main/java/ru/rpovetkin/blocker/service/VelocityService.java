@@ -0,0 +1,170 @@
+package ru.rpovetkin.blocker.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.rpovetkin.blocker.config.VelocityRulesConfig;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Правила частоты операций: количество и сумма операций пользователя в валюте за окна 1 мин / 1 ч / 24 ч
+ * (окна и лимиты - blocker.velocity.windows). Счетчики хранятся в памяти экземпляра blocker
+ */
+@Service
+@Slf4j
+public class VelocityService {
+
+    public static final String CASH_SYSTEM = "CASH_SYSTEM";
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+            10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+            1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L};
+
+    /**
+     * Любое значение с таким числом значащих цифр помещается в long
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+    private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    /**
+     * Вытеснения активных пользователей проверяются и попадают в предупреждение не чаще раза в этот период,
+     * общее число - в метрике blocker.velocity.evicted
+     */
+    private static final long EVICTION_WARN_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final VelocityRulesConfig config;
+    private final String[] currencies;
+    private final VelocityCounters counters;
+    private final AtomicLong evictionsWarnedAt = new AtomicLong(System.nanoTime());
+    private volatile long evictionsWarned;
+
+    public VelocityService(VelocityRulesConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.currencies = config.getCurrencies().toArray(String[]::new);
+        this.counters = config.isEnabled() && !config.getWindows().isEmpty() && currencies.length > 0
+                ? new VelocityCounters(config.getMaxUsers(), config.getStripes(), config.getProbeLength(),
+                        config.getIdleTimeout(), currencies.length, windows())
+                : null;
+        if (counters != null) {
+            FunctionCounter.builder("blocker.velocity.evicted", counters, VelocityCounters::evictions)
+                    .description("Пользователи, вытесненные из заполненных счетчиков до истечения idle-timeout")
+                    .register(meterRegistry);
+        }
+        log.info("Velocity rules: {} windows, {} users max", counters == null ? 0 : config.getWindows().size(),
+                config.getMaxUsers());
+    }
+
+    /**
+     * Учесть операцию пользователя и проверить лимиты частоты
+     *
+     * @return причина блокировки, если лимит превышен
+     */
+    public Optional<String> check(String user, String currency, BigDecimal amount) {
+        return check(user, currency, amount, System.currentTimeMillis());
+    }
+
+    Optional<String> check(String user, String currency, BigDecimal amount, long nowMillis) {
+        int currencyIndex = currencyIndex(currency);
+        if (counters == null || user == null || amount == null || currencyIndex < 0) {
+            return Optional.empty();
+        }
+        int result = counters.recordAndCheck(user, currencyIndex, toMinor(amount), nowMillis);
+        warnEvictions();
+        if (result == VelocityCounters.ALLOWED) {
+            return Optional.empty();
+        }
+        VelocityRulesConfig.Window window = config.getWindows().get(result / 2);
+        return Optional.of(result % 2 == 0
+                ? "VELOCITY_LIMIT: более " + window.getMaxCount() + " операций за " + window.getName()
+                : "VELOCITY_LIMIT: сумма операций за " + window.getName() + " превышает "
+                        + window.getMaxAmount().get(currency) + " " + currency);
+    }
+
+    /**
+     * Пользователь, операции которого считаются: отправитель перевода или владелец счета при операции с наличными
+     */
+    public static String subject(String fromUser, String toUser) {
+        return CASH_SYSTEM.equals(fromUser) ? toUser : fromUser;
+    }
+
+    /**
+     * Вытесненный активный пользователь теряет историю, и правила для него начинают считаться заново.
+     * Количество вытеснений проверяется раз в минуту, предупреждение - только если они были
+     */
+    private void warnEvictions() {
+        long now = System.nanoTime();
+        long warnedAt = evictionsWarnedAt.get();
+        if (now - warnedAt < EVICTION_WARN_INTERVAL_NANOS || !evictionsWarnedAt.compareAndSet(warnedAt, now)) {
+            return;
+        }
+        long evictions = counters.evictions();
+        long recent = evictions - evictionsWarned;
+        evictionsWarned = evictions;
+        if (recent > 0) {
+            log.warn("Velocity counters are full: {} active users evicted in the last minute, {} in total; "
+                    + "increase blocker.velocity.max-users", recent, evictions);
+        }
+    }
+
+    private int currencyIndex(String currency) {
+        for (int i = 0; i < currencies.length; i++) {
+            if (currencies[i].equals(currency)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private List<VelocityCounters.Window> windows() {
+        List<VelocityCounters.Window> windows = new ArrayList<>();
+        for (VelocityRulesConfig.Window window : config.getWindows()) {
+            long[] maxAmount = new long[currencies.length];
+            for (int i = 0; i < currencies.length; i++) {
+                BigDecimal limit = window.getMaxAmount().get(currencies[i]);
+                maxAmount[i] = limit == null ? Long.MAX_VALUE : toMinor(limit);
+            }
+            windows.add(new VelocityCounters.Window(window.getDuration(), window.getBuckets(),
+                    window.getMaxCount() == null ? Long.MAX_VALUE : window.getMaxCount(), maxAmount));
+        }
+        return windows;
+    }
+
+    /**
+     * Сумма в сотых долях с округлением вверх; отрицательная - 0, не помещающаяся в long - Long.MAX_VALUE.
+     * Немасштабированное значение берется через scaleByPowerOfTen(scale): временный BigDecimal не покидает
+     * метод, и JIT убирает его аллокацию (в отличие от unscaledValue, создающего BigInteger).
+     * Значения больше 18 значащих цифр считаются медленным путем
+     */
+    static long toMinor(BigDecimal amount) {
+        if (amount.signum() <= 0) {
+            return 0;
+        }
+        if (amount.precision() > MAX_LONG_DIGITS) {
+            BigDecimal minor = amount.movePointRight(2).setScale(0, RoundingMode.CEILING);
+            return minor.compareTo(LONG_MAX) >= 0 ? Long.MAX_VALUE : minor.longValue();
+        }
+        long value = amount.scaleByPowerOfTen(amount.scale()).longValue();
+        int shift = 2 - amount.scale();
+        if (shift >= 0) {
+            return shift < POWERS_OF_TEN.length && value <= Long.MAX_VALUE / POWERS_OF_TEN[shift]
+                    ? value * POWERS_OF_TEN[shift]
+                    : Long.MAX_VALUE;
+        }
+        if (-shift >= POWERS_OF_TEN.length) {
+            // value < 10^18: сумма меньше одной сотой
+            return 1;
+        }
+        long divisor = POWERS_OF_TEN[-shift];
+        long minor = value / divisor;
+        return value % divisor == 0 ? minor : minor + 1;
+    }
+}
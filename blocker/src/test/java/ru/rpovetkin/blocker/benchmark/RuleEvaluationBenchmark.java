@@ -0,0 +1,101 @@
+package ru.rpovetkin.blocker.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.rpovetkin.blocker.config.BlockerRulesConfig;
+import ru.rpovetkin.blocker.dto.TransferCheckRequest;
+import ru.rpovetkin.blocker.service.CompiledRules;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость одной проверки перевода при 10 и 10 000 ключевых слов:
+ * compiledRules - собранные правила (автомат Ахо-Корасик по описанию),
+ * naiveScan - прежний подход: toLowerCase описания и contains по каждому слову.
+ * Запуск: main из IDE или {@code java -cp <test-classpath> ru.rpovetkin.blocker.benchmark.RuleEvaluationBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuleEvaluationBenchmark {
+
+    private static final BigDecimal MAX_TRANSFER_AMOUNT = new BigDecimal("50000");
+
+    @Param({"10", "10000"})
+    public int keywords;
+
+    private CompiledRules rules;
+    private List<String> keywordList;
+    private TransferCheckRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(keywords);
+        keywordList = new ArrayList<>(List.of("подозрительно", "блокировать", "fraud"));
+        while (keywordList.size() < keywords) {
+            StringBuilder keyword = new StringBuilder();
+            int length = 5 + random.nextInt(8);
+            for (int i = 0; i < length; i++) {
+                keyword.append((char) ('а' + random.nextInt(32)));
+            }
+            keywordList.add(keyword.toString());
+        }
+
+        BlockerRulesConfig config = new BlockerRulesConfig();
+        config.setDeniedUsers(List.of("SUSPICIOUS_USER"));
+        config.setKeywords(keywordList);
+        rules = CompiledRules.compile(config, MAX_TRANSFER_AMOUNT);
+
+        // Описание без ключевых слов - худший случай, просматривается целиком
+        request = TransferCheckRequest.builder()
+                .fromUser("alice")
+                .toUser("bob")
+                .currency("RUB")
+                .amount(new BigDecimal("1500"))
+                .transferType("TRANSFER")
+                .description("Перевод за аренду квартиры за октябрь, спасибо за ожидание")
+                .build();
+    }
+
+    @Benchmark
+    public CompiledRules.Verdict compiledRules() {
+        return rules.evaluate(request);
+    }
+
+    @Benchmark
+    public boolean naiveScan() {
+        String description = request.getDescription().toLowerCase();
+        for (String keyword : keywordList) {
+            if (description.contains(keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RuleEvaluationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
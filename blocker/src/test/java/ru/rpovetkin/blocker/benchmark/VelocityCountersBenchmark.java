@@ -0,0 +1,87 @@
+package ru.rpovetkin.blocker.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.rpovetkin.blocker.service.VelocityCounters;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность проверки частоты операций: 8192 пользователя с окнами 1 мин / 1 ч / 24 ч
+ * по трем валютам, как в application.yml. Лимиты подняты, чтобы измерялся путь учета операции.
+ * hotUser - все потоки пишут счетчики одного пользователя (CAS на одних корзинах).
+ * Запуск: main из IDE или {@code java -cp <test-classpath> ru.rpovetkin.blocker.benchmark.VelocityCountersBenchmark};
+ * отсутствие аллокаций проверяется профилировщиком {@code -prof gc} (gc.alloc.rate.norm около 0 B/op)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class VelocityCountersBenchmark {
+
+    private static final int USERS = 8192;
+
+    private VelocityCounters counters;
+    private String[] users;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            next = (int) Thread.currentThread().threadId() * 7919;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long[] unlimited = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+        counters = new VelocityCounters(USERS, 16, 16, Duration.ofHours(25), 3, List.of(
+                new VelocityCounters.Window(Duration.ofMinutes(1), 6, Long.MAX_VALUE, unlimited),
+                new VelocityCounters.Window(Duration.ofHours(1), 12, Long.MAX_VALUE, unlimited),
+                new VelocityCounters.Window(Duration.ofHours(24), 24, Long.MAX_VALUE, unlimited)));
+        // Таблица рассчитана на USERS пользователей; заполнена наполовину, как при обычной нагрузке
+        users = new String[USERS / 2];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = "user-" + i;
+            counters.recordAndCheck(users[i], 0, 100, System.currentTimeMillis());
+        }
+    }
+
+    @Benchmark
+    public int manyUsers(Cursor cursor) {
+        int i = cursor.next++;
+        return counters.recordAndCheck(users[i & (users.length - 1)], Math.floorMod(i, 3), 1_000, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public int hotUser() {
+        return counters.recordAndCheck(users[0], 0, 1_000, System.currentTimeMillis());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(VelocityCountersBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,122 @@
+package ru.rpovetkin.blocker.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.rpovetkin.blocker.config.VelocityRulesConfig;
+import ru.rpovetkin.blocker.service.VelocityService;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность VelocityService.check - путь, который проходит каждая проверка blocker:
+ * поиск валюты, перевод BigDecimal суммы в сотые доли и учет в VelocityCounters.
+ * Окна 1 мин / 1 ч / 24 ч по трем валютам без лимитов, 8192 пользователя, таблица заполнена наполовину.
+ * evicting - таблица заполнена, каждая операция нового пользователя вытесняет дольше всех неактивного.
+ * Запуск: main из IDE или {@code java -cp <test-classpath> ru.rpovetkin.blocker.benchmark.VelocityServiceBenchmark};
+ * аллокации на операцию - профилировщиком {@code -prof gc} (gc.alloc.rate.norm, ожидается ≈ 0 B/op)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class VelocityServiceBenchmark {
+
+    private static final int USERS = 8192;
+    private static final String[] CURRENCIES = {"RUB", "USD", "CNY"};
+
+    private VelocityService service;
+    private VelocityService fullService;
+    private String[] users;
+    private String[] newUsers;
+    private BigDecimal[] amounts;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            next = (int) Thread.currentThread().threadId() * 7919;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = new VelocityService(config(USERS), new SimpleMeterRegistry());
+        fullService = new VelocityService(config(64), new SimpleMeterRegistry());
+
+        users = new String[USERS / 2];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = "user-" + i;
+            service.check(users[i], "RUB", BigDecimal.ONE);
+        }
+        newUsers = new String[1024];
+        for (int i = 0; i < newUsers.length; i++) {
+            newUsers[i] = "new-user-" + i;
+        }
+        for (int i = 0; i < 64; i++) {
+            fullService.check("resident-" + i, "RUB", BigDecimal.ONE);
+        }
+        // Суммы как в запросах: с копейками и целые
+        amounts = new BigDecimal[]{new BigDecimal("100.00"), new BigDecimal("1250.50"), new BigDecimal("99.99"),
+                new BigDecimal("5000"), new BigDecimal("0.01"), new BigDecimal("37.5"), new BigDecimal("12000.00"),
+                new BigDecimal("1")};
+    }
+
+    @Benchmark
+    public Optional<String> manyUsers(Cursor cursor) {
+        int i = cursor.next++;
+        return service.check(users[i & (users.length - 1)], CURRENCIES[Math.floorMod(i, 3)], amounts[i & 7]);
+    }
+
+    @Benchmark
+    public Optional<String> evicting(Cursor cursor) {
+        int i = cursor.next++;
+        return fullService.check(newUsers[i & (newUsers.length - 1)], "RUB", amounts[i & 7]);
+    }
+
+    private static VelocityRulesConfig config(int maxUsers) {
+        VelocityRulesConfig config = new VelocityRulesConfig();
+        config.setMaxUsers(maxUsers);
+        config.setWindows(List.of(window("1m", Duration.ofMinutes(1), 6),
+                window("1h", Duration.ofHours(1), 12),
+                window("24h", Duration.ofHours(24), 24)));
+        return config;
+    }
+
+    private static VelocityRulesConfig.Window window(String name, Duration duration, int buckets) {
+        VelocityRulesConfig.Window window = new VelocityRulesConfig.Window();
+        window.setName(name);
+        window.setDuration(duration);
+        window.setBuckets(buckets);
+        return window;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(VelocityServiceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
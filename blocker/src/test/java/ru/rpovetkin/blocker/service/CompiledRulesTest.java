@@ -0,0 +1,137 @@
+package ru.rpovetkin.blocker.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.rpovetkin.blocker.config.BlockerLimitsConfig;
+import ru.rpovetkin.blocker.config.BlockerRulesConfig;
+import ru.rpovetkin.blocker.dto.TransferCheckRequest;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompiledRulesTest {
+
+    private static final BigDecimal MAX_TRANSFER_AMOUNT = new BigDecimal("50000");
+
+    @Test
+    @DisplayName("Ключевые слова находятся за один проход без учета регистра, в том числе пересекающиеся")
+    void keywordMatcher_shouldFindOverlappingKeywords() {
+        KeywordMatcher matcher = KeywordMatcher.compile(List.of("he", "she", "his", "hers", "Fraud", "подозрительно"));
+
+        assertThat(matcher.matches("ushers")).isTrue();
+        assertThat(matcher.matches("ahis")).isTrue();
+        assertThat(matcher.matches("FRAUDULENT transfer")).isTrue();
+        assertThat(matcher.matches("Очень ПОДОЗРИТЕЛЬНО")).isTrue();
+        assertThat(matcher.matches("подозрительн")).isFalse();
+        assertThat(matcher.matches("rent for october")).isFalse();
+        assertThat(matcher.matches(null)).isFalse();
+        assertThat(KeywordMatcher.compile(List.of()).matches("anything")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Лимит блокировки и уровни риска берутся из порогов валюты, иначе из default")
+    void evaluate_shouldUseCurrencyThresholds() {
+        CompiledRules rules = CompiledRules.compile(config(), MAX_TRANSFER_AMOUNT);
+
+        assertThat(rules.evaluate(request("RUB", "60000", null)).reason())
+                .isEqualTo("LIMIT_EXCEEDED_BLOCK: сумма превышает лимит безопасности (50000)");
+        assertThat(rules.evaluate(request("USD", "700", null)).reason())
+                .isEqualTo("LIMIT_EXCEEDED_BLOCK: сумма превышает лимит безопасности (600)");
+        assertThat(rules.evaluate(request("usd", "700", null)).blocked()).isTrue();
+        assertThat(rules.evaluate(request("USD", "500", null)))
+                .isEqualTo(new CompiledRules.Verdict(false, "Transfer approved", "LOW"));
+        assertThat(rules.evaluate(request("RUB", "20000", null)).riskLevel()).isEqualTo("MEDIUM");
+        assertThat(rules.evaluate(TransferCheckRequest.builder().build()).blocked()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Запрещенные пользователи, типы операций и ключевые слова блокируют перевод")
+    void evaluate_shouldBlockByLists() {
+        CompiledRules rules = CompiledRules.compile(config(), MAX_TRANSFER_AMOUNT);
+
+        TransferCheckRequest deniedUser = request("RUB", "20", null);
+        deniedUser.setToUser("SUSPICIOUS_USER");
+        TransferCheckRequest cash = request("RUB", "20", null);
+        cash.setTransferType("CASH");
+        TransferCheckRequest lowerCaseCash = request("RUB", "20", null);
+        lowerCaseCash.setTransferType("cash");
+
+        assertThat(rules.evaluate(deniedUser).blocked()).isTrue();
+        assertThat(rules.evaluate(cash).blocked()).isTrue();
+        assertThat(rules.evaluate(lowerCaseCash).blocked()).isTrue();
+        assertThat(rules.evaluate(request("RUB", "20", "Просьба БЛОКИРОВАТЬ"))).isEqualTo(new CompiledRules.Verdict(
+                true, "Заблокировано по правилам безопасности", "LOW"));
+        assertThat(rules.evaluate(request("RUB", "20", "Аренда за октябрь")).blocked()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Правила перечитываются из измененного файла; файл с ошибкой не меняет действующие правила")
+    void ruleEngine_shouldReloadRulesFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("rules.yml");
+        Files.writeString(file, """
+                blocker:
+                  rules:
+                    keywords: [fraud]
+                """);
+        BlockerRulesConfig config = config();
+        config.setFile(file.toString());
+        BlockerLimitsConfig limits = new BlockerLimitsConfig();
+        RuleEngine engine = new RuleEngine(config, limits);
+
+        assertThat(engine.current().keywordCount()).isEqualTo(1);
+        assertThat(engine.current().evaluate(request("RUB", "20", "блокировать")).blocked()).isFalse();
+
+        Files.writeString(file, """
+                blocker:
+                  rules:
+                    keywords: [fraud, блокировать]
+                    denied-users: [mallory]
+                """);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+        engine.reloadIfChanged();
+
+        assertThat(engine.current().evaluate(request("RUB", "20", "блокировать")).blocked()).isTrue();
+        assertThat(engine.current().deniedUserCount()).isEqualTo(1);
+
+        CompiledRules beforeBrokenFile = engine.current();
+        Files.writeString(file, "blocker: [rules");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 2000));
+        engine.reloadIfChanged();
+
+        assertThat(engine.current()).isSameAs(beforeBrokenFile);
+    }
+
+    private static BlockerRulesConfig config() {
+        BlockerRulesConfig.Thresholds defaults = new BlockerRulesConfig.Thresholds();
+        defaults.setHighRiskAbove(new BigDecimal("100000"));
+        defaults.setMediumRiskAbove(new BigDecimal("10000"));
+        BlockerRulesConfig.Thresholds usd = new BlockerRulesConfig.Thresholds();
+        usd.setBlockAbove(new BigDecimal("600"));
+
+        BlockerRulesConfig config = new BlockerRulesConfig();
+        config.getThresholds().put(BlockerRulesConfig.DEFAULT_CURRENCY, defaults);
+        config.getThresholds().put("USD", usd);
+        config.setDeniedUsers(List.of("SUSPICIOUS_USER"));
+        config.setKeywords(List.of("подозрительно", "блокировать", "fraud"));
+        config.setBlockedTransferTypes(List.of("cash"));
+        return config;
+    }
+
+    private static TransferCheckRequest request(String currency, String amount, String description) {
+        return TransferCheckRequest.builder()
+                .fromUser("alice")
+                .toUser("bob")
+                .currency(currency)
+                .amount(new BigDecimal(amount))
+                .transferType("TRANSFER")
+                .description(description)
+                .build();
+    }
+}
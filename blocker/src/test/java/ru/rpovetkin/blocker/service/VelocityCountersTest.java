@@ -0,0 +1,139 @@
+package ru.rpovetkin.blocker.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VelocityCountersTest {
+
+    private static final int RUB = 0;
+    private static final int USD = 1;
+    private static final long START = 1_700_000_000_000L;
+
+    private static final VelocityCounters.Window MINUTE = new VelocityCounters.Window(
+            Duration.ofMinutes(1), 6, 3, new long[]{10_000_00, Long.MAX_VALUE});
+    private static final VelocityCounters.Window DAY = new VelocityCounters.Window(
+            Duration.ofHours(24), 24, 10, new long[]{50_000_00, 1_000_00});
+
+    @Test
+    @DisplayName("Операция сверх лимита количества за минуту блокируется и не учитывается")
+    void recordAndCheck_shouldBlockOverCountLimit() {
+        VelocityCounters counters = counters(64, 8);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(counters.recordAndCheck("alice", RUB, 100, START + i)).isEqualTo(VelocityCounters.ALLOWED);
+        }
+
+        assertThat(counters.recordAndCheck("alice", RUB, 100, START + 3)).isEqualTo(0);
+        assertThat(counters.count("alice", RUB, 0, START + 3)).isEqualTo(3);
+        assertThat(counters.amount("alice", RUB, 0, START + 3)).isEqualTo(300);
+        assertThat(counters.recordAndCheck("alice", USD, 100, START + 3)).isEqualTo(VelocityCounters.ALLOWED);
+        assertThat(counters.recordAndCheck("bob", RUB, 100, START + 3)).isEqualTo(VelocityCounters.ALLOWED);
+    }
+
+    @Test
+    @DisplayName("Лимит суммы проверяется по валюте операции")
+    void recordAndCheck_shouldBlockOverAmountLimitPerCurrency() {
+        VelocityCounters counters = counters(64, 8);
+
+        assertThat(counters.recordAndCheck("alice", USD, 60_000, START)).isEqualTo(VelocityCounters.ALLOWED);
+        assertThat(counters.recordAndCheck("alice", USD, 50_000, START + 1)).isEqualTo(3);
+        assertThat(counters.recordAndCheck("alice", RUB, 900_000, START + 2)).isEqualTo(VelocityCounters.ALLOWED);
+        assertThat(counters.recordAndCheck("alice", RUB, 200_000, START + 3)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Окно скользит: через минуту старые операции не учитываются в минутном окне, но остаются в суточном")
+    void recordAndCheck_shouldSlideWindow() {
+        VelocityCounters counters = counters(64, 8);
+        for (int i = 0; i < 3; i++) {
+            counters.recordAndCheck("alice", RUB, 100, START + i);
+        }
+
+        long later = START + Duration.ofSeconds(70).toMillis();
+
+        assertThat(counters.count("alice", RUB, 0, later)).isZero();
+        assertThat(counters.count("alice", RUB, 1, later)).isEqualTo(3);
+        assertThat(counters.recordAndCheck("alice", RUB, 100, later)).isEqualTo(VelocityCounters.ALLOWED);
+        assertThat(counters.count("alice", RUB, 1, later)).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Место неактивного пользователя занимает новый, без таких мест вытесняется дольше всех неактивный")
+    void recordAndCheck_shouldEvictIdleAndLeastRecentUsers() {
+        VelocityCounters counters = counters(4, 4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(counters.recordAndCheck("user-" + i, RUB, 100, START + i)).isEqualTo(VelocityCounters.ALLOWED);
+        }
+        counters.recordAndCheck("user-0", RUB, 100, START + 10);
+
+        assertThat(counters.recordAndCheck("newcomer", RUB, 100, START + 11)).isEqualTo(VelocityCounters.ALLOWED);
+        assertThat(counters.count("newcomer", RUB, 0, START + 11)).isEqualTo(1);
+        assertThat(counters.count("user-1", RUB, 0, START + 11)).isZero();
+        assertThat(counters.count("user-0", RUB, 0, START + 11)).isEqualTo(2);
+        assertThat(counters.evictions()).isEqualTo(1);
+
+        long nextDay = START + Duration.ofHours(25).toMillis() + 20;
+        assertThat(counters.recordAndCheck("user-0", RUB, 100, nextDay - 1000)).isEqualTo(VelocityCounters.ALLOWED);
+        assertThat(counters.recordAndCheck("latecomer", RUB, 100, nextDay)).isEqualTo(VelocityCounters.ALLOWED);
+
+        assertThat(counters.trackedUsers()).isEqualTo(4);
+        assertThat(counters.count("latecomer", RUB, 1, nextDay)).isEqualTo(1);
+        assertThat(counters.count("user-0", RUB, 1, nextDay)).isEqualTo(1);
+        // Место простаивающего пользователя не считается вытеснением
+        assertThat(counters.evictions()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Параллельные операции одного пользователя не теряются и не превышают лимит")
+    void recordAndCheck_shouldCountConcurrentOperations() throws Exception {
+        VelocityCounters.Window wide = new VelocityCounters.Window(
+                Duration.ofHours(1), 12, 1000, new long[]{Long.MAX_VALUE, Long.MAX_VALUE});
+        VelocityCounters counters = new VelocityCounters(64, 4, 8, Duration.ofHours(2), 2, List.of(wide));
+        int threads = 8;
+        int operations = 500;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    int allowed = 0;
+                    for (int i = 0; i < operations; i++) {
+                        if (counters.recordAndCheck(new String("alice"), RUB, 1, START) == VelocityCounters.ALLOWED) {
+                            allowed++;
+                        }
+                    }
+                    return allowed;
+                }));
+            }
+            start.countDown();
+
+            int allowed = 0;
+            for (Future<Integer> future : futures) {
+                allowed += future.get(30, TimeUnit.SECONDS);
+            }
+            assertThat(allowed).isBetween(1, 1000);
+            assertThat(counters.count("alice", RUB, 0, START)).isEqualTo(allowed);
+            assertThat(counters.amount("alice", RUB, 0, START)).isEqualTo(allowed);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static VelocityCounters counters(int maxUsers, int probeLength) {
+        return new VelocityCounters(maxUsers, 1, probeLength, Duration.ofHours(25), 2, List.of(MINUTE, DAY));
+    }
+}
@@ -0,0 +1,88 @@
+package ru.rpovetkin.blocker.service;
+
+import com.sun.management.ThreadMXBean;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.rpovetkin.blocker.config.VelocityRulesConfig;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VelocityServiceTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    @DisplayName("Сумма переводится в сотые доли с округлением вверх без переполнения")
+    void toMinor_shouldRoundUpAndSaturate() {
+        assertThat(VelocityService.toMinor(new BigDecimal("100"))).isEqualTo(10_000);
+        assertThat(VelocityService.toMinor(new BigDecimal("100.00"))).isEqualTo(10_000);
+        assertThat(VelocityService.toMinor(new BigDecimal("1E+3"))).isEqualTo(100_000);
+        assertThat(VelocityService.toMinor(new BigDecimal("123.451"))).isEqualTo(12_346);
+        assertThat(VelocityService.toMinor(new BigDecimal("0.001"))).isEqualTo(1);
+        assertThat(VelocityService.toMinor(new BigDecimal("1E-30"))).isEqualTo(1);
+        assertThat(VelocityService.toMinor(new BigDecimal("-5.50"))).isZero();
+        assertThat(VelocityService.toMinor(BigDecimal.ZERO)).isZero();
+        assertThat(VelocityService.toMinor(new BigDecimal("1E+17"))).isEqualTo(Long.MAX_VALUE);
+        assertThat(VelocityService.toMinor(new BigDecimal("12345678901234567890.5"))).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    @DisplayName("Без свободных мест новый пользователь вытесняет прежнего и проверяется, вытеснения учитываются в метрике")
+    void check_shouldEvictAndCountWhenFull() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        VelocityService service = new VelocityService(singleUserConfig(), meterRegistry);
+
+        assertThat(service.check("alice", "RUB", BigDecimal.TEN, START)).isEmpty();
+        assertThat(service.check("alice", "RUB", BigDecimal.TEN, START + 1)).isPresent();
+        assertThat(service.check("bob", "RUB", BigDecimal.TEN, START + 2)).isEmpty();
+        assertThat(service.check("bob", "RUB", BigDecimal.TEN, START + 3)).isPresent();
+
+        assertThat(meterRegistry.get("blocker.velocity.evicted").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Перевод суммы в сотые доли не выделяет память")
+    void toMinor_shouldNotAllocate() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        BigDecimal[] amounts = {new BigDecimal("100.00"), new BigDecimal("1250.50"), new BigDecimal("5000"),
+                new BigDecimal("37.5"), new BigDecimal("0.001"), new BigDecimal("1E+3")};
+        long checksum = 0;
+        // Аллокацию временного BigDecimal убирает C2, который компилирует метод в фоне после прогрева:
+        // измеряются серии, пока одна из них не пройдет без аллокаций
+        int operations = 100_000;
+        long minAllocated = Long.MAX_VALUE;
+        for (int round = 0; round < 100 && minAllocated >= operations; round++) {
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < operations; i++) {
+                checksum += VelocityService.toMinor(amounts[i % amounts.length]);
+            }
+            minAllocated = Math.min(minAllocated, threads.getCurrentThreadAllocatedBytes() - before);
+        }
+
+        assertThat(checksum).isPositive();
+        // Аллокация на каждой операции дала бы несколько мегабайт на серию
+        assertThat(minAllocated).isLessThan(operations);
+    }
+
+    private static VelocityRulesConfig singleUserConfig() {
+        VelocityRulesConfig config = new VelocityRulesConfig();
+        config.setMaxUsers(1);
+        config.setStripes(1);
+        config.setProbeLength(1);
+        VelocityRulesConfig.Window minute = new VelocityRulesConfig.Window();
+        minute.setName("1m");
+        minute.setDuration(Duration.ofMinutes(1));
+        minute.setBuckets(6);
+        minute.setMaxCount(1);
+        minute.setMaxAmount(Map.of("RUB", new BigDecimal("1000")));
+        config.setWindows(List.of(minute));
+        return config;
+    }
+}
@@ -3,13 +3,16 @@ package ru.rpovetkin.cash.config;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.reactive.function.client.WebClient;
+import ru.rpovetkin.http.WebClientFactory;
 
 @Configuration
 public class WebClientConfig {
 
+    /**
+     * WebClient на общем пуле соединений (настройки - bankapp.http-client)
+     */
     @Bean
-    public WebClient webClient() {
-        return WebClient.builder()
-                .build();
+    public WebClient webClient(WebClientFactory webClientFactory) {
+        return webClientFactory.webClient();
     }
 }
@@ -1,10 +1,13 @@
 package ru.rpovetkin.cash.dto;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -12,4 +15,8 @@ import lombok.NoArgsConstructor;
 public class AccountOperationResponse {
     private boolean success;
     private String message;
+    @JsonFormat(with = JsonFormat.Feature.READ_UNKNOWN_ENUM_VALUES_USING_DEFAULT_VALUE)
+    private OperationErrorCode errorCode; // null, если accounts не ответил
+    private List<String> errors;
+    private AccountDto account; // счет после операции, если она выполнена
 }
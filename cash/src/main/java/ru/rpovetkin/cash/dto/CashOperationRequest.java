@@ -1,5 +1,6 @@
 package ru.rpovetkin.cash.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -16,4 +17,10 @@ public class CashOperationRequest {
     private Currency currency;
     private BigDecimal amount;
     private String operation; // "deposit" или "withdraw"
+
+    /**
+     * Значение заголовка Idempotency-Key; передается в сервис счетов
+     */
+    @JsonIgnore
+    private String idempotencyKey;
 }
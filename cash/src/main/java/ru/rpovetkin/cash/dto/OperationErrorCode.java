@@ -0,0 +1,21 @@
+package ru.rpovetkin.cash.dto;
+
+import com.fasterxml.jackson.annotation.JsonEnumDefaultValue;
+
+/**
+ * Причина отказа accounts в операции со счетом (поле errorCode ответа accounts)
+ */
+public enum OperationErrorCode {
+    VALIDATION_FAILED,
+    USER_NOT_FOUND,
+    ACCOUNT_NOT_FOUND,
+    ACCOUNT_ALREADY_EXISTS,
+    INSUFFICIENT_FUNDS,
+    IDEMPOTENCY_IN_PROGRESS,
+    IDEMPOTENCY_KEY_REJECTED,
+    /**
+     * Код, появившийся в accounts позже этой версии cash
+     */
+    @JsonEnumDefaultValue
+    UNKNOWN
+}
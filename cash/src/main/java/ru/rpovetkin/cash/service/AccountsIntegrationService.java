@@ -4,14 +4,18 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 import ru.rpovetkin.cash.dto.AccountApiResponse;
 import ru.rpovetkin.cash.dto.AccountDto;
 import ru.rpovetkin.cash.dto.AccountOperationRequest;
 import ru.rpovetkin.cash.dto.AccountOperationResponse;
 import ru.rpovetkin.cash.dto.Currency;
+import ru.rpovetkin.http.DownstreamGuard;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -21,7 +25,12 @@ import java.util.List;
 @Slf4j
 public class AccountsIntegrationService {
 
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private static final String ACCOUNTS = "accounts";
+
     private final WebClient webClient; // Теперь это OAuth2-enabled WebClient
+    private final DownstreamGuard downstreamGuard;
     
     @Value("${services.accounts.url}")
     private String accountsServiceUrl;
@@ -33,12 +42,12 @@ public class AccountsIntegrationService {
         log.info("Getting existing accounts for user: {}", login);
         log.debug("Using accounts service URL: {}", accountsServiceUrl);
         
-        return webClient
-                .get()
-                .uri(accountsServiceUrl + "/api/accounts/" + login)
-                .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<List<AccountApiResponse>>() {})
-                .retry(2) // Retry up to 2 times on failure
+        return downstreamGuard.protect(ACCOUNTS, webClient
+                        .get()
+                        .uri(accountsServiceUrl + "/api/accounts/" + login)
+                        .retrieve()
+                        .bodyToMono(new ParameterizedTypeReference<List<AccountApiResponse>>() {}))
+                .retryWhen(retryUnlessRejected())
                 .doOnError(throwable -> log.warn("Error getting accounts for user {}: {}", login, throwable.getMessage()))
                 .map(response -> {
                     if (response != null) {
@@ -59,9 +68,10 @@ public class AccountsIntegrationService {
     }
 
     /**
-     * Выполнить операцию пополнения счета
+     * Выполнить операцию пополнения счета; ответ содержит счет после операции или причину отказа.
+     * Запрос идет с Idempotency-Key, поэтому повтор после таймаута не пополнит счет дважды
      */
-    public Mono<Boolean> depositToAccount(String login, Currency currency, BigDecimal amount) {
+    public Mono<AccountOperationResponse> depositToAccount(String login, Currency currency, BigDecimal amount, String idempotencyKey) {
         log.info("Depositing {} {} to account for user: {}", amount, currency, login);
         
         AccountOperationRequest request = AccountOperationRequest.builder()
@@ -71,29 +81,28 @@ public class AccountsIntegrationService {
                 .build();
         
         log.debug("Using accounts service URL: {}", accountsServiceUrl);
-        return webClient
-                .post()
-                .uri(accountsServiceUrl + "/api/accounts/deposit")
-                .header("Content-Type", "application/json")
-                .bodyValue(request)
-                .retrieve()
-                .bodyToMono(AccountOperationResponse.class)
-                .retry(2) // Retry up to 2 times on failure
+        return downstreamGuard.protect(ACCOUNTS, webClient
+                        .post()
+                        .uri(accountsServiceUrl + "/api/accounts/deposit")
+                        .header("Content-Type", "application/json")
+                        .header(IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+                        .bodyValue(request)
+                        .retrieve()
+                        // 400 содержит причину отказа (нет счета, недостаточно средств); разбираем как обычный ответ
+                        .onStatus(status -> status.value() == HttpStatus.BAD_REQUEST.value(), response -> Mono.empty())
+                        .bodyToMono(AccountOperationResponse.class))
+                .retryWhen(retryUnlessRejected())
                 .doOnError(throwable -> log.warn("Error calling accounts service: {}", throwable.getMessage()))
-                .map(response -> {
-                    boolean success = response != null && response.isSuccess();
-                    String message = response != null ? response.getMessage() : "No response";
-                    log.info("Deposit operation for user {} result: {} - {}", login, success, message);
-                    return success;
-                })
+                .doOnNext(response -> log.info("Deposit operation for user {} result: {} - {}",
+                        login, response.isSuccess(), response.getMessage()))
                 .doOnError(error -> log.error("Error depositing to account: {}", error.getMessage(), error))
-                .onErrorReturn(false);
+                .onErrorReturn(serviceUnavailable());
     }
 
     /**
-     * Выполнить операцию снятия с счета
+     * Выполнить операцию снятия с счета (с Idempotency-Key и тем же ответом, что и пополнение)
      */
-    public Mono<Boolean> withdrawFromAccount(String login, Currency currency, BigDecimal amount) {
+    public Mono<AccountOperationResponse> withdrawFromAccount(String login, Currency currency, BigDecimal amount, String idempotencyKey) {
         log.info("Withdrawing {} {} from account for user: {}", amount, currency, login);
         
         AccountOperationRequest request = AccountOperationRequest.builder()
@@ -103,25 +112,42 @@ public class AccountsIntegrationService {
                 .build();
         
         log.debug("Using accounts service URL: {}", accountsServiceUrl);
-        return webClient
-                .post()
-                .uri(accountsServiceUrl + "/api/accounts/withdraw")
-                .header("Content-Type", "application/json")
-                .bodyValue(request)
-                .retrieve()
-                .bodyToMono(AccountOperationResponse.class)
-                .retry(2) // Retry up to 2 times on failure
+        return downstreamGuard.protect(ACCOUNTS, webClient
+                        .post()
+                        .uri(accountsServiceUrl + "/api/accounts/withdraw")
+                        .header("Content-Type", "application/json")
+                        .header(IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+                        .bodyValue(request)
+                        .retrieve()
+                        // 400 содержит причину отказа (нет счета, недостаточно средств); разбираем как обычный ответ
+                        .onStatus(status -> status.value() == HttpStatus.BAD_REQUEST.value(), response -> Mono.empty())
+                        .bodyToMono(AccountOperationResponse.class))
+                .retryWhen(retryUnlessRejected())
                 .doOnError(throwable -> log.warn("Error calling accounts service: {}", throwable.getMessage()))
-                .map(response -> {
-                    boolean success = response != null && response.isSuccess();
-                    String message = response != null ? response.getMessage() : "No response";
-                    log.info("Withdrawal operation for user {} result: {} - {}", login, success, message);
-                    return success;
-                })
+                .doOnNext(response -> log.info("Withdrawal operation for user {} result: {} - {}",
+                        login, response.isSuccess(), response.getMessage()))
                 .doOnError(error -> log.error("Error withdrawing from account: {}", error.getMessage(), error))
-                .onErrorReturn(false);
+                .onErrorReturn(serviceUnavailable());
     }
     
+    private static AccountOperationResponse serviceUnavailable() {
+        return AccountOperationResponse.builder()
+                .success(false)
+                .message("Service unavailable")
+                .build();
+    }
+
+    /**
+     * Повтор до 2 раз; вызов, отклоненный открытым breaker'ом или bulkhead, и ответ 4xx не повторяются
+     */
+    private static Retry retryUnlessRejected() {
+        return Retry.max(2).filter(error -> !DownstreamGuard.isRejected(error) && !isClientError(error));
+    }
+
+    private static boolean isClientError(Throwable error) {
+        return error instanceof WebClientResponseException response && response.getStatusCode().is4xxClientError();
+    }
+
     private AccountDto convertToAccountDto(AccountApiResponse accountData) {
         try {
             if (accountData != null) {
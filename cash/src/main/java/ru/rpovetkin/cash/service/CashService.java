@@ -5,14 +5,16 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 import ru.rpovetkin.cash.dto.AccountDto;
+import ru.rpovetkin.cash.dto.AccountOperationResponse;
 import ru.rpovetkin.cash.dto.CashOperationRequest;
 import ru.rpovetkin.cash.dto.CashOperationResponse;
-import ru.rpovetkin.cash.dto.Currency;
+import ru.rpovetkin.cash.dto.OperationErrorCode;
 import ru.rpovetkin.cash.dto.TransferCheckRequest;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -46,6 +48,7 @@ public class CashService {
                     .errors(errors)
                     .build());
         }
+        String idempotencyKey = idempotencyKey(request);
 
         // Проверяем операцию через blocker сервис
         TransferCheckRequest blockerRequest = TransferCheckRequest.builder()
@@ -57,7 +60,7 @@ public class CashService {
                 .description("Cash deposit operation")
                 .build();
         
-        return Mono.fromCallable(() -> blockerIntegrationService.checkOperation(blockerRequest))
+        return blockerIntegrationService.checkOperation(blockerRequest)
                 .flatMap(blockerResponse -> {
                     if (blockerResponse.isBlocked()) {
                         return Mono.just(CashOperationResponse.builder()
@@ -67,51 +70,29 @@ public class CashService {
                                 .build());
                     }
 
-                    // Проверяем, что у пользователя есть счет в данной валюте
-                    return accountsIntegrationService.getExistingUserAccounts(request.getLogin())
-                            .flatMap(existingAccounts -> {
-                                boolean hasAccount = existingAccounts.stream()
-                                        .anyMatch(account -> account.getCurrency() == request.getCurrency());
-
-                                if (!hasAccount) {
-                                    return Mono.just(CashOperationResponse.builder()
-                                            .success(false)
-                                            .message("Account not found")
-                                            .errors(List.of("У пользователя нет счета в валюте " + request.getCurrency().getTitle()))
-                                            .build());
-                                }
-
-                                // Выполняем операцию пополнения
-                                return accountsIntegrationService.depositToAccount(
-                                        request.getLogin(), request.getCurrency(), request.getAmount()
-                                ).flatMap(success -> {
-                                    if (success) {
-                                        // Получаем обновленную информацию о счете
-                                        return getUpdatedAccountInfo(request.getLogin(), request.getCurrency())
-                                                .map(updatedAccount -> {
-                                                    // Отправляем уведомление об успешном пополнении
-                                                    notificationService.sendSuccessNotification(
-                                                            request.getLogin(),
-                                                            "Пополнение наличными",
-                                                            String.format("Счет пополнен наличными на %s %s", 
-                                                                    request.getAmount(), request.getCurrency().getTitle())
-                                                    );
-                                                    
-                                                    return CashOperationResponse.builder()
-                                                            .success(true)
-                                                            .message("Наличные успешно внесены")
-                                                            .account(updatedAccount)
-                                                            .build();
-                                                });
-                                    } else {
-                                        return Mono.just(CashOperationResponse.builder()
-                                                .success(false)
-                                                .message("Не удалось выполнить операцию пополнения")
-                                                .errors(List.of("Ошибка при обращении к сервису счетов"))
-                                                .build());
-                                    }
-                                });
-                            });
+                    // Выполняем операцию пополнения: accounts сам проверяет наличие счета и возвращает счет после операции
+                    return accountsIntegrationService.depositToAccount(
+                            request.getLogin(), request.getCurrency(), request.getAmount(), idempotencyKey
+                    ).map(result -> {
+                        if (!result.isSuccess()) {
+                            return failure(request, result, "Не удалось выполнить операцию пополнения",
+                                    "Ошибка при обращении к сервису счетов");
+                        }
+
+                        // Отправляем уведомление об успешном пополнении
+                        notificationService.sendSuccessNotification(
+                                request.getLogin(),
+                                "Пополнение наличными",
+                                String.format("Счет пополнен наличными на %s %s",
+                                        request.getAmount(), request.getCurrency().getTitle())
+                        );
+
+                        return CashOperationResponse.builder()
+                                .success(true)
+                                .message("Наличные успешно внесены")
+                                .account(result.getAccount())
+                                .build();
+                    });
                 });
     }
 
@@ -130,6 +111,7 @@ public class CashService {
                     .errors(errors)
                     .build());
         }
+        String idempotencyKey = idempotencyKey(request);
 
         // Проверяем операцию через blocker сервис
         TransferCheckRequest blockerRequest = TransferCheckRequest.builder()
@@ -141,7 +123,7 @@ public class CashService {
                 .description("Cash withdrawal operation")
                 .build();
         
-        return Mono.fromCallable(() -> blockerIntegrationService.checkOperation(blockerRequest))
+        return blockerIntegrationService.checkOperation(blockerRequest)
                 .flatMap(blockerResponse -> {
                     if (blockerResponse.isBlocked()) {
                         return Mono.just(CashOperationResponse.builder()
@@ -151,54 +133,62 @@ public class CashService {
                                 .build());
                     }
 
-                    // Проверяем, что у пользователя есть счет в данной валюте
-                    return accountsIntegrationService.getExistingUserAccounts(request.getLogin())
-                            .flatMap(existingAccounts -> {
-                                boolean hasAccount = existingAccounts.stream()
-                                        .anyMatch(account -> account.getCurrency() == request.getCurrency());
-
-                                if (!hasAccount) {
-                                    return Mono.just(CashOperationResponse.builder()
-                                            .success(false)
-                                            .message("Account not found")
-                                            .errors(List.of("У пользователя нет счета в валюте " + request.getCurrency().getTitle()))
-                                            .build());
-                                }
-
-                                // Выполняем операцию снятия
-                                return accountsIntegrationService.withdrawFromAccount(
-                                        request.getLogin(), request.getCurrency(), request.getAmount()
-                                ).flatMap(success -> {
-                                    if (success) {
-                                        // Получаем обновленную информацию о счете
-                                        return getUpdatedAccountInfo(request.getLogin(), request.getCurrency())
-                                                .map(updatedAccount -> {
-                                                    // Отправляем уведомление об успешном снятии
-                                                    notificationService.sendSuccessNotification(
-                                                            request.getLogin(),
-                                                            "Снятие наличных",
-                                                            String.format("Со счета снято наличными %s %s", 
-                                                                    request.getAmount(), request.getCurrency().getTitle())
-                                                    );
-                                                    
-                                                    return CashOperationResponse.builder()
-                                                            .success(true)
-                                                            .message("Наличные успешно сняты")
-                                                            .account(updatedAccount)
-                                                            .build();
-                                                });
-                                    } else {
-                                        return Mono.just(CashOperationResponse.builder()
-                                                .success(false)
-                                                .message("Не удалось выполнить операцию снятия")
-                                                .errors(List.of("Возможно, недостаточно средств на счете"))
-                                                .build());
-                                    }
-                                });
-                            });
+                    // Выполняем операцию снятия: accounts сам проверяет счет и остаток и возвращает счет после операции
+                    return accountsIntegrationService.withdrawFromAccount(
+                            request.getLogin(), request.getCurrency(), request.getAmount(), idempotencyKey
+                    ).map(result -> {
+                        if (!result.isSuccess()) {
+                            return failure(request, result, "Не удалось выполнить операцию снятия",
+                                    result.getErrorCode() == OperationErrorCode.INSUFFICIENT_FUNDS
+                                            ? "Недостаточно средств на счете"
+                                            : "Ошибка при обращении к сервису счетов");
+                        }
+
+                        // Отправляем уведомление об успешном снятии
+                        notificationService.sendSuccessNotification(
+                                request.getLogin(),
+                                "Снятие наличных",
+                                String.format("Со счета снято наличными %s %s",
+                                        request.getAmount(), request.getCurrency().getTitle())
+                        );
+
+                        return CashOperationResponse.builder()
+                                .success(true)
+                                .message("Наличные успешно сняты")
+                                .account(result.getAccount())
+                                .build();
+                    });
                 });
     }
 
+    /**
+     * Ответ на отказ accounts: отсутствие счета в валюте описывается отдельно от прочих ошибок
+     */
+    private static CashOperationResponse failure(CashOperationRequest request, AccountOperationResponse result,
+                                                 String message, String error) {
+        if (result.getErrorCode() == OperationErrorCode.ACCOUNT_NOT_FOUND
+                || result.getErrorCode() == OperationErrorCode.USER_NOT_FOUND) {
+            return CashOperationResponse.builder()
+                    .success(false)
+                    .message("Account not found")
+                    .errors(List.of("У пользователя нет счета в валюте " + request.getCurrency().getTitle()))
+                    .build();
+        }
+        return CashOperationResponse.builder()
+                .success(false)
+                .message(message)
+                .errors(List.of(error))
+                .build();
+    }
+
+    /**
+     * Ключ клиента или новый на эту операцию: повторы запроса к сервису счетов не проведут ее дважды
+     */
+    private static String idempotencyKey(CashOperationRequest request) {
+        String key = request.getIdempotencyKey();
+        return key != null && !key.isBlank() ? key : UUID.randomUUID().toString();
+    }
+
     private List<String> validateRequest(CashOperationRequest request) {
         List<String> errors = new ArrayList<>();
 
@@ -216,12 +206,4 @@ public class CashService {
 
         return errors;
     }
-
-    private Mono<AccountDto> getUpdatedAccountInfo(String login, Currency currency) {
-        return accountsIntegrationService.getExistingUserAccounts(login)
-                .map(accounts -> accounts.stream()
-                        .filter(account -> account.getCurrency() == currency)
-                        .findFirst()
-                        .orElse(null));
-    }
 }
@@ -8,6 +8,7 @@ import reactor.core.publisher.Mono;
 import ru.rpovetkin.cash.dto.AccountDto;
 import ru.rpovetkin.cash.dto.CashOperationRequest;
 import ru.rpovetkin.cash.dto.CashOperationResponse;
+import ru.rpovetkin.cash.service.AccountsIntegrationService;
 import ru.rpovetkin.cash.service.CashService;
 
 import java.util.List;
@@ -35,11 +36,14 @@ public class CashController {
      * Пополнить счет наличными
      */
     @PostMapping("/deposit")
-    public Mono<ResponseEntity<CashOperationResponse>> deposit(@RequestBody CashOperationRequest request) {
+    public Mono<ResponseEntity<CashOperationResponse>> deposit(
+            @RequestBody CashOperationRequest request,
+            @RequestHeader(value = AccountsIntegrationService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         log.info("Cash deposit request for user {} in currency {} amount {}", 
             request.getLogin(), request.getCurrency(), request.getAmount());
         
         request.setOperation("deposit");
+        request.setIdempotencyKey(idempotencyKey);
         return cashService.deposit(request)
                 .map(response -> {
                     if (response.isSuccess()) {
@@ -54,11 +58,14 @@ public class CashController {
      * Снять наличные со счета
      */
     @PostMapping("/withdraw")
-    public Mono<ResponseEntity<CashOperationResponse>> withdraw(@RequestBody CashOperationRequest request) {
+    public Mono<ResponseEntity<CashOperationResponse>> withdraw(
+            @RequestBody CashOperationRequest request,
+            @RequestHeader(value = AccountsIntegrationService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         log.info("Cash withdrawal request for user {} in currency {} amount {}", 
             request.getLogin(), request.getCurrency(), request.getAmount());
         
         request.setOperation("withdraw");
+        request.setIdempotencyKey(idempotencyKey);
         return cashService.withdraw(request)
                 .map(response -> {
                     if (response.isSuccess()) {
@@ -0,0 +1,185 @@
+package ru.rpovetkin.cash.service;
+
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import ru.rpovetkin.cash.config.BlockerLimitsConfig;
+import ru.rpovetkin.cash.dto.AccountDto;
+import ru.rpovetkin.cash.dto.AccountOperationResponse;
+import ru.rpovetkin.cash.dto.CashOperationRequest;
+import ru.rpovetkin.cash.dto.CashOperationResponse;
+import ru.rpovetkin.cash.dto.Currency;
+import ru.rpovetkin.cash.dto.TransferCheckRequest;
+import ru.rpovetkin.cash.dto.TransferCheckResponse;
+import ru.rpovetkin.http.DownstreamGuard;
+import ru.rpovetkin.http.ServiceTokenManager;
+import ru.rpovetkin.http.ServiceTokenProperties;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Нагрузочный тест кассовых операций: 500 параллельных запросов на пуле из 16 рабочих потоков
+ * (аналог пула Tomcat) при задержке blocker сервиса 50 мс.
+ * Сравнивает прежнюю блокирующую проверку (Mono.fromCallable + block) с реактивной.
+ * Сравнение зависит от машины и запускается явно:
+ * {@code mvn test -Dtest=CashServiceLoadTest -Dbenchmark=true}
+ */
+@Slf4j
+class CashServiceLoadTest {
+
+    private static final int CONCURRENT_REQUESTS = 500;
+    private static final int WORKER_THREADS = 16;
+    private static final Duration BLOCKER_LATENCY = Duration.ofMillis(50);
+
+    private Scheduler workers;
+    private BlockerIntegrationService blockerIntegrationService;
+    private CashService cashService;
+
+    @BeforeEach
+    void setUp() {
+        workers = Schedulers.fromExecutorService(Executors.newFixedThreadPool(WORKER_THREADS));
+
+        ExchangeFunction exchange = request -> {
+            String body = request.url().getPath().endsWith("/token")
+                    ? "{\"access_token\":\"service-token\",\"expires_in\":300}"
+                    : "{\"blocked\":false,\"reason\":\"ok\",\"riskLevel\":\"LOW\",\"checkId\":\"CHK-1\"}";
+            return Mono.delay(BLOCKER_LATENCY).map(tick -> ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body(body)
+                    .build());
+        };
+        WebClient webClient = WebClient.builder().exchangeFunction(exchange).build();
+
+        ServiceTokenProperties tokenProperties = new ServiceTokenProperties();
+        tokenProperties.setTokenUri("http://keycloak/token");
+        tokenProperties.setClientId("cash-service");
+        tokenProperties.setClientSecret("secret");
+        ServiceTokenManager tokenManager = new ServiceTokenManager(webClient, new SimpleMeterRegistry(), tokenProperties);
+
+        // Bulkhead не ограничивает нагрузочный тест: сравнивается блокирующий и реактивный вызов
+        DownstreamGuard downstreamGuard = new DownstreamGuard(
+                CircuitBreakerRegistry.ofDefaults(),
+                BulkheadRegistry.of(BulkheadConfig.custom().maxConcurrentCalls(CONCURRENT_REQUESTS).build()),
+                TimeLimiterRegistry.ofDefaults());
+
+        blockerIntegrationService = new BlockerIntegrationService(webClient, new BlockerLimitsConfig(), tokenManager, downstreamGuard);
+        ReflectionTestUtils.setField(blockerIntegrationService, "blockerServiceUrl", "http://blocker");
+        ReflectionTestUtils.setField(blockerIntegrationService, "blockerTimeout", Duration.ofSeconds(5));
+
+        AccountsIntegrationService accounts = mock(AccountsIntegrationService.class);
+        given(accounts.depositToAccount(anyString(), any(Currency.class), any(BigDecimal.class), anyString()))
+                .willReturn(Mono.just(AccountOperationResponse.builder()
+                        .success(true)
+                        .account(AccountDto.builder()
+                                .currency(Currency.RUB)
+                                .balance(BigDecimal.TEN)
+                                .exists(true)
+                                .build())
+                        .build()));
+
+        cashService = new CashService(accounts, blockerIntegrationService, mock(NotificationIntegrationService.class));
+
+        // Прогрев: токен попадает в кэш, классы загружены
+        blockerIntegrationService.checkOperation(checkRequest()).block();
+    }
+
+    @AfterEach
+    void tearDown() {
+        workers.dispose();
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    @DisplayName("Реактивная проверка blocker обрабатывает 500 параллельных запросов быстрее блокирующей")
+    void reactiveBlockerCheck_shouldOutperformBlockingUnderLoad() {
+        // Базовая линия: прежний блокирующий вызов, занимающий рабочий поток на время ответа blocker
+        long blockingMillis = run(() -> Mono.fromCallable(() -> blockerIntegrationService.checkOperation(checkRequest()).block())
+                .subscribeOn(workers));
+        long reactiveMillis = run(() -> Mono.defer(() -> cashService.deposit(depositRequest()))
+                .map(CashOperationResponse::isSuccess)
+                .subscribeOn(workers));
+
+        log.info("Cash throughput with {} concurrent requests: blocking check {} ms ({} req/s), reactive deposit {} ms ({} req/s)",
+                CONCURRENT_REQUESTS,
+                blockingMillis, CONCURRENT_REQUESTS * 1000L / Math.max(blockingMillis, 1),
+                reactiveMillis, CONCURRENT_REQUESTS * 1000L / Math.max(reactiveMillis, 1));
+
+        // Блокирующий вариант ограничен ~WORKER_THREADS одновременными вызовами, реактивный - нет
+        assertThat(reactiveMillis * 3).isLessThan(blockingMillis);
+    }
+
+    @Test
+    @DisplayName("При превышении таймаута применяется fallback по лимитам")
+    void blockerTimeout_shouldApplyLimitsFallback() {
+        ReflectionTestUtils.setField(blockerIntegrationService, "blockerTimeout", Duration.ofMillis(10));
+
+        TransferCheckRequest highRisk = checkRequest();
+        highRisk.setAmount(new BigDecimal("100000"));
+
+        TransferCheckResponse blocked = blockerIntegrationService.checkOperation(highRisk).block();
+        TransferCheckResponse allowed = blockerIntegrationService.checkOperation(checkRequest()).block();
+
+        assertThat(blocked.isBlocked()).isTrue();
+        assertThat(blocked.getRiskLevel()).isEqualTo("HIGH");
+        assertThat(allowed.isBlocked()).isFalse();
+        assertThat(allowed.getReason()).isEqualTo("Blocker service unavailable");
+    }
+
+    private long run(Supplier<Mono<?>> request) {
+        long start = System.nanoTime();
+        List<?> results = Flux.range(0, CONCURRENT_REQUESTS)
+                .flatMap(i -> request.get(), CONCURRENT_REQUESTS)
+                .collectList()
+                .block(Duration.ofMinutes(1));
+        assertThat(results).hasSize(CONCURRENT_REQUESTS);
+        return Duration.ofNanos(System.nanoTime() - start).toMillis();
+    }
+
+    private TransferCheckRequest checkRequest() {
+        return TransferCheckRequest.builder()
+                .fromUser("CASH_SYSTEM")
+                .toUser("alice")
+                .currency("RUB")
+                .amount(new BigDecimal("100"))
+                .transferType("CASH")
+                .description("Cash deposit operation")
+                .build();
+    }
+
+    private CashOperationRequest depositRequest() {
+        return CashOperationRequest.builder()
+                .login("alice")
+                .currency(Currency.RUB)
+                .amount(new BigDecimal("100"))
+                .build();
+    }
+}
@@ -0,0 +1,109 @@
+package ru.rpovetkin.cash.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import ru.rpovetkin.cash.dto.AccountDto;
+import ru.rpovetkin.cash.dto.AccountOperationResponse;
+import ru.rpovetkin.cash.dto.CashOperationRequest;
+import ru.rpovetkin.cash.dto.CashOperationResponse;
+import ru.rpovetkin.cash.dto.Currency;
+import ru.rpovetkin.cash.dto.OperationErrorCode;
+import ru.rpovetkin.cash.dto.TransferCheckRequest;
+import ru.rpovetkin.cash.dto.TransferCheckResponse;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+class CashServiceTest {
+
+    private AccountsIntegrationService accounts;
+    private NotificationIntegrationService notifications;
+    private CashService cashService;
+
+    @BeforeEach
+    void setUp() {
+        accounts = mock(AccountsIntegrationService.class);
+        notifications = mock(NotificationIntegrationService.class);
+        BlockerIntegrationService blocker = mock(BlockerIntegrationService.class);
+        given(blocker.checkOperation(any(TransferCheckRequest.class)))
+                .willReturn(Mono.just(TransferCheckResponse.builder().blocked(false).build()));
+        cashService = new CashService(accounts, blocker, notifications);
+    }
+
+    @Test
+    @DisplayName("Пополнение - один вызов accounts, счет в ответе берется из результата операции")
+    void deposit_shouldCallAccountsOnce() {
+        AccountDto account = AccountDto.builder()
+                .id(7L)
+                .currency(Currency.RUB)
+                .balance(new BigDecimal("1100"))
+                .exists(true)
+                .build();
+        given(accounts.depositToAccount(eq("alice"), eq(Currency.RUB), any(BigDecimal.class), anyString()))
+                .willReturn(Mono.just(AccountOperationResponse.builder().success(true).account(account).build()));
+
+        CashOperationResponse response = cashService.deposit(request()).block();
+
+        assertThat(response.isSuccess()).isTrue();
+        assertThat(response.getAccount()).isEqualTo(account);
+        verify(accounts).depositToAccount(eq("alice"), eq(Currency.RUB), eq(new BigDecimal("100")), anyString());
+        verifyNoMoreInteractions(accounts);
+    }
+
+    @Test
+    @DisplayName("Отказ accounts из-за отсутствия счета описывается как отсутствие счета в валюте")
+    void withdraw_accountNotFound_shouldReportMissingAccount() {
+        given(accounts.withdrawFromAccount(anyString(), any(Currency.class), any(BigDecimal.class), anyString()))
+                .willReturn(Mono.just(AccountOperationResponse.builder().success(false).errorCode(OperationErrorCode.ACCOUNT_NOT_FOUND).build()));
+
+        CashOperationResponse response = cashService.withdraw(request()).block();
+
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(response.getMessage()).isEqualTo("Account not found");
+        assertThat(response.getErrors()).containsExactly("У пользователя нет счета в валюте " + Currency.RUB.getTitle());
+        verifyNoInteractions(notifications);
+    }
+
+    @Test
+    @DisplayName("Недостаточно средств и недоступность accounts различаются в ответе на снятие")
+    void withdraw_failure_shouldDistinguishInsufficientFundsFromServiceError() {
+        given(accounts.withdrawFromAccount(anyString(), any(Currency.class), any(BigDecimal.class), anyString()))
+                .willReturn(Mono.just(AccountOperationResponse.builder().success(false).errorCode(OperationErrorCode.INSUFFICIENT_FUNDS).build()))
+                .willReturn(Mono.just(AccountOperationResponse.builder().success(false).message("Service unavailable").build()));
+
+        CashOperationResponse insufficient = cashService.withdraw(request()).block();
+        CashOperationResponse unavailable = cashService.withdraw(request()).block();
+
+        assertThat(insufficient.getErrors()).containsExactly("Недостаточно средств на счете");
+        assertThat(unavailable.getErrors()).containsExactly("Ошибка при обращении к сервису счетов");
+    }
+
+    @Test
+    @DisplayName("Код ошибки accounts, неизвестный этой версии cash, читается как UNKNOWN")
+    void accountsResponse_unknownErrorCode_shouldMapToUnknown() throws Exception {
+        AccountOperationResponse response = new ObjectMapper().readValue(
+                "{\"success\":false,\"errorCode\":\"ACCOUNT_FROZEN\"}", AccountOperationResponse.class);
+
+        assertThat(response.getErrorCode()).isEqualTo(OperationErrorCode.UNKNOWN);
+    }
+
+    private CashOperationRequest request() {
+        return CashOperationRequest.builder()
+                .login("alice")
+                .currency(Currency.RUB)
+                .amount(new BigDecimal("100"))
+                .build();
+    }
+}
@@ -31,8 +31,28 @@ public class KafkaConsumerConfig {
     @Value("${spring.kafka.consumer.group-id:exchange-group}")
     private String groupId;
 
+    /**
+     * Сколько записей забирает за один poll пакетный (conflating) listener
+     */
+    @Value("${exchange.kafka.listener.batch-max-poll-records:500}")
+    private int batchMaxPollRecords;
+
     @Bean
     public ConsumerFactory<String, ExchangeRateUpdateDto> exchangeRateConsumerFactory() {
+        // max.poll.records: Обрабатываем по одной записи для сохранения порядка
+        return new DefaultKafkaConsumerFactory<>(consumerProps(1));
+    }
+
+    /**
+     * Consumer для пакетного режима: забирает накопившиеся записи одним poll,
+     * из них применяется только последняя по timestamp
+     */
+    @Bean
+    public ConsumerFactory<String, ExchangeRateUpdateDto> exchangeRateBatchConsumerFactory() {
+        return new DefaultKafkaConsumerFactory<>(consumerProps(batchMaxPollRecords));
+    }
+
+    private Map<String, Object> consumerProps(int maxPollRecords) {
         Map<String, Object> props = new HashMap<>();
         
         // Basic configuration
@@ -55,8 +75,7 @@ public class KafkaConsumerConfig {
         // auto.commit.interval.ms: Интервал автокоммита (чаще коммитим для at most once)
         props.put(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, 1000);
         
-        // max.poll.records: Обрабатываем по одной записи для сохранения порядка
-        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 1);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
         
         // max.poll.interval.ms: Максимальное время между poll'ами
         props.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, 300000);
@@ -73,7 +92,7 @@ public class KafkaConsumerConfig {
         // fetch.max.wait.ms: Максимальное время ожидания данных
         props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, 500);
         
-        return new DefaultKafkaConsumerFactory<>(props);
+        return props;
     }
 
     @Bean
@@ -93,5 +112,19 @@ public class KafkaConsumerConfig {
         
         return factory;
     }
-}
 
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, ExchangeRateUpdateDto>
+            exchangeRateBatchKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, ExchangeRateUpdateDto> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(exchangeRateBatchConsumerFactory());
+
+        // Batch listener: весь результат poll передается одним списком
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        factory.setConcurrency(1);
+
+        return factory;
+    }
+}
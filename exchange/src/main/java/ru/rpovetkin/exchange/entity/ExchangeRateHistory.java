@@ -0,0 +1,51 @@
+package ru.rpovetkin.exchange.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.rpovetkin.exchange.enums.Currency;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Сырая история курсов (только добавление).
+ * Таблица секционирована по дню: retention удаляет и сжимает историю целыми секциями partition_day
+ */
+@Entity
+@Table(name = "exchange_rate_history", indexes = {
+        @Index(name = "idx_exchange_rate_history_partition", columnList = "partition_day"),
+        @Index(name = "idx_exchange_rate_history_currency_time", columnList = "currency, rate_time")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExchangeRateHistory {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "currency", nullable = false)
+    private Currency currency;
+
+    @Column(name = "rate_to_rub", nullable = false, precision = 19, scale = 6)
+    private BigDecimal rateToRub;
+
+    /**
+     * Время генерации курса (timestamp из сообщения exchange-generator)
+     */
+    @Column(name = "rate_time", nullable = false)
+    private LocalDateTime rateTime;
+
+    /**
+     * Ключ секции (день по rate_time)
+     */
+    @Column(name = "partition_day", nullable = false)
+    private LocalDate partitionDay;
+}
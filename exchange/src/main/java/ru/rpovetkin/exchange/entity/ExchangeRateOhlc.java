@@ -0,0 +1,54 @@
+package ru.rpovetkin.exchange.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.rpovetkin.exchange.enums.Currency;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Сжатая история курсов: open/high/low/close за интервал bucket_start
+ */
+@Entity
+@Table(name = "exchange_rate_ohlc", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_exchange_rate_ohlc_bucket", columnNames = {"currency", "bucket_start"})
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExchangeRateOhlc {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "currency", nullable = false)
+    private Currency currency;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "open_rate", nullable = false, precision = 19, scale = 6)
+    private BigDecimal openRate;
+
+    @Column(name = "high_rate", nullable = false, precision = 19, scale = 6)
+    private BigDecimal highRate;
+
+    @Column(name = "low_rate", nullable = false, precision = 19, scale = 6)
+    private BigDecimal lowRate;
+
+    @Column(name = "close_rate", nullable = false, precision = 19, scale = 6)
+    private BigDecimal closeRate;
+
+    /**
+     * Количество сырых курсов, сжатых в интервал
+     */
+    @Column(name = "samples", nullable = false)
+    private Integer samples;
+}
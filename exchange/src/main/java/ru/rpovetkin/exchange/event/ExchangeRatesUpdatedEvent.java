@@ -0,0 +1,9 @@
+package ru.rpovetkin.exchange.event;
+
+import ru.rpovetkin.exchange.service.ExchangeRateSnapshot;
+
+/**
+ * Опубликован новый снимок курсов валют
+ */
+public record ExchangeRatesUpdatedEvent(ExchangeRateSnapshot snapshot) {
+}
@@ -0,0 +1,174 @@
+package ru.rpovetkin.exchange.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.rpovetkin.exchange.entity.ExchangeRateHistory;
+import ru.rpovetkin.exchange.entity.ExchangeRateOhlc;
+import ru.rpovetkin.exchange.enums.Currency;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Пакетная запись курсов через JDBC: одно сообщение exchange-generator - один batch на тип запроса
+ * вместо deactivate + insert по каждой валюте
+ */
+@Repository
+@RequiredArgsConstructor
+public class ExchangeRateJdbcRepository {
+
+    private static final String UPDATE_ACTIVE_RATE_SQL =
+            "UPDATE exchange_rates SET rate_to_rub = ?, updated_at = ? WHERE currency = ? AND is_active = TRUE";
+    private static final String INSERT_ACTIVE_RATE_SQL =
+            "INSERT INTO exchange_rates (currency, rate_to_rub, created_at, updated_at, is_active) VALUES (?, ?, ?, ?, TRUE)";
+    private static final String INSERT_HISTORY_SQL =
+            "INSERT INTO exchange_rate_history (currency, rate_to_rub, rate_time, partition_day) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_OHLC_SQL =
+            "INSERT INTO exchange_rate_ohlc (currency, bucket_start, open_rate, high_rate, low_rate, close_rate, samples) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Обновить активные курсы на месте; для валют без активной строки она создается.
+     * Таблица exchange_rates остается размером в одну строку на валюту
+     */
+    public void upsertActiveRates(Map<Currency, BigDecimal> ratesToRub, LocalDateTime updatedAt) {
+        List<Map.Entry<Currency, BigDecimal>> rates = new ArrayList<>(ratesToRub.entrySet());
+
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_ACTIVE_RATE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setBigDecimal(1, rates.get(i).getValue());
+                ps.setObject(2, updatedAt);
+                ps.setString(3, rates.get(i).getKey().name());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rates.size();
+            }
+        });
+
+        List<Map.Entry<Currency, BigDecimal>> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(rates.get(i));
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_ACTIVE_RATE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setString(1, missing.get(i).getKey().name());
+                ps.setBigDecimal(2, missing.get(i).getValue());
+                ps.setObject(3, updatedAt);
+                ps.setObject(4, updatedAt);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return missing.size();
+            }
+        });
+    }
+
+    /**
+     * Добавить курсы в историю (секция определяется днем rateTime)
+     */
+    public void appendHistory(Map<Currency, BigDecimal> ratesToRub, LocalDateTime rateTime) {
+        List<Map.Entry<Currency, BigDecimal>> rates = new ArrayList<>(ratesToRub.entrySet());
+        LocalDate partitionDay = rateTime.toLocalDate();
+
+        jdbcTemplate.batchUpdate(INSERT_HISTORY_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setString(1, rates.get(i).getKey().name());
+                ps.setBigDecimal(2, rates.get(i).getValue());
+                ps.setObject(3, rateTime);
+                ps.setObject(4, partitionDay);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rates.size();
+            }
+        });
+    }
+
+    /**
+     * Секции истории старше указанного дня
+     */
+    public List<LocalDate> findHistoryPartitionsBefore(LocalDate day) {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT partition_day FROM exchange_rate_history WHERE partition_day < ? ORDER BY partition_day",
+                LocalDate.class, day);
+    }
+
+    /**
+     * Передать курсы одной секции по одному в порядке валюты и времени, не загружая секцию в память:
+     * строки читаются курсором порциями по fetchSize (в PostgreSQL - только внутри транзакции)
+     */
+    public void streamHistoryPartition(LocalDate day, int fetchSize, Consumer<ExchangeRateHistory> consumer) {
+        jdbcTemplate.query(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(
+                            "SELECT id, currency, rate_to_rub, rate_time, partition_day FROM exchange_rate_history "
+                                    + "WHERE partition_day = ? ORDER BY currency, rate_time, id");
+                    ps.setFetchSize(fetchSize);
+                    ps.setObject(1, day);
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> consumer.accept(ExchangeRateHistory.builder()
+                        .id(rs.getLong("id"))
+                        .currency(Currency.valueOf(rs.getString("currency")))
+                        .rateToRub(rs.getBigDecimal("rate_to_rub"))
+                        .rateTime(rs.getObject("rate_time", LocalDateTime.class))
+                        .partitionDay(rs.getObject("partition_day", LocalDate.class))
+                        .build()));
+    }
+
+    /**
+     * Удалить секцию истории целиком
+     */
+    public int dropHistoryPartition(LocalDate day) {
+        return jdbcTemplate.update("DELETE FROM exchange_rate_history WHERE partition_day = ?", day);
+    }
+
+    public void insertOhlc(List<ExchangeRateOhlc> buckets) {
+        jdbcTemplate.batchUpdate(INSERT_OHLC_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ExchangeRateOhlc bucket = buckets.get(i);
+                ps.setString(1, bucket.getCurrency().name());
+                ps.setObject(2, bucket.getBucketStart());
+                ps.setBigDecimal(3, bucket.getOpenRate());
+                ps.setBigDecimal(4, bucket.getHighRate());
+                ps.setBigDecimal(5, bucket.getLowRate());
+                ps.setBigDecimal(6, bucket.getCloseRate());
+                ps.setInt(7, bucket.getSamples());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return buckets.size();
+            }
+        });
+    }
+
+    public int deleteOhlcBefore(LocalDateTime bucketStart) {
+        return jdbcTemplate.update("DELETE FROM exchange_rate_ohlc WHERE bucket_start < ?", bucketStart);
+    }
+}
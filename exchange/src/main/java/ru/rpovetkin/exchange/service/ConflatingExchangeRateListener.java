@@ -0,0 +1,96 @@
+package ru.rpovetkin.exchange.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+import ru.rpovetkin.exchange.dto.ExchangeRateUpdateDto;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Пакетный Kafka Consumer курсов валют с conflation.
+ * Каждый курс полностью заменяет предыдущий, поэтому из пачки записей poll
+ * применяется только последняя по timestamp в каждой партиции, остальные отбрасываются.
+ * После паузы consumer догоняет топик за одно обновление БД вместо воспроизведения всех устаревших курсов
+ */
+@Service
+@ConditionalOnProperty(name = "exchange.kafka.listener.mode", havingValue = "CONFLATING", matchIfMissing = true)
+@Slf4j
+public class ConflatingExchangeRateListener {
+
+    private final ExchangeRateService exchangeRateService;
+    private final Counter appliedCounter;
+    private final Counter conflatedCounter;
+    private final Counter failedCounter;
+
+    public ConflatingExchangeRateListener(ExchangeRateService exchangeRateService, MeterRegistry meterRegistry) {
+        this.exchangeRateService = exchangeRateService;
+        this.appliedCounter = messagesCounter(meterRegistry, "applied");
+        this.conflatedCounter = messagesCounter(meterRegistry, "conflated");
+        this.failedCounter = messagesCounter(meterRegistry, "failed");
+    }
+
+    @KafkaListener(
+        topics = "${spring.kafka.topics.exchange-rates:exchange-rates}",
+        groupId = "${spring.kafka.consumer.group-id:exchange-group}",
+        containerFactory = "exchangeRateBatchKafkaListenerContainerFactory"
+    )
+    public void listen(List<ConsumerRecord<String, ExchangeRateUpdateDto>> records) {
+        List<ExchangeRateUpdateDto> latest = conflate(records);
+        int dropped = records.size() - latest.size();
+        if (dropped > 0) {
+            conflatedCounter.increment(dropped);
+        }
+        log.info("Received {} exchange rates updates from Kafka, applying {}, conflated {}",
+                records.size(), latest.size(), dropped);
+
+        for (ExchangeRateUpdateDto updateDto : latest) {
+            try {
+                exchangeRateService.updateExchangeRates(updateDto);
+                appliedCounter.increment();
+            } catch (Exception e) {
+                // At most once: следующий курс придет через секунду
+                failedCounter.increment();
+                log.error("Error processing exchange rates update: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Последнее по timestamp обновление в каждой партиции (при равенстве - с большим offset),
+     * упорядоченные по timestamp
+     */
+    List<ExchangeRateUpdateDto> conflate(List<ConsumerRecord<String, ExchangeRateUpdateDto>> records) {
+        Map<Integer, ConsumerRecord<String, ExchangeRateUpdateDto>> latestByPartition = new HashMap<>();
+        for (ConsumerRecord<String, ExchangeRateUpdateDto> record : records) {
+            if (record.value() == null || record.value().getRatesToRub() == null) {
+                continue;
+            }
+            latestByPartition.merge(record.partition(), record, (current, candidate) ->
+                    candidate.value().getTimestamp() > current.value().getTimestamp()
+                            || (candidate.value().getTimestamp() == current.value().getTimestamp()
+                                && candidate.offset() > current.offset())
+                            ? candidate : current);
+        }
+
+        List<ExchangeRateUpdateDto> result = new ArrayList<>(latestByPartition.size());
+        latestByPartition.values().forEach(record -> result.add(record.value()));
+        result.sort(Comparator.comparingLong(ExchangeRateUpdateDto::getTimestamp));
+        return result;
+    }
+
+    private static Counter messagesCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("exchange.rates.kafka.messages")
+                .description("Сообщения с курсами валют, полученные пакетным listener")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
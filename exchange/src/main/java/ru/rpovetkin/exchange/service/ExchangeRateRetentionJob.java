@@ -0,0 +1,131 @@
+package ru.rpovetkin.exchange.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.rpovetkin.exchange.entity.ExchangeRateHistory;
+import ru.rpovetkin.exchange.entity.ExchangeRateOhlc;
+import ru.rpovetkin.exchange.repository.ExchangeRateJdbcRepository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retention истории курсов: секции сырой истории старше raw-retention-days
+ * сжимаются в OHLC интервалы и удаляются целиком, OHLC старше ohlc-retention-days удаляются
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExchangeRateRetentionJob {
+
+    private static final int HISTORY_FETCH_SIZE = 1000;
+    private static final int OHLC_BATCH_SIZE = 500;
+
+    private final ExchangeRateJdbcRepository exchangeRateJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${exchange.rates.history.raw-retention-days:1}")
+    private int rawRetentionDays;
+
+    @Value("${exchange.rates.history.ohlc-retention-days:365}")
+    private int ohlcRetentionDays;
+
+    @Value("${exchange.rates.history.ohlc-bucket:1m}")
+    private Duration ohlcBucket;
+
+    @Scheduled(fixedDelayString = "${exchange.rates.history.retention-interval:1h}",
+            initialDelayString = "${exchange.rates.history.retention-initial-delay:1m}")
+    public void runRetention() {
+        compactHistory(LocalDate.now().minusDays(rawRetentionDays));
+
+        int removed = exchangeRateJdbcRepository.deleteOhlcBefore(
+                LocalDate.now().minusDays(ohlcRetentionDays).atStartOfDay());
+        if (removed > 0) {
+            log.info("Removed {} OHLC buckets older than {} days", removed, ohlcRetentionDays);
+        }
+    }
+
+    /**
+     * Сжать все секции истории до указанного дня (не включая его)
+     */
+    public void compactHistory(LocalDate beforeDay) {
+        for (LocalDate day : exchangeRateJdbcRepository.findHistoryPartitionsBefore(beforeDay)) {
+            // Каждая секция сжимается и удаляется в своей транзакции
+            Integer buckets = transactionTemplate.execute(status -> compactPartition(day));
+            log.info("Compacted exchange rate history partition {} into {} OHLC buckets", day, buckets);
+        }
+    }
+
+    private int compactPartition(LocalDate day) {
+        OhlcWriter writer = new OhlcWriter();
+        exchangeRateJdbcRepository.streamHistoryPartition(day, HISTORY_FETCH_SIZE, writer::add);
+        writer.flush();
+        exchangeRateJdbcRepository.dropHistoryPartition(day);
+        return writer.written;
+    }
+
+    /**
+     * Сворачивает курсы, упорядоченные по валюте и времени, в OHLC интервалы и пишет их пачками:
+     * в памяти только текущий интервал и не больше OHLC_BATCH_SIZE готовых
+     */
+    private final class OhlcWriter {
+
+        private final List<ExchangeRateOhlc> batch = new ArrayList<>(OHLC_BATCH_SIZE);
+        private ExchangeRateOhlc current;
+        private int written;
+
+        void add(ExchangeRateHistory rate) {
+            LocalDateTime bucketStart = bucketStart(rate.getRateTime());
+            if (current != null
+                    && current.getCurrency() == rate.getCurrency()
+                    && current.getBucketStart().equals(bucketStart)) {
+                current.setHighRate(current.getHighRate().max(rate.getRateToRub()));
+                current.setLowRate(current.getLowRate().min(rate.getRateToRub()));
+                current.setCloseRate(rate.getRateToRub());
+                current.setSamples(current.getSamples() + 1);
+                return;
+            }
+
+            if (batch.size() == OHLC_BATCH_SIZE) {
+                flush();
+            }
+            current = ExchangeRateOhlc.builder()
+                    .currency(rate.getCurrency())
+                    .bucketStart(bucketStart)
+                    .openRate(rate.getRateToRub())
+                    .highRate(rate.getRateToRub())
+                    .lowRate(rate.getRateToRub())
+                    .closeRate(rate.getRateToRub())
+                    .samples(1)
+                    .build();
+            batch.add(current);
+        }
+
+        /**
+         * Записать накопленные интервалы. Вызывается только перед открытием нового интервала и в конце секции,
+         * когда все интервалы пачки уже закрыты
+         */
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            exchangeRateJdbcRepository.insertOhlc(batch);
+            written += batch.size();
+            batch.clear();
+        }
+    }
+
+    private LocalDateTime bucketStart(LocalDateTime rateTime) {
+        long seconds = rateTime.toEpochSecond(ZoneOffset.UTC);
+        long bucketSeconds = Math.max(ohlcBucket.toSeconds(), 1);
+        return LocalDateTime.ofEpochSecond(seconds - Math.floorMod(seconds, bucketSeconds), 0, ZoneOffset.UTC);
+    }
+}
@@ -1,21 +1,29 @@
 package ru.rpovetkin.exchange.service;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.rpovetkin.exchange.dto.ExchangeRateDto;
 import ru.rpovetkin.exchange.dto.ExchangeRateUpdateDto;
 import ru.rpovetkin.exchange.entity.ExchangeRate;
+import ru.rpovetkin.exchange.event.ExchangeRatesUpdatedEvent;
 import ru.rpovetkin.exchange.enums.Currency;
+import ru.rpovetkin.exchange.repository.ExchangeRateJdbcRepository;
 import ru.rpovetkin.exchange.repository.ExchangeRateRepository;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.util.ArrayList;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
@@ -23,16 +31,70 @@ import java.util.Optional;
 public class ExchangeRateService {
 
     private final ExchangeRateRepository exchangeRateRepository;
+    private final ExchangeRateJdbcRepository exchangeRateJdbcRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Режим записи курсов: BATCH - пакетный upsert с историей, PER_CURRENCY - прежняя запись по валютам
+     */
+    @Value("${exchange.rates.ingestion-mode:BATCH}")
+    private IngestionMode ingestionMode = IngestionMode.BATCH;
+
+    /**
+     * Неизменяемый снимок активных курсов, заменяется целиком после фиксации обновления
+     */
+    private volatile ExchangeRateSnapshot snapshot = ExchangeRateSnapshot.EMPTY;
+
+    /**
+     * Загрузить активные курсы из БД в снимок при старте
+     */
+    @PostConstruct
+    public void loadSnapshot() {
+        Map<Currency, BigDecimal> ratesToRub = new EnumMap<>(Currency.class);
+        for (ExchangeRate rate : exchangeRateRepository.findByIsActiveTrueOrderByUpdatedAtDesc()) {
+            ratesToRub.putIfAbsent(rate.getCurrency(), rate.getRateToRub());
+        }
+        publish(ratesToRub, System.currentTimeMillis());
+        log.info("Loaded {} active exchange rates into snapshot", ratesToRub.size());
+    }
 
     /**
      * Обновить курсы валют (получено от exchange-generator)
      */
     @Transactional
     public void updateExchangeRates(ExchangeRateUpdateDto updateDto) {
-        log.info("Updating exchange rates from generator, timestamp: {}", updateDto.getTimestamp());
+        log.info("Updating exchange rates from generator, timestamp: {}, mode: {}",
+                updateDto.getTimestamp(), ingestionMode);
 
         Map<Currency, BigDecimal> ratesToRub = updateDto.getRatesToRub();
-        
+
+        if (ingestionMode == IngestionMode.BATCH) {
+            writeBatch(ratesToRub, updateDto.getTimestamp());
+        } else {
+            writePerCurrency(ratesToRub);
+        }
+
+        publishAfterCommit(ratesToRub, updateDto.getTimestamp());
+        log.info("Successfully updated {} exchange rates", ratesToRub.size());
+    }
+
+    /**
+     * Одно сообщение - один JDBC batch: upsert активных курсов и добавление в историю
+     */
+    private void writeBatch(Map<Currency, BigDecimal> ratesToRub, long timestamp) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime rateTime = timestamp > 0
+                ? LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault())
+                : now;
+
+        exchangeRateJdbcRepository.upsertActiveRates(ratesToRub, now);
+        exchangeRateJdbcRepository.appendHistory(ratesToRub, rateTime);
+    }
+
+    /**
+     * Прежний режим: деактивация старого курса и вставка нового по каждой валюте
+     */
+    private void writePerCurrency(Map<Currency, BigDecimal> ratesToRub) {
         for (Map.Entry<Currency, BigDecimal> entry : ratesToRub.entrySet()) {
             Currency currency = entry.getKey();
             BigDecimal rateToRub = entry.getValue();
@@ -50,109 +112,57 @@ public class ExchangeRateService {
             exchangeRateRepository.save(exchangeRate);
             log.debug("Updated rate for {}: {} RUB", currency, rateToRub);
         }
-        
-        log.info("Successfully updated {} exchange rates", ratesToRub.size());
     }
 
     /**
      * Получить курс между двумя валютами
-     * Все конвертации происходят через RUB
+     * Все конвертации происходят через RUB, курс берется из снимка в памяти
      */
     public ExchangeRateDto getExchangeRate(Currency fromCurrency, Currency toCurrency) {
         log.debug("Getting exchange rate from {} to {}", fromCurrency, toCurrency);
 
-        if (fromCurrency == toCurrency) {
-            return createDirectRate(fromCurrency, toCurrency, BigDecimal.ONE);
-        }
-
-        // Получаем курсы к RUB
-        BigDecimal fromToRub = getRateToRub(fromCurrency);
-        BigDecimal toToRub = getRateToRub(toCurrency);
-
-        if (fromToRub == null || toToRub == null) {
+        ExchangeRateDto rate = snapshot.getRate(fromCurrency, toCurrency);
+        if (rate == null) {
             log.warn("Cannot find rates for conversion {} -> {}", fromCurrency, toCurrency);
-            return null;
         }
-
-        // Конвертируем через RUB: from -> RUB -> to
-        // 1 fromCurrency = fromToRub RUB
-        // 1 toCurrency = toToRub RUB
-        // 1 fromCurrency = (fromToRub / toToRub) toCurrency
-        BigDecimal rate = fromToRub.divide(toToRub, 6, RoundingMode.HALF_UP);
-
-        return createDirectRate(fromCurrency, toCurrency, rate);
+        return rate;
     }
 
     /**
      * Получить все активные курсы валют
      */
     public List<ExchangeRateDto> getAllExchangeRates() {
-        List<ExchangeRate> activeRates = exchangeRateRepository.findByIsActiveTrueOrderByUpdatedAtDesc();
-        List<ExchangeRateDto> result = new ArrayList<>();
-
-        // Добавляем прямые курсы к RUB
-        for (ExchangeRate rate : activeRates) {
-            if (rate.getCurrency() != Currency.RUB) {
-                result.add(createDirectRate(rate.getCurrency(), Currency.RUB, rate.getRateToRub()));
-            }
-        }
-
-        // Добавляем обратные курсы от RUB
-        for (ExchangeRate rate : activeRates) {
-            if (rate.getCurrency() != Currency.RUB) {
-                BigDecimal reverseRate = BigDecimal.ONE.divide(rate.getRateToRub(), 6, RoundingMode.HALF_UP);
-                result.add(createDirectRate(Currency.RUB, rate.getCurrency(), reverseRate));
-            }
-        }
-
-        // Добавляем кросс-курсы (USD <-> CNY)
-        Optional<ExchangeRate> usdRate = activeRates.stream()
-                .filter(r -> r.getCurrency() == Currency.USD)
-                .findFirst();
-        Optional<ExchangeRate> cnyRate = activeRates.stream()
-                .filter(r -> r.getCurrency() == Currency.CNY)
-                .findFirst();
-
-        if (usdRate.isPresent() && cnyRate.isPresent()) {
-            BigDecimal usdToCny = usdRate.get().getRateToRub()
-                    .divide(cnyRate.get().getRateToRub(), 6, RoundingMode.HALF_UP);
-            BigDecimal cnyToUsd = cnyRate.get().getRateToRub()
-                    .divide(usdRate.get().getRateToRub(), 6, RoundingMode.HALF_UP);
-
-            result.add(createDirectRate(Currency.USD, Currency.CNY, usdToCny));
-            result.add(createDirectRate(Currency.CNY, Currency.USD, cnyToUsd));
-        }
-
-        return result;
+        return snapshot.getAllRates();
     }
 
     /**
-     * Получить курс валюты к RUB
+     * Опубликовать курсы в снимок после фиксации транзакции,
+     * чтобы читатели не увидели курсы, которые затем будут откатаны
      */
-    private BigDecimal getRateToRub(Currency currency) {
-        if (currency == Currency.RUB) {
-            return BigDecimal.ONE;
+    private void publishAfterCommit(Map<Currency, BigDecimal> ratesToRub, long timestamp) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(ratesToRub, timestamp);
+            return;
         }
-
-        return exchangeRateRepository.findByCurrencyAndIsActiveTrue(currency)
-                .map(ExchangeRate::getRateToRub)
-                .orElse(null);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(ratesToRub, timestamp);
+            }
+        });
     }
 
     /**
-     * Создать DTO для прямого курса
+     * Запись снимка сериализована, чтение идет без блокировок через volatile ссылку
      */
-    private ExchangeRateDto createDirectRate(Currency fromCurrency, Currency toCurrency, BigDecimal rate) {
-        String description = String.format("1 %s = %s %s",
-                fromCurrency.name(),
-                rate.toPlainString(),
-                toCurrency.name());
-
-        return ExchangeRateDto.builder()
-                .fromCurrency(fromCurrency)
-                .toCurrency(toCurrency)
-                .rate(rate)
-                .description(description)
-                .build();
+    private synchronized void publish(Map<Currency, BigDecimal> ratesToRub, long timestamp) {
+        snapshot = snapshot.withRates(ratesToRub, timestamp);
+        eventPublisher.publishEvent(new ExchangeRatesUpdatedEvent(snapshot));
+        log.debug("Published exchange rate snapshot, timestamp: {}", timestamp);
+    }
+
+    public enum IngestionMode {
+        BATCH,
+        PER_CURRENCY
     }
 }
@@ -0,0 +1,151 @@
+package ru.rpovetkin.exchange.service;
+
+import ru.rpovetkin.exchange.dto.ExchangeRateDto;
+import ru.rpovetkin.exchange.enums.Currency;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Неизменяемый снимок активных курсов валют.
+ * При создании заранее рассчитывается полная матрица курсов для всех пар {@link Currency}
+ * и список для /api/exchange/rates, поэтому чтение не обращается к БД и не создает объектов
+ */
+public final class ExchangeRateSnapshot {
+
+    private static final Currency[] CURRENCIES = Currency.values();
+    private static final int SCALE = 6;
+
+    public static final ExchangeRateSnapshot EMPTY = new ExchangeRateSnapshot(new EnumMap<>(Currency.class), 0L);
+
+    private final Map<Currency, BigDecimal> ratesToRub;
+    private final ExchangeRateDto[][] matrix;
+    private final List<ExchangeRateDto> allRates;
+    private final long timestamp;
+
+    private ExchangeRateSnapshot(EnumMap<Currency, BigDecimal> ratesToRub, long timestamp) {
+        // Курс RUB к самому себе всегда 1
+        ratesToRub.put(Currency.RUB, BigDecimal.ONE);
+        this.ratesToRub = Collections.unmodifiableMap(ratesToRub);
+        this.timestamp = timestamp;
+        this.matrix = buildMatrix(ratesToRub);
+        this.allRates = buildAllRates(matrix);
+    }
+
+    /**
+     * Создать снимок из курсов к RUB
+     */
+    public static ExchangeRateSnapshot of(Map<Currency, BigDecimal> ratesToRub, long timestamp) {
+        return EMPTY.withRates(ratesToRub, timestamp);
+    }
+
+    /**
+     * Создать новый снимок, заменив курсы переданных валют (остальные валюты сохраняются)
+     */
+    public ExchangeRateSnapshot withRates(Map<Currency, BigDecimal> updatedRatesToRub, long timestamp) {
+        EnumMap<Currency, BigDecimal> merged = new EnumMap<>(Currency.class);
+        merged.putAll(ratesToRub);
+        if (updatedRatesToRub != null) {
+            updatedRatesToRub.forEach((currency, rate) -> {
+                if (currency != null && rate != null && rate.signum() > 0) {
+                    merged.put(currency, rate);
+                }
+            });
+        }
+        return new ExchangeRateSnapshot(merged, timestamp);
+    }
+
+    /**
+     * Курс между двумя валютами или null, если для одной из валют курса нет
+     */
+    public ExchangeRateDto getRate(Currency fromCurrency, Currency toCurrency) {
+        return matrix[fromCurrency.ordinal()][toCurrency.ordinal()];
+    }
+
+    /**
+     * Прямые курсы к RUB, обратные курсы от RUB и кросс-курсы между остальными валютами
+     */
+    public List<ExchangeRateDto> getAllRates() {
+        return allRates;
+    }
+
+    public Map<Currency, BigDecimal> getRatesToRub() {
+        return ratesToRub;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    private static ExchangeRateDto[][] buildMatrix(Map<Currency, BigDecimal> ratesToRub) {
+        ExchangeRateDto[][] result = new ExchangeRateDto[CURRENCIES.length][CURRENCIES.length];
+        for (Currency from : CURRENCIES) {
+            for (Currency to : CURRENCIES) {
+                if (from == to) {
+                    result[from.ordinal()][to.ordinal()] = createDirectRate(from, to, BigDecimal.ONE);
+                    continue;
+                }
+
+                BigDecimal fromToRub = ratesToRub.get(from);
+                BigDecimal toToRub = ratesToRub.get(to);
+                if (fromToRub != null && toToRub != null) {
+                    // 1 fromCurrency = (fromToRub / toToRub) toCurrency
+                    BigDecimal rate = fromToRub.divide(toToRub, SCALE, RoundingMode.HALF_UP);
+                    result[from.ordinal()][to.ordinal()] = createDirectRate(from, to, rate);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static List<ExchangeRateDto> buildAllRates(ExchangeRateDto[][] matrix) {
+        List<ExchangeRateDto> result = new ArrayList<>();
+        int rub = Currency.RUB.ordinal();
+
+        // Прямые курсы к RUB
+        for (Currency currency : CURRENCIES) {
+            if (currency != Currency.RUB && matrix[currency.ordinal()][rub] != null) {
+                result.add(matrix[currency.ordinal()][rub]);
+            }
+        }
+
+        // Обратные курсы от RUB
+        for (Currency currency : CURRENCIES) {
+            if (currency != Currency.RUB && matrix[rub][currency.ordinal()] != null) {
+                result.add(matrix[rub][currency.ordinal()]);
+            }
+        }
+
+        // Кросс-курсы между валютами, отличными от RUB
+        for (int i = 0; i < CURRENCIES.length; i++) {
+            for (int j = i + 1; j < CURRENCIES.length; j++) {
+                if (i == rub || j == rub || matrix[i][j] == null) {
+                    continue;
+                }
+                result.add(matrix[i][j]);
+                result.add(matrix[j][i]);
+            }
+        }
+
+        return Collections.unmodifiableList(result);
+    }
+
+    private static ExchangeRateDto createDirectRate(Currency fromCurrency, Currency toCurrency, BigDecimal rate) {
+        String description = String.format("1 %s = %s %s",
+                fromCurrency.name(),
+                rate.toPlainString(),
+                toCurrency.name());
+
+        return ExchangeRateDto.builder()
+                .fromCurrency(fromCurrency)
+                .toCurrency(toCurrency)
+                .rate(rate)
+                .description(description)
+                .build();
+    }
+}
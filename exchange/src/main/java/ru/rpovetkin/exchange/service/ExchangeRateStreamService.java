@@ -0,0 +1,205 @@
+package ru.rpovetkin.exchange.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.rpovetkin.exchange.dto.ExchangeRateDto;
+import ru.rpovetkin.exchange.event.ExchangeRatesUpdatedEvent;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Рассылка курсов валют подписчикам через server-sent events.
+ * Подписчик сразу получает текущие курсы, затем - каждый новый снимок.
+ * У каждого подписчика своя отправка в виртуальном потоке и только одно ожидающее событие:
+ * новый снимок заменяет неотправленный, поэтому медленный клиент не задерживает остальных
+ * и не копит очередь, а клиент, отправка которому висит дольше stall-timeout, отключается
+ */
+@Service
+@Slf4j
+public class ExchangeRateStreamService {
+
+    static final String RATES_EVENT = "rates";
+
+    private static final Supplier<SseEmitter.SseEventBuilder> HEARTBEAT = () -> SseEmitter.event().comment("heartbeat");
+
+    private final ExchangeRateService exchangeRateService;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService sender = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("exchange-rates-sse-", 0).factory());
+
+    /**
+     * Время жизни подключения, после которого клиент переподключается
+     */
+    @Value("${exchange.rates.stream.timeout:30m}")
+    private Duration streamTimeout;
+
+    /**
+     * Сколько может длиться одна отправка клиенту, прежде чем он будет отключен
+     */
+    @Value("${exchange.rates.stream.stall-timeout:30s}")
+    private Duration stallTimeout;
+
+    public ExchangeRateStreamService(ExchangeRateService exchangeRateService) {
+        this.exchangeRateService = exchangeRateService;
+    }
+
+    /**
+     * Подписать клиента на поток курсов
+     */
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(streamTimeout.toMillis()));
+    }
+
+    SseEmitter subscribe(SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> {
+            subscribers.remove(subscriber);
+            emitter.complete();
+        });
+        emitter.onError(error -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+
+        subscriber.offer(ratesEvent(exchangeRateService.getAllExchangeRates()));
+        log.info("New exchange rates stream subscriber, total: {}", subscribers.size());
+        return emitter;
+    }
+
+    @EventListener
+    public void onRatesUpdated(ExchangeRatesUpdatedEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        Supplier<SseEmitter.SseEventBuilder> rates = ratesEvent(event.snapshot().getAllRates());
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(rates);
+        }
+    }
+
+    /**
+     * Комментарий-heartbeat держит соединение открытым через прокси и выявляет отключившихся клиентов.
+     * Заодно отключает клиентов, отправка которым зависла
+     */
+    @Scheduled(fixedDelayString = "${exchange.rates.stream.heartbeat:15s}")
+    public void heartbeat() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.isStalled(now, stallTimeout.toNanos())) {
+                log.warn("Dropping exchange rates stream subscriber stalled for more than {}", stallTimeout);
+                subscriber.drop(new IOException("Subscriber stalled"));
+            } else {
+                subscriber.offerHeartbeat();
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        sender.shutdownNow();
+    }
+
+    /**
+     * SseEventBuilder накапливает состояние при отправке, поэтому событие создается для каждого подписчика
+     */
+    private static Supplier<SseEmitter.SseEventBuilder> ratesEvent(List<ExchangeRateDto> rates) {
+        return () -> SseEmitter.event().name(RATES_EVENT).data(rates, MediaType.APPLICATION_JSON);
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        // Последнее неотправленное событие: снимок курсов или heartbeat
+        private final AtomicReference<Supplier<SseEmitter.SseEventBuilder>> pending = new AtomicReference<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // System.nanoTime() начала текущей отправки; 0 - отправки нет
+        private final AtomicLong sendingSince = new AtomicLong();
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Supplier<SseEmitter.SseEventBuilder> event) {
+            pending.set(event);
+            scheduleDrain();
+        }
+
+        /**
+         * Heartbeat не нужен, если клиента и так ждет неотправленный снимок
+         */
+        void offerHeartbeat() {
+            if (pending.compareAndSet(null, HEARTBEAT)) {
+                scheduleDrain();
+            }
+        }
+
+        boolean isStalled(long now, long stallNanos) {
+            long since = sendingSince.get();
+            return since != 0 && now - since > stallNanos;
+        }
+
+        void drop(Exception reason) {
+            subscribers.remove(this);
+            emitter.completeWithError(reason);
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::drain);
+                } catch (RuntimeException e) {
+                    // sender остановлен: сервис завершает работу
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            do {
+                Supplier<SseEmitter.SseEventBuilder> event;
+                while ((event = pending.getAndSet(null)) != null) {
+                    if (!send(event.get())) {
+                        pending.set(null);
+                        draining.set(false);
+                        return;
+                    }
+                }
+                draining.set(false);
+                // событие могло прийти между последней проверкой и сбросом флага
+            } while (pending.get() != null && draining.compareAndSet(false, true));
+        }
+
+        private boolean send(SseEmitter.SseEventBuilder event) {
+            sendingSince.set(System.nanoTime());
+            try {
+                emitter.send(event);
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Exchange rates stream subscriber disconnected: {}", e.getMessage());
+                drop(e);
+                return false;
+            } finally {
+                sendingSince.set(0);
+            }
+        }
+    }
+}
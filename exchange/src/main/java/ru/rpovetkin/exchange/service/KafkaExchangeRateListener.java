@@ -2,6 +2,7 @@ package ru.rpovetkin.exchange.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 import ru.rpovetkin.exchange.dto.ExchangeRateUpdateDto;
@@ -11,8 +12,10 @@ import ru.rpovetkin.exchange.dto.ExchangeRateUpdateDto;
  * Стратегия: At most once - при ошибке обработки сообщение будет потеряно
  * Порядок: Ordered messages - обрабатываются строго по порядку получения
  * Offset: latest - при перезапуске читаем только новые сообщения
+ * Включается при exchange.kafka.listener.mode=RECORD, иначе работает {@link ConflatingExchangeRateListener}
  */
 @Service
+@ConditionalOnProperty(name = "exchange.kafka.listener.mode", havingValue = "RECORD")
 @RequiredArgsConstructor
 @Slf4j
 public class KafkaExchangeRateListener {
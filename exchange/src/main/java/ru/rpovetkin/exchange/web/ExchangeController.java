@@ -2,12 +2,15 @@ package ru.rpovetkin.exchange.web;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.rpovetkin.exchange.dto.ExchangeRateDto;
 import ru.rpovetkin.exchange.dto.ExchangeRateUpdateDto;
 import ru.rpovetkin.exchange.enums.Currency;
 import ru.rpovetkin.exchange.service.ExchangeRateService;
+import ru.rpovetkin.exchange.service.ExchangeRateStreamService;
 
 import java.util.List;
 import java.util.Map;
@@ -19,6 +22,7 @@ import java.util.Map;
 public class ExchangeController {
 
     private final ExchangeRateService exchangeRateService;
+    private final ExchangeRateStreamService exchangeRateStreamService;
 
     /**
      * Обновить курсы валют (вызывается exchange-generator)
@@ -46,6 +50,15 @@ public class ExchangeController {
         return ResponseEntity.ok(rates);
     }
 
+    /**
+     * Поток курсов валют (server-sent events): текущие курсы сразу, затем каждое обновление
+     */
+    @GetMapping(path = "/rates/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamRates() {
+        log.info("Request to stream exchange rates");
+        return exchangeRateStreamService.subscribe();
+    }
+
     /**
      * Получить курс для конкретной пары валют
      */
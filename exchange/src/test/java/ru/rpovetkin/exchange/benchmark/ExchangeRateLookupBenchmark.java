@@ -0,0 +1,112 @@
+package ru.rpovetkin.exchange.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.rpovetkin.exchange.ExchangeApplication;
+import ru.rpovetkin.exchange.dto.ExchangeRateDto;
+import ru.rpovetkin.exchange.dto.ExchangeRateUpdateDto;
+import ru.rpovetkin.exchange.entity.ExchangeRate;
+import ru.rpovetkin.exchange.enums.Currency;
+import ru.rpovetkin.exchange.repository.ExchangeRateRepository;
+import ru.rpovetkin.exchange.service.ExchangeRateService;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение получения курса через запросы к БД (прежняя реализация ExchangeRateService)
+ * и через снимок курсов в памяти.
+ * Запуск: main из IDE или {@code java -cp <test-classpath> ru.rpovetkin.exchange.benchmark.ExchangeRateLookupBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ExchangeRateLookupBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private ExchangeRateRepository repository;
+    private ExchangeRateService service;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(ExchangeApplication.class).run(
+                "--server.port=0",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.ru.rpovetkin.exchange=WARN",
+                "--logging.level.org.apache.kafka=OFF");
+        repository = context.getBean(ExchangeRateRepository.class);
+        service = context.getBean(ExchangeRateService.class);
+
+        service.updateExchangeRates(ExchangeRateUpdateDto.builder()
+                .ratesToRub(Map.of(
+                        Currency.USD, new BigDecimal("92.500000"),
+                        Currency.CNY, new BigDecimal("12.750000")))
+                .timestamp(System.currentTimeMillis())
+                .build());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ExchangeRateDto crossRateFromDatabase() {
+        BigDecimal fromToRub = repository.findByCurrencyAndIsActiveTrue(Currency.USD)
+                .map(ExchangeRate::getRateToRub)
+                .orElseThrow();
+        BigDecimal toToRub = repository.findByCurrencyAndIsActiveTrue(Currency.CNY)
+                .map(ExchangeRate::getRateToRub)
+                .orElseThrow();
+        return ExchangeRateDto.builder()
+                .fromCurrency(Currency.USD)
+                .toCurrency(Currency.CNY)
+                .rate(fromToRub.divide(toToRub, 6, RoundingMode.HALF_UP))
+                .build();
+    }
+
+    @Benchmark
+    public ExchangeRateDto crossRateFromSnapshot() {
+        return service.getExchangeRate(Currency.USD, Currency.CNY);
+    }
+
+    @Benchmark
+    public List<ExchangeRate> allRatesFromDatabase() {
+        return repository.findByIsActiveTrueOrderByUpdatedAtDesc();
+    }
+
+    @Benchmark
+    public List<ExchangeRateDto> allRatesFromSnapshot() {
+        return service.getAllExchangeRates();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ExchangeRateLookupBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
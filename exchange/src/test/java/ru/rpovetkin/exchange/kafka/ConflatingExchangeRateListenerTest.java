@@ -0,0 +1,95 @@
+package ru.rpovetkin.exchange.kafka;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.rpovetkin.exchange.dto.ExchangeRateUpdateDto;
+import ru.rpovetkin.exchange.enums.Currency;
+import ru.rpovetkin.exchange.service.ConflatingExchangeRateListener;
+import ru.rpovetkin.exchange.service.ExchangeRateService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ConflatingExchangeRateListenerTest {
+
+    private static final String TOPIC = "exchange-rates";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ExchangeRateService exchangeRateService;
+    private ConflatingExchangeRateListener listener;
+
+    @BeforeEach
+    void setUp() {
+        exchangeRateService = mock(ExchangeRateService.class);
+        listener = new ConflatingExchangeRateListener(exchangeRateService, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Из накопившегося backlog применяется только последний курс")
+    void listen_shouldApplyOnlyLatestUpdate() {
+        List<ConsumerRecord<String, ExchangeRateUpdateDto>> backlog = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            backlog.add(record(0, i, 1_000L + i, "95." + i));
+        }
+
+        listener.listen(backlog);
+
+        ArgumentCaptor<ExchangeRateUpdateDto> applied = ArgumentCaptor.forClass(ExchangeRateUpdateDto.class);
+        verify(exchangeRateService, times(1)).updateExchangeRates(applied.capture());
+        assertThat(applied.getValue().getTimestamp()).isEqualTo(1_099L);
+        assertThat(count("applied")).isEqualTo(1);
+        assertThat(count("conflated")).isEqualTo(99);
+    }
+
+    @Test
+    @DisplayName("Последний курс выбирается по timestamp, а не по позиции в пачке, отдельно для каждой партиции")
+    void listen_shouldPickLatestByTimestampPerPartition() {
+        listener.listen(List.of(
+                record(0, 10, 2_000L, "96"),
+                record(0, 11, 1_500L, "94"),
+                record(1, 5, 1_800L, "95")));
+
+        ArgumentCaptor<ExchangeRateUpdateDto> applied = ArgumentCaptor.forClass(ExchangeRateUpdateDto.class);
+        verify(exchangeRateService, times(2)).updateExchangeRates(applied.capture());
+        assertThat(applied.getAllValues())
+                .extracting(ExchangeRateUpdateDto::getTimestamp)
+                .containsExactly(1_800L, 2_000L);
+        assertThat(count("conflated")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Ошибка обработки не останавливает listener (at most once)")
+    void listen_shouldCountFailures() {
+        doThrow(new RuntimeException("Test error")).when(exchangeRateService).updateExchangeRates(any());
+
+        listener.listen(List.of(record(0, 1, 1_000L, "95")));
+
+        assertThat(count("failed")).isEqualTo(1);
+        assertThat(count("applied")).isZero();
+    }
+
+    private ConsumerRecord<String, ExchangeRateUpdateDto> record(int partition, long offset, long timestamp, String usdRate) {
+        ExchangeRateUpdateDto updateDto = ExchangeRateUpdateDto.builder()
+                .ratesToRub(Map.of(Currency.USD, new BigDecimal(usdRate)))
+                .timestamp(timestamp)
+                .build();
+        return new ConsumerRecord<>(TOPIC, partition, offset, "exchange-rates", updateDto);
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.get("exchange.rates.kafka.messages").tag("outcome", outcome).counter().count();
+    }
+}
@@ -0,0 +1,123 @@
+package ru.rpovetkin.exchange.kafka;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import ru.rpovetkin.exchange.dto.ExchangeRateUpdateDto;
+import ru.rpovetkin.exchange.enums.Currency;
+import ru.rpovetkin.exchange.service.ConflatingExchangeRateListener;
+import ru.rpovetkin.exchange.service.ExchangeRateService;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Интеграционные тесты пакетного Kafka Consumer в Exchange (режим по умолчанию CONFLATING):
+ * из пачки курсов одной партиции применяется последний
+ */
+@SpringBootTest
+@EmbeddedKafka(partitions = 1, topics = {"exchange-rates-test"})
+@ActiveProfiles("test")
+@DirtiesContext
+class ConflatingKafkaConsumerIntegrationTest {
+
+    private static final String TOPIC = "exchange-rates-test";
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry listenerRegistry;
+
+    @Autowired(required = false)
+    private ConflatingExchangeRateListener conflatingListener;
+
+    @SpyBean
+    private ExchangeRateService exchangeRateService;
+
+    private KafkaTemplate<String, ExchangeRateUpdateDto> kafkaTemplate;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, Object> producerProps = new HashMap<>();
+        producerProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, embeddedKafka.getBrokersAsString());
+        producerProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        producerProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        producerProps.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, false);
+        kafkaTemplate = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(producerProps));
+
+        // auto-offset-reset: latest - записи, отправленные до назначения партиций, consumer не увидит
+        listenerRegistry.getListenerContainers().forEach(container ->
+                ContainerTestUtils.waitForAssignment(container, embeddedKafka.getPartitionsPerTopic()));
+    }
+
+    @Test
+    @DisplayName("По умолчанию курсы принимает пакетный conflating listener")
+    void conflatingListenerIsActiveByDefault() {
+        assertThat(conflatingListener).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Пакетный consumer получает и применяет курсы валют из Kafka")
+    void consumerReceivesAndAppliesExchangeRates() {
+        ExchangeRateUpdateDto updateDto = update("95.50", System.currentTimeMillis());
+
+        kafkaTemplate.send(TOPIC, "exchange-rates", updateDto);
+
+        await().atMost(10, TimeUnit.SECONDS)
+               .untilAsserted(() -> verify(exchangeRateService, atLeastOnce())
+                       .updateExchangeRates(argThat(dto -> dto.getTimestamp() == updateDto.getTimestamp())));
+    }
+
+    @Test
+    @DisplayName("Из серии курсов применяется последний, устаревшие не воспроизводятся")
+    void consumerAppliesLatestRateOfBurst() {
+        int messageCount = 5;
+        long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < messageCount; i++) {
+            kafkaTemplate.send(TOPIC, "exchange-rates", update("96." + (10 + i), timestamp + i));
+        }
+        kafkaTemplate.flush();
+
+        await().atMost(10, TimeUnit.SECONDS)
+               .untilAsserted(() -> verify(exchangeRateService, atLeastOnce())
+                       .updateExchangeRates(argThat(dto -> dto.getTimestamp() == timestamp + messageCount - 1
+                               && dto.getRatesToRub().get(Currency.USD).compareTo(new BigDecimal("96.14")) == 0)));
+        // Сколько записей попадет в один poll, зависит от брокера, но каждая применяется не больше одного раза
+        verify(exchangeRateService, atMost(messageCount)).updateExchangeRates(any(ExchangeRateUpdateDto.class));
+    }
+
+    private static ExchangeRateUpdateDto update(String usdRate, long timestamp) {
+        Map<Currency, BigDecimal> rates = new HashMap<>();
+        rates.put(Currency.USD, new BigDecimal(usdRate));
+        rates.put(Currency.RUB, BigDecimal.ONE);
+        return ExchangeRateUpdateDto.builder()
+                .ratesToRub(rates)
+                .timestamp(timestamp)
+                .build();
+    }
+}
@@ -8,11 +8,13 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import ru.rpovetkin.exchange.dto.ExchangeRateUpdateDto;
@@ -29,10 +31,11 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 /**
- * Интеграционные тесты для Kafka Consumer в Exchange
- * Проверяет получение и обработку курсов валют с гарантией "At most once"
+ * Интеграционные тесты для Kafka Consumer в Exchange (режим RECORD, по одной записи)
+ * Проверяет получение и обработку курсов валют с гарантией "At most once".
+ * Режим по умолчанию (CONFLATING) проверяет ConflatingKafkaConsumerIntegrationTest
  */
-@SpringBootTest
+@SpringBootTest(properties = "exchange.kafka.listener.mode=RECORD")
 @EmbeddedKafka(partitions = 1, topics = {"exchange-rates-test"},
                brokerProperties = {"listeners=PLAINTEXT://localhost:9094", "port=9094"})
 @ActiveProfiles("test")
@@ -44,6 +47,9 @@ class KafkaConsumerIntegrationTest {
     @SpyBean
     private ExchangeRateService exchangeRateService;
 
+    @Autowired
+    private KafkaListenerEndpointRegistry listenerRegistry;
+
     private KafkaTemplate<String, ExchangeRateUpdateDto> kafkaTemplate;
 
     @BeforeEach
@@ -58,6 +64,10 @@ class KafkaConsumerIntegrationTest {
         ProducerFactory<String, ExchangeRateUpdateDto> producerFactory = 
                 new DefaultKafkaProducerFactory<>(producerProps);
         kafkaTemplate = new KafkaTemplate<>(producerFactory);
+
+        // auto-offset-reset=latest: сообщения, отправленные до назначения партиции, consumer не увидит
+        listenerRegistry.getListenerContainers().forEach(container ->
+                ContainerTestUtils.waitForAssignment(container, 1));
     }
 
     @Test
@@ -0,0 +1,103 @@
+package ru.rpovetkin.exchange.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.rpovetkin.exchange.enums.Currency;
+import ru.rpovetkin.exchange.service.ExchangeRateRetentionJob;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({ExchangeRateJdbcRepository.class, ExchangeRateRetentionJob.class})
+class ExchangeRateJdbcRepositoryTest {
+
+    @Autowired
+    private ExchangeRateJdbcRepository jdbcRepository;
+
+    @Autowired
+    private ExchangeRateRepository exchangeRateRepository;
+
+    @Autowired
+    private ExchangeRateRetentionJob retentionJob;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Upsert держит одну активную строку на валюту, история растет")
+    void upsertActiveRates_shouldKeepOneRowPerCurrency() {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcRepository.upsertActiveRates(Map.of(Currency.USD, new BigDecimal("90"), Currency.CNY, new BigDecimal("12")), now);
+        jdbcRepository.appendHistory(Map.of(Currency.USD, new BigDecimal("90"), Currency.CNY, new BigDecimal("12")), now);
+        jdbcRepository.upsertActiveRates(Map.of(Currency.USD, new BigDecimal("91"), Currency.CNY, new BigDecimal("13")), now);
+        jdbcRepository.appendHistory(Map.of(Currency.USD, new BigDecimal("91"), Currency.CNY, new BigDecimal("13")), now);
+
+        assertThat(count("exchange_rates")).isEqualTo(2);
+        assertThat(count("exchange_rate_history")).isEqualTo(4);
+        assertThat(exchangeRateRepository.findByCurrencyAndIsActiveTrue(Currency.USD))
+                .hasValueSatisfying(rate -> assertThat(rate.getRateToRub()).isEqualByComparingTo("91"));
+    }
+
+    @Test
+    @DisplayName("Retention сжимает старые секции истории в OHLC и удаляет их")
+    void compactHistory_shouldBuildOhlcAndDropPartition() {
+        LocalDateTime minute = LocalDate.now().minusDays(3).atTime(10, 15);
+        jdbcRepository.appendHistory(Map.of(Currency.USD, new BigDecimal("90")), minute.plusSeconds(1));
+        jdbcRepository.appendHistory(Map.of(Currency.USD, new BigDecimal("95")), minute.plusSeconds(2));
+        jdbcRepository.appendHistory(Map.of(Currency.USD, new BigDecimal("88")), minute.plusSeconds(3));
+        jdbcRepository.appendHistory(Map.of(Currency.USD, new BigDecimal("91")), minute.plusSeconds(4));
+        jdbcRepository.appendHistory(Map.of(Currency.USD, new BigDecimal("92")), minute.plusMinutes(1));
+        jdbcRepository.appendHistory(Map.of(Currency.USD, new BigDecimal("93")), LocalDateTime.now());
+
+        retentionJob.compactHistory(LocalDate.now().minusDays(1));
+
+        assertThat(count("exchange_rate_history")).isEqualTo(1);
+        Map<String, Object> bucket = jdbcTemplate.queryForMap(
+                "SELECT open_rate, high_rate, low_rate, close_rate, samples FROM exchange_rate_ohlc WHERE bucket_start = ?",
+                minute);
+        assertThat((BigDecimal) bucket.get("OPEN_RATE")).isEqualByComparingTo("90");
+        assertThat((BigDecimal) bucket.get("HIGH_RATE")).isEqualByComparingTo("95");
+        assertThat((BigDecimal) bucket.get("LOW_RATE")).isEqualByComparingTo("88");
+        assertThat((BigDecimal) bucket.get("CLOSE_RATE")).isEqualByComparingTo("91");
+        assertThat(((Number) bucket.get("SAMPLES")).intValue()).isEqualTo(4);
+        assertThat(count("exchange_rate_ohlc")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Retention пишет OHLC пачками: интервалы на границе пачек и валют не теряются")
+    void compactHistory_shouldWriteBucketsAcrossSeveralBatches() {
+        LocalDateTime start = LocalDate.now().minusDays(3).atStartOfDay();
+        for (int i = 0; i < 300; i++) {
+            LocalDateTime minute = start.plusMinutes(i);
+            jdbcRepository.appendHistory(Map.of(Currency.USD, BigDecimal.valueOf(90 + i), Currency.CNY, new BigDecimal("12")),
+                    minute.plusSeconds(1));
+            jdbcRepository.appendHistory(Map.of(Currency.USD, BigDecimal.valueOf(91 + i), Currency.CNY, new BigDecimal("13")),
+                    minute.plusSeconds(2));
+        }
+
+        retentionJob.compactHistory(LocalDate.now().minusDays(1));
+
+        assertThat(count("exchange_rate_history")).isZero();
+        assertThat(count("exchange_rate_ohlc")).isEqualTo(600);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM exchange_rate_ohlc WHERE samples <> 2", Integer.class)).isZero();
+        Map<String, Object> last = jdbcTemplate.queryForMap(
+                "SELECT open_rate, close_rate FROM exchange_rate_ohlc WHERE currency = 'USD' AND bucket_start = ?",
+                start.plusMinutes(299));
+        assertThat((BigDecimal) last.get("OPEN_RATE")).isEqualByComparingTo("389");
+        assertThat((BigDecimal) last.get("CLOSE_RATE")).isEqualByComparingTo("390");
+    }
+
+    private int count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+}
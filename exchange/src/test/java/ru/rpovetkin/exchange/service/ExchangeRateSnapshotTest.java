@@ -0,0 +1,61 @@
+package ru.rpovetkin.exchange.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.rpovetkin.exchange.dto.ExchangeRateDto;
+import ru.rpovetkin.exchange.enums.Currency;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class ExchangeRateSnapshotTest {
+
+    private final ExchangeRateSnapshot snapshot = ExchangeRateSnapshot.of(Map.of(
+            Currency.USD, new BigDecimal("90.000000"),
+            Currency.CNY, new BigDecimal("12.500000")), 1L);
+
+    @Test
+    @DisplayName("Матрица содержит прямые, обратные и кросс-курсы")
+    void getRate_shouldReturnPrecomputedRates() {
+        assertThat(snapshot.getRate(Currency.USD, Currency.RUB).getRate()).isEqualByComparingTo("90");
+        assertThat(snapshot.getRate(Currency.RUB, Currency.USD).getRate()).isEqualByComparingTo("0.011111");
+        assertThat(snapshot.getRate(Currency.USD, Currency.CNY).getRate()).isEqualByComparingTo("7.2");
+        assertThat(snapshot.getRate(Currency.CNY, Currency.CNY).getRate()).isEqualByComparingTo("1");
+        assertThat(snapshot.getRate(Currency.CNY, Currency.USD).getDescription()).isEqualTo("1 CNY = 0.138889 USD");
+    }
+
+    @Test
+    @DisplayName("Повторное чтение возвращает те же объекты без пересчета")
+    void reads_shouldNotAllocate() {
+        assertThat(snapshot.getRate(Currency.USD, Currency.CNY)).isSameAs(snapshot.getRate(Currency.USD, Currency.CNY));
+        assertThat(snapshot.getAllRates()).isSameAs(snapshot.getAllRates());
+    }
+
+    @Test
+    @DisplayName("Список всех курсов совпадает с прежним порядком: к RUB, от RUB, кросс-курсы")
+    void getAllRates_shouldKeepOrder() {
+        assertThat(snapshot.getAllRates())
+                .extracting(ExchangeRateDto::getFromCurrency, ExchangeRateDto::getToCurrency)
+                .containsExactly(
+                        tuple(Currency.USD, Currency.RUB),
+                        tuple(Currency.CNY, Currency.RUB),
+                        tuple(Currency.RUB, Currency.USD),
+                        tuple(Currency.RUB, Currency.CNY),
+                        tuple(Currency.USD, Currency.CNY),
+                        tuple(Currency.CNY, Currency.USD));
+    }
+
+    @Test
+    @DisplayName("Обновление сохраняет курсы валют, отсутствующих в сообщении")
+    void withRates_shouldMergeWithPreviousSnapshot() {
+        ExchangeRateSnapshot updated = snapshot.withRates(Map.of(Currency.USD, new BigDecimal("100")), 2L);
+
+        assertThat(updated.getRate(Currency.USD, Currency.RUB).getRate()).isEqualByComparingTo("100");
+        assertThat(updated.getRate(Currency.CNY, Currency.RUB).getRate()).isEqualByComparingTo("12.5");
+        assertThat(updated.getTimestamp()).isEqualTo(2L);
+        assertThat(ExchangeRateSnapshot.EMPTY.getRate(Currency.USD, Currency.RUB)).isNull();
+    }
+}
@@ -0,0 +1,114 @@
+package ru.rpovetkin.exchange.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.rpovetkin.exchange.enums.Currency;
+import ru.rpovetkin.exchange.event.ExchangeRatesUpdatedEvent;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+class ExchangeRateStreamServiceTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ExchangeRateStreamService streamService;
+
+    @BeforeEach
+    void setUp() {
+        ExchangeRateService exchangeRateService = mock(ExchangeRateService.class);
+        given(exchangeRateService.getAllExchangeRates()).willReturn(List.of());
+        streamService = new ExchangeRateStreamService(exchangeRateService);
+        ReflectionTestUtils.setField(streamService, "stallTimeout", Duration.ofSeconds(30));
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        streamService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Зависший клиент не задерживает остальных и получает только последний снимок")
+    void stalledSubscriber_shouldNotDelayOthersAndKeepOnlyLatestSnapshot() {
+        RecordingEmitter slow = new RecordingEmitter(release);
+        RecordingEmitter fast = new RecordingEmitter(null);
+        streamService.subscribe(slow);
+        streamService.subscribe(fast);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> slow.attempts.size() == 1 && fast.sent.size() == 1);
+
+        for (int i = 1; i <= 50; i++) {
+            streamService.onRatesUpdated(update(i));
+        }
+
+        // Быстрый клиент получает снимки, пока отправка медленному висит на первом событии
+        await().atMost(5, TimeUnit.SECONDS).until(() -> fast.sent.size() > 1);
+        assertThat(slow.sent).isEmpty();
+
+        release.countDown();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> slow.sent.size() == 2);
+        // Первое (начальное) событие и последний снимок; промежуточные заменены
+        assertThat(slow.attempts).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Клиент, отправка которому висит дольше stall-timeout, отключается")
+    void heartbeat_shouldDropStalledSubscriber() {
+        ReflectionTestUtils.setField(streamService, "stallTimeout", Duration.ofMillis(50));
+        RecordingEmitter slow = new RecordingEmitter(release);
+        streamService.subscribe(slow);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> slow.attempts.size() == 1);
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+            streamService.heartbeat();
+            assertThat(streamService.getSubscriberCount()).isZero();
+        });
+    }
+
+    private static ExchangeRatesUpdatedEvent update(long timestamp) {
+        return new ExchangeRatesUpdatedEvent(ExchangeRateSnapshot.of(
+                Map.of(Currency.USD, BigDecimal.valueOf(90 + timestamp)), timestamp));
+    }
+
+    /**
+     * Emitter без HTTP ответа: запоминает отправки, при заданном latch первая отправка ждет его
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        final List<SseEventBuilder> attempts = new CopyOnWriteArrayList<>();
+        final List<SseEventBuilder> sent = new CopyOnWriteArrayList<>();
+        private final CountDownLatch firstSendGate;
+
+        RecordingEmitter(CountDownLatch firstSendGate) {
+            this.firstSendGate = firstSendGate;
+        }
+
+        @Override
+        public void send(SseEventBuilder event) throws IOException {
+            attempts.add(event);
+            if (firstSendGate != null && attempts.size() == 1) {
+                try {
+                    firstSendGate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            sent.add(event);
+        }
+    }
+}
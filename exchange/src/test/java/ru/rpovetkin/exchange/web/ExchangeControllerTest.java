@@ -9,15 +9,18 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.rpovetkin.exchange.dto.ExchangeRateUpdateDto;
 import ru.rpovetkin.exchange.enums.Currency;
 import ru.rpovetkin.exchange.service.ExchangeRateService;
+import ru.rpovetkin.exchange.service.ExchangeRateStreamService;
 
 import java.util.Collections;
 
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = ExchangeController.class)
@@ -33,6 +36,9 @@ class ExchangeControllerTest {
     @MockBean
     private ExchangeRateService exchangeRateService;
 
+    @MockBean
+    private ExchangeRateStreamService exchangeRateStreamService;
+
     @Test
     @DisplayName("GET /api/exchange/health returns OK")
     void health_shouldReturnOk() throws Exception {
@@ -49,6 +55,15 @@ class ExchangeControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    @DisplayName("GET /api/exchange/rates/stream opens event stream")
+    void streamRates_shouldStartAsync() throws Exception {
+        given(exchangeRateStreamService.subscribe()).willReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/exchange/rates/stream").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+    }
+
     @Test
     @DisplayName("POST /api/exchange/rates/update returns 200 on success")
     void updateRates_success() throws Exception {
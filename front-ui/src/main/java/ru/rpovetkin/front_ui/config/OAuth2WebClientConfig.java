@@ -15,6 +15,7 @@ import org.springframework.security.oauth2.client.registration.InMemoryClientReg
 import org.springframework.security.oauth2.client.web.reactive.function.client.ServletOAuth2AuthorizedClientExchangeFilterFunction;
 import org.springframework.security.oauth2.core.AuthorizationGrantType;
 import org.springframework.web.reactive.function.client.WebClient;
+import ru.rpovetkin.http.WebClientFactory;
 
 @Configuration
 public class OAuth2WebClientConfig {
@@ -65,12 +66,13 @@ public class OAuth2WebClientConfig {
 
     @Bean
     @Primary
-    public WebClient oAuth2WebClient(OAuth2AuthorizedClientManager authorizedClientManager) {
+    public WebClient oAuth2WebClient(OAuth2AuthorizedClientManager authorizedClientManager,
+                                     WebClientFactory webClientFactory) {
         ServletOAuth2AuthorizedClientExchangeFilterFunction oauth2Client =
                 new ServletOAuth2AuthorizedClientExchangeFilterFunction(authorizedClientManager);
         oauth2Client.setDefaultClientRegistrationId("keycloak");
         
-        return WebClient.builder()
+        return webClientFactory.builder()
                 .filter(oauth2Client)
                 .build();
     }
@@ -16,4 +16,8 @@ public class CashOperationResponse {
     private String message;
     private List<String> errors;
     private AccountDto account;
+    /**
+     * Результат операции неизвестен (ответ не получен); повтор с тем же Idempotency-Key не проведет ее дважды
+     */
+    private boolean pending;
 }
@@ -16,4 +16,9 @@ public class TransferResponse {
     private String message;
     private List<String> errors;
     private String transferId;
+    /**
+     * Результат перевода неизвестен; повтор с тем же Idempotency-Key не проведет его дважды
+     */
+    private boolean pending;
+    private String idempotencyKey;
 }
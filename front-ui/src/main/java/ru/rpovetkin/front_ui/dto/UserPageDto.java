@@ -0,0 +1,28 @@
+package ru.rpovetkin.front_ui.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Страница справочника получателей переводов из accounts
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPageDto {
+    private List<UserDto> users;
+
+    /**
+     * Login, начиная после которого запрашивается следующая страница; null - страниц больше нет
+     */
+    private String nextAfter;
+
+    public static UserPageDto empty() {
+        return new UserPageDto(List.of(), null);
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Mono;
 import ru.rpovetkin.front_ui.dto.AccountApiResponse;
 import ru.rpovetkin.front_ui.dto.AuthenticationRequest;
@@ -20,11 +21,11 @@ import ru.rpovetkin.front_ui.dto.CreateAccountRequest;
 import ru.rpovetkin.front_ui.dto.UpdateUserDataRequest;
 import ru.rpovetkin.front_ui.dto.UpdateUserDataResponse;
 import ru.rpovetkin.front_ui.dto.UserDto;
+import ru.rpovetkin.front_ui.dto.UserPageDto;
 import ru.rpovetkin.front_ui.dto.UserRegistrationRequest;
 import ru.rpovetkin.front_ui.dto.UserRegistrationResponse;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -106,31 +107,30 @@ public class AccountsService {
                 });
     }
     
-    public Mono<List<UserDto>> getAllUsers() {
-        log.info("Getting all users for transfer recipients");
+    /**
+     * Страница справочника получателей переводов: поиск по началу login или имени, keyset-пагинация по login
+     */
+    public Mono<UserPageDto> searchUsers(String query, String after, int limit) {
+        log.debug("Searching transfer recipients: q={}, after={}, limit={}", query, after, limit);
+        
+        UriComponentsBuilder uri = UriComponentsBuilder.fromUriString(accountsServiceUrl + "/api/users")
+                .queryParam("limit", limit);
+        if (query != null && !query.isBlank()) {
+            uri.queryParam("q", query.trim());
+        }
+        if (after != null && !after.isBlank()) {
+            uri.queryParam("after", after);
+        }
         
-        log.debug("Using accounts service URL: {}", accountsServiceUrl);
         return webClient
                 .get()
-                .uri(accountsServiceUrl + "/api/users")
+                .uri(uri.encode().build().toUri())
                 .retrieve()
-                .bodyToMono(List.class)
-                .map(response -> {
-                    if (response != null) {
-                        @SuppressWarnings("unchecked")
-                        List<Object> responseList = (List<Object>) response;
-                        List<UserDto> users = responseList.stream()
-                                .map(this::convertToUserDto)
-                                .filter(user -> user != null)
-                                .toList();
-                        
-                        log.info("Retrieved {} users for transfer recipients", users.size());
-                        return users;
-                    }
-                    return new ArrayList<UserDto>();
-                })
-                .doOnError(error -> log.error("Error getting all users: {}", error.getMessage(), error))
-                .onErrorReturn(new ArrayList<UserDto>());
+                .bodyToMono(UserPageDto.class)
+                .doOnSuccess(page -> log.debug("Retrieved {} transfer recipients",
+                        page != null && page.getUsers() != null ? page.getUsers().size() : 0))
+                .doOnError(error -> log.error("Error searching users: {}", error.getMessage(), error))
+                .onErrorReturn(UserPageDto.empty());
     }
     
     public Mono<ChangePasswordResponse> changePassword(ChangePasswordRequest request) {
@@ -264,7 +264,7 @@ public class AccountsService {
         return null;
     }
     
-    private List<AccountDto> createEmptyAccountsList() {
+    public List<AccountDto> createEmptyAccountsList() {
         return List.of(
             AccountDto.builder().currency(Currency.RUB).balance(BigDecimal.ZERO).exists(false).build(),
             AccountDto.builder().currency(Currency.USD).balance(BigDecimal.ZERO).exists(false).build(),
@@ -58,7 +58,7 @@ public class CashService {
     /**
      * Выполнить операцию пополнения наличными
      */
-    public Mono<CashOperationResponse> deposit(String login, Currency currency, BigDecimal amount) {
+    public Mono<CashOperationResponse> deposit(String login, Currency currency, BigDecimal amount, String idempotencyKey) {
         log.info("Cash deposit request for user {} in currency {} amount {}", login, currency, amount);
         
         CashOperationRequest request = CashOperationRequest.builder()
@@ -68,13 +68,13 @@ public class CashService {
                 .operation("deposit")
                 .build();
         
-        return performCashOperation(request, "/api/cash/deposit");
+        return performCashOperation(request, "/api/cash/deposit", idempotencyKey);
     }
 
     /**
      * Выполнить операцию снятия наличными
      */
-    public Mono<CashOperationResponse> withdraw(String login, Currency currency, BigDecimal amount) {
+    public Mono<CashOperationResponse> withdraw(String login, Currency currency, BigDecimal amount, String idempotencyKey) {
         log.info("Cash withdrawal request for user {} in currency {} amount {}", login, currency, amount);
         
         CashOperationRequest request = CashOperationRequest.builder()
@@ -84,14 +84,19 @@ public class CashService {
                 .operation("withdraw")
                 .build();
         
-        return performCashOperation(request, "/api/cash/withdraw");
+        return performCashOperation(request, "/api/cash/withdraw", idempotencyKey);
     }
 
-    private Mono<CashOperationResponse> performCashOperation(CashOperationRequest request, String endpoint) {
+    /**
+     * Ключ формы передается в Idempotency-Key: повторная отправка той же формы не проведет операцию дважды
+     */
+    private Mono<CashOperationResponse> performCashOperation(CashOperationRequest request, String endpoint,
+                                                             String idempotencyKey) {
         log.debug("Using cash service URL: {}", cashServiceUrl);
         return webClient
                 .post()
                 .uri(cashServiceUrl + endpoint)
+                .headers(h -> { if (idempotencyKey != null && !idempotencyKey.isBlank()) h.set(TransferService.IDEMPOTENCY_KEY_HEADER, idempotencyKey); })
                 .bodyValue(request)
                 .exchangeToMono(clientResponse -> {
                     if (clientResponse.statusCode().is2xxSuccessful()) {
@@ -104,14 +109,17 @@ public class CashService {
                                         .message("Операция заблокирована системой безопасности")
                                         .build());
                     } else {
+                        // Ответ 5xx не означает, что операция не проведена
                         return Mono.just(CashOperationResponse.builder()
                                 .success(false)
+                                .pending(true)
                                 .message("Сервис наличных временно недоступен")
                                 .build());
                     }
                 })
                 .onErrorReturn(CashOperationResponse.builder()
                         .success(false)
+                        .pending(true)
                         .message("Ошибка соединения с сервисом наличных")
                         .build())
                 .doOnSuccess(response -> {
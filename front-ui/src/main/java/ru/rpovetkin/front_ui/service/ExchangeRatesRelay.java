@@ -0,0 +1,101 @@
+package ru.rpovetkin.front_ui.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+import ru.rpovetkin.front_ui.dto.CurrencyRateDisplayDto;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Ретранслятор курсов валют: держит одну подписку на поток exchange сервиса
+ * и раздает последние курсы всем сессиям браузера вместо опроса exchange на каждый запрос
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExchangeRatesRelay {
+
+    private final ExchangeService exchangeService;
+
+    /**
+     * Новый подписчик сразу получает последние курсы
+     */
+    private final Sinks.Many<List<CurrencyRateDisplayDto>> ratesSink = Sinks.many().replay().latest();
+
+    private volatile List<CurrencyRateDisplayDto> latestRates;
+    private volatile Instant latestRatesAt = Instant.EPOCH;
+    private Disposable upstream;
+
+    @Value("${exchange.stream.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Если поток молчит дольше, курсы считаются устаревшими и запрашиваются напрямую
+     */
+    @Value("${exchange.stream.stale-after:10s}")
+    private Duration staleAfter;
+
+    @Value("${exchange.stream.max-backoff:30s}")
+    private Duration maxBackoff;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Exchange rates stream relay is disabled");
+            return;
+        }
+        upstream = exchangeService.streamExchangeRatesForDisplay()
+                // Завершение upstream (таймаут SSE на стороне exchange) обрабатываем как ошибку для переподключения
+                .concatWith(Mono.error(new IllegalStateException("Exchange rates stream completed")))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(maxBackoff)
+                        .transientErrors(true)
+                        .doBeforeRetry(signal -> log.warn("Reconnecting to exchange rates stream: {}",
+                                signal.failure().getMessage())))
+                .subscribe(this::onRates);
+        log.info("Exchange rates stream relay started");
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (upstream != null) {
+            upstream.dispose();
+        }
+    }
+
+    /**
+     * Поток курсов для браузеров (одна upstream подписка на всех)
+     */
+    public Flux<List<CurrencyRateDisplayDto>> ratesStream() {
+        return ratesSink.asFlux();
+    }
+
+    /**
+     * Последние курсы из потока, а если их нет или они устарели - разовый запрос к exchange
+     */
+    public Mono<List<CurrencyRateDisplayDto>> getRatesForDisplay() {
+        List<CurrencyRateDisplayDto> rates = latestRates;
+        if (rates != null && latestRatesAt.plus(staleAfter).isAfter(Instant.now())) {
+            return Mono.just(rates);
+        }
+        return exchangeService.getExchangeRatesForDisplay();
+    }
+
+    private void onRates(List<CurrencyRateDisplayDto> rates) {
+        latestRates = rates;
+        latestRatesAt = Instant.now();
+        ratesSink.tryEmitNext(rates);
+    }
+}
@@ -3,92 +3,108 @@ package ru.rpovetkin.front_ui.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClientRequest;
 import ru.rpovetkin.front_ui.dto.CurrencyRateDisplayDto;
+import ru.rpovetkin.front_ui.dto.ExchangeRateDto;
+import ru.rpovetkin.http.DownstreamGuard;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ExchangeService {
 
+    private static final ParameterizedTypeReference<ServerSentEvent<List<ExchangeRateDto>>> RATES_EVENT_TYPE =
+            new ParameterizedTypeReference<>() {};
+
     private final WebClient webClient;
+    private final DownstreamGuard downstreamGuard;
 
     @Value("${exchange.service.url}")
     private String exchangeServiceUrl;
 
     /**
-     * Получить курсы валют для отображения на фронте
+     * Пауза без событий и heartbeat в потоке курсов, после которой соединение считается оборванным.
+     * Заменяет общий bankapp.http-client.response-timeout, который короче heartbeat exchange сервиса
+     */
+    @Value("${exchange.stream.idle-timeout:45s}")
+    private Duration streamIdleTimeout = Duration.ofSeconds(45);
+
+    /**
+     * Получить курсы валют для отображения на фронте (разовый запрос к exchange сервису)
      */
     public Mono<List<CurrencyRateDisplayDto>> getExchangeRatesForDisplay() {
         log.debug("Getting exchange rates from exchange service for display");
 
         log.debug("Using exchange service URL: {}", exchangeServiceUrl);
+        return downstreamGuard.protect("exchange", webClient
+                        .get()
+                        .uri(exchangeServiceUrl + "/api/exchange/rates")
+                        .retrieve()
+                        .bodyToFlux(ExchangeRateDto.class)
+                        .collectList())
+                .map(this::convertToDisplayFormat)
+                .doOnError(error -> log.error("Error getting exchange rates from exchange service: {}", error.getMessage(), error))
+                .onErrorReturn(getDefaultRates());
+    }
+
+    /**
+     * Поток курсов валют от exchange сервиса (server-sent events), уже в формате для отображения.
+     * Завершается вместе с upstream соединением, переподключение - на стороне вызывающего
+     */
+    public Flux<List<CurrencyRateDisplayDto>> streamExchangeRatesForDisplay() {
+        log.debug("Subscribing to exchange rates stream: {}", exchangeServiceUrl);
         return webClient
                 .get()
-                .uri(exchangeServiceUrl + "/api/exchange/rates")
-                .retrieve()
-                .bodyToMono(List.class)
-                .map(response -> {
-                    if (response != null) {
-                        @SuppressWarnings("unchecked")
-                        List<Object> responseList = (List<Object>) response;
-                        return convertToDisplayFormat(responseList);
-                    }
-                    return getDefaultRates();
+                .uri(exchangeServiceUrl + "/api/exchange/rates/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .httpRequest(request -> {
+                    HttpClientRequest nativeRequest = request.getNativeRequest();
+                    nativeRequest.responseTimeout(streamIdleTimeout);
                 })
-                .doOnError(error -> log.error("Error getting exchange rates from exchange service: {}", error.getMessage(), error))
-                .onErrorReturn(getDefaultRates());
+                .retrieve()
+                .bodyToFlux(RATES_EVENT_TYPE)
+                .filter(event -> event.data() != null)
+                .map(event -> convertToDisplayFormat(event.data()));
     }
 
     /**
      * Конвертировать ответ от exchange сервиса в формат для отображения
      */
-    private List<CurrencyRateDisplayDto> convertToDisplayFormat(List<Object> exchangeRates) {
+    private List<CurrencyRateDisplayDto> convertToDisplayFormat(List<ExchangeRateDto> exchangeRates) {
         List<CurrencyRateDisplayDto> displayRates = new ArrayList<>();
 
-        try {
-            // Добавляем RUB как базовую валюту с курсом 1.00
-            CurrencyRateDisplayDto rubRate = CurrencyRateDisplayDto.builder()
-                    .title("Российский рубль")
-                    .name("RUB")
-                    .value("1.00")
-                    .build();
-            displayRates.add(rubRate);
-
-            for (Object rateObj : exchangeRates) {
-                if (rateObj instanceof Map) {
-                    @SuppressWarnings("unchecked")
-                    Map<String, Object> rateMap = (Map<String, Object>) rateObj;
-                    
-                    String fromCurrency = (String) rateMap.get("fromCurrency");
-                    String toCurrency = (String) rateMap.get("toCurrency");
-                    Object rateValue = rateMap.get("rate");
-
-                    // Показываем только курсы к RUB
-                    if ("RUB".equals(toCurrency) && !"RUB".equals(fromCurrency)) {
-                        String title = getCurrencyTitle(fromCurrency);
-                        String value = formatRate(rateValue);
-
-                        CurrencyRateDisplayDto displayRate = CurrencyRateDisplayDto.builder()
-                                .title(title)
-                                .name(fromCurrency)
-                                .value(value)
-                                .build();
-
-                        displayRates.add(displayRate);
-                    }
-                }
+        // Добавляем RUB как базовую валюту с курсом 1.00
+        CurrencyRateDisplayDto rubRate = CurrencyRateDisplayDto.builder()
+                .title("Российский рубль")
+                .name("RUB")
+                .value("1.00")
+                .build();
+        displayRates.add(rubRate);
+
+        for (ExchangeRateDto rate : exchangeRates) {
+            // Показываем только курсы к RUB
+            if ("RUB".equals(rate.getToCurrency()) && !"RUB".equals(rate.getFromCurrency())) {
+                CurrencyRateDisplayDto displayRate = CurrencyRateDisplayDto.builder()
+                        .title(getCurrencyTitle(rate.getFromCurrency()))
+                        .name(rate.getFromCurrency())
+                        .value(formatRate(rate.getRate()))
+                        .build();
+
+                displayRates.add(displayRate);
             }
-        } catch (Exception e) {
-            log.error("Error converting exchange rates to display format: {}", e.getMessage(), e);
         }
 
         return displayRates;
@@ -113,16 +129,11 @@ public class ExchangeService {
     /**
      * Форматировать курс для отображения
      */
-    private String formatRate(Object rateValue) {
-        try {
-            if (rateValue instanceof Number) {
-                BigDecimal rate = new BigDecimal(rateValue.toString());
-                return rate.setScale(2, RoundingMode.HALF_UP).toPlainString();
-            }
-            return rateValue.toString();
-        } catch (Exception e) {
+    private String formatRate(BigDecimal rate) {
+        if (rate == null) {
             return "N/A";
         }
+        return rate.setScale(2, RoundingMode.HALF_UP).toPlainString();
     }
 
     /**
@@ -10,12 +10,15 @@ import ru.rpovetkin.front_ui.dto.TransferRequest;
 import ru.rpovetkin.front_ui.dto.TransferResponse;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class TransferService {
 
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final WebClient webClient;
 
     @Value("${transfer.service.url}")
@@ -24,18 +27,21 @@ public class TransferService {
     /**
      * Выполнить перевод между пользователями
      */
-    public Mono<TransferResponse> executeTransfer(String fromUser, String toUser, String currency, BigDecimal amount, String description) {
+    public Mono<TransferResponse> executeTransfer(String fromUser, String toUser, String currency, BigDecimal amount,
+                                                  String description, String idempotencyKey) {
         log.info("Transfer request from {} to {} amount {} {} - {}", fromUser, toUser, amount, currency, description);
         
         // Backward-compatible single-currency call delegates to dual-currency overload
-        return executeTransfer(fromUser, toUser, currency, currency, amount, amount, description);
+        return executeTransfer(fromUser, toUser, currency, currency, amount, amount, description, idempotencyKey);
     }
 
     /**
-     * Выполнить перевод между пользователями с поддержкой разных валют
+     * Выполнить перевод между пользователями с поддержкой разных валют.
+     * Ключ формы передается в Idempotency-Key: повторная отправка той же формы не проведет перевод дважды
      */
     public Mono<TransferResponse> executeTransfer(String fromUser, String toUser, String fromCurrency, String toCurrency,
-                                            BigDecimal amountFrom, BigDecimal amountTo, String description) {
+                                            BigDecimal amountFrom, BigDecimal amountTo, String description,
+                                            String idempotencyKey) {
         log.info("Transfer request from {} to {}: {} {} -> {} {} - {}",
                 fromUser, toUser, amountFrom, fromCurrency, amountTo, toCurrency, description);
 
@@ -55,6 +61,7 @@ public class TransferService {
         return webClient
                 .post()
                 .uri(transferServiceUrl + "/api/transfer/execute")
+                .headers(h -> { if (idempotencyKey != null && !idempotencyKey.isBlank()) h.set(IDEMPOTENCY_KEY_HEADER, idempotencyKey); })
                 .bodyValue(request)
                 .exchangeToMono(clientResponse -> {
                     if (clientResponse.statusCode().is2xxSuccessful()) {
@@ -67,16 +74,11 @@ public class TransferService {
                                         .message("Операция отклонена")
                                         .build());
                     } else {
-                        return Mono.just(TransferResponse.builder()
-                                .success(false)
-                                .message("Сервис переводов временно недоступен")
-                                .build());
+                        // Ответ 5xx не означает, что перевод не проведен
+                        return Mono.just(unknownOutcome(idempotencyKey, "Сервис переводов временно недоступен"));
                     }
                 })
-                .onErrorReturn(TransferResponse.builder()
-                        .success(false)
-                        .message("Ошибка соединения с сервисом переводов")
-                        .build())
+                .onErrorResume(error -> Mono.just(unknownOutcome(idempotencyKey, "Ошибка соединения с сервисом переводов")))
                 .doOnSuccess(response -> {
                     log.info("Transfer result from {} to {}: {}", fromUser, toUser, response.isSuccess());
                     if (!response.isSuccess()) {
@@ -89,4 +91,14 @@ public class TransferService {
                         .message("Transfer service unavailable")
                         .build());
     }
+
+    private static TransferResponse unknownOutcome(String idempotencyKey, String message) {
+        return TransferResponse.builder()
+                .success(false)
+                .pending(true)
+                .idempotencyKey(idempotencyKey)
+                .message(message)
+                .errors(List.of(message + ": результат перевода неизвестен"))
+                .build();
+    }
 }
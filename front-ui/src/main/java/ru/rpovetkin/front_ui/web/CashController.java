@@ -25,7 +25,9 @@ public class CashController {
     
     
     /**
-     * Операции с наличными (пополнение/снятие)
+     * Операции с наличными (пополнение/снятие).
+     * idempotency_key - ключ, выданный форме при отрисовке страницы; если результат операции неизвестен,
+     * форма получает тот же ключ обратно, и повторная отправка не проведет операцию дважды
      */
     @PostMapping("/user/{login}/cash")
     public String cashOperation(
@@ -33,6 +35,7 @@ public class CashController {
             @RequestParam String currency,
             @RequestParam String amount,
             @RequestParam String operation, // "deposit" или "withdraw"
+            @RequestParam(required = false) String idempotency_key,
             Model model,
             RedirectAttributes redirectAttributes) {
 
@@ -58,9 +61,9 @@ public class CashController {
 
             CashOperationResponse response;
             if ("deposit".equals(operation)) {
-                response = cashService.deposit(login, curr, amt).block();
+                response = cashService.deposit(login, curr, amt, idempotency_key).block();
             } else if ("withdraw".equals(operation)) {
-                response = cashService.withdraw(login, curr, amt).block();
+                response = cashService.withdraw(login, curr, amt, idempotency_key).block();
             } else {
                 redirectAttributes.addFlashAttribute("cashErrors", List.of("Неизвестная операция"));
                 return "redirect:/main";
@@ -70,6 +73,10 @@ public class CashController {
                 log.info("Cash operation {} successful for user: {}", operation, login);
                 String message = "deposit".equals(operation) ? "Средства успешно внесены" : "Средства успешно сняты";
                 redirectAttributes.addFlashAttribute("cashSuccess", message);
+            } else if (response.isPending()) {
+                log.warn("Cash operation {} outcome unknown for user {} (Idempotency-Key {})", operation, login, idempotency_key);
+                redirectAttributes.addFlashAttribute("cashErrors", List.of(TransferController.PENDING_MESSAGE));
+                redirectAttributes.addFlashAttribute(MainController.CASH_KEY_ATTRIBUTE, idempotency_key);
             } else {
                 log.warn("Cash operation {} failed for user {}: {}", operation, login, response.getMessage());
                 redirectAttributes.addFlashAttribute("cashErrors", 
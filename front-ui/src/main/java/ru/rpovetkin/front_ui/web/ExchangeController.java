@@ -2,11 +2,15 @@ package ru.rpovetkin.front_ui.web;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import reactor.core.publisher.Flux;
 import ru.rpovetkin.front_ui.dto.CurrencyRateDisplayDto;
-import ru.rpovetkin.front_ui.service.ExchangeService;
+import ru.rpovetkin.front_ui.service.ExchangeRatesRelay;
 
 import java.util.List;
 
@@ -15,7 +19,7 @@ import java.util.List;
 @Slf4j
 public class ExchangeController {
     
-    private final ExchangeService exchangeService;
+    private final ExchangeRatesRelay exchangeRatesRelay;
     
     /**
      * API эндпоинт для получения курсов валют (для JavaScript на фронте)
@@ -25,7 +29,7 @@ public class ExchangeController {
         log.info("Request to get exchange rates for display");
         
         try {
-            List<CurrencyRateDisplayDto> rates = exchangeService.getExchangeRatesForDisplay().block();
+            List<CurrencyRateDisplayDto> rates = exchangeRatesRelay.getRatesForDisplay().block();
             return ResponseEntity.ok(rates);
         } catch (Exception e) {
             log.error("Error getting exchange rates: {}", e.getMessage(), e);
@@ -33,4 +37,14 @@ public class ExchangeController {
             return ResponseEntity.ok(List.of());
         }
     }
+
+    /**
+     * Поток курсов валют для браузера (server-sent events)
+     */
+    @GetMapping(path = "/api/rates/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public Flux<ServerSentEvent<List<CurrencyRateDisplayDto>>> streamExchangeRates() {
+        return exchangeRatesRelay.ratesStream()
+                .map(rates -> ServerSentEvent.builder(rates).event("rates").build());
+    }
 }
@@ -2,128 +2,150 @@ package ru.rpovetkin.front_ui.web;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import reactor.core.publisher.Mono;
 import ru.rpovetkin.front_ui.dto.AccountDto;
 import ru.rpovetkin.front_ui.dto.Currency;
 import ru.rpovetkin.front_ui.dto.UserDto;
 import ru.rpovetkin.front_ui.service.AccountsService;
-import ru.rpovetkin.front_ui.service.CashService;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 @Controller
 @RequiredArgsConstructor
 @Slf4j
 public class MainController {
-    
+
+    /**
+     * Ключи Idempotency-Key форм наличных, перевода себе и перевода другому
+     */
+    static final String CASH_KEY_ATTRIBUTE = "cashIdempotencyKey";
+    static final String TRANSFER_KEY_ATTRIBUTE = "transferIdempotencyKey";
+    static final String TRANSFER_OTHER_KEY_ATTRIBUTE = "transferOtherIdempotencyKey";
+
     private final AccountsService accountsService;
-    private final CashService cashService;
-    
+
+    /**
+     * Таймаут каждого вызова при сборке главной страницы; после него блок страницы отображается без данных
+     */
+    @Value("${main.page.call-timeout:2s}")
+    private Duration callTimeout = Duration.ofSeconds(2);
+
+    /**
+     * Размер страницы справочника получателей, встраиваемой в главную страницу
+     */
+    @Value("${main.page.recipients-page-size:20}")
+    private int recipientsPageSize = 20;
+
+    /**
+     * Главная страница: данные пользователя, счета и список получателей запрашиваются параллельно.
+     * Валюты для наличных операций (cash отдает те же существующие счета из accounts) берутся из списка счетов
+     */
     @GetMapping("/main")
-    public String mainPage(Model model) {
+    public Mono<String> mainPage(Model model) {
         log.info("Accessing main page");
-        
+
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String username = authentication.getName();
-        
+
         log.info("Current authenticated user: {}", username);
-        
-        try {
-            UserDto user = accountsService.getUserByLogin(username).block();
-            if (user != null) {
-                model.addAttribute("login", user.getLogin());
-                model.addAttribute("name", user.getName());
-                model.addAttribute("birthdate", user.getBirthdate());
-            } else {
-                log.warn("User not found: {}", username);
-                model.addAttribute("login", username);
-                model.addAttribute("name", "Пользователь");
-                model.addAttribute("birthdate", "");
-            }
-        } catch (Exception e) {
-            log.error("Error getting user data: {}", e.getMessage());
+
+        Mono<Optional<UserDto>> user = accountsService.getUserByLogin(username)
+                .map(Optional::of)
+                .timeout(callTimeout)
+                .doOnError(e -> log.error("Error getting user data: {}", e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .defaultIfEmpty(Optional.empty());
+
+        Mono<List<AccountDto>> accounts = accountsService.getUserAccounts(username)
+                .timeout(callTimeout)
+                .doOnError(e -> log.error("Error getting accounts for user {}: {}", username, e.getMessage()))
+                .onErrorResume(e -> Mono.just(accountsService.createEmptyAccountsList()))
+                .defaultIfEmpty(accountsService.createEmptyAccountsList());
+
+        // Первая страница справочника получателей, остальные подгружаются поиском через /user/recipients
+        Mono<List<UserDto>> users = accountsService.searchUsers(null, null, recipientsPageSize)
+                .map(page -> page.getUsers() != null ? page.getUsers() : List.<UserDto>of())
+                .timeout(callTimeout)
+                .doOnError(e -> log.error("Error getting users list: {}", e.getMessage()))
+                .onErrorResume(e -> Mono.just(List.of()))
+                .defaultIfEmpty(List.of());
+
+        return Mono.zip(user, accounts, users)
+                .map(page -> {
+                    addUserToModel(model, username, page.getT1());
+
+                    // Добавляем счета пользователя и валюты для наличных операций
+                    addAccountsToModel(model, username, page.getT2());
+
+                    // Добавляем список пользователей для переводов
+                    model.addAttribute("users", page.getT3());
+                    log.debug("Added {} users to model for transfers", page.getT3().size());
+
+                    addIdempotencyKeys(model);
+
+                    return "main";
+                });
+    }
+
+    private void addUserToModel(Model model, String username, Optional<UserDto> user) {
+        if (user.isPresent()) {
+            model.addAttribute("login", user.get().getLogin());
+            model.addAttribute("name", user.get().getName());
+            model.addAttribute("birthdate", user.get().getBirthdate());
+        } else {
+            log.warn("User not found: {}", username);
             model.addAttribute("login", username);
             model.addAttribute("name", "Пользователь");
             model.addAttribute("birthdate", "");
         }
-        
-        // Добавляем счета пользователя
-        addAccountsToModel(model, username);
-        
-        // Добавляем данные о доступных валютах для наличных операций
-        addCashDataToModel(model, username);
-        
-        // Добавляем список пользователей для переводов
-        addUsersToModel(model);
-        
-        return "main";
     }
 
     /**
-     * Добавить счета пользователя в модель для отображения на странице
+     * Каждая отрисовка формы получает новый ключ операции; ключ из flash-атрибута (результат прошлой отправки
+     * неизвестен) сохраняется, чтобы повторная отправка была распознана как та же операция
      */
-    private void addAccountsToModel(Model model, String username) {
-        try {
-            List<AccountDto> accounts = accountsService.getUserAccounts(username).block();
-            model.addAttribute("accounts", accounts);
-            
-            // Добавляем валюты для переводов (только те, для которых есть счета)
-            List<Currency> availableCurrencies = accounts.stream()
-                    .filter(AccountDto::isExists) // Только существующие счета
-                    .map(AccountDto::getCurrency)
-                    .distinct()
-                    .toList();
-            model.addAttribute("currency", availableCurrencies);
-            
-            // Добавляем счета для переводов (только существующие счета с балансами)
-            List<AccountDto> transferAccounts = accounts.stream()
-                    .filter(AccountDto::isExists) // Только существующие счета
-                    .toList();
-            model.addAttribute("transferAccounts", transferAccounts);
-            
-            log.debug("Added {} accounts and {} available currencies to model for user: {}", 
-                    accounts.size(), availableCurrencies.size(), username);
-        } catch (Exception e) {
-            log.error("Error getting accounts for user {}: {}", username, e.getMessage(), e);
-            // Добавляем пустой список счетов в случае ошибки
-            List<AccountDto> fallbackAccounts = accountsService.getUserAccounts(username).block();
-            model.addAttribute("accounts", fallbackAccounts);
-            model.addAttribute("currency", List.of()); // Пустой список валют при ошибке
-            model.addAttribute("transferAccounts", List.of()); // Пустой список счетов для переводов при ошибке
+    private void addIdempotencyKeys(Model model) {
+        for (String attribute : List.of(CASH_KEY_ATTRIBUTE, TRANSFER_KEY_ATTRIBUTE, TRANSFER_OTHER_KEY_ATTRIBUTE)) {
+            if (model.getAttribute(attribute) == null) {
+                model.addAttribute(attribute, UUID.randomUUID().toString());
+            }
         }
     }
 
     /**
-     * Добавить данные о доступных валютах для наличных операций в модель
-     */
-    private void addCashDataToModel(Model model, String username) {
-        try {
-            List<AccountDto> availableCurrencies = cashService.getAvailableCurrencies(username).block();
-            model.addAttribute("cashCurrencies", availableCurrencies);
-            log.debug("Added {} available currencies for cash operations for user: {}", availableCurrencies.size(), username);
-        } catch (Exception e) {
-            log.error("Error getting cash currencies for user {}: {}", username, e.getMessage(), e);
-            model.addAttribute("cashCurrencies", List.of());
-        }
-    }
-    
-    /**
-     * Добавить список пользователей для переводов в модель
+     * Добавить счета пользователя в модель для отображения на странице
      */
-    private void addUsersToModel(Model model) {
-        try {
-            List<UserDto> users = accountsService.getAllUsers().block();
-            model.addAttribute("users", users);
-            log.debug("Added {} users to model for transfers", users.size());
-        } catch (Exception e) {
-            log.error("Error getting users list: {}", e.getMessage(), e);
-            model.addAttribute("users", List.of());
-        }
+    private void addAccountsToModel(Model model, String username, List<AccountDto> accounts) {
+        model.addAttribute("accounts", accounts);
+
+        // Только существующие счета: для переводов и для наличных операций
+        List<AccountDto> existingAccounts = accounts.stream()
+                .filter(AccountDto::isExists)
+                .toList();
+
+        // Добавляем валюты для переводов (только те, для которых есть счета)
+        List<Currency> availableCurrencies = existingAccounts.stream()
+                .map(AccountDto::getCurrency)
+                .distinct()
+                .toList();
+        model.addAttribute("currency", availableCurrencies);
+
+        // Добавляем счета для переводов (только существующие счета с балансами)
+        model.addAttribute("transferAccounts", existingAccounts);
+
+        // Валюты для наличных операций - те же существующие счета
+        model.addAttribute("cashCurrencies", existingAccounts);
+
+        log.debug("Added {} accounts and {} available currencies to model for user: {}",
+                accounts.size(), availableCurrencies.size(), username);
     }
-    
-    
 }
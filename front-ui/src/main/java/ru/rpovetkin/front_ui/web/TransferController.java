@@ -15,7 +15,7 @@ import ru.rpovetkin.front_ui.dto.Currency;
 import ru.rpovetkin.front_ui.dto.CurrencyRateDisplayDto;
 import ru.rpovetkin.front_ui.dto.TransferResponse;
 import ru.rpovetkin.front_ui.service.AccountsService;
-import ru.rpovetkin.front_ui.service.ExchangeService;
+import ru.rpovetkin.front_ui.service.ExchangeRatesRelay;
 import ru.rpovetkin.front_ui.service.TransferService;
 
 import java.util.List;
@@ -26,12 +26,17 @@ import java.util.List;
 public class TransferController {
     
     private final AccountsService accountsService;
-    private final ExchangeService exchangeService;
+    private final ExchangeRatesRelay exchangeRatesRelay;
     private final TransferService transferService;
+
+    static final String PENDING_MESSAGE = "Результат операции пока неизвестен. Проверьте баланс: повторная отправка "
+            + "тех же данных не проведет ее дважды";
     
     
     /**
-     * Обработка переводов между счетами
+     * Обработка переводов между счетами.
+     * idempotency_key - ключ, выданный форме при отрисовке страницы; если результат перевода неизвестен,
+     * форма получает тот же ключ обратно, и повторная отправка не проведет перевод дважды
      */
     @PostMapping("/user/{login}/transfer")
     public String transfer(
@@ -40,6 +45,7 @@ public class TransferController {
             @RequestParam String to_currency,
             @RequestParam String value,
             @RequestParam(required = false) String to_login,
+            @RequestParam(required = false) String idempotency_key,
             Model model,
             RedirectAttributes redirectAttributes) {
         
@@ -70,16 +76,24 @@ public class TransferController {
             boolean isSelfTransfer = login.equals(targetUser);
             
             // Выполняем перевод с конвертацией валют
-            String result = performTransferWithConversion(login, targetUser, fromCurrency, toCurrency, amount);
+            TransferResponse result = performTransferWithConversion(
+                    login, targetUser, fromCurrency, toCurrency, amount, idempotency_key);
             
-            if ("SUCCESS".equals(result)) {
+            if (result.isSuccess()) {
                 String message = isSelfTransfer ? 
                     "Перевод между своими счетами выполнен успешно" : 
                     "Перевод другому пользователю выполнен успешно";
                 redirectAttributes.addFlashAttribute("transferSuccess", message);
+            } else if (result.isPending()) {
+                log.warn("Transfer outcome unknown for user {} (Idempotency-Key {})", login, idempotency_key);
+                redirectAttributes.addFlashAttribute(isSelfTransfer ? "transferErrors" : "transferOtherErrors",
+                        List.of(PENDING_MESSAGE));
+                redirectAttributes.addFlashAttribute(isSelfTransfer
+                        ? MainController.TRANSFER_KEY_ATTRIBUTE
+                        : MainController.TRANSFER_OTHER_KEY_ATTRIBUTE, idempotency_key);
             } else {
                 String errorAttribute = isSelfTransfer ? "transferErrors" : "transferOtherErrors";
-                redirectAttributes.addFlashAttribute(errorAttribute, List.of(result));
+                redirectAttributes.addFlashAttribute(errorAttribute, List.of(result.getMessage()));
             }
 
         } catch (NumberFormatException e) {
@@ -100,7 +114,9 @@ public class TransferController {
     /**
      * Выполнить перевод с конвертацией валют
      */
-    private String performTransferWithConversion(String fromUser, String toUser, Currency fromCurrency, Currency toCurrency, java.math.BigDecimal amount) {
+    private TransferResponse performTransferWithConversion(String fromUser, String toUser, Currency fromCurrency,
+                                                           Currency toCurrency, java.math.BigDecimal amount,
+                                                           String idempotencyKey) {
         try {
             log.info("Performing transfer with conversion: {} {} from {} ({}) to {} ({})", 
                     amount, fromCurrency, fromUser, fromCurrency, toUser, toCurrency);
@@ -110,7 +126,7 @@ public class TransferController {
             if (!fromCurrency.equals(toCurrency)) {
                 convertedAmount = convertCurrency(amount, fromCurrency, toCurrency);
                 if (convertedAmount == null) {
-                    return "Не удалось получить курс конвертации валют";
+                    return rejected("Не удалось получить курс конвертации валют");
                 }
                 log.info("Converted {} {} to {} {}", amount, fromCurrency, convertedAmount, toCurrency);
             }
@@ -123,11 +139,11 @@ public class TransferController {
                     .orElse(null);
                     
             if (fromAccount == null) {
-                return "У вас нет счета в валюте " + fromCurrency.getTitle();
+                return rejected("У вас нет счета в валюте " + fromCurrency.getTitle());
             }
             
             if (fromAccount.getBalance().compareTo(amount) < 0) {
-                return "Недостаточно средств на счете. Доступно: " + fromAccount.getBalance() + " " + fromCurrency.name();
+                return rejected("Недостаточно средств на счете. Доступно: " + fromAccount.getBalance() + " " + fromCurrency.name());
             }
             
             // Всегда используем transfer сервис (включая переводы между своими счетами),
@@ -137,7 +153,7 @@ public class TransferController {
                     .anyMatch(acc -> acc.getCurrency().equals(toCurrency) && acc.isExists());
 
             if (!hasTargetAccount) {
-                return "У получателя нет счета в валюте " + toCurrency.getTitle();
+                return rejected("У получателя нет счета в валюте " + toCurrency.getTitle());
             }
 
             log.info("Using transfer service for transfer from {} to {}", fromUser, toUser);
@@ -149,22 +165,33 @@ public class TransferController {
                     amount,
                     convertedAmount,
                     String.format("Transfer %s %s to %s (credit %s %s)",
-                            amount, fromCurrency.name(), toUser, convertedAmount, toCurrency.name())
+                            amount, fromCurrency.name(), toUser, convertedAmount, toCurrency.name()),
+                    idempotencyKey
             ).block();
 
             if (!transferResponse.isSuccess()) {
                 log.warn("Transfer service failed: {}", transferResponse.getMessage());
-                return transferResponse.getMessage() != null ? transferResponse.getMessage() : "Ошибка при выполнении перевода";
+                if (transferResponse.isPending()) {
+                    return transferResponse;
+                }
+                return rejected(transferResponse.getMessage() != null ? transferResponse.getMessage() : "Ошибка при выполнении перевода");
             }
 
             log.info("Transfer service succeeded for {} -> {}", fromUser, toUser);
-            return "SUCCESS";
+            return transferResponse;
             
         } catch (Exception e) {
             log.error("Error performing transfer with conversion: {}", e.getMessage(), e);
-            return "Произошла ошибка при выполнении перевода: " + e.getMessage();
+            return rejected("Произошла ошибка при выполнении перевода: " + e.getMessage());
         }
     }
+
+    private static TransferResponse rejected(String message) {
+        return TransferResponse.builder()
+                .success(false)
+                .message(message)
+                .build();
+    }
     
     /**
      * Конвертировать валюту через exchange сервис
@@ -179,7 +206,7 @@ public class TransferController {
             }
             
             // Получаем актуальные курсы валют
-            List<CurrencyRateDisplayDto> rates = exchangeService.getExchangeRatesForDisplay().block();
+            List<CurrencyRateDisplayDto> rates = exchangeRatesRelay.getRatesForDisplay().block();
             
             java.math.BigDecimal fromToRub = java.math.BigDecimal.ONE; // RUB = 1
             java.math.BigDecimal toToRub = java.math.BigDecimal.ONE;   // RUB = 1
@@ -6,15 +6,18 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import ru.rpovetkin.front_ui.dto.ChangePasswordRequest;
 import ru.rpovetkin.front_ui.dto.ChangePasswordResponse;
 import ru.rpovetkin.front_ui.dto.UpdateUserDataRequest;
 import ru.rpovetkin.front_ui.dto.UpdateUserDataResponse;
 import ru.rpovetkin.front_ui.dto.UserDto;
+import ru.rpovetkin.front_ui.dto.UserPageDto;
 import ru.rpovetkin.front_ui.service.AccountsService;
 
 import reactor.core.publisher.Mono;
@@ -28,6 +31,17 @@ public class UserController {
     
     private final AccountsService accountsService;
     
+    /**
+     * Поиск получателей перевода для подсказок в форме перевода (по началу login или имени)
+     */
+    @GetMapping("/user/recipients")
+    @ResponseBody
+    public Mono<UserPageDto> searchRecipients(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int limit) {
+        return accountsService.searchUsers(q, after, limit);
+    }
     
     @PostMapping("/user/{login}/editPassword")
     public String editPassword(
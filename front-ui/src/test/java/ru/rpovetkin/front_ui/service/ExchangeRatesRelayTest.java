@@ -0,0 +1,78 @@
+package ru.rpovetkin.front_ui.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import ru.rpovetkin.front_ui.dto.CurrencyRateDisplayDto;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class ExchangeRatesRelayTest {
+
+    private final Sinks.Many<List<CurrencyRateDisplayDto>> upstream = Sinks.many().multicast().onBackpressureBuffer();
+    private final AtomicInteger upstreamSubscriptions = new AtomicInteger();
+
+    private ExchangeService exchangeService;
+    private ExchangeRatesRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        exchangeService = mock(ExchangeService.class);
+        given(exchangeService.streamExchangeRatesForDisplay()).willReturn(
+                Flux.defer(() -> {
+                    upstreamSubscriptions.incrementAndGet();
+                    return upstream.asFlux();
+                }));
+
+        relay = new ExchangeRatesRelay(exchangeService);
+        ReflectionTestUtils.setField(relay, "enabled", true);
+        ReflectionTestUtils.setField(relay, "staleAfter", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(relay, "maxBackoff", Duration.ofSeconds(1));
+        relay.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        relay.stop();
+    }
+
+    @Test
+    @DisplayName("Все браузеры получают курсы через одну подписку на exchange")
+    void ratesStream_shouldMulticastSingleUpstream() {
+        List<CurrencyRateDisplayDto> rates = List.of(rate("USD", "95.50"));
+        upstream.tryEmitNext(rates);
+
+        List<List<CurrencyRateDisplayDto>> first = relay.ratesStream().take(1).collectList().block(Duration.ofSeconds(5));
+        List<List<CurrencyRateDisplayDto>> second = relay.ratesStream().take(1).collectList().block(Duration.ofSeconds(5));
+
+        assertThat(first).containsExactly(rates);
+        assertThat(second).containsExactly(rates);
+        assertThat(upstreamSubscriptions.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Запрос курсов отдает последние курсы из потока без обращения к exchange")
+    void getRatesForDisplay_shouldUseLatestStreamedRates() {
+        List<CurrencyRateDisplayDto> rates = List.of(rate("CNY", "13.20"));
+        upstream.tryEmitNext(rates);
+
+        assertThat(relay.getRatesForDisplay().block()).isEqualTo(rates);
+        verify(exchangeService, never()).getExchangeRatesForDisplay();
+    }
+
+    private CurrencyRateDisplayDto rate(String name, String value) {
+        return CurrencyRateDisplayDto.builder().name(name).title(name).value(value).build();
+    }
+}
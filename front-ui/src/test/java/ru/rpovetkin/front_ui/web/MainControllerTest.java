@@ -10,19 +10,32 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import reactor.core.publisher.Mono;
 import ru.rpovetkin.front_ui.dto.AccountDto;
+import ru.rpovetkin.front_ui.dto.Currency;
 import ru.rpovetkin.front_ui.dto.UserDto;
+import ru.rpovetkin.front_ui.dto.UserPageDto;
 import ru.rpovetkin.front_ui.service.AccountsService;
 import ru.rpovetkin.front_ui.service.CashService;
 
+import java.math.BigDecimal;
 import java.util.Collections;
+import java.util.List;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
 
 @WebMvcTest(controllers = MainController.class)
 @AutoConfigureMockMvc(addFilters = false)
@@ -51,9 +64,42 @@ class MainControllerTest {
         when(accountsService.getUserByLogin(anyString())).thenReturn(Mono.just(userDto));
         when(accountsService.getUserAccounts(anyString())).thenReturn(Mono.just(Collections.emptyList()));
         when(cashService.getAvailableCurrencies(anyString())).thenReturn(Mono.just(Collections.emptyList()));
-        when(accountsService.getAllUsers()).thenReturn(Mono.just(Collections.emptyList()));
+        when(accountsService.searchUsers(any(), any(), anyInt())).thenReturn(Mono.just(UserPageDto.empty()));
 
         mockMvc.perform(get("/main"))
                 .andExpect(status().isOk());
     }
+
+    @Test
+    @DisplayName("GET /main renders with partial data when a call fails and does not query cash")
+    void mainPage_shouldDegradeOnFailedCall() throws Exception {
+        Authentication authentication = mock(Authentication.class);
+        when(authentication.getName()).thenReturn("alice");
+        SecurityContext securityContext = mock(SecurityContext.class);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        SecurityContextHolder.setContext(securityContext);
+
+        AccountDto rubAccount = AccountDto.builder()
+                .currency(Currency.RUB)
+                .balance(BigDecimal.TEN)
+                .exists(true)
+                .build();
+        when(accountsService.getUserByLogin(anyString())).thenReturn(Mono.empty());
+        when(accountsService.getUserAccounts(anyString())).thenReturn(Mono.just(List.of(rubAccount)));
+        when(accountsService.searchUsers(any(), any(), anyInt())).thenReturn(Mono.error(new IllegalStateException("accounts unavailable")));
+
+        MvcResult result = mockMvc.perform(get("/main"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(view().name("main"))
+                .andExpect(model().attribute("name", "Пользователь"))
+                .andExpect(model().attribute("cashCurrencies", List.of(rubAccount)))
+                .andExpect(model().attribute("users", List.of()))
+                .andExpect(model().attributeExists(MainController.CASH_KEY_ATTRIBUTE,
+                        MainController.TRANSFER_KEY_ATTRIBUTE, MainController.TRANSFER_OTHER_KEY_ATTRIBUTE));
+        verify(cashService, never()).getAvailableCurrencies(anyString());
+    }
 }
@@ -0,0 +1,52 @@
+package ru.rpovetkin.http;
+
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.timelimiter.TimeLimiterOperator;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Защита вызовов соседнего сервиса: bulkhead (ограничение одновременных вызовов), time limiter
+ * и circuit breaker с одинаковым именем зависимости (accounts, blocker, exchange).
+ * Настройки экземпляров - resilience4j.circuitbreaker/bulkhead/timelimiter.instances.{имя},
+ * для неизвестного имени применяется конфигурация default.
+ * Порядок как в аннотациях Resilience4j: CircuitBreaker(TimeLimiter(Bulkhead(вызов))), поэтому
+ * таймауты и отказы bulkhead учитываются breaker'ом, а открытый breaker отклоняет вызов сразу
+ */
+public class DownstreamGuard {
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final TimeLimiterRegistry timeLimiterRegistry;
+
+    public DownstreamGuard(CircuitBreakerRegistry circuitBreakerRegistry,
+                           BulkheadRegistry bulkheadRegistry,
+                           TimeLimiterRegistry timeLimiterRegistry) {
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.timeLimiterRegistry = timeLimiterRegistry;
+    }
+
+    /**
+     * Обернуть вызов зависимости; при открытом breaker ошибка CallNotPermittedException,
+     * при заполненном bulkhead - BulkheadFullException, по таймауту - TimeoutException
+     */
+    public <T> Mono<T> protect(String dependency, Mono<T> call) {
+        return call
+                .transformDeferred(BulkheadOperator.of(bulkheadRegistry.bulkhead(dependency)))
+                .transformDeferred(TimeLimiterOperator.of(timeLimiterRegistry.timeLimiter(dependency)))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreakerRegistry.circuitBreaker(dependency)));
+    }
+
+    /**
+     * Вызов не выполнялся: breaker открыт или bulkhead заполнен. Такие ошибки не имеет смысла повторять сразу
+     */
+    public static boolean isRejected(Throwable error) {
+        return error instanceof CallNotPermittedException || error instanceof BulkheadFullException;
+    }
+}
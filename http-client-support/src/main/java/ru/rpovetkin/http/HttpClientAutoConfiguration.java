@@ -0,0 +1,53 @@
+package ru.rpovetkin.http;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * Регистрирует {@link WebClientFactory}, {@link DownstreamGuard} и (если задан services.token.client-id)
+ * {@link ServiceTokenManager} в сервисах, подключивших модуль http-client-support
+ */
+@AutoConfiguration(after = WebClientAutoConfiguration.class)
+@ConditionalOnClass(WebClient.class)
+@EnableConfigurationProperties({HttpClientProperties.class, ServiceTokenProperties.class})
+public class HttpClientAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public WebClientFactory webClientFactory(WebClient.Builder webClientBuilder, HttpClientProperties properties) {
+        return new WebClientFactory(webClientBuilder, properties);
+    }
+
+    /**
+     * Реестры Resilience4j создает его собственная автоконфигурация (resilience4j-spring-boot3)
+     * с метриками Micrometer и actuator endpoints circuitbreakers/bulkheads
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public DownstreamGuard downstreamGuard(CircuitBreakerRegistry circuitBreakerRegistry,
+                                           BulkheadRegistry bulkheadRegistry,
+                                           TimeLimiterRegistry timeLimiterRegistry) {
+        return new DownstreamGuard(circuitBreakerRegistry, bulkheadRegistry, timeLimiterRegistry);
+    }
+
+    /**
+     * Токен запрашивается через WebClient сервиса (общий пул соединений)
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "services.token", name = "client-id")
+    public ServiceTokenManager serviceTokenManager(WebClient webClient, MeterRegistry meterRegistry,
+                                                   ServiceTokenProperties properties) {
+        return new ServiceTokenManager(webClient, meterRegistry, properties);
+    }
+}
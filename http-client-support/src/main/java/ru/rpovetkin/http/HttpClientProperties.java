@@ -0,0 +1,75 @@
+package ru.rpovetkin.http;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Общие настройки исходящих HTTP вызовов сервисов (bankapp.http-client.*).
+ * Пул соединений ведется отдельно для каждого целевого сервиса (host:port); значения ниже -
+ * настройки пула по умолчанию, в targets их можно переопределить для конкретного сервиса
+ */
+@Data
+@ConfigurationProperties(prefix = "bankapp.http-client")
+public class HttpClientProperties {
+
+    /**
+     * Максимум соединений в пуле одного целевого сервиса
+     */
+    private int maxConnections = 50;
+
+    /**
+     * Сколько запросов может ждать свободного соединения; сверх этого запрос сразу завершается ошибкой
+     */
+    private int pendingAcquireMaxCount = 200;
+
+    private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Простаивающее дольше соединение закрывается (меньше keep-alive timeout сервера)
+     */
+    private Duration maxIdleTime = Duration.ofSeconds(30);
+
+    private Duration maxLifeTime = Duration.ofMinutes(5);
+
+    /**
+     * Период фоновой очистки пула от простаивающих и устаревших соединений
+     */
+    private Duration evictInBackground = Duration.ofSeconds(30);
+
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    /**
+     * Максимальная пауза между чтениями ответа. Потоковые запросы (server-sent events), где пауза
+     * задается heartbeat сервера, переопределяют ее для своего запроса
+     */
+    private Duration responseTimeout = Duration.ofSeconds(10);
+
+    /**
+     * HTTP/2 без TLS (h2c) с откатом на HTTP/1.1; сервер должен поддерживать h2c
+     */
+    private boolean h2c = false;
+
+    /**
+     * Метрики пулов Reactor Netty (reactor.netty.connection.provider.*)
+     */
+    private boolean metrics = true;
+
+    /**
+     * Переопределения пула для целевых сервисов: имя -> url и размеры пула
+     */
+    private Map<String, Target> targets = new LinkedHashMap<>();
+
+    @Data
+    public static class Target {
+
+        private String url;
+
+        private Integer maxConnections;
+
+        private Integer pendingAcquireMaxCount;
+    }
+}
@@ -0,0 +1,151 @@
+package ru.rpovetkin.http;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Кэш сервисного токена client_credentials для межсервисных вызовов.
+ * Токен хранится до момента незадолго до истечения expires_in, заранее обновляется
+ * в фоне, а параллельные обновления объединяются в один запрос к Keycloak.
+ * Настройки - services.token.*
+ */
+@Slf4j
+public class ServiceTokenManager {
+
+    private static final long DEFAULT_EXPIRES_IN_SECONDS = 60;
+
+    private final WebClient webClient;
+    private final ServiceTokenProperties properties;
+
+    private final AtomicReference<Mono<CachedToken>> inFlight = new AtomicReference<>();
+    private volatile CachedToken current;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter refreshSuccessCounter;
+    private final Counter refreshFailureCounter;
+
+    public ServiceTokenManager(WebClient webClient, MeterRegistry meterRegistry, ServiceTokenProperties properties) {
+        this.webClient = webClient;
+        this.properties = properties;
+        String clientId = properties.getClientId();
+        hitCounter = meterRegistry.counter("service.token.cache", "client", clientId, "result", "hit");
+        missCounter = meterRegistry.counter("service.token.cache", "client", clientId, "result", "miss");
+        refreshSuccessCounter = meterRegistry.counter("service.token.refresh", "client", clientId, "outcome", "success");
+        refreshFailureCounter = meterRegistry.counter("service.token.refresh", "client", clientId, "outcome", "failure");
+    }
+
+    /**
+     * Получить действующий сервисный токен (из кэша или запросив новый)
+     */
+    public Mono<String> getAccessToken() {
+        CachedToken token = current;
+        Instant now = Instant.now();
+        if (token != null && now.isBefore(token.expiresAt())) {
+            hitCounter.increment();
+            if (!now.isBefore(token.refreshAt())) {
+                refreshInBackground();
+            }
+            return Mono.just(token.value());
+        }
+
+        missCounter.increment();
+        return refresh().map(CachedToken::value);
+    }
+
+    private void refreshInBackground() {
+        if (inFlight.get() == null) {
+            log.debug("Service token for {} is close to expiry, refreshing in background", properties.getClientId());
+            refresh().subscribe(
+                    token -> { },
+                    error -> log.warn("Background refresh of service token failed: {}", error.getMessage()));
+        }
+    }
+
+    /**
+     * Запустить обновление токена или присоединиться к уже выполняющемуся (single-flight)
+     */
+    private Mono<CachedToken> refresh() {
+        while (true) {
+            Mono<CachedToken> running = inFlight.get();
+            if (running != null) {
+                return running;
+            }
+
+            Sinks.One<CachedToken> sink = Sinks.one();
+            Mono<CachedToken> shared = sink.asMono();
+            if (!inFlight.compareAndSet(null, shared)) {
+                continue;
+            }
+
+            requestToken().subscribe(
+                    token -> {
+                        current = token;
+                        inFlight.compareAndSet(shared, null);
+                        sink.tryEmitValue(token);
+                    },
+                    error -> {
+                        inFlight.compareAndSet(shared, null);
+                        sink.tryEmitError(error);
+                    },
+                    () -> {
+                        // Ответ без тела: без ошибки ожидающие зависли бы, а inFlight не освободился бы.
+                        // После полученного токена sink уже завершен, и ошибка не публикуется
+                        if (inFlight.compareAndSet(shared, null)
+                                && sink.tryEmitError(new IllegalStateException("Token endpoint returned empty response")).isSuccess()) {
+                            refreshFailureCounter.increment();
+                        }
+                    });
+            return shared;
+        }
+    }
+
+    private Mono<CachedToken> requestToken() {
+        String form = "grant_type=client_credentials&client_id=" + properties.getClientId()
+                + "&client_secret=" + properties.getClientSecret();
+        return webClient.post()
+                .uri(properties.getTokenUri())
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .bodyValue(form)
+                .retrieve()
+                .bodyToMono(Map.class)
+                .map(this::toCachedToken)
+                .doOnNext(token -> {
+                    refreshSuccessCounter.increment();
+                    log.debug("Obtained service token for {}, valid until {}", properties.getClientId(), token.expiresAt());
+                })
+                .doOnError(error -> refreshFailureCounter.increment());
+    }
+
+    private CachedToken toCachedToken(Map<?, ?> response) {
+        Object accessToken = response.get("access_token");
+        if (accessToken == null) {
+            throw new IllegalStateException("Token endpoint response does not contain access_token");
+        }
+
+        long expiresIn = response.get("expires_in") instanceof Number number
+                ? number.longValue()
+                : DEFAULT_EXPIRES_IN_SECONDS;
+        Instant now = Instant.now();
+        Instant expiresAt = now.plusSeconds(expiresIn).minus(properties.getExpirySkew());
+        if (expiresAt.isBefore(now)) {
+            expiresAt = now;
+        }
+        Instant refreshAt = expiresAt.minus(properties.getRefreshAhead());
+        if (refreshAt.isBefore(now)) {
+            refreshAt = now;
+        }
+        return new CachedToken(accessToken.toString(), expiresAt, refreshAt);
+    }
+
+    private record CachedToken(String value, Instant expiresAt, Instant refreshAt) {
+    }
+}
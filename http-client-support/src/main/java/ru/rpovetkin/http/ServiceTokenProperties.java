@@ -0,0 +1,31 @@
+package ru.rpovetkin.http;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки сервисного токена client_credentials (services.token.*).
+ * {@link ServiceTokenManager} создается, только если задан client-id
+ */
+@Data
+@ConfigurationProperties(prefix = "services.token")
+public class ServiceTokenProperties {
+
+    private String tokenUri = "http://keycloak:8080/realms/bankapp/protocol/openid-connect/token";
+
+    private String clientId;
+
+    private String clientSecret;
+
+    /**
+     * Запас до истечения токена, после которого токен считается недействительным
+     */
+    private Duration expirySkew = Duration.ofSeconds(10);
+
+    /**
+     * За сколько до истечения токена запускать фоновое обновление
+     */
+    private Duration refreshAhead = Duration.ofSeconds(30);
+}
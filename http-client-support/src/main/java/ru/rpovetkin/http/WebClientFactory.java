@@ -0,0 +1,96 @@
+package ru.rpovetkin.http;
+
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Фабрика преднастроенных WebClient: общий пул соединений Reactor Netty (отдельный пул на каждый host:port),
+ * таймауты подключения и ответа, keep-alive и при необходимости h2c.
+ * Все WebClient сервиса используют один connector, поэтому соединения переиспользуются между ними
+ */
+@Slf4j
+public class WebClientFactory implements DisposableBean {
+
+    private static final String POOL_NAME = "bankapp-http";
+
+    private final WebClient.Builder baseBuilder;
+    private final ConnectionProvider connectionProvider;
+    private final ReactorClientHttpConnector connector;
+
+    /**
+     * @param baseBuilder builder Spring Boot с кодеками и observation; копируется для каждого WebClient
+     */
+    public WebClientFactory(WebClient.Builder baseBuilder, HttpClientProperties properties) {
+        this.baseBuilder = baseBuilder;
+        this.connectionProvider = connectionProvider(properties);
+        this.connector = new ReactorClientHttpConnector(httpClient(connectionProvider, properties));
+    }
+
+    /**
+     * Новый builder на общем пуле соединений
+     */
+    public WebClient.Builder builder() {
+        return baseBuilder.clone().clientConnector(connector);
+    }
+
+    public WebClient webClient() {
+        return builder().build();
+    }
+
+    @Override
+    public void destroy() {
+        connectionProvider.dispose();
+    }
+
+    private static ConnectionProvider connectionProvider(HttpClientProperties properties) {
+        ConnectionProvider.Builder builder = ConnectionProvider.builder(POOL_NAME)
+                .maxConnections(properties.getMaxConnections())
+                .pendingAcquireMaxCount(properties.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(properties.getPendingAcquireTimeout())
+                .maxIdleTime(properties.getMaxIdleTime())
+                .maxLifeTime(properties.getMaxLifeTime())
+                .evictInBackground(properties.getEvictInBackground())
+                .metrics(properties.isMetrics());
+
+        properties.getTargets().forEach((name, target) -> {
+            if (target.getUrl() == null) {
+                return;
+            }
+            UriComponents uri = UriComponentsBuilder.fromUriString(target.getUrl()).build();
+            int port = uri.getPort() != -1 ? uri.getPort() : "https".equals(uri.getScheme()) ? 443 : 80;
+            builder.forRemoteHost(InetSocketAddress.createUnresolved(uri.getHost(), port), spec -> spec
+                    .maxConnections(target.getMaxConnections() != null
+                            ? target.getMaxConnections() : properties.getMaxConnections())
+                    .pendingAcquireMaxCount(target.getPendingAcquireMaxCount() != null
+                            ? target.getPendingAcquireMaxCount() : properties.getPendingAcquireMaxCount())
+                    .pendingAcquireTimeout(properties.getPendingAcquireTimeout())
+                    .maxIdleTime(properties.getMaxIdleTime())
+                    .maxLifeTime(properties.getMaxLifeTime())
+                    .evictInBackground(properties.getEvictInBackground())
+                    .metrics(properties.isMetrics()));
+            log.debug("HTTP pool for {} ({}:{}) configured", name, uri.getHost(), port);
+        });
+        return builder.build();
+    }
+
+    private static HttpClient httpClient(ConnectionProvider connectionProvider, HttpClientProperties properties) {
+        HttpProtocol[] protocols = properties.isH2c()
+                ? new HttpProtocol[]{HttpProtocol.H2C, HttpProtocol.HTTP11}
+                : new HttpProtocol[]{HttpProtocol.HTTP11};
+        return HttpClient.create(connectionProvider)
+                .protocol(protocols)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(properties.getResponseTimeout());
+    }
+}
@@ -0,0 +1,122 @@
+package ru.rpovetkin.http;
+
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DownstreamGuardTest {
+
+    private static final String DEPENDENCY = "accounts";
+
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+    private DownstreamGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .failureRateThreshold(50)
+                .slowCallRateThreshold(50)
+                .slowCallDurationThreshold(Duration.ofMillis(50))
+                .waitDurationInOpenState(Duration.ofMillis(100))
+                .permittedNumberOfCallsInHalfOpenState(1)
+                .build());
+        guard = new DownstreamGuard(
+                circuitBreakerRegistry,
+                BulkheadRegistry.of(BulkheadConfig.custom()
+                        .maxConcurrentCalls(1)
+                        .maxWaitDuration(Duration.ZERO)
+                        .build()),
+                TimeLimiterRegistry.of(TimeLimiterConfig.custom()
+                        .timeoutDuration(Duration.ofMillis(200))
+                        .build()));
+    }
+
+    @Test
+    @DisplayName("После серии ошибок breaker открывается и следующий вызов отклоняется без обращения к сервису")
+    void protect_shouldOpenOnFailures() {
+        AtomicInteger calls = new AtomicInteger();
+        Mono<String> failing = Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.error(new IllegalStateException("503"));
+        });
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(error(guard.protect(DEPENDENCY, failing))).isInstanceOf(IllegalStateException.class);
+        }
+
+        assertThat(breaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(error(guard.protect(DEPENDENCY, failing))).isInstanceOf(CallNotPermittedException.class);
+        assertThat(calls).hasValue(4);
+    }
+
+    @Test
+    @DisplayName("Медленные, но успешные ответы тоже открывают breaker")
+    void protect_shouldOpenOnSlowCalls() {
+        Mono<String> slow = Mono.just("ok").delayElement(Duration.ofMillis(100));
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(guard.protect(DEPENDENCY, slow).block()).isEqualTo("ok");
+        }
+
+        assertThat(breaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    @DisplayName("После wait-duration пробный вызов в HALF_OPEN закрывает breaker")
+    void protect_shouldCloseAfterSuccessfulProbe() throws InterruptedException {
+        breaker().transitionToOpenState();
+        assertThat(error(guard.protect(DEPENDENCY, Mono.just("ok")))).isInstanceOf(CallNotPermittedException.class);
+
+        Thread.sleep(150);
+
+        assertThat(guard.protect(DEPENDENCY, Mono.just("ok")).block()).isEqualTo("ok");
+        assertThat(breaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    @DisplayName("Сверх max-concurrent-calls вызов сразу отклоняется bulkhead")
+    void protect_shouldRejectAboveConcurrencyLimit() {
+        Disposable inFlight = guard.protect(DEPENDENCY, Mono.<String>never()).subscribe(value -> {}, error -> {});
+        try {
+            assertThat(error(guard.protect(DEPENDENCY, Mono.just("ok")))).isInstanceOf(BulkheadFullException.class);
+        } finally {
+            inFlight.dispose();
+        }
+    }
+
+    @Test
+    @DisplayName("Зависший вызов прерывается по timeout-duration")
+    void protect_shouldTimeOut() {
+        assertThat(error(guard.protect(DEPENDENCY, Mono.never()))).isInstanceOf(TimeoutException.class);
+    }
+
+    private CircuitBreaker breaker() {
+        return circuitBreakerRegistry.circuitBreaker(DEPENDENCY);
+    }
+
+    private static Throwable error(Mono<?> call) {
+        return call.then(Mono.<Throwable>empty())
+                .onErrorResume(Mono::just)
+                .block(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,122 @@
+package ru.rpovetkin.http;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class ServiceTokenManagerTest {
+
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Действующий токен берется из кэша без обращения к Keycloak")
+    void cachedToken_shouldBeReused() {
+        ServiceTokenManager manager = manager(300, Duration.ZERO, HttpStatus.OK);
+
+        String first = manager.getAccessToken().block();
+        String second = manager.getAccessToken().block();
+
+        assertThat(first).isEqualTo("token-1");
+        assertThat(second).isEqualTo("token-1");
+        assertThat(tokenRequests.get()).isEqualTo(1);
+        assertThat(count("service.token.cache", "result", "hit")).isEqualTo(1);
+        assertThat(count("service.token.cache", "result", "miss")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Параллельные промахи кэша объединяются в один запрос токена")
+    void concurrentMisses_shouldShareSingleRequest() {
+        ServiceTokenManager manager = manager(300, Duration.ofMillis(200), HttpStatus.OK);
+
+        List<String> tokens = Flux.range(0, 50)
+                .flatMap(i -> manager.getAccessToken())
+                .collectList()
+                .block();
+
+        assertThat(tokens).hasSize(50).containsOnly("token-1");
+        assertThat(tokenRequests.get()).isEqualTo(1);
+        assertThat(count("service.token.refresh", "outcome", "success")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Токен, срок которого истекает, обновляется в фоне, а вызывающий получает текущий")
+    void tokenNearExpiry_shouldBeRefreshedInBackground() {
+        // expires_in=35s, skew=10s, refresh-ahead=30s: токен сразу попадает в окно фонового обновления
+        ServiceTokenManager manager = manager(35, Duration.ZERO, HttpStatus.OK);
+
+        assertThat(manager.getAccessToken().block()).isEqualTo("token-1");
+        assertThat(manager.getAccessToken().block()).isEqualTo("token-1");
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> tokenRequests.get() == 2);
+        await().atMost(Duration.ofSeconds(5)).until(() -> "token-2".equals(manager.getAccessToken().block()));
+    }
+
+    @Test
+    @DisplayName("Ошибка получения токена не кэшируется")
+    void failedRequest_shouldNotBeCached() {
+        ServiceTokenManager manager = manager(300, Duration.ZERO, HttpStatus.INTERNAL_SERVER_ERROR);
+
+        assertThatThrownBy(() -> manager.getAccessToken().block()).isNotNull();
+        assertThatThrownBy(() -> manager.getAccessToken().block()).isNotNull();
+
+        assertThat(tokenRequests.get()).isEqualTo(2);
+        assertThat(count("service.token.refresh", "outcome", "failure")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Ответ без тела завершает ожидающих ошибкой и не блокирует следующие обновления")
+    void emptyResponse_shouldFailAndReleaseInFlight() {
+        ServiceTokenManager manager = manager(request -> {
+            tokenRequests.incrementAndGet();
+            return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+        });
+
+        assertThatThrownBy(() -> manager.getAccessToken().block(Duration.ofSeconds(5)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("empty response");
+        assertThatThrownBy(() -> manager.getAccessToken().block(Duration.ofSeconds(5)))
+                .hasMessageContaining("empty response");
+
+        assertThat(tokenRequests.get()).isEqualTo(2);
+        assertThat(count("service.token.refresh", "outcome", "failure")).isEqualTo(2);
+    }
+
+    private ServiceTokenManager manager(long expiresIn, Duration latency, HttpStatus status) {
+        return manager(request -> {
+            int n = tokenRequests.incrementAndGet();
+            return Mono.delay(latency).map(tick -> ClientResponse.create(status)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body("{\"access_token\":\"token-" + n + "\",\"expires_in\":" + expiresIn + "}")
+                    .build());
+        });
+    }
+
+    private ServiceTokenManager manager(ExchangeFunction exchange) {
+        ServiceTokenProperties properties = new ServiceTokenProperties();
+        properties.setTokenUri("http://keycloak/token");
+        properties.setClientId("transfer-service");
+        properties.setClientSecret("secret");
+        return new ServiceTokenManager(WebClient.builder().exchangeFunction(exchange).build(), meterRegistry, properties);
+    }
+
+    private double count(String name, String tagKey, String tagValue) {
+        return meterRegistry.get(name).tag(tagKey, tagValue).counter().count();
+    }
+}
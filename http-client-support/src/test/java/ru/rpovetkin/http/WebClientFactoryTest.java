@@ -0,0 +1,105 @@
+package ru.rpovetkin.http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.internal.shaded.reactor.pool.PoolAcquirePendingLimitException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WebClientFactoryTest {
+
+    private DisposableServer server;
+    private final Set<String> clientAddresses = ConcurrentHashMap.newKeySet();
+    private WebClientFactory factory;
+
+    @BeforeEach
+    void startServer() {
+        server = HttpServer.create()
+                .port(0)
+                .doOnConnection(connection -> clientAddresses.add(connection.channel().remoteAddress().toString()))
+                .route(routes -> routes
+                        .get("/ok", (request, response) -> response.sendString(Mono.just("ok")))
+                        .get("/slow", (request, response) -> response.sendString(
+                                Mono.just("slow").delayElement(Duration.ofMillis(500)))))
+                .bindNow();
+    }
+
+    @AfterEach
+    void stopServer() {
+        if (factory != null) {
+            factory.destroy();
+        }
+        server.disposeNow();
+    }
+
+    @Test
+    @DisplayName("Последовательные запросы переиспользуют соединение из пула")
+    void webClient_shouldReuseConnections() {
+        factory = new WebClientFactory(WebClient.builder(), new HttpClientProperties());
+        WebClient webClient = factory.webClient();
+
+        for (int i = 0; i < 5; i++) {
+            // соединение возвращается в пул на event loop уже после выдачи тела, поэтому следующий запрос
+            // отправляется с небольшой паузой, иначе он может не застать соединение свободным
+            assertThat(get(webClient, "/ok").delaySubscription(Duration.ofMillis(50)).block()).isEqualTo("ok");
+        }
+
+        assertThat(clientAddresses).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Ответ дольше response-timeout завершается ошибкой")
+    void webClient_shouldApplyResponseTimeout() {
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setResponseTimeout(Duration.ofMillis(100));
+        factory = new WebClientFactory(WebClient.builder(), properties);
+
+        assertThatThrownBy(() -> get(factory.webClient(), "/slow").block())
+                .isInstanceOf(WebClientRequestException.class);
+    }
+
+    @Test
+    @DisplayName("Сверх очереди ожидания соединения запрос сразу отклоняется")
+    void webClient_shouldLimitPendingAcquires() {
+        HttpClientProperties properties = new HttpClientProperties();
+        HttpClientProperties.Target target = new HttpClientProperties.Target();
+        target.setUrl("http://localhost:" + server.port());
+        target.setMaxConnections(1);
+        target.setPendingAcquireMaxCount(1);
+        properties.getTargets().put("slow-service", target);
+        factory = new WebClientFactory(WebClient.builder(), properties);
+        WebClient webClient = factory.webClient();
+
+        List<Object> results = Flux.range(0, 3)
+                .flatMap(i -> get(webClient, "/slow").<Object>map(body -> body).onErrorResume(Mono::just))
+                .collectList()
+                .block();
+
+        assertThat(results).filteredOn("slow"::equals).hasSize(2);
+        assertThat(results).filteredOn(Throwable.class::isInstance).singleElement()
+                .satisfies(error -> assertThat(NestedExceptionUtils.getMostSpecificCause((Throwable) error))
+                        .isInstanceOf(PoolAcquirePendingLimitException.class));
+    }
+
+    private Mono<String> get(WebClient webClient, String path) {
+        return webClient.get()
+                .uri("http://localhost:" + server.port() + path)
+                .retrieve()
+                .bodyToMono(String.class);
+    }
+}
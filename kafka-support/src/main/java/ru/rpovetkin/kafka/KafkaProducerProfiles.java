@@ -0,0 +1,47 @@
+package ru.rpovetkin.kafka;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Настройки Kafka Producer по профилю. Оба профиля дают гарантию "At least once" без дубликатов
+ * при retry (acks=all + идемпотентность); сериализаторы задает сервис
+ */
+public final class KafkaProducerProfiles {
+
+    private KafkaProducerProfiles() {
+    }
+
+    public static Map<String, Object> producerProps(String bootstrapServers, KafkaProducerProperties properties) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+
+        // acks=all: Лидер + все синхронизированные реплики должны подтвердить запись
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+
+        // enable.idempotence: Гарантирует отсутствие дубликатов и порядок в партиции при retry
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        props.put(ProducerConfig.RETRIES_CONFIG, Integer.MAX_VALUE);
+
+        props.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, properties.getRequestTimeoutMs());
+        props.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, properties.getDeliveryTimeoutMs());
+
+        switch (properties.getProfile()) {
+            case THROUGHPUT -> {
+                // До 5 запросов в полете - максимум, при котором идемпотентный producer сохраняет порядок
+                props.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+                props.put(ProducerConfig.LINGER_MS_CONFIG, properties.getLingerMs());
+                props.put(ProducerConfig.BATCH_SIZE_CONFIG, properties.getBatchSize());
+                props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, properties.getCompressionType());
+            }
+            case STRICT_ORDER -> {
+                props.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 1);
+                props.put(ProducerConfig.LINGER_MS_CONFIG, 0);
+                props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "none");
+            }
+        }
+        return props;
+    }
+}
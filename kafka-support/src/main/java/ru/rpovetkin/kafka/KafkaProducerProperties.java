@@ -0,0 +1,33 @@
+package ru.rpovetkin.kafka;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Общие настройки Kafka Producer сервисов (bankapp.kafka.producer.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "bankapp.kafka.producer")
+public class KafkaProducerProperties {
+
+    private ProducerProfile profile = ProducerProfile.THROUGHPUT;
+
+    /**
+     * Сколько producer ждет, набирая пачку (только THROUGHPUT)
+     */
+    private int lingerMs = 10;
+
+    /**
+     * Максимальный размер пачки на партицию в байтах (только THROUGHPUT)
+     */
+    private int batchSize = 65536;
+
+    /**
+     * Сжатие пачек: none, gzip, snappy, lz4, zstd (только THROUGHPUT)
+     */
+    private String compressionType = "lz4";
+
+    private int requestTimeoutMs = 30000;
+
+    private int deliveryTimeoutMs = 120000;
+}
@@ -0,0 +1,19 @@
+package ru.rpovetkin.kafka;
+
+/**
+ * Профиль Kafka Producer
+ */
+public enum ProducerProfile {
+
+    /**
+     * Идемпотентный producer с конвейером до 5 запросов, batching (linger.ms, batch.size) и сжатием.
+     * Порядок внутри партиции сохраняется за счет идемпотентности
+     */
+    THROUGHPUT,
+
+    /**
+     * Один запрос в полете, без ожидания и сжатия: каждое сообщение уходит отдельным запросом.
+     * Минимальная задержка одиночного сообщения ценой пропускной способности
+     */
+    STRICT_ORDER
+}
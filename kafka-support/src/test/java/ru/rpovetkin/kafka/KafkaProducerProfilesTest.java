@@ -0,0 +1,46 @@
+package ru.rpovetkin.kafka;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KafkaProducerProfilesTest {
+
+    @Test
+    @DisplayName("THROUGHPUT: идемпотентный конвейер из 5 запросов с batching и сжатием")
+    void throughputProfile_shouldPipelineAndBatch() {
+        KafkaProducerProperties properties = new KafkaProducerProperties();
+        properties.setCompressionType("zstd");
+
+        Map<String, Object> props = KafkaProducerProfiles.producerProps("kafka:9092", properties);
+
+        assertThat(props)
+                .containsEntry(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "kafka:9092")
+                .containsEntry(ProducerConfig.ACKS_CONFIG, "all")
+                .containsEntry(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true)
+                .containsEntry(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5)
+                .containsEntry(ProducerConfig.LINGER_MS_CONFIG, 10)
+                .containsEntry(ProducerConfig.BATCH_SIZE_CONFIG, 65536)
+                .containsEntry(ProducerConfig.COMPRESSION_TYPE_CONFIG, "zstd");
+    }
+
+    @Test
+    @DisplayName("STRICT_ORDER: один запрос в полете без ожидания и сжатия")
+    void strictOrderProfile_shouldSendOneRequestAtATime() {
+        KafkaProducerProperties properties = new KafkaProducerProperties();
+        properties.setProfile(ProducerProfile.STRICT_ORDER);
+
+        Map<String, Object> props = KafkaProducerProfiles.producerProps("kafka:9092", properties);
+
+        assertThat(props)
+                .containsEntry(ProducerConfig.ACKS_CONFIG, "all")
+                .containsEntry(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true)
+                .containsEntry(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 1)
+                .containsEntry(ProducerConfig.LINGER_MS_CONFIG, 0)
+                .containsEntry(ProducerConfig.COMPRESSION_TYPE_CONFIG, "none");
+    }
+}
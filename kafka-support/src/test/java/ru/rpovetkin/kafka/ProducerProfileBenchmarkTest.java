@@ -0,0 +1,110 @@
+package ru.rpovetkin.kafka;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сравнение профилей producer на embedded брокере: сообщений в секунду и p99 задержки отправки
+ * (от send до подтверждения брокером). Сообщения похожи на уведомления: ~500 байт JSON, ключ - userId.
+ * Запуск: {@code mvn test -Dtest=ProducerProfileBenchmarkTest -Dbenchmark=true [-Dbenchmark.messages=200000]}
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ProducerProfileBenchmarkTest {
+
+    private static final String TOPIC = "benchmark-notifications";
+    private static final int MESSAGES = Integer.getInteger("benchmark.messages", 100_000);
+    private static final int WARMUP_MESSAGES = 10_000;
+    private static final int USERS = 1_000;
+
+    private static EmbeddedKafkaKraftBroker broker;
+
+    @BeforeAll
+    static void startBroker() {
+        broker = new EmbeddedKafkaKraftBroker(1, 3, TOPIC);
+        broker.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        broker.destroy();
+    }
+
+    @ParameterizedTest
+    @EnumSource(ProducerProfile.class)
+    @DisplayName("Пропускная способность и p99 задержки профиля producer")
+    void benchmark(ProducerProfile profile) throws InterruptedException {
+        KafkaProducerProperties properties = new KafkaProducerProperties();
+        properties.setProfile(profile);
+        Map<String, Object> props = KafkaProducerProfiles.producerProps(broker.getBrokersAsString(), properties);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+
+        try (KafkaProducer<String, String> producer = new KafkaProducer<>(props)) {
+            send(producer, WARMUP_MESSAGES);
+
+            long startedAt = System.nanoTime();
+            long[] latencies = send(producer, MESSAGES);
+            double seconds = (System.nanoTime() - startedAt) / 1e9;
+
+            Arrays.sort(latencies);
+            System.out.printf("%-12s %,10.0f msg/s  p50 %7.2f ms  p99 %7.2f ms  max %7.2f ms%n",
+                    profile, MESSAGES / seconds,
+                    percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 1.0));
+        }
+    }
+
+    /**
+     * Отправить count сообщений без ожидания между ними и дождаться всех подтверждений
+     *
+     * @return задержка каждого сообщения в наносекундах
+     */
+    private static long[] send(KafkaProducer<String, String> producer, int count) throws InterruptedException {
+        long[] latencies = new long[count];
+        CountDownLatch acked = new CountDownLatch(count);
+        AtomicInteger failed = new AtomicInteger();
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            long sentAt = System.nanoTime();
+            producer.send(new ProducerRecord<>(TOPIC, "user-" + (i % USERS), payload(i)), (metadata, exception) -> {
+                latencies[index] = System.nanoTime() - sentAt;
+                if (exception != null) {
+                    failed.incrementAndGet();
+                }
+                acked.countDown();
+            });
+        }
+        assertThat(acked.await(5, TimeUnit.MINUTES)).isTrue();
+        assertThat(failed.get()).isZero();
+        return latencies;
+    }
+
+    private static String payload(int i) {
+        return """
+                {"userId":"user-%d","type":"SUCCESS","title":"Пополнение счета","message":"Счет RUB пополнен \
+                на %d.00. Текущий баланс доступен в личном кабинете. Если операцию выполняли не вы, обратитесь \
+                в поддержку банка.","source":"CASH","metadata":{"currency":"RUB","amount":%d,"operationId":%d}}\
+                """.formatted(i % USERS, i % 10_000, i % 10_000, i);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
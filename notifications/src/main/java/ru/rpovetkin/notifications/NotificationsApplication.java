@@ -2,8 +2,10 @@ package ru.rpovetkin.notifications;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class NotificationsApplication {
 
 	public static void main(String[] args) {
@@ -1,80 +1,226 @@
 package ru.rpovetkin.notifications.config;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.serializer.DelegatingByTypeSerializer;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.util.backoff.ExponentialBackOff;
 import ru.rpovetkin.notifications.dto.NotificationRequest;
 
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Конфигурация Kafka Consumer для получения уведомлений
- * Настроена для гарантии обработки "At least once" с сохранением offset'ов
+ * Настроена для гарантии обработки "At least once" с сохранением offset'ов.
+ * Сообщения, которые невозможно обработать (poison), отправляются в dead-letter topic
  */
 @Configuration
 @EnableKafka
 public class KafkaConsumerConfig {
 
+    /**
+     * Временные ошибки (недоступна БД): повторяются без ограничения числа попыток,
+     * любая другая ошибка обработки записи сразу отправляет ее в DLT
+     */
+    public static final Set<Class<? extends Throwable>> TRANSIENT_ERRORS = Set.of(
+            TransientDataAccessException.class,
+            RecoverableDataAccessException.class,
+            DataAccessResourceFailureException.class,
+            CannotCreateTransactionException.class);
+
     @Value("${spring.kafka.bootstrap-servers:kafka:9092}")
     private String bootstrapServers;
 
     @Value("${spring.kafka.consumer.group-id:notifications-group}")
     private String groupId;
 
+    @Value("${spring.kafka.topics.notifications-dlt:account-notifications-dlt}")
+    private String deadLetterTopic;
+
+    /**
+     * Сколько записей забирает за один poll пакетный listener
+     */
+    @Value("${notifications.kafka.listener.batch-max-poll-records:500}")
+    private int batchMaxPollRecords;
+
+    /**
+     * Пауза между повторами при временных ошибках (например, недоступна БД): растет вдвое от retry-interval
+     * до retry-max-interval. retry-max-interval должен быть меньше max.poll.interval.ms
+     */
+    @Value("${notifications.kafka.listener.retry-interval:1s}")
+    private Duration retryInterval;
+
+    @Value("${notifications.kafka.listener.retry-max-interval:1m}")
+    private Duration retryMaxInterval;
+
     @Bean
     public ConsumerFactory<String, NotificationRequest> consumerFactory() {
+        // max.poll.records: Ограничиваем количество записей для обработки за раз
+        return new DefaultKafkaConsumerFactory<>(consumerProps(100));
+    }
+
+    /**
+     * Consumer для пакетного режима: весь poll сохраняется одной транзакцией
+     */
+    @Bean
+    public ConsumerFactory<String, NotificationRequest> batchConsumerFactory() {
+        return new DefaultKafkaConsumerFactory<>(consumerProps(batchMaxPollRecords));
+    }
+
+    private Map<String, Object> consumerProps(int maxPollRecords) {
         Map<String, Object> props = new HashMap<>();
-        
+
         // Basic configuration
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
+
+        // ErrorHandlingDeserializer: некорректный JSON не роняет poll, а приходит как запись
+        // с исключением в заголовке и уходит в DLT
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class);
         props.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
         props.put(JsonDeserializer.VALUE_DEFAULT_TYPE, NotificationRequest.class.getName());
-        
+
         // At least once delivery configuration
         // enable.auto.commit=false: Отключаем автоматический commit для ручного управления
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
-        
+
         // auto.offset.reset=earliest: При первом запуске читать с начала
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
-        
-        // max.poll.records: Ограничиваем количество записей для обработки за раз
-        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 100);
-        
+
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+
         // session.timeout.ms: Таймаут сессии consumer'а
         props.put(ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG, 30000);
-        
+
         // heartbeat.interval.ms: Интервал отправки heartbeat
         props.put(ConsumerConfig.HEARTBEAT_INTERVAL_MS_CONFIG, 10000);
-        
-        return new DefaultKafkaConsumerFactory<>(props);
+
+        return props;
     }
 
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, NotificationRequest> kafkaListenerContainerFactory() {
+    public ConcurrentKafkaListenerContainerFactory<String, NotificationRequest> kafkaListenerContainerFactory(
+            DefaultErrorHandler notificationErrorHandler) {
         ConcurrentKafkaListenerContainerFactory<String, NotificationRequest> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
-        
-        // Ack Mode: MANUAL_IMMEDIATE - commit сразу после успешной обработки сообщения
+
+        // Ack Mode: RECORD - commit после успешной обработки каждого сообщения
         // Это гарантирует "at least once": если обработка упала, offset не будет зафиксирован
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.RECORD);
-        
+        factory.setCommonErrorHandler(notificationErrorHandler);
+
         // Concurrency: количество параллельных consumer'ов
         factory.setConcurrency(3);
-        
+
         return factory;
     }
-}
 
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, NotificationRequest> batchKafkaListenerContainerFactory(
+            DefaultErrorHandler notificationErrorHandler) {
+        ConcurrentKafkaListenerContainerFactory<String, NotificationRequest> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(batchConsumerFactory());
+
+        // Batch listener: весь результат poll передается одним списком, offset фиксируется один раз за пакет
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        factory.setCommonErrorHandler(notificationErrorHandler);
+        factory.setConcurrency(3);
+
+        return factory;
+    }
+
+    /**
+     * Временные ошибки повторяются с растущей паузой, пока не пройдут: во время недоступности БД
+     * записи не уходят в DLT. Остальные ошибки (poison-записи, ошибки десериализации) сразу
+     * отправляют запись в DLT, ее offset фиксируется и чтение партиции продолжается.
+     * Счетчик dead_lettered увеличивается в recoverer: только для записей, действительно опубликованных в DLT,
+     * а не при каждой ошибке listener, которая еще может быть повторена
+     */
+    @Bean
+    public DefaultErrorHandler notificationErrorHandler(DeadLetterPublishingRecoverer deadLetterPublishingRecoverer,
+                                                        MeterRegistry meterRegistry) {
+        Counter deadLetteredCounter = Counter.builder("notifications.kafka.messages")
+                .description("Уведомления, полученные Kafka listener")
+                .tag("outcome", "dead_lettered")
+                .register(meterRegistry);
+        ExponentialBackOff backOff = new ExponentialBackOff(retryInterval.toMillis(), 2);
+        backOff.setMaxInterval(retryMaxInterval.toMillis());
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler((record, exception) -> {
+            deadLetterPublishingRecoverer.accept(record, exception);
+            deadLetteredCounter.increment();
+        }, backOff);
+        errorHandler.setClassifications(TRANSIENT_ERRORS.stream()
+                .collect(Collectors.toMap(Function.identity(), type -> true)), false);
+        return errorHandler;
+    }
+
+    @Bean
+    public DeadLetterPublishingRecoverer deadLetterPublishingRecoverer(
+            KafkaTemplate<String, Object> deadLetterKafkaTemplate) {
+        // Партиция -1: партицию в DLT выбирает producer
+        return new DeadLetterPublishingRecoverer(deadLetterKafkaTemplate,
+                (record, exception) -> new TopicPartition(deadLetterTopic, -1));
+    }
+
+    /**
+     * Producer для DLT: исходные байты сообщений, которые не удалось десериализовать,
+     * публикуются как есть, остальные записи - в JSON
+     */
+    @Bean
+    public KafkaTemplate<String, Object> deadLetterKafkaTemplate() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, false);
+
+        Map<Class<?>, Serializer<?>> valueSerializers = new LinkedHashMap<>();
+        valueSerializers.put(byte[].class, new ByteArraySerializer());
+        valueSerializers.put(Object.class, new JsonSerializer<>());
+
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(props,
+                new StringSerializer(), new DelegatingByTypeSerializer(valueSerializers, true)));
+    }
+
+    @Bean
+    public NewTopic notificationsDeadLetterTopic() {
+        return TopicBuilder.name(deadLetterTopic).build();
+    }
+}
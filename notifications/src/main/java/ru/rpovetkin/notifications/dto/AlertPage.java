@@ -0,0 +1,24 @@
+package ru.rpovetkin.notifications.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Страница ленты алертов пользователя
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertPage {
+    private List<Alert> alerts;
+
+    /**
+     * Курсор следующей страницы (параметр cursor), null - страниц больше нет
+     */
+    private String nextCursor;
+}
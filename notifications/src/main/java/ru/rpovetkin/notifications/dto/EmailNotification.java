@@ -21,5 +21,9 @@ public class EmailNotification {
     private String source;
     private LocalDateTime sentAt;
     private boolean sent;
+    private String status; // "PENDING", "SENDING", "SENT", "FAILED"
+    private int attempts;
+    private LocalDateTime deliveredAt;
+    private String lastError;
     private String templateName; // опционально для разных шаблонов
 }
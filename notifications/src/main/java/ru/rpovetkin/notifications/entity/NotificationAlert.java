@@ -0,0 +1,69 @@
+package ru.rpovetkin.notifications.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Алерт пользователя. Лента читается по (user_id, created_at DESC, id DESC),
+ * курсор страницы - пара (created_at, id) последнего алерта
+ */
+@Entity
+@Table(name = "notification_alerts", indexes = {
+        @Index(name = "idx_notification_alerts_user_feed", columnList = "user_id, created_at DESC, id DESC"),
+        @Index(name = "idx_notification_alerts_created_at", columnList = "created_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationAlert implements Persistable<String> {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Column(length = 32)
+    private String type;
+
+    private String title;
+
+    @Column(columnDefinition = "text")
+    private String message;
+
+    @Column(length = 64)
+    private String source;
+
+    /**
+     * Дополнительные данные уведомления в JSON
+     */
+    @Column(columnDefinition = "text")
+    private String metadata;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "is_read", nullable = false)
+    private boolean read;
+
+    /**
+     * Id назначается при создании, поэтому save() без этого флага выполнял бы лишний SELECT перед INSERT
+     */
+    @Transient
+    @Builder.Default
+    private boolean isNew = true;
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+}
@@ -0,0 +1,87 @@
+package ru.rpovetkin.notifications.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+import ru.rpovetkin.notifications.enums.EmailDeliveryStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Запись истории email уведомлений и состояние ее доставки.
+ * sentAt - время постановки в очередь, deliveredAt - время фактической отправки
+ */
+@Entity
+@Table(name = "notification_emails", indexes = {
+        @Index(name = "idx_notification_emails_user_sent", columnList = "user_id, sent_at DESC"),
+        @Index(name = "idx_notification_emails_sent_at", columnList = "sent_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationEmail implements Persistable<String> {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Column(name = "user_email")
+    private String userEmail;
+
+    @Column(length = 32)
+    private String type;
+
+    @Column(length = 512)
+    private String subject;
+
+    @Column(columnDefinition = "text")
+    private String message;
+
+    @Column(length = 64)
+    private String source;
+
+    @Column(name = "template_name", length = 128)
+    private String templateName;
+
+    @Column(name = "sent_at", nullable = false)
+    private LocalDateTime sentAt;
+
+    @Column(nullable = false)
+    private boolean sent;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private EmailDeliveryStatus status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "delivered_at")
+    private LocalDateTime deliveredAt;
+
+    @Column(name = "last_error", length = 1024)
+    private String lastError;
+
+    /**
+     * Id назначается при создании, поэтому save() без этого флага выполнял бы лишний SELECT перед INSERT
+     */
+    @Transient
+    @Builder.Default
+    private boolean isNew = true;
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+}
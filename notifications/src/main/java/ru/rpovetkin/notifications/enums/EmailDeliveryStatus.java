@@ -0,0 +1,24 @@
+package ru.rpovetkin.notifications.enums;
+
+/**
+ * Статус доставки email уведомления
+ */
+public enum EmailDeliveryStatus {
+    /**
+     * Ожидает отправки, но не в очереди: до следующей попытки или после переполнения очереди
+     */
+    PENDING,
+    /**
+     * Поставлено в очередь отправки в памяти сервиса
+     */
+    QUEUED,
+    /**
+     * Взято worker'ом в отправку
+     */
+    SENDING,
+    SENT,
+    /**
+     * Попытки отправки исчерпаны
+     */
+    FAILED
+}
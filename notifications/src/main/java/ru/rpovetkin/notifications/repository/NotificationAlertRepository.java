@@ -0,0 +1,56 @@
+package ru.rpovetkin.notifications.repository;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.rpovetkin.notifications.entity.NotificationAlert;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface NotificationAlertRepository extends JpaRepository<NotificationAlert, String> {
+
+    /**
+     * Первая страница ленты пользователя (новые сверху)
+     */
+    @Query("SELECT a FROM NotificationAlert a WHERE a.userId = :userId " +
+           "AND (:unreadOnly = false OR a.read = false) " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<NotificationAlert> findFeed(@Param("userId") String userId,
+                                     @Param("unreadOnly") boolean unreadOnly,
+                                     Limit limit);
+
+    /**
+     * Следующая страница ленты: алерты строго после курсора (createdAt, id) в порядке убывания
+     */
+    @Query("SELECT a FROM NotificationAlert a WHERE a.userId = :userId " +
+           "AND (:unreadOnly = false OR a.read = false) " +
+           "AND (a.createdAt < :createdAt OR (a.createdAt = :createdAt AND a.id < :id)) " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<NotificationAlert> findFeedAfter(@Param("userId") String userId,
+                                          @Param("unreadOnly") boolean unreadOnly,
+                                          @Param("createdAt") LocalDateTime createdAt,
+                                          @Param("id") String id,
+                                          Limit limit);
+
+    @Modifying
+    @Query("UPDATE NotificationAlert a SET a.read = true WHERE a.userId = :userId AND a.id = :id")
+    int markAsRead(@Param("userId") String userId, @Param("id") String id);
+
+    @Modifying
+    @Query("UPDATE NotificationAlert a SET a.read = true WHERE a.userId = :userId AND a.read = false")
+    int markAllAsRead(@Param("userId") String userId);
+
+    /**
+     * Удалить не больше batchSize алертов старше cutoff; короткие удаления не держат долгих блокировок
+     */
+    @Modifying
+    @Query(value = "DELETE FROM notification_alerts WHERE id IN (" +
+                   "SELECT id FROM notification_alerts WHERE created_at < :cutoff LIMIT :batchSize)",
+           nativeQuery = true)
+    int deleteBatchCreatedBefore(@Param("cutoff") LocalDateTime cutoff, @Param("batchSize") int batchSize);
+}
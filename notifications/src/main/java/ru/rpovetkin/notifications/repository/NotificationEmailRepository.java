@@ -0,0 +1,140 @@
+package ru.rpovetkin.notifications.repository;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.rpovetkin.notifications.entity.NotificationEmail;
+import ru.rpovetkin.notifications.enums.EmailDeliveryStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface NotificationEmailRepository extends JpaRepository<NotificationEmail, String> {
+
+    List<NotificationEmail> findByUserIdOrderBySentAtDesc(String userId, Limit limit);
+
+    /**
+     * Количество писем по типу: пары (type, count)
+     */
+    @Query("SELECT e.type, COUNT(e) FROM NotificationEmail e GROUP BY e.type")
+    List<Object[]> countByType();
+
+    /**
+     * Количество писем по статусу доставки: пары (status, count)
+     */
+    @Query("SELECT e.status, COUNT(e) FROM NotificationEmail e GROUP BY e.status")
+    List<Object[]> countByStatus();
+
+    /**
+     * Отметить письма, поставленные в очередь отправки, чтобы requeueStale не ставил их туда повторно.
+     * Вызывается и из afterCommit, где транзакция уже завершена, поэтому выполняется в новой транзакции.
+     * Письма, уже захваченные worker'ом, не меняются
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query("UPDATE NotificationEmail e " +
+           "SET e.status = ru.rpovetkin.notifications.enums.EmailDeliveryStatus.QUEUED, e.nextAttemptAt = :queuedAt " +
+           "WHERE e.id IN :ids AND e.status = ru.rpovetkin.notifications.enums.EmailDeliveryStatus.PENDING")
+    int markQueued(@Param("ids") List<String> ids, @Param("queuedAt") LocalDateTime queuedAt);
+
+    /**
+     * Вернуть в PENDING письма, которые числятся в очереди: очередь в памяти не переживает рестарт сервиса
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE NotificationEmail e " +
+           "SET e.status = ru.rpovetkin.notifications.enums.EmailDeliveryStatus.PENDING " +
+           "WHERE e.status = ru.rpovetkin.notifications.enums.EmailDeliveryStatus.QUEUED")
+    int releaseQueued();
+
+    /**
+     * Вернуть в PENDING письма, которые числятся в очереди, но были из нее вытеснены
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE NotificationEmail e " +
+           "SET e.status = ru.rpovetkin.notifications.enums.EmailDeliveryStatus.PENDING " +
+           "WHERE e.id IN :ids AND e.status = ru.rpovetkin.notifications.enums.EmailDeliveryStatus.QUEUED")
+    int release(@Param("ids") List<String> ids);
+
+    /**
+     * Захватить письмо для отправки: только одно обращение переводит его из PENDING или QUEUED в SENDING,
+     * повторно поставленное в очередь письмо не будет отправлено дважды
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE NotificationEmail e " +
+           "SET e.status = ru.rpovetkin.notifications.enums.EmailDeliveryStatus.SENDING, " +
+           "e.attempts = e.attempts + 1, e.nextAttemptAt = :claimedAt " +
+           "WHERE e.id = :id AND e.status IN (ru.rpovetkin.notifications.enums.EmailDeliveryStatus.PENDING, " +
+           "ru.rpovetkin.notifications.enums.EmailDeliveryStatus.QUEUED)")
+    int claim(@Param("id") String id, @Param("claimedAt") LocalDateTime claimedAt);
+
+    /**
+     * Продлить захват писем, которые еще отправляются: nextAttemptAt письма в SENDING - время последнего продления
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE NotificationEmail e SET e.nextAttemptAt = :renewedAt " +
+           "WHERE e.id IN :ids AND e.status = ru.rpovetkin.notifications.enums.EmailDeliveryStatus.SENDING")
+    int renewClaims(@Param("ids") List<String> ids, @Param("renewedAt") LocalDateTime renewedAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE NotificationEmail e " +
+           "SET e.status = ru.rpovetkin.notifications.enums.EmailDeliveryStatus.SENT, e.sent = true, " +
+           "e.deliveredAt = :deliveredAt, e.nextAttemptAt = null, e.lastError = null " +
+           "WHERE e.id = :id")
+    int markSent(@Param("id") String id, @Param("deliveredAt") LocalDateTime deliveredAt);
+
+    /**
+     * Вернуть письмо в PENDING до следующей попытки или перевести в FAILED
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE NotificationEmail e SET e.status = :status, e.nextAttemptAt = :nextAttemptAt, " +
+           "e.lastError = :error WHERE e.id = :id")
+    int markAttemptFailed(@Param("id") String id,
+                          @Param("status") EmailDeliveryStatus status,
+                          @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                          @Param("error") String error);
+
+    /**
+     * Письма, которые должны были уйти до cutoff, но остались неотправленными:
+     * очередь была переполнена, сервис перезапускался или упал во время отправки.
+     * Письма в очереди (QUEUED) не выбираются, сколько бы они в ней ни ждали; захват письма в SENDING
+     * продлевается живым экземпляром, поэтому выбираются только письма, чей владелец остановился
+     */
+    @Query("SELECT e.id FROM NotificationEmail e " +
+           "WHERE e.status IN (ru.rpovetkin.notifications.enums.EmailDeliveryStatus.PENDING, " +
+           "ru.rpovetkin.notifications.enums.EmailDeliveryStatus.SENDING) " +
+           "AND e.nextAttemptAt < :cutoff ORDER BY e.nextAttemptAt")
+    List<String> findUndeliveredBefore(@Param("cutoff") LocalDateTime cutoff, Limit limit);
+
+    /**
+     * Вернуть неотправленные письма в PENDING (в том числе захваченные остановившимся экземпляром),
+     * чтобы их можно было захватить заново
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE NotificationEmail e " +
+           "SET e.status = ru.rpovetkin.notifications.enums.EmailDeliveryStatus.PENDING, e.nextAttemptAt = :now " +
+           "WHERE e.id IN :ids AND e.status IN (ru.rpovetkin.notifications.enums.EmailDeliveryStatus.PENDING, " +
+           "ru.rpovetkin.notifications.enums.EmailDeliveryStatus.SENDING)")
+    int requeue(@Param("ids") List<String> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * Удалить не больше batchSize писем старше cutoff
+     */
+    @Modifying
+    @Query(value = "DELETE FROM notification_emails WHERE id IN (" +
+                   "SELECT id FROM notification_emails WHERE sent_at < :cutoff LIMIT :batchSize)",
+           nativeQuery = true)
+    int deleteBatchSentBefore(@Param("cutoff") LocalDateTime cutoff, @Param("batchSize") int batchSize);
+}
@@ -0,0 +1,73 @@
+package ru.rpovetkin.notifications.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.rpovetkin.notifications.repository.NotificationAlertRepository;
+import ru.rpovetkin.notifications.repository.NotificationEmailRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.function.IntSupplier;
+
+/**
+ * Retention алертов и истории писем: записи старше notifications.alerts.retention удаляются пачками,
+ * каждая пачка в своей транзакции
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AlertRetentionJob {
+
+    private final NotificationAlertRepository notificationAlertRepository;
+    private final NotificationEmailRepository notificationEmailRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${notifications.alerts.retention:30d}")
+    private Duration retention;
+
+    @Value("${notifications.alerts.retention-batch-size:5000}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${notifications.alerts.retention-interval:1h}",
+            initialDelayString = "${notifications.alerts.retention-initial-delay:1m}")
+    public void runRetention() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        int removedAlerts = deleteCreatedBefore(cutoff);
+        int removedEmails = deleteEmailsSentBefore(cutoff);
+        if (removedAlerts > 0 || removedEmails > 0) {
+            log.info("Removed {} alerts and {} emails older than {}", removedAlerts, removedEmails, retention);
+        }
+    }
+
+    /**
+     * Удалить все алерты, созданные до cutoff
+     *
+     * @return количество удаленных алертов
+     */
+    public int deleteCreatedBefore(LocalDateTime cutoff) {
+        return deleteInBatches(() -> notificationAlertRepository.deleteBatchCreatedBefore(cutoff, batchSize));
+    }
+
+    /**
+     * Удалить историю писем, отправленных до cutoff
+     *
+     * @return количество удаленных писем
+     */
+    public int deleteEmailsSentBefore(LocalDateTime cutoff) {
+        return deleteInBatches(() -> notificationEmailRepository.deleteBatchSentBefore(cutoff, batchSize));
+    }
+
+    private int deleteInBatches(IntSupplier deleteBatch) {
+        int total = 0;
+        int removed;
+        do {
+            removed = transactionTemplate.execute(status -> deleteBatch.getAsInt());
+            total += removed;
+        } while (removed == batchSize);
+        return total;
+    }
+}
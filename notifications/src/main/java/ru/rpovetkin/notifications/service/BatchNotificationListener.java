@@ -0,0 +1,128 @@
+package ru.rpovetkin.notifications.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.stereotype.Service;
+import ru.rpovetkin.notifications.config.KafkaConsumerConfig;
+import ru.rpovetkin.notifications.dto.NotificationRequest;
+
+import java.util.List;
+
+/**
+ * Пакетный Kafka Consumer уведомлений.
+ * Весь результат poll сохраняется пакетными вставками в одной транзакции, offset фиксируется один раз за пакет.
+ * Poison-сообщение (некорректный JSON, уведомление без userId, ошибка сохранения конкретной записи)
+ * указывается обработчику ошибок контейнера через {@link BatchListenerFailedException}: записи до него
+ * фиксируются, оно один раз отправляется в DLT, чтение продолжается со следующей записи.
+ * При временной недоступности БД пакет повторяется, пока БД не станет доступна
+ */
+@Service
+@ConditionalOnProperty(name = "notifications.kafka.listener.mode", havingValue = "BATCH", matchIfMissing = true)
+@Slf4j
+public class BatchNotificationListener {
+
+    private static final LogAccessor LOG_ACCESSOR = new LogAccessor(BatchNotificationListener.class);
+
+    private final NotificationService notificationService;
+    private final Counter storedCounter;
+
+    public BatchNotificationListener(NotificationService notificationService, MeterRegistry meterRegistry) {
+        this.notificationService = notificationService;
+        this.storedCounter = messagesCounter(meterRegistry, "stored");
+    }
+
+    @KafkaListener(
+        topics = "${spring.kafka.topics.notifications:account-notifications}",
+        groupId = "${spring.kafka.consumer.group-id:notifications-group}",
+        containerFactory = "batchKafkaListenerContainerFactory"
+    )
+    public void listen(List<ConsumerRecord<String, NotificationRequest>> records) {
+        // Сохраняем записи до первой некорректной; остальные придут повторно после ее отправки в DLT
+        for (int i = 0; i < records.size(); i++) {
+            Exception poison = validate(records.get(i));
+            if (poison != null) {
+                store(records.subList(0, i), records.size());
+                throw poison(records.get(i), poison);
+            }
+        }
+        store(records, records.size());
+    }
+
+    private void store(List<ConsumerRecord<String, NotificationRequest>> valid, int polled) {
+        if (valid.isEmpty()) {
+            return;
+        }
+        try {
+            notificationService.sendNotifications(valid.stream().map(ConsumerRecord::value).toList());
+            storedCounter.increment(valid.size());
+            log.info("Stored {} notifications from Kafka batch of {}", valid.size(), polled);
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                // Весь пакет будет повторен обработчиком ошибок контейнера
+                throw e;
+            }
+            log.warn("Bulk store of {} notifications failed, storing one by one: {}", valid.size(), e.getMessage());
+            storeOneByOne(valid);
+        }
+    }
+
+    /**
+     * Сохранить записи по одной, чтобы отделить poison-запись от остального пакета.
+     * Записи до упавшей уже сохранены: offset фиксируется до нее, повтор начнется с нее
+     */
+    private void storeOneByOne(List<ConsumerRecord<String, NotificationRequest>> records) {
+        for (ConsumerRecord<String, NotificationRequest> record : records) {
+            try {
+                notificationService.sendNotifications(List.of(record.value()));
+                storedCounter.increment();
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    throw new BatchListenerFailedException("Transient failure storing notification", e, record);
+                }
+                throw poison(record, e);
+            }
+        }
+    }
+
+    private Exception validate(ConsumerRecord<String, NotificationRequest> record) {
+        DeserializationException deserializationException = SerializationUtils.getExceptionFromHeader(
+                record, SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, LOG_ACCESSOR);
+        if (deserializationException != null) {
+            return deserializationException;
+        }
+        NotificationRequest request = record.value();
+        if (request == null || request.getUserId() == null || request.getUserId().isBlank()) {
+            return new IllegalArgumentException("Notification without userId");
+        }
+        return null;
+    }
+
+    /**
+     * Ошибка не временная, поэтому обработчик ошибок контейнера отправит запись в DLT без повторов.
+     * Отправленные в DLT записи считает recoverer обработчика ошибок (KafkaConsumerConfig)
+     */
+    private BatchListenerFailedException poison(ConsumerRecord<String, NotificationRequest> record, Exception reason) {
+        log.error("Sending notification {}-{}@{} to dead-letter topic: {}",
+                record.topic(), record.partition(), record.offset(), reason.getMessage());
+        return new BatchListenerFailedException("Poison notification", reason, record);
+    }
+
+    private static boolean isTransient(Throwable e) {
+        return KafkaConsumerConfig.TRANSIENT_ERRORS.stream().anyMatch(type -> type.isInstance(e));
+    }
+
+    private static Counter messagesCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("notifications.kafka.messages")
+                .description("Уведомления, полученные пакетным listener")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
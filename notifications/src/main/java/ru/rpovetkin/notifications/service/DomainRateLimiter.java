@@ -0,0 +1,115 @@
+package ru.rpovetkin.notifications.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничение скорости отправки писем на один почтовый домен (token bucket на домен).
+ * Вызывающий поток не ждет: reserve сразу резервирует очередной слот домена и возвращает задержку до него,
+ * поэтому медленный домен не занимает worker'ы, отправляющие в другие домены.
+ * Домен берется из адреса получателя, поэтому бакеты без долга периодически удаляются:
+ * полный бакет ничем не отличается от нового, и карта растет только на домены с недавними отправками
+ */
+final class DomainRateLimiter {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final double permitsPerSecond;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong sweptAt = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param permitsPerSecond писем в секунду на домен; 0 и меньше - без ограничения
+     */
+    DomainRateLimiter(double permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    /**
+     * Зарезервировать отправку письма в домен
+     *
+     * @return через сколько наносекунд письмо можно отправить; 0 - сразу
+     */
+    long reserve(String domain) {
+        return reserve(domain, System.nanoTime());
+    }
+
+    long reserve(String domain, long now) {
+        if (permitsPerSecond <= 0) {
+            return 0;
+        }
+        sweepIfDue(now);
+        while (true) {
+            long delay = buckets.computeIfAbsent(domain, key -> new Bucket(now)).reserve(now);
+            if (delay >= 0) {
+                return delay;
+            }
+            // бакет удален очисткой между computeIfAbsent и reserve - берем новый
+        }
+    }
+
+    int size() {
+        return buckets.size();
+    }
+
+    /**
+     * Не чаще раза в SWEEP_INTERVAL_NANOS удалить полные бакеты; очистку выполняет один из вызывающих потоков
+     */
+    private void sweepIfDue(long now) {
+        long last = sweptAt.get();
+        if (now - last < SWEEP_INTERVAL_NANOS || !sweptAt.compareAndSet(last, now)) {
+            return;
+        }
+        buckets.forEach((domain, bucket) -> {
+            if (bucket.evictIfFull(now)) {
+                buckets.remove(domain, bucket);
+            }
+        });
+    }
+
+    private final class Bucket {
+
+        // Емкость - секунда отправки: допускается всплеск не больше permitsPerSecond писем.
+        // Отрицательный остаток - слоты, уже зарезервированные отложенными письмами
+        private double tokens = permitsPerSecond;
+        private long refilledAt;
+        private boolean evicted;
+
+        private Bucket(long now) {
+            this.refilledAt = now;
+        }
+
+        /**
+         * Взять токен, при необходимости в долг; вернуть, сколько наносекунд ждать, пока долг будет погашен,
+         * или -1, если бакет уже удален из карты
+         */
+        synchronized long reserve(long now) {
+            if (evicted) {
+                return -1;
+            }
+            refill(now);
+            tokens -= 1;
+            if (tokens >= 0) {
+                return 0;
+            }
+            return (long) Math.ceil(-tokens * NANOS_PER_SECOND / permitsPerSecond);
+        }
+
+        /**
+         * Пометить бакет удаленным, если он успел наполниться: долгов нет, и новый бакет даст то же самое
+         */
+        synchronized boolean evictIfFull(long now) {
+            refill(now);
+            evicted = tokens >= permitsPerSecond;
+            return evicted;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(permitsPerSecond, tokens + (now - refilledAt) * permitsPerSecond / NANOS_PER_SECOND);
+            refilledAt = now;
+        }
+    }
+}
@@ -0,0 +1,437 @@
+package ru.rpovetkin.notifications.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.rpovetkin.notifications.entity.NotificationEmail;
+import ru.rpovetkin.notifications.enums.EmailDeliveryStatus;
+import ru.rpovetkin.notifications.repository.NotificationEmailRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Асинхронная отправка email уведомлений.
+ * Письма сохраняются в notification_emails со статусом PENDING и после commit ставятся в ограниченную очередь;
+ * Kafka consumer только ставит письма в очередь и не ждет SMTP. Очередь разбирают worker'ы на виртуальных потоках,
+ * каждый держит свое SMTP соединение между письмами. Отправка в один домен ограничена по скорости:
+ * письмо сверх лимита откладывается до своего слота и возвращается в очередь, worker не ждет.
+ * Неудачные попытки повторяются с экспоненциальной паузой. Письма в очереди отмечаются статусом QUEUED;
+ * письма, не попавшие в очередь (переполнение, рестарт), периодически поднимаются из БД.
+ * Захват письма в отправку (SENDING) продлевается, пока worker его отправляет, поэтому заново
+ * в очередь попадают только письма, захваченные остановившимся экземпляром сервиса.
+ * Если SMTP не настроен (spring.mail.host), отправка имитируется записью в лог
+ */
+@Service
+@Slf4j
+public class EmailDispatcher {
+
+    private static final int MAX_ERROR_LENGTH = 1024;
+
+    private final NotificationEmailRepository notificationEmailRepository;
+    private final Optional<JavaMailSenderImpl> mailSender;
+    private final MeterRegistry meterRegistry;
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter failedCounter;
+    private final Counter rejectedCounter;
+    private final Counter deferredCounter;
+
+    @Value("${notifications.mail.from:no-reply@bank.com}")
+    private String from = "no-reply@bank.com";
+
+    @Value("${notifications.mail.dispatch.queue-capacity:10000}")
+    private int queueCapacity = 10_000;
+
+    @Value("${notifications.mail.dispatch.workers:8}")
+    private int workers = 8;
+
+    /**
+     * Писем в секунду на один почтовый домен; 0 - без ограничения
+     */
+    @Value("${notifications.mail.dispatch.rate-per-domain:20}")
+    private double ratePerDomain = 20;
+
+    @Value("${notifications.mail.dispatch.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    @Value("${notifications.mail.dispatch.initial-backoff:2s}")
+    private Duration initialBackoff = Duration.ofSeconds(2);
+
+    @Value("${notifications.mail.dispatch.max-backoff:5m}")
+    private Duration maxBackoff = Duration.ofMinutes(5);
+
+    /**
+     * Письмо в очереди отправки; reserved - слот домена уже зарезервирован при откладывании письма
+     */
+    private record Delivery(NotificationEmail email, boolean reserved) {
+    }
+
+    /**
+     * SMTP соединение worker'а закрывается, если писем не было дольше этого времени
+     */
+    @Value("${notifications.mail.dispatch.idle-connection-timeout:30s}")
+    private Duration idleConnectionTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Неотправленное письмо вне очереди, ожидающее дольше этого времени, заново ставится в очередь из БД.
+     * Захват письма в отправку продлевается каждую треть этого времени
+     */
+    @Value("${notifications.mail.dispatch.stale-after:5m}")
+    private Duration staleAfter = Duration.ofMinutes(5);
+
+    private BlockingQueue<Delivery> queue;
+    private DomainRateLimiter rateLimiter;
+    private ScheduledExecutorService scheduler;
+    /**
+     * Письма, захваченные worker'ами этого экземпляра и еще не отмеченные отправленными или неудачными
+     */
+    private final Set<String> claimed = ConcurrentHashMap.newKeySet();
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private volatile boolean running;
+
+    public EmailDispatcher(NotificationEmailRepository notificationEmailRepository,
+                           Optional<JavaMailSenderImpl> mailSender,
+                           MeterRegistry meterRegistry) {
+        this.notificationEmailRepository = notificationEmailRepository;
+        this.mailSender = mailSender;
+        this.meterRegistry = meterRegistry;
+        this.sentCounter = dispatchCounter(meterRegistry, "sent");
+        this.retriedCounter = dispatchCounter(meterRegistry, "retried");
+        this.failedCounter = dispatchCounter(meterRegistry, "failed");
+        this.rejectedCounter = dispatchCounter(meterRegistry, "rejected");
+        this.deferredCounter = dispatchCounter(meterRegistry, "deferred");
+    }
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        rateLimiter = new DomainRateLimiter(ratePerDomain);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mail-dispatch-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long renewIntervalMillis = Math.max(1, staleAfter.toMillis() / 3);
+        scheduler.scheduleWithFixedDelay(this::renewClaims, renewIntervalMillis, renewIntervalMillis, TimeUnit.MILLISECONDS);
+        Gauge.builder("notifications.mail.queue.size", queue, BlockingQueue::size)
+                .description("Письма в очереди на отправку")
+                .register(meterRegistry);
+
+        // Очередь прежнего запуска потеряна: ее письма снова становятся доступны requeueStale
+        int released = notificationEmailRepository.releaseQueued();
+        if (released > 0) {
+            log.info("Released {} emails queued before restart", released);
+        }
+
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            workerThreads.add(Thread.ofVirtual().name("mail-dispatch-" + i).start(this::runWorker));
+        }
+        log.info("Email dispatcher started: {} workers, queue capacity {}, {} per domain/s, transport {}",
+                workers, queueCapacity, ratePerDomain, mailSender.isPresent() ? "SMTP" : "LOG");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        workerThreads.forEach(Thread::interrupt);
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Поставить сохраненные письма в очередь; внутри транзакции - только после ее commit,
+     * чтобы worker не захватил письмо, которого еще нет в БД
+     */
+    public void dispatch(List<NotificationEmail> emails) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(emails);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                enqueue(emails);
+            }
+        });
+    }
+
+    /**
+     * Поднять из БД письма вне очереди, которые не были отправлены вовремя
+     */
+    @Scheduled(fixedDelayString = "${notifications.mail.dispatch.sweep-interval:1m}",
+            initialDelayString = "${notifications.mail.dispatch.sweep-initial-delay:30s}")
+    public void requeueStale() {
+        int capacity = queue.remainingCapacity();
+        if (capacity == 0) {
+            return;
+        }
+        LocalDateTime now = now();
+        List<String> ids = notificationEmailRepository.findUndeliveredBefore(now.minus(staleAfter), Limit.of(capacity));
+        if (ids.isEmpty()) {
+            return;
+        }
+        notificationEmailRepository.requeue(ids, now);
+        enqueue(notificationEmailRepository.findAllById(ids));
+        log.info("Requeued {} undelivered emails", ids.size());
+    }
+
+    private void enqueue(List<NotificationEmail> emails) {
+        List<String> queued = new ArrayList<>(emails.size());
+        for (NotificationEmail email : emails) {
+            if (queue.offer(new Delivery(email, false))) {
+                queued.add(email.getId());
+            } else {
+                // Письмо остается PENDING в БД и будет поднято requeueStale
+                rejectedCounter.increment();
+                log.warn("Email dispatch queue is full, email {} deferred", email.getId());
+            }
+        }
+        if (queued.isEmpty()) {
+            return;
+        }
+        try {
+            notificationEmailRepository.markQueued(queued, now());
+        } catch (RuntimeException e) {
+            // Письма уже в очереди; без отметки requeueStale может поставить их повторно, но claim не даст отправить дважды
+            log.warn("Failed to mark {} emails as queued: {}", queued.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Продлить захват писем, которые сейчас отправляют worker'ы этого экземпляра:
+     * медленная, но живая отправка не считается зависшей, и requeueStale не отправит письмо второй раз
+     */
+    void renewClaims() {
+        if (claimed.isEmpty()) {
+            return;
+        }
+        try {
+            notificationEmailRepository.renewClaims(List.copyOf(claimed), now());
+        } catch (RuntimeException e) {
+            log.warn("Failed to renew claims of {} emails: {}", claimed.size(), e.getMessage());
+        }
+    }
+
+    private void runWorker() {
+        try (SmtpConnection connection = new SmtpConnection()) {
+            while (running) {
+                Delivery delivery = queue.poll(idleConnectionTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                if (delivery == null) {
+                    connection.close();
+                    continue;
+                }
+                try {
+                    deliver(delivery, connection);
+                } catch (RuntimeException e) {
+                    // Ошибка БД при захвате или отметке письма не должна останавливать worker
+                    log.error("Failed to dispatch email {}: {}", delivery.email().getId(), e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void deliver(Delivery delivery, SmtpConnection connection) {
+        NotificationEmail email = delivery.email();
+        if (!delivery.reserved()) {
+            long delayNanos = rateLimiter.reserve(domainOf(email.getUserEmail()));
+            if (delayNanos > 0) {
+                defer(email, delayNanos);
+                return;
+            }
+        }
+
+        // Письмо могло попасть в очередь дважды (повтор и requeueStale) - отправляет только захвативший его worker
+        if (notificationEmailRepository.claim(email.getId(), now()) == 0) {
+            return;
+        }
+        claimed.add(email.getId());
+        int attempt = email.getAttempts() + 1;
+        email.setAttempts(attempt);
+
+        try {
+            connection.send(email);
+        } catch (MessagingException | RuntimeException e) {
+            connection.close();
+            onDeliveryFailure(email, attempt, e);
+            return;
+        }
+        sentCounter.increment();
+        markSent(email);
+    }
+
+    /**
+     * Отложить письмо до зарезервированного слота домена; письмо остается QUEUED и не захватывается,
+     * а worker сразу берет следующее письмо
+     */
+    private void defer(NotificationEmail email, long delayNanos) {
+        deferredCounter.increment();
+        scheduler.schedule(() -> {
+            if (!queue.offer(new Delivery(email, true))) {
+                // Вне очереди QUEUED письмо не подняли бы до рестарта - возвращаем его в PENDING для requeueStale
+                rejectedCounter.increment();
+                notificationEmailRepository.release(List.of(email.getId()));
+                log.warn("Email dispatch queue is full, rate-limited email {} deferred", email.getId());
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Зафиксировать отправку. Письмо уже ушло, поэтому при ошибке БД отметка повторяется,
+     * а захват продолжает продлеваться - иначе requeueStale отправил бы письмо повторно
+     */
+    private void markSent(NotificationEmail email) {
+        try {
+            notificationEmailRepository.markSent(email.getId(), now());
+            claimed.remove(email.getId());
+        } catch (RuntimeException e) {
+            log.warn("Email {} was sent but not marked, retrying in {}: {}", email.getId(), initialBackoff, e.getMessage());
+            scheduler.schedule(() -> markSent(email), initialBackoff.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void onDeliveryFailure(NotificationEmail email, int attempt, Exception e) {
+        // Письмо не ушло: если отметка ниже не удастся, истекший захват безопасно поднимет requeueStale
+        claimed.remove(email.getId());
+        String error = truncate(e.getMessage());
+        if (attempt >= maxAttempts) {
+            notificationEmailRepository.markAttemptFailed(email.getId(), EmailDeliveryStatus.FAILED, null, error);
+            failedCounter.increment();
+            log.error("Email {} to {} failed after {} attempts: {}", email.getId(), email.getUserEmail(), attempt, error);
+            return;
+        }
+
+        Duration backoff = backoff(attempt);
+        notificationEmailRepository.markAttemptFailed(
+                email.getId(), EmailDeliveryStatus.PENDING, now().plus(backoff), error);
+        retriedCounter.increment();
+        log.warn("Email {} to {} failed (attempt {}), retrying in {}: {}",
+                email.getId(), email.getUserEmail(), attempt, backoff, error);
+        scheduler.schedule(() -> enqueue(List.of(email)), backoff.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Экспоненциальная пауза: initialBackoff * 2^(attempt - 1), не больше maxBackoff
+     */
+    Duration backoff(int attempt) {
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempt - 1, 30));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    private static String domainOf(String address) {
+        int at = address != null ? address.lastIndexOf('@') : -1;
+        return at >= 0 ? address.substring(at + 1).toLowerCase() : "";
+    }
+
+    private static String truncate(String error) {
+        if (error == null || error.length() <= MAX_ERROR_LENGTH) {
+            return error;
+        }
+        return error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    private static Counter dispatchCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("notifications.mail.dispatch")
+                .description("Попытки отправки email уведомлений")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * SMTP соединение worker'а: открывается при первом письме и переиспользуется для следующих
+     */
+    private final class SmtpConnection implements AutoCloseable {
+
+        private Transport transport;
+
+        void send(NotificationEmail email) throws MessagingException {
+            if (mailSender.isEmpty()) {
+                logEmailSending(email);
+                return;
+            }
+            JavaMailSenderImpl sender = mailSender.get();
+            if (transport == null || !transport.isConnected()) {
+                close();
+                // JavaMailSenderImpl по умолчанию не задает протокол и сам подставляет smtp
+                String protocol = sender.getProtocol() != null ? sender.getProtocol() : JavaMailSenderImpl.DEFAULT_PROTOCOL;
+                transport = sender.getSession().getTransport(protocol);
+                transport.connect(sender.getHost(), sender.getPort(), sender.getUsername(), sender.getPassword());
+            }
+            MimeMessage message = sender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+            helper.setFrom(from);
+            helper.setTo(email.getUserEmail());
+            helper.setSubject(email.getSubject());
+            helper.setText(email.getMessage());
+            message.saveChanges();
+            transport.sendMessage(message, message.getAllRecipients());
+        }
+
+        @Override
+        public void close() {
+            if (transport == null) {
+                return;
+            }
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Error closing SMTP connection: {}", e.getMessage());
+            }
+            transport = null;
+        }
+    }
+
+    /**
+     * Имитация отправки, когда SMTP не настроен: одна запись уровня DEBUG на письмо
+     */
+    private static void logEmailSending(NotificationEmail email) {
+        if (!log.isDebugEnabled()) {
+            return;
+        }
+        log.debug("""
+                📧 EMAIL SENT 📧
+                ┌─────────────────────────────────────────────────────────────────
+                │ To: {} ({})
+                │ Subject: {}
+                │ Type: {} | Source: {}
+                │ Template: {}
+                │ Sent at: {}
+                ├─────────────────────────────────────────────────────────────────
+                │ Message:
+                │ {}
+                └─────────────────────────────────────────────────────────────────""",
+                email.getUserEmail(), email.getUserId(), email.getSubject(), email.getType(), email.getSource(),
+                email.getTemplateName(), email.getSentAt(), email.getMessage());
+    }
+}
@@ -2,17 +2,22 @@ package ru.rpovetkin.notifications.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.rpovetkin.notifications.dto.EmailNotification;
 import ru.rpovetkin.notifications.dto.NotificationRequest;
 import ru.rpovetkin.notifications.dto.NotificationResponse;
+import ru.rpovetkin.notifications.entity.NotificationEmail;
+import ru.rpovetkin.notifications.enums.EmailDeliveryStatus;
+import ru.rpovetkin.notifications.repository.NotificationEmailRepository;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -20,45 +25,32 @@ import java.util.stream.Collectors;
 @Slf4j
 public class EmailNotificationService {
     
-    // В реальном приложении это была бы база данных
-    private final Map<String, List<EmailNotification>> userEmailHistory = new ConcurrentHashMap<>();
+    private final NotificationEmailRepository notificationEmailRepository;
+    private final EmailDispatcher emailDispatcher;
+
+    /**
+     * Сколько последних писем возвращает история пользователя
+     */
+    @Value("${notifications.emails.history-limit:100}")
+    private int historyLimit = 100;
     
     /**
-     * Отправляет email уведомление пользователю (логирует вместо реальной отправки)
+     * Сохраняет email уведомление и ставит его в очередь на асинхронную отправку
      */
     public NotificationResponse sendEmailNotification(NotificationRequest request) {
         try {
             log.info("Processing email notification for user {} from {}: {}", 
                     request.getUserId(), request.getSource(), request.getTitle());
             
-            // Получаем email пользователя (в реальном приложении из базы данных)
-            String userEmail = getUserEmail(request.getUserId());
-            
-            // Создаем email уведомление
-            EmailNotification emailNotification = EmailNotification.builder()
-                    .id(UUID.randomUUID().toString())
-                    .userId(request.getUserId())
-                    .userEmail(userEmail)
-                    .type(request.getType())
-                    .subject(generateEmailSubject(request))
-                    .message(generateEmailMessage(request))
-                    .source(request.getSource())
-                    .sentAt(LocalDateTime.now())
-                    .sent(true)
-                    .templateName(getTemplateForType(request.getType()))
-                    .build();
-            
-            // Сохраняем в истории
-            userEmailHistory.computeIfAbsent(request.getUserId(), k -> new ArrayList<>()).add(emailNotification);
-            
-            // Логируем "отправку" email
-            logEmailSending(emailNotification);
+            NotificationEmail emailNotification = createEmail(request);
+            notificationEmailRepository.save(emailNotification);
+            emailDispatcher.dispatch(List.of(emailNotification));
             
-            log.info("Email notification processed successfully: {}", emailNotification.getId());
+            log.info("Email notification queued: {}", emailNotification.getId());
             
             return NotificationResponse.builder()
                     .success(true)
-                    .message("Email notification sent successfully")
+                    .message("Email notification queued")
                     .notificationId(emailNotification.getId())
                     .build();
                     
@@ -72,23 +64,40 @@ public class EmailNotificationService {
     }
     
     /**
-     * Логирует отправку email (имитация реальной отправки)
+     * Сохраняет письма для пакета уведомлений одной пакетной вставкой и ставит их в очередь на отправку
+     *
+     * @return количество поставленных в очередь писем
      */
-    private void logEmailSending(EmailNotification email) {
-        log.info("📧 EMAIL SENT 📧");
-        log.info("┌─────────────────────────────────────────────────────────────────");
-        log.info("│ To: {} ({})", email.getUserEmail(), email.getUserId());
-        log.info("│ Subject: {}", email.getSubject());
-        log.info("│ Type: {} | Source: {}", email.getType(), email.getSource());
-        log.info("│ Template: {}", email.getTemplateName());
-        log.info("│ Sent at: {}", email.getSentAt());
-        log.info("├─────────────────────────────────────────────────────────────────");
-        log.info("│ Message:");
-        log.info("│ {}", email.getMessage());
-        log.info("└─────────────────────────────────────────────────────────────────");
+    @Transactional
+    public int sendEmailNotifications(List<NotificationRequest> requests) {
+        List<NotificationEmail> emails = requests.stream()
+                .map(this::createEmail)
+                .toList();
+        notificationEmailRepository.saveAll(emails);
+        emailDispatcher.dispatch(emails);
         
-        // В реальном приложении здесь был бы вызов:
-        // emailService.send(email.getUserEmail(), email.getSubject(), email.getMessage(), email.getTemplateName());
+        log.info("Queued {} email notifications", emails.size());
+        return emails.size();
+    }
+    
+    private NotificationEmail createEmail(NotificationRequest request) {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        return NotificationEmail.builder()
+                .id(UUID.randomUUID().toString())
+                .userId(request.getUserId())
+                // Получаем email пользователя (в реальном приложении из базы данных)
+                .userEmail(getUserEmail(request.getUserId()))
+                .type(request.getType())
+                .subject(generateEmailSubject(request))
+                .message(generateEmailMessage(request))
+                .source(request.getSource())
+                .sentAt(now)
+                .sent(false)
+                .status(EmailDeliveryStatus.PENDING)
+                .attempts(0)
+                .nextAttemptAt(now)
+                .templateName(getTemplateForType(request.getType()))
+                .build();
     }
     
     /**
@@ -154,25 +163,52 @@ public class EmailNotificationService {
     }
     
     /**
-     * Получает историю email уведомлений для пользователя
+     * Получает последние email уведомления пользователя (новые сверху)
      */
+    @Transactional(readOnly = true)
     public List<EmailNotification> getUserEmailHistory(String userId) {
-        return userEmailHistory.getOrDefault(userId, new ArrayList<>())
+        return notificationEmailRepository.findByUserIdOrderBySentAtDesc(userId, Limit.of(historyLimit))
                 .stream()
-                .sorted((a, b) -> b.getSentAt().compareTo(a.getSentAt()))
-                .collect(Collectors.toList());
+                .map(this::toDto)
+                .toList();
     }
     
     /**
      * Получает статистику отправленных email
      */
+    @Transactional(readOnly = true)
     public Map<String, Long> getEmailStatistics() {
-        return userEmailHistory.values().stream()
-                .flatMap(List::stream)
-                .collect(Collectors.groupingBy(
-                    EmailNotification::getType,
-                    Collectors.counting()
-                ));
+        return notificationEmailRepository.countByType().stream()
+                .filter(row -> row[0] != null)
+                .collect(Collectors.toMap(row -> (String) row[0], row -> (Long) row[1]));
+    }
+    
+    /**
+     * Получает количество писем по статусам доставки
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Long> getDeliveryStatistics() {
+        return notificationEmailRepository.countByStatus().stream()
+                .collect(Collectors.toMap(row -> ((EmailDeliveryStatus) row[0]).name(), row -> (Long) row[1]));
+    }
+    
+    private EmailNotification toDto(NotificationEmail email) {
+        return EmailNotification.builder()
+                .id(email.getId())
+                .userId(email.getUserId())
+                .userEmail(email.getUserEmail())
+                .type(email.getType())
+                .subject(email.getSubject())
+                .message(email.getMessage())
+                .source(email.getSource())
+                .sentAt(email.getSentAt())
+                .sent(email.isSent())
+                .status(email.getStatus() != null ? email.getStatus().name() : null)
+                .attempts(email.getAttempts())
+                .deliveredAt(email.getDeliveredAt())
+                .lastError(email.getLastError())
+                .templateName(email.getTemplateName())
+                .build();
     }
     
     /**
@@ -184,17 +220,17 @@ public class EmailNotificationService {
         // В реальном приложении здесь был бы запрос к базе данных для получения всех email
         List<String> allUsers = List.of("admin", "user1", "user2", "testuser");
         
-        for (String userId : allUsers) {
-            NotificationRequest request = NotificationRequest.builder()
-                    .userId(userId)
-                    .type(type)
-                    .title(subject)
-                    .message(message)
-                    .source("SYSTEM")
-                    .build();
-            
-            sendEmailNotification(request);
-        }
+        List<NotificationRequest> requests = allUsers.stream()
+                .map(userId -> NotificationRequest.builder()
+                        .userId(userId)
+                        .type(type)
+                        .title(subject)
+                        .message(message)
+                        .source("SYSTEM")
+                        .build())
+                .toList();
+        
+        sendEmailNotifications(requests);
         
         log.info("Bulk email notification sent to {} users", allUsers.size());
     }
@@ -2,11 +2,17 @@ package ru.rpovetkin.notifications.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 import ru.rpovetkin.notifications.dto.NotificationRequest;
 
+/**
+ * Kafka Consumer уведомлений по одной записи.
+ * Включается при notifications.kafka.listener.mode=RECORD, иначе работает {@link BatchNotificationListener}
+ */
 @Service
+@ConditionalOnProperty(name = "notifications.kafka.listener.mode", havingValue = "RECORD")
 @RequiredArgsConstructor
 @Slf4j
 public class KafkaNotificationListener {
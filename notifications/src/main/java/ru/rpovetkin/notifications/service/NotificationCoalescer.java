@@ -0,0 +1,256 @@
+package ru.rpovetkin.notifications.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.rpovetkin.notifications.dto.NotificationRequest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Группировка частых уведомлений в дайджест.
+ * Уведомления одного пользователя из одного источника считаются в окне window: первые threshold
+ * проходят как обычно, остальные накапливаются и по окончании окна отправляются одним
+ * дайджестом (один алерт и одно письмо). Типы из bypass-types (WARNING, ERROR) не группируются.
+ * Внутри транзакции счетчики окон меняются только после ее фиксации: пакет, откаченный и полученный
+ * из Kafka повторно, не учитывается в окне дважды.
+ * Накопленные уведомления хранятся в памяти, а offset их записей Kafka уже зафиксирован: при аварийной
+ * остановке теряется не больше одного окна дайджестов (при штатной остановке они отправляются)
+ */
+@Component
+@Slf4j
+public class NotificationCoalescer {
+
+    private static final String DEFAULT_DIGEST_TYPE = "INFO";
+
+    private final ConcurrentMap<Key, Window> windows = new ConcurrentHashMap<>();
+
+    @Value("${notifications.digest.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${notifications.digest.window:1m}")
+    private Duration window = Duration.ofMinutes(1);
+
+    /**
+     * Сколько уведомлений в окне проходит без группировки
+     */
+    @Value("${notifications.digest.threshold:3}")
+    private int threshold = 3;
+
+    @Value("${notifications.digest.bypass-types:WARNING,ERROR}")
+    private Set<String> bypassTypes = Set.of("WARNING", "ERROR");
+
+    /**
+     * Ограничение памяти: при большем числе открытых окон новые пользователи не группируются
+     */
+    @Value("${notifications.digest.max-tracked-keys:100000}")
+    private int maxTrackedKeys = 100_000;
+
+    /**
+     * Сколько последних заголовков перечисляется в тексте дайджеста
+     */
+    @Value("${notifications.digest.sample-size:5}")
+    private int sampleSize = 5;
+
+    /**
+     * Отобрать уведомления, которые нужно сохранить сразу; остальные попадают в дайджест.
+     * В активной транзакции решение учитывается в окнах после ее фиксации
+     */
+    public List<NotificationRequest> admit(List<NotificationRequest> requests) {
+        if (!enabled) {
+            return requests;
+        }
+        return admit(requests, System.currentTimeMillis());
+    }
+
+    /**
+     * @return true, если уведомление нужно сохранить сразу, false - если оно попало в дайджест
+     */
+    public boolean admit(NotificationRequest request) {
+        return !enabled || admit(request, System.currentTimeMillis());
+    }
+
+    /**
+     * Забрать дайджесты окон, которые уже закончились
+     */
+    public List<NotificationRequest> drainExpired() {
+        return drain(System.currentTimeMillis(), false);
+    }
+
+    /**
+     * Забрать дайджесты всех окон (при остановке сервиса)
+     */
+    public List<NotificationRequest> drainAll() {
+        return drain(System.currentTimeMillis(), true);
+    }
+
+    boolean admit(NotificationRequest request, long now) {
+        return !admit(List.of(request), now).isEmpty();
+    }
+
+    List<NotificationRequest> admit(List<NotificationRequest> requests, long now) {
+        List<NotificationRequest> admitted = new ArrayList<>(requests.size());
+        List<Decision> decisions = new ArrayList<>(requests.size());
+        // Уведомления, пропущенные раньше в этом же пакете, но еще не учтенные в окнах
+        Map<Key, Integer> passedInBatch = new HashMap<>();
+        for (NotificationRequest request : requests) {
+            if (bypassTypes.contains(request.getType())) {
+                admitted.add(request);
+                continue;
+            }
+            Key key = new Key(request.getUserId(), request.getSource());
+            Window current = windows.get(key);
+            if (current == null && windows.size() >= maxTrackedKeys) {
+                admitted.add(request);
+                continue;
+            }
+            int passed = (current != null ? current.passed : 0) + passedInBatch.getOrDefault(key, 0);
+            boolean passThrough = passed < threshold;
+            if (passThrough) {
+                admitted.add(request);
+                passedInBatch.merge(key, 1, Integer::sum);
+            }
+            decisions.add(new Decision(key, request, passThrough));
+        }
+        if (!decisions.isEmpty()) {
+            recordAfterCommit(decisions, now);
+        }
+        return admitted;
+    }
+
+    List<NotificationRequest> drain(long now, boolean all) {
+        List<NotificationRequest> digests = new ArrayList<>();
+        long windowMillis = window.toMillis();
+        for (Key key : windows.keySet()) {
+            windows.computeIfPresent(key, (k, current) -> {
+                if (!all && now - current.startedAt < windowMillis) {
+                    return current;
+                }
+                if (current.coalesced > 0) {
+                    digests.add(current.toDigest(k));
+                }
+                return null;
+            });
+        }
+        if (!digests.isEmpty()) {
+            log.info("Emitting {} notification digests", digests.size());
+        }
+        return digests;
+    }
+
+    private void recordAfterCommit(List<Decision> decisions, long now) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record(decisions, now);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record(decisions, now);
+            }
+        });
+    }
+
+    private void record(List<Decision> decisions, long now) {
+        for (Decision decision : decisions) {
+            windows.compute(decision.key(), (k, current) -> {
+                Window target = current != null ? current : new Window(now);
+                if (decision.passThrough()) {
+                    target.passed++;
+                } else {
+                    target.coalesce(decision.request(), now);
+                }
+                return target;
+            });
+        }
+    }
+
+    private record Key(String userId, String source) {
+    }
+
+    private record Decision(Key key, NotificationRequest request, boolean passThrough) {
+    }
+
+    /**
+     * Окно группировки; изменяется только внутри compute по своему ключу
+     */
+    private final class Window {
+
+        private final long startedAt;
+        /**
+         * volatile: читается при отборе уведомлений без блокировки окна
+         */
+        private volatile int passed;
+        private int coalesced;
+        private long firstCoalescedAt;
+        private long lastCoalescedAt;
+        private final Map<String, Integer> types = new LinkedHashMap<>();
+        private final Deque<String> recentTitles = new ArrayDeque<>();
+
+        Window(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        void coalesce(NotificationRequest request, long now) {
+            if (coalesced == 0) {
+                firstCoalescedAt = now;
+            }
+            coalesced++;
+            lastCoalescedAt = now;
+            types.merge(request.getType() != null ? request.getType() : DEFAULT_DIGEST_TYPE, 1, Integer::sum);
+            if (recentTitles.size() == sampleSize) {
+                recentTitles.removeFirst();
+            }
+            recentTitles.addLast(request.getTitle());
+        }
+
+        NotificationRequest toDigest(Key key) {
+            String type = types.size() == 1 ? types.keySet().iterator().next() : DEFAULT_DIGEST_TYPE;
+
+            StringBuilder message = new StringBuilder()
+                    .append("За последние ").append(formatWindow())
+                    .append(" было еще ").append(coalesced).append(" уведомлений.");
+            if (!recentTitles.isEmpty()) {
+                message.append(" Последние: ").append(String.join("; ", recentTitles)).append('.');
+            }
+
+            Map<String, Object> metadata = new LinkedHashMap<>();
+            metadata.put("digest", true);
+            metadata.put("count", coalesced);
+            metadata.put("types", types);
+            metadata.put("from", toDateTime(firstCoalescedAt));
+            metadata.put("to", toDateTime(lastCoalescedAt));
+
+            return NotificationRequest.builder()
+                    .userId(key.userId())
+                    .type(type)
+                    .title("Сводка: " + coalesced + " уведомлений")
+                    .message(message.toString())
+                    .source(key.source())
+                    .metadata(metadata)
+                    .build();
+        }
+    }
+
+    private String formatWindow() {
+        return window.toSeconds() % 60 == 0 ? window.toMinutes() + " мин." : window.toSeconds() + " сек.";
+    }
+
+    private static String toDateTime(long epochMillis) {
+        return Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault()).toLocalDateTime().toString();
+    }
+}
@@ -0,0 +1,43 @@
+package ru.rpovetkin.notifications.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.rpovetkin.notifications.dto.NotificationRequest;
+
+import java.util.List;
+
+/**
+ * Отправка дайджестов закончившихся окон группировки; при остановке сервиса отправляются все накопленные
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationDigestJob {
+
+    private final NotificationCoalescer notificationCoalescer;
+    private final NotificationService notificationService;
+
+    @Scheduled(fixedDelayString = "${notifications.digest.flush-interval:5s}")
+    public void flushExpired() {
+        store(notificationCoalescer.drainExpired());
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        store(notificationCoalescer.drainAll());
+    }
+
+    private void store(List<NotificationRequest> digests) {
+        if (digests.isEmpty()) {
+            return;
+        }
+        try {
+            notificationService.storeNotifications(digests);
+        } catch (RuntimeException e) {
+            log.error("Failed to store {} notification digests: {}", digests.size(), e.getMessage(), e);
+        }
+    }
+}
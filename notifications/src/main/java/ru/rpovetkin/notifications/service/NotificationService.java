@@ -1,29 +1,42 @@
 package ru.rpovetkin.notifications.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.rpovetkin.notifications.dto.Alert;
+import ru.rpovetkin.notifications.dto.AlertPage;
 import ru.rpovetkin.notifications.dto.NotificationRequest;
 import ru.rpovetkin.notifications.dto.NotificationResponse;
+import ru.rpovetkin.notifications.entity.NotificationAlert;
+import ru.rpovetkin.notifications.repository.NotificationAlertRepository;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class NotificationService {
     
+    private static final char CURSOR_SEPARATOR = '|';
+
     private final EmailNotificationService emailNotificationService;
-    
-    // В реальном приложении это была бы база данных
-    private final Map<String, List<Alert>> userAlerts = new ConcurrentHashMap<>();
+    private final NotificationCoalescer notificationCoalescer;
+    private final NotificationAlertRepository notificationAlertRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${notifications.alerts.max-page-size:100}")
+    private int maxPageSize = 100;
     
     /**
      * Создает и отправляет уведомление пользователю
@@ -33,21 +46,17 @@ public class NotificationService {
             log.info("Creating notification for user {} from {}: {}", 
                     request.getUserId(), request.getSource(), request.getTitle());
             
-            // Создаем алерт
-            Alert alert = Alert.builder()
-                    .id(UUID.randomUUID().toString())
-                    .userId(request.getUserId())
-                    .type(request.getType())
-                    .title(request.getTitle())
-                    .message(request.getMessage())
-                    .source(request.getSource())
-                    .timestamp(LocalDateTime.now())
-                    .metadata(request.getMetadata())
-                    .read(false)
-                    .build();
+            if (!notificationCoalescer.admit(request)) {
+                log.debug("Notification for user {} from {} coalesced into digest",
+                        request.getUserId(), request.getSource());
+                return NotificationResponse.builder()
+                        .success(true)
+                        .message("Notification coalesced into digest")
+                        .build();
+            }
             
-            // Сохраняем в памяти (в реальном приложении - в БД)
-            userAlerts.computeIfAbsent(request.getUserId(), k -> new ArrayList<>()).add(alert);
+            NotificationAlert alert = createAlert(request);
+            notificationAlertRepository.save(alert);
             
             // Отправляем email уведомление
             NotificationResponse emailResponse = emailNotificationService.sendEmailNotification(request);
@@ -73,6 +82,38 @@ public class NotificationService {
         }
     }
     
+    /**
+     * Сохраняет пакет уведомлений: алерты и история писем записываются пакетными вставками
+     * в одной транзакции; при ошибке не сохраняется ничего из пакета.
+     * Частые уведомления одного пользователя группируются в дайджест (см. {@link NotificationCoalescer})
+     *
+     * @return количество сохраненных уведомлений
+     */
+    @Transactional
+    public int sendNotifications(List<NotificationRequest> requests) {
+        return storeNotifications(notificationCoalescer.admit(requests));
+    }
+    
+    /**
+     * Сохраняет пакет уведомлений без группировки (в том числе готовые дайджесты)
+     *
+     * @return количество сохраненных уведомлений
+     */
+    @Transactional
+    public int storeNotifications(List<NotificationRequest> requests) {
+        if (requests.isEmpty()) {
+            return 0;
+        }
+        List<NotificationAlert> alerts = requests.stream()
+                .map(this::createAlert)
+                .toList();
+        notificationAlertRepository.saveAll(alerts);
+        emailNotificationService.sendEmailNotifications(requests);
+        
+        log.debug("Stored batch of {} notifications", alerts.size());
+        return alerts.size();
+    }
+    
     /**
      * Отправляет глобальное уведомление всем пользователям по email
      */
@@ -82,57 +123,137 @@ public class NotificationService {
     }
     
     /**
-     * Получает все уведомления для пользователя
+     * Страница ленты уведомлений пользователя (новые сверху), cursor - nextCursor предыдущей страницы
      */
-    public List<Alert> getUserAlerts(String userId) {
-        return userAlerts.getOrDefault(userId, new ArrayList<>())
-                .stream()
-                .sorted((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()))
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public AlertPage getUserAlerts(String userId, String cursor, int limit) {
+        return findPage(userId, false, cursor, limit);
     }
     
     /**
-     * Получает непрочитанные уведомления для пользователя
+     * Страница непрочитанных уведомлений пользователя
      */
-    public List<Alert> getUnreadAlerts(String userId) {
-        return getUserAlerts(userId).stream()
-                .filter(alert -> !alert.isRead())
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public AlertPage getUnreadAlerts(String userId, String cursor, int limit) {
+        return findPage(userId, true, cursor, limit);
     }
     
     /**
      * Отмечает уведомление как прочитанное
      */
+    @Transactional
     public boolean markAsRead(String userId, String alertId) {
-        List<Alert> alerts = userAlerts.get(userId);
-        if (alerts != null) {
-            return alerts.stream()
-                    .filter(alert -> alert.getId().equals(alertId))
-                    .findFirst()
-                    .map(alert -> {
-                        alert.setRead(true);
-                        return true;
-                    })
-                    .orElse(false);
-        }
-        return false;
+        return notificationAlertRepository.markAsRead(userId, alertId) > 0;
     }
     
     /**
      * Отмечает все уведомления пользователя как прочитанные
      */
+    @Transactional
     public int markAllAsRead(String userId) {
-        List<Alert> alerts = userAlerts.get(userId);
-        if (alerts != null) {
-            int count = 0;
-            for (Alert alert : alerts) {
-                if (!alert.isRead()) {
-                    alert.setRead(true);
-                    count++;
-                }
+        return notificationAlertRepository.markAllAsRead(userId);
+    }
+    
+    private AlertPage findPage(String userId, boolean unreadOnly, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        // Запрашиваем на одну запись больше, чтобы понять, есть ли следующая страница
+        Limit rows = Limit.of(pageSize + 1);
+        
+        List<NotificationAlert> alerts;
+        if (cursor == null || cursor.isBlank()) {
+            alerts = notificationAlertRepository.findFeed(userId, unreadOnly, rows);
+        } else {
+            NotificationAlert after = decodeCursor(cursor);
+            alerts = notificationAlertRepository.findFeedAfter(
+                    userId, unreadOnly, after.getCreatedAt(), after.getId(), rows);
+        }
+        
+        boolean hasMore = alerts.size() > pageSize;
+        List<NotificationAlert> page = hasMore ? alerts.subList(0, pageSize) : alerts;
+        
+        return AlertPage.builder()
+                .alerts(page.stream().map(this::toDto).toList())
+                .nextCursor(hasMore ? encodeCursor(page.get(page.size() - 1)) : null)
+                .build();
+    }
+    
+    private NotificationAlert createAlert(NotificationRequest request) {
+        // Время усекается до микросекунд - точности timestamp в PostgreSQL,
+        // чтобы курсор (createdAt, id) совпадал с сохраненным значением
+        return NotificationAlert.builder()
+                .id(UUID.randomUUID().toString())
+                .userId(request.getUserId())
+                .type(request.getType())
+                .title(request.getTitle())
+                .message(request.getMessage())
+                .source(request.getSource())
+                .createdAt(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS))
+                .metadata(writeMetadata(request.getMetadata()))
+                .read(false)
+                .build();
+    }
+    
+    private Alert toDto(NotificationAlert alert) {
+        return Alert.builder()
+                .id(alert.getId())
+                .userId(alert.getUserId())
+                .type(alert.getType())
+                .title(alert.getTitle())
+                .message(alert.getMessage())
+                .source(alert.getSource())
+                .timestamp(alert.getCreatedAt())
+                .metadata(readMetadata(alert.getMetadata()))
+                .read(alert.isRead())
+                .build();
+    }
+    
+    private String writeMetadata(Object metadata) {
+        if (metadata == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to serialize notification metadata: {}", e.getMessage());
+            return null;
+        }
+    }
+    
+    private Object readMetadata(String metadata) {
+        if (metadata == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(metadata, Object.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to deserialize notification metadata: {}", e.getMessage());
+            return null;
+        }
+    }
+    
+    private static String encodeCursor(NotificationAlert alert) {
+        String value = alert.getCreatedAt() + String.valueOf(CURSOR_SEPARATOR) + alert.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Разобрать курсор в пару (createdAt, id)
+     *
+     * @throws IllegalArgumentException если курсор поврежден
+     */
+    private static NotificationAlert decodeCursor(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf(CURSOR_SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
             }
-            return count;
+            return NotificationAlert.builder()
+                    .createdAt(LocalDateTime.parse(value.substring(0, separator)))
+                    .id(value.substring(separator + 1))
+                    .build();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
         }
-        return 0;
     }
 }
@@ -4,7 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import ru.rpovetkin.notifications.dto.Alert;
+import ru.rpovetkin.notifications.dto.AlertPage;
 import ru.rpovetkin.notifications.dto.EmailNotification;
 import ru.rpovetkin.notifications.dto.NotificationRequest;
 import ru.rpovetkin.notifications.dto.NotificationResponse;
@@ -59,23 +59,38 @@ public class NotificationController {
     }
     
     /**
-     * Получить все уведомления для пользователя
+     * Получить страницу уведомлений пользователя (новые сверху);
+     * следующая страница запрашивается с cursor = nextCursor предыдущей
      */
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Alert>> getUserAlerts(@PathVariable String userId) {
+    public ResponseEntity<AlertPage> getUserAlerts(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
         log.info("Getting alerts for user: {}", userId);
-        List<Alert> alerts = notificationService.getUserAlerts(userId);
-        return ResponseEntity.ok(alerts);
+        try {
+            return ResponseEntity.ok(notificationService.getUserAlerts(userId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid alerts cursor for user {}: {}", userId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
     }
     
     /**
-     * Получить непрочитанные уведомления для пользователя
+     * Получить страницу непрочитанных уведомлений пользователя
      */
     @GetMapping("/user/{userId}/unread")
-    public ResponseEntity<List<Alert>> getUnreadAlerts(@PathVariable String userId) {
+    public ResponseEntity<AlertPage> getUnreadAlerts(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
         log.info("Getting unread alerts for user: {}", userId);
-        List<Alert> alerts = notificationService.getUnreadAlerts(userId);
-        return ResponseEntity.ok(alerts);
+        try {
+            return ResponseEntity.ok(notificationService.getUnreadAlerts(userId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid alerts cursor for user {}: {}", userId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
     }
     
     /**
@@ -133,7 +148,15 @@ public class NotificationController {
         Map<String, Long> stats = emailNotificationService.getEmailStatistics();
         return ResponseEntity.ok(stats);
     }
-    
+
+    /**
+     * Получить количество email по статусам доставки
+     */
+    @GetMapping("/stats/delivery")
+    public ResponseEntity<Map<String, Long>> getEmailDeliveryStatistics() {
+        return ResponseEntity.ok(emailNotificationService.getDeliveryStatistics());
+    }
+
     /**
      * Отправить тестовое email уведомление
      */
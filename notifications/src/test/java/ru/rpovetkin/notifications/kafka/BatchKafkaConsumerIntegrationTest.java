@@ -0,0 +1,136 @@
+package ru.rpovetkin.notifications.kafka;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import ru.rpovetkin.notifications.dto.NotificationRequest;
+import ru.rpovetkin.notifications.service.BatchNotificationListener;
+import ru.rpovetkin.notifications.service.NotificationService;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Интеграционные тесты пакетного Kafka Consumer (режим по умолчанию BATCH):
+ * записи poll сохраняются одним вызовом sendNotifications, poison-запись уходит в DLT
+ */
+@SpringBootTest(properties = "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}")
+@EmbeddedKafka(partitions = 3, topics = {"account-notifications", "account-notifications-dlt"})
+@ActiveProfiles("test")
+@DirtiesContext
+class BatchKafkaConsumerIntegrationTest {
+
+    private static final String TOPIC = "account-notifications";
+    private static final String DLT_TOPIC = "account-notifications-dlt";
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    @Autowired(required = false)
+    private BatchNotificationListener batchListener;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @SpyBean
+    private NotificationService notificationService;
+
+    private KafkaTemplate<String, NotificationRequest> kafkaTemplate;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, Object> producerProps = new HashMap<>();
+        producerProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, embeddedKafka.getBrokersAsString());
+        producerProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        producerProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        producerProps.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, false);
+        kafkaTemplate = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(producerProps));
+    }
+
+    @Test
+    @DisplayName("По умолчанию уведомления принимает пакетный listener")
+    void batchListenerIsActiveByDefault() {
+        assertThat(batchListener).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Пакетный consumer сохраняет все полученные уведомления")
+    void consumerStoresAllMessagesInBatches() {
+        int messageCount = 5;
+        for (int i = 0; i < messageCount; i++) {
+            kafkaTemplate.send(TOPIC, "batch-user" + i, request("batch-user" + i));
+        }
+
+        await().atMost(15, TimeUnit.SECONDS).untilAsserted(() -> {
+            @SuppressWarnings("unchecked")
+            ArgumentCaptor<List<NotificationRequest>> batches = ArgumentCaptor.forClass(List.class);
+            verify(notificationService, atLeastOnce()).sendNotifications(batches.capture());
+            assertThat(batches.getAllValues().stream().flatMap(List::stream).map(NotificationRequest::getUserId))
+                    .contains("batch-user0", "batch-user1", "batch-user2", "batch-user3", "batch-user4");
+        });
+    }
+
+    @Test
+    @DisplayName("Уведомление без userId уходит в DLT, следующие записи партиции сохраняются")
+    void poisonRecordGoesToDltAndConsumerContinues() {
+        // Одинаковый ключ - одна партиция: poison-запись стоит перед корректной
+        kafkaTemplate.send(TOPIC, "same-key", request(" "));
+        kafkaTemplate.send(TOPIC, "same-key", request("after-poison"));
+
+        await().atMost(15, TimeUnit.SECONDS)
+               .untilAsserted(() -> verify(notificationService, atLeastOnce())
+                       .sendNotifications(argThat(requests -> requests.stream()
+                               .anyMatch(request -> "after-poison".equals(request.getUserId())))));
+
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("dlt-check", "false", embeddedKafka);
+        consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        try (Consumer<String, byte[]> consumer = new DefaultKafkaConsumerFactory<>(consumerProps,
+                new StringDeserializer(), new ByteArrayDeserializer()).createConsumer()) {
+            embeddedKafka.consumeFromAnEmbeddedTopic(consumer, DLT_TOPIC);
+            ConsumerRecord<String, byte[]> deadLetter = KafkaTestUtils.getSingleRecord(consumer, DLT_TOPIC, Duration.ofSeconds(10));
+            assertThat(deadLetter.key()).isEqualTo("same-key");
+        }
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> assertThat(meterRegistry
+                .get("notifications.kafka.messages").tag("outcome", "dead_lettered").counter().count()).isEqualTo(1));
+    }
+
+    private static NotificationRequest request(String userId) {
+        return NotificationRequest.builder()
+                .userId(userId)
+                .type("INFO")
+                .title("Batch")
+                .message("Batch message")
+                .source("ACCOUNTS")
+                .build();
+    }
+}
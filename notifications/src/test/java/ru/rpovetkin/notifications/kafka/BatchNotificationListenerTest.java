@@ -0,0 +1,122 @@
+package ru.rpovetkin.notifications.kafka;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import ru.rpovetkin.notifications.dto.NotificationRequest;
+import ru.rpovetkin.notifications.service.BatchNotificationListener;
+import ru.rpovetkin.notifications.service.NotificationService;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class BatchNotificationListenerTest {
+
+    private static final String TOPIC = "account-notifications";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private NotificationService notificationService;
+    private BatchNotificationListener listener;
+
+    @BeforeEach
+    void setUp() {
+        notificationService = mock(NotificationService.class);
+        listener = new BatchNotificationListener(notificationService, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Весь пакет сохраняется одним вызовом")
+    void listen_shouldStoreBatchAtOnce() {
+        listener.listen(List.of(record(0, "alice"), record(1, "bob"), record(2, "carol")));
+
+        verify(notificationService, times(1)).sendNotifications(argThat(requests -> requests.size() == 3));
+        assertThat(count("stored")).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Записи до уведомления без userId сохраняются, само уведомление указывается обработчику ошибок для DLT")
+    void listen_shouldPointErrorHandlerAtInvalidRecord() {
+        ConsumerRecord<String, NotificationRequest> invalid = record(1, null);
+
+        assertThatThrownBy(() -> listener.listen(List.of(record(0, "alice"), invalid, record(2, "bob"))))
+                .isInstanceOfSatisfying(BatchListenerFailedException.class, e -> {
+                    assertThat(e.getRecord()).isSameAs(invalid);
+                    assertThat(e.getCause()).isInstanceOf(IllegalArgumentException.class);
+                });
+
+        // bob придет в следующем poll после отправки invalid в DLT
+        verify(notificationService).sendNotifications(argThat(requests -> requests.size() == 1
+                && requests.get(0).getUserId().equals("alice")));
+        assertThat(count("stored")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("При ошибке пакетного сохранения poison-запись отделяется и указывается обработчику ошибок для DLT")
+    void listen_shouldIsolatePoisonRecordWhenBulkStoreFails() {
+        ConsumerRecord<String, NotificationRequest> poison = record(1, "mallory");
+        willThrow(new DataIntegrityViolationException("batch")).given(notificationService)
+                .sendNotifications(argThat(requests -> requests.size() > 1));
+        willThrow(new DataIntegrityViolationException("poison")).given(notificationService)
+                .sendNotifications(List.of(poison.value()));
+
+        assertThatThrownBy(() -> listener.listen(List.of(record(0, "alice"), poison, record(2, "bob"))))
+                .isInstanceOfSatisfying(BatchListenerFailedException.class, e -> {
+                    assertThat(e.getRecord()).isSameAs(poison);
+                    assertThat(e.getCause()).isInstanceOf(DataIntegrityViolationException.class);
+                });
+
+        assertThat(count("stored")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Временная ошибка БД не отправляет записи в DLT, пакет повторяется")
+    void listen_shouldRethrowTransientFailure() {
+        given(notificationService.sendNotifications(anyList())).willThrow(new QueryTimeoutException("timeout"));
+
+        assertThatThrownBy(() -> listener.listen(List.of(record(0, "alice"))))
+                .isInstanceOf(QueryTimeoutException.class);
+    }
+
+    @Test
+    @DisplayName("Временная ошибка при поштучном сохранении указывает запись, с которой начнется повтор")
+    void listen_shouldPointRetryAtFailedRecord() {
+        ConsumerRecord<String, NotificationRequest> failed = record(1, "bob");
+        willThrow(new DataIntegrityViolationException("batch")).given(notificationService)
+                .sendNotifications(argThat(requests -> requests.size() > 1));
+        willThrow(new QueryTimeoutException("timeout")).given(notificationService)
+                .sendNotifications(List.of(failed.value()));
+
+        assertThatThrownBy(() -> listener.listen(List.of(record(0, "alice"), failed, record(2, "carol"))))
+                .isInstanceOfSatisfying(BatchListenerFailedException.class,
+                        e -> assertThat(e.getRecord()).isSameAs(failed));
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.get("notifications.kafka.messages").tag("outcome", outcome).counter().count();
+    }
+
+    private static ConsumerRecord<String, NotificationRequest> record(long offset, String userId) {
+        NotificationRequest request = NotificationRequest.builder()
+                .userId(userId)
+                .type("INFO")
+                .title("Title " + offset)
+                .message("Message " + offset)
+                .source("ACCOUNTS")
+                .build();
+        return new ConsumerRecord<>(TOPIC, 0, offset, userId, request);
+    }
+}
@@ -13,6 +13,7 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import ru.rpovetkin.notifications.dto.NotificationRequest;
 import ru.rpovetkin.notifications.service.NotificationService;
@@ -26,13 +27,15 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 /**
- * Интеграционные тесты для Kafka Consumer
- * Проверяет получение и обработку сообщений с гарантией "At least once"
+ * Интеграционные тесты для Kafka Consumer (режим RECORD, по одной записи)
+ * Проверяет получение и обработку сообщений с гарантией "At least once".
+ * Режим по умолчанию (BATCH) проверяет BatchKafkaConsumerIntegrationTest
  */
-@SpringBootTest
+@SpringBootTest(properties = "notifications.kafka.listener.mode=RECORD")
 @EmbeddedKafka(partitions = 3, topics = {"account-notifications"},
                brokerProperties = {"listeners=PLAINTEXT://localhost:9092", "port=9092"})
 @ActiveProfiles("test")
+@DirtiesContext
 class KafkaConsumerIntegrationTest {
 
     private static final String TOPIC = "account-notifications";
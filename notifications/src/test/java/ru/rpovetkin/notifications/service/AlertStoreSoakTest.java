@@ -0,0 +1,126 @@
+package ru.rpovetkin.notifications.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.rpovetkin.notifications.dto.NotificationRequest;
+import ru.rpovetkin.notifications.dto.NotificationResponse;
+import ru.rpovetkin.notifications.repository.NotificationAlertRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * Soak-тест хранилища алертов на реальном PostgreSQL: после миллионов алертов занятая heap не растет,
+ * так как алерты больше не накапливаются в памяти сервиса.
+ * Запуск: {@code mvn test -Dtest=AlertStoreSoakTest -Dsoak=true [-Dsoak.alerts=2000000]}
+ */
+@SpringBootTest(properties = {
+        "spring.liquibase.enabled=true",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.PostgreSQLDialect",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.kafka.listener.auto-startup=false",
+        "logging.level.ru.rpovetkin.notifications=WARN"
+})
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "soak", matches = "true")
+class AlertStoreSoakTest {
+
+    private static final long ALERTS = Long.getLong("soak.alerts", 2_000_000L);
+    private static final int USERS = 10_000;
+    // Как три consumer-потока Kafka
+    private static final int THREADS = 3;
+    private static final int CHECKPOINTS = 10;
+    private static final long MAX_HEAP_GROWTH_BYTES = 64L * 1024 * 1024;
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private NotificationAlertRepository notificationAlertRepository;
+
+    // Почтовая история хранится отдельно и в этом тесте не участвует
+    @MockBean
+    private EmailNotificationService emailNotificationService;
+
+    @Test
+    @DisplayName("Heap не растет с количеством сохраненных алертов")
+    void heapStaysFlat_afterMillionsOfAlerts() throws Exception {
+        given(emailNotificationService.sendEmailNotification(any()))
+                .willReturn(NotificationResponse.builder().success(true).build());
+
+        long perCheckpoint = ALERTS / CHECKPOINTS;
+        AtomicLong sequence = new AtomicLong();
+        List<Long> usedHeap = new ArrayList<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int checkpoint = 0; checkpoint < CHECKPOINTS; checkpoint++) {
+                long upTo = perCheckpoint * (checkpoint + 1);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    futures.add(executor.submit(() -> {
+                        long n;
+                        while ((n = sequence.incrementAndGet()) <= upTo) {
+                            notificationService.sendNotification(request(n));
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                sequence.set(upTo);
+                // Чтение ленты между пачками записей
+                notificationService.getUserAlerts("soak-user-1", null, 50);
+                usedHeap.add(usedHeapAfterGc());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(notificationAlertRepository.count()).isEqualTo(perCheckpoint * CHECKPOINTS);
+        // Первая точка включает прогрев (пулы соединений, кэши Hibernate), рост считаем от нее
+        long baseline = usedHeap.get(0);
+        assertThat(usedHeap.get(usedHeap.size() - 1) - baseline).isLessThan(MAX_HEAP_GROWTH_BYTES);
+        assertThat(usedHeap.stream().mapToLong(Long::longValue).max().orElseThrow() - baseline)
+                .isLessThan(MAX_HEAP_GROWTH_BYTES);
+    }
+
+    private static NotificationRequest request(long n) {
+        return NotificationRequest.builder()
+                .userId("soak-user-" + (n % USERS))
+                .type("INFO")
+                .title("Операция " + n)
+                .message("Soak alert " + n)
+                .source("SOAK")
+                .build();
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,45 @@
+package ru.rpovetkin.notifications.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DomainRateLimiterTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    @DisplayName("Бакеты доменов без отправок удаляются, карта не растет от разовых доменов")
+    void reserve_shouldEvictIdleBuckets() {
+        DomainRateLimiter limiter = new DomainRateLimiter(10);
+        long start = System.nanoTime();
+        for (int i = 0; i < 1_000; i++) {
+            limiter.reserve("domain" + i + ".example", start);
+        }
+        assertThat(limiter.size()).isEqualTo(1_000);
+
+        limiter.reserve("mail.ru", start + MINUTE + 1);
+
+        assertThat(limiter.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Бакет с зарезервированными слотами не удаляется и задержка сохраняется")
+    void reserve_shouldKeepBucketsInDebt() {
+        DomainRateLimiter limiter = new DomainRateLimiter(1);
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            limiter.reserve("slow.example", start);
+        }
+
+        long now = start + MINUTE + 1;
+        long delay = limiter.reserve("slow.example", now);
+
+        assertThat(limiter.size()).isEqualTo(1);
+        // 99 слотов в долг, минута погасила 60: следующее письмо - сорок первое в очереди домена
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(delay)).isBetween(39L, 40L);
+    }
+}
@@ -0,0 +1,214 @@
+package ru.rpovetkin.notifications.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.rpovetkin.notifications.entity.NotificationEmail;
+import ru.rpovetkin.notifications.enums.EmailDeliveryStatus;
+import ru.rpovetkin.notifications.repository.NotificationEmailRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class EmailDispatcherTest {
+
+    @RegisterExtension
+    static final GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private NotificationEmailRepository repository;
+    private EmailDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(NotificationEmailRepository.class);
+        given(repository.claim(anyString(), any())).willReturn(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Письма отправляются через SMTP и отмечаются доставленными")
+    void dispatch_shouldDeliverOverSmtp() {
+        dispatcher = startDispatcher(mailSender(ServerSetupTest.SMTP.getPort()), 0);
+
+        dispatcher.dispatch(List.of(email("1", "alice@bank.com"), email("2", "bob@mail.ru"), email("3", "carol@bank.com")));
+
+        assertThat(greenMail.waitForIncomingEmail(5_000, 3)).isTrue();
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertThat(received).extracting(MimeMessage::getSubject).containsOnly("Тема");
+        verify(repository, timeout(5_000).times(3)).markSent(anyString(), any());
+        assertThat(count("sent")).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Отправка в один домен ограничена по скорости")
+    void dispatch_shouldRateLimitPerDomain() {
+        dispatcher = startDispatcher(mailSender(ServerSetupTest.SMTP.getPort()), 5);
+
+        long startedAt = System.nanoTime();
+        dispatcher.dispatch(IntStream.range(0, 10)
+                .mapToObj(i -> email(String.valueOf(i), "user" + i + "@bank.com"))
+                .toList());
+
+        assertThat(greenMail.waitForIncomingEmail(10_000, 10)).isTrue();
+        // 5 писем проходят сразу, остальные 5 - со скоростью 5 в секунду
+        assertThat(Duration.ofNanos(System.nanoTime() - startedAt)).isGreaterThanOrEqualTo(Duration.ofMillis(800));
+    }
+
+    @Test
+    @DisplayName("Письма в медленный домен откладываются и не задерживают отправку в другие домены")
+    void dispatch_shouldNotBlockOtherDomainsOnRateLimit() throws Exception {
+        dispatcher = startDispatcher(mailSender(ServerSetupTest.SMTP.getPort()), 1);
+
+        dispatcher.dispatch(List.of(email("1", "a@slow.com"), email("2", "b@slow.com"), email("3", "c@slow.com"),
+                email("4", "d@fast.com")));
+
+        assertThat(greenMail.waitForIncomingEmail(1_000, 2)).isTrue();
+        assertThat(greenMail.getReceivedMessages())
+                .extracting(message -> message.getAllRecipients()[0].toString())
+                .containsExactlyInAnyOrder("a@slow.com", "d@fast.com");
+        assertThat(count("deferred")).isEqualTo(2);
+        verify(repository, never()).claim(eq("2"), any());
+    }
+
+    @Test
+    @DisplayName("Захват отправленного, но не отмеченного письма продлевается до успешной отметки")
+    void dispatch_shouldKeepClaimUntilSentIsRecorded() {
+        given(repository.markSent(eq("1"), any())).willThrow(new IllegalStateException("db down")).willReturn(1);
+        dispatcher = startDispatcher(mailSender(ServerSetupTest.SMTP.getPort()), 0);
+        // Отметка повторяется через initialBackoff: захват проверяется до повтора
+        ReflectionTestUtils.setField(dispatcher, "initialBackoff", Duration.ofSeconds(1));
+
+        dispatcher.dispatch(List.of(email("1", "alice@bank.com")));
+
+        assertThat(greenMail.waitForIncomingEmail(5_000, 1)).isTrue();
+        verify(repository, timeout(5_000)).markSent(eq("1"), any());
+        dispatcher.renewClaims();
+        verify(repository).renewClaims(eq(List.of("1")), any());
+
+        verify(repository, timeout(5_000).times(2)).markSent(eq("1"), any());
+        dispatcher.renewClaims();
+        verify(repository).renewClaims(anyList(), any());
+        verify(repository, never()).markAttemptFailed(anyString(), any(), any(), any());
+        assertThat(greenMail.getReceivedMessages()).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Письмо, захваченное другим worker'ом, повторно не отправляется")
+    void dispatch_shouldSkipAlreadyClaimedEmail() {
+        given(repository.claim(eq("1"), any())).willReturn(0);
+        dispatcher = startDispatcher(mailSender(ServerSetupTest.SMTP.getPort()), 0);
+
+        dispatcher.dispatch(List.of(email("1", "alice@bank.com")));
+
+        verify(repository, after(500).never()).markSent(anyString(), any());
+        assertThat(greenMail.getReceivedMessages()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("При недоступном SMTP попытки повторяются, после max-attempts письмо помечается FAILED")
+    void dispatch_shouldRetryAndFail() {
+        dispatcher = startDispatcher(mailSender(1), 0);
+
+        dispatcher.dispatch(List.of(email("1", "alice@bank.com")));
+
+        verify(repository, timeout(5_000)).markAttemptFailed(eq("1"), eq(EmailDeliveryStatus.FAILED), isNull(), any());
+        verify(repository, times(2)).markAttemptFailed(eq("1"), eq(EmailDeliveryStatus.PENDING), any(), any());
+        verify(repository, never()).markSent(anyString(), any());
+        assertThat(count("retried")).isEqualTo(2);
+        assertThat(count("failed")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Поставленные в очередь письма отмечаются QUEUED, не поместившиеся остаются PENDING")
+    void dispatch_shouldMarkOnlyQueuedEmails() {
+        EmailDispatcher emailDispatcher = new EmailDispatcher(repository, Optional.empty(), meterRegistry);
+        ReflectionTestUtils.setField(emailDispatcher, "workers", 0);
+        ReflectionTestUtils.setField(emailDispatcher, "queueCapacity", 1);
+        emailDispatcher.start();
+        dispatcher = emailDispatcher;
+
+        dispatcher.dispatch(List.of(email("1", "alice@bank.com"), email("2", "bob@bank.com")));
+
+        verify(repository).releaseQueued();
+        verify(repository).markQueued(eq(List.of("1")), any());
+        assertThat(count("rejected")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Пауза между попытками растет экспоненциально и ограничена max-backoff")
+    void backoff_shouldGrowExponentially() {
+        EmailDispatcher notStarted = new EmailDispatcher(repository, Optional.empty(), meterRegistry);
+
+        assertThat(notStarted.backoff(1)).isEqualTo(Duration.ofSeconds(2));
+        assertThat(notStarted.backoff(3)).isEqualTo(Duration.ofSeconds(8));
+        assertThat(notStarted.backoff(20)).isEqualTo(Duration.ofMinutes(5));
+    }
+
+    private EmailDispatcher startDispatcher(JavaMailSenderImpl mailSender, double ratePerDomain) {
+        EmailDispatcher emailDispatcher = new EmailDispatcher(repository, Optional.of(mailSender), meterRegistry);
+        ReflectionTestUtils.setField(emailDispatcher, "workers", 2);
+        ReflectionTestUtils.setField(emailDispatcher, "ratePerDomain", ratePerDomain);
+        ReflectionTestUtils.setField(emailDispatcher, "maxAttempts", 3);
+        ReflectionTestUtils.setField(emailDispatcher, "initialBackoff", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(emailDispatcher, "staleAfter", Duration.ofHours(1));
+        emailDispatcher.start();
+        return emailDispatcher;
+    }
+
+    private static JavaMailSenderImpl mailSender(int port) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(port);
+        return mailSender;
+    }
+
+    private static NotificationEmail email(String id, String address) {
+        return NotificationEmail.builder()
+                .id(id)
+                .userId(address.substring(0, address.indexOf('@')))
+                .userEmail(address)
+                .type("INFO")
+                .subject("Тема")
+                .message("Текст письма")
+                .source("ACCOUNTS")
+                .sentAt(LocalDateTime.now())
+                .status(EmailDeliveryStatus.PENDING)
+                .build();
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.get("notifications.mail.dispatch").tag("outcome", outcome).counter().count();
+    }
+}
@@ -0,0 +1,143 @@
+package ru.rpovetkin.notifications.service;
+
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.rpovetkin.notifications.dto.NotificationRequest;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NotificationCoalescerTest {
+
+    private static final long WINDOW_MILLIS = Duration.ofMinutes(1).toMillis();
+
+    private NotificationCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = new NotificationCoalescer();
+        ReflectionTestUtils.setField(coalescer, "threshold", 2);
+    }
+
+    @Test
+    @DisplayName("Сверх порога уведомления копятся и по окончании окна отдаются одним дайджестом")
+    void admit_shouldCoalesceAboveThreshold() {
+        for (int i = 0; i < 5; i++) {
+            boolean admitted = coalescer.admit(request("alice", "CASH", "SUCCESS", "Пополнение " + i), 1_000 + i);
+            assertThat(admitted).isEqualTo(i < 2);
+        }
+
+        assertThat(coalescer.drain(1_000 + WINDOW_MILLIS - 1, false)).isEmpty();
+
+        assertThat(coalescer.drain(1_000 + WINDOW_MILLIS, false)).singleElement().satisfies(digest -> {
+            assertThat(digest.getUserId()).isEqualTo("alice");
+            assertThat(digest.getSource()).isEqualTo("CASH");
+            assertThat(digest.getType()).isEqualTo("SUCCESS");
+            assertThat(digest.getTitle()).isEqualTo("Сводка: 3 уведомлений");
+            assertThat(digest.getMessage()).contains("Пополнение 2", "Пополнение 4");
+            assertThat(digest.getMetadata()).asInstanceOf(InstanceOfAssertFactories.MAP).containsEntry("digest", true).containsEntry("count", 3);
+        });
+    }
+
+    @Test
+    @DisplayName("Окна раздельные для каждого пользователя и источника")
+    void admit_shouldKeepSeparateWindowsPerUserAndSource() {
+        List<NotificationRequest> requests = List.of(
+                request("alice", "CASH", "SUCCESS", "1"),
+                request("alice", "CASH", "SUCCESS", "2"),
+                request("alice", "TRANSFER", "SUCCESS", "3"),
+                request("bob", "CASH", "SUCCESS", "4"),
+                request("alice", "CASH", "SUCCESS", "5"));
+
+        List<NotificationRequest> admitted = requests.stream()
+                .filter(request -> coalescer.admit(request, 0))
+                .toList();
+
+        assertThat(admitted).extracting(NotificationRequest::getTitle).containsExactly("1", "2", "3", "4");
+        assertThat(coalescer.drain(WINDOW_MILLIS, false)).singleElement()
+                .satisfies(digest -> assertThat(digest.getSource()).isEqualTo("CASH"));
+    }
+
+    @Test
+    @DisplayName("WARNING и ERROR не группируются")
+    void admit_shouldBypassWarningsAndErrors() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(coalescer.admit(request("alice", "BLOCKER", "WARNING", "Подозрительная операция"), i)).isTrue();
+            assertThat(coalescer.admit(request("alice", "BLOCKER", "ERROR", "Операция отклонена"), i)).isTrue();
+        }
+
+        assertThat(coalescer.drain(WINDOW_MILLIS, true)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Дайджест смешанных типов получает тип INFO, после окна счетчик начинается заново")
+    void drain_shouldStartNewWindow() {
+        coalescer.admit(request("alice", "ACCOUNTS", "SUCCESS", "1"), 0);
+        coalescer.admit(request("alice", "ACCOUNTS", "SUCCESS", "2"), 0);
+        coalescer.admit(request("alice", "ACCOUNTS", "SUCCESS", "3"), 0);
+        coalescer.admit(request("alice", "ACCOUNTS", "INFO", "4"), 0);
+
+        assertThat(coalescer.drain(WINDOW_MILLIS, false)).singleElement()
+                .satisfies(digest -> assertThat(digest.getType()).isEqualTo("INFO"));
+        assertThat(coalescer.admit(request("alice", "ACCOUNTS", "SUCCESS", "5"), WINDOW_MILLIS)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Пакет учитывается в окнах только после фиксации транзакции: откат и повтор не раздувают дайджест")
+    void admit_shouldRecordWindowsAfterCommit() {
+        List<NotificationRequest> batch = List.of(
+                request("alice", "CASH", "SUCCESS", "1"),
+                request("alice", "CASH", "SUCCESS", "2"),
+                request("alice", "CASH", "SUCCESS", "3"),
+                request("alice", "CASH", "SUCCESS", "4"));
+
+        // Откат: синхронизация снимается без afterCommit
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThat(coalescer.admit(batch, 0)).extracting(NotificationRequest::getTitle).containsExactly("1", "2");
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(coalescer.drain(WINDOW_MILLIS, true)).isEmpty();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThat(coalescer.admit(batch, 0)).extracting(NotificationRequest::getTitle).containsExactly("1", "2");
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(coalescer.drain(WINDOW_MILLIS, true)).singleElement()
+                .satisfies(digest -> assertThat(digest.getMetadata()).asInstanceOf(InstanceOfAssertFactories.MAP).containsEntry("count", 2));
+    }
+
+    @Test
+    @DisplayName("Когда группировка выключена, проходят все уведомления")
+    void admit_shouldPassAllWhenDisabled() {
+        ReflectionTestUtils.setField(coalescer, "enabled", false);
+        List<NotificationRequest> requests = List.of(
+                request("alice", "CASH", "SUCCESS", "1"),
+                request("alice", "CASH", "SUCCESS", "2"),
+                request("alice", "CASH", "SUCCESS", "3"));
+
+        assertThat(coalescer.admit(requests)).hasSize(3);
+        assertThat(coalescer.drainAll()).isEmpty();
+    }
+
+    private static NotificationRequest request(String userId, String source, String type, String title) {
+        return NotificationRequest.builder()
+                .userId(userId)
+                .type(type)
+                .title(title)
+                .message(title)
+                .source(source)
+                .build();
+    }
+}
@@ -0,0 +1,177 @@
+package ru.rpovetkin.notifications.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import ru.rpovetkin.notifications.dto.Alert;
+import ru.rpovetkin.notifications.dto.AlertPage;
+import ru.rpovetkin.notifications.dto.NotificationRequest;
+import ru.rpovetkin.notifications.entity.NotificationAlert;
+import ru.rpovetkin.notifications.repository.NotificationAlertRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest
+@Import({NotificationService.class, EmailNotificationService.class, AlertRetentionJob.class,
+        NotificationCoalescer.class, JacksonAutoConfiguration.class})
+@TestPropertySource(properties = "notifications.alerts.retention-batch-size=2")
+class NotificationServiceTest {
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private EmailNotificationService emailNotificationService;
+
+    @Autowired
+    private AlertRetentionJob alertRetentionJob;
+
+    @MockBean
+    private EmailDispatcher emailDispatcher;
+
+    @Autowired
+    private NotificationAlertRepository notificationAlertRepository;
+
+    @Test
+    @DisplayName("Уведомление сохраняется в БД вместе с metadata")
+    void sendNotification_shouldPersistAlert() {
+        notificationService.sendNotification(NotificationRequest.builder()
+                .userId("alice")
+                .type("SUCCESS")
+                .title("Пополнение")
+                .message("Счет пополнен")
+                .source("CASH")
+                .metadata(Map.of("amount", 100))
+                .build());
+
+        List<Alert> alerts = notificationService.getUserAlerts("alice", null, 20).getAlerts();
+        assertThat(alerts).singleElement().satisfies(alert -> {
+            assertThat(alert.getTitle()).isEqualTo("Пополнение");
+            assertThat(alert.getMetadata()).isEqualTo(Map.of("amount", 100));
+            assertThat(alert.isRead()).isFalse();
+        });
+    }
+
+    @Test
+    @DisplayName("Пакет уведомлений сохраняет алерты и историю писем")
+    void sendNotifications_shouldStoreAlertsAndEmailsInBulk() {
+        List<NotificationRequest> requests = List.of(
+                request("grace", "SUCCESS", "Перевод"),
+                request("grace", "INFO", "Пополнение"),
+                request("heidi", "WARNING", "Снятие"));
+
+        assertThat(notificationService.sendNotifications(requests)).isEqualTo(3);
+
+        assertThat(notificationService.getUserAlerts("grace", null, 20).getAlerts()).hasSize(2);
+        assertThat(emailNotificationService.getUserEmailHistory("heidi"))
+                .singleElement()
+                .satisfies(email -> {
+                    assertThat(email.getUserEmail()).isEqualTo("heidi@bank.com");
+                    assertThat(email.getStatus()).isEqualTo("PENDING");
+                });
+        assertThat(emailNotificationService.getEmailStatistics())
+                .containsEntry("SUCCESS", 1L)
+                .containsEntry("INFO", 1L)
+                .containsEntry("WARNING", 1L);
+        verify(emailDispatcher).dispatch(argThat(emails -> emails.size() == 3));
+    }
+
+    @Test
+    @DisplayName("Курсор обходит ленту новыми сверху без пропусков и повторов, в том числе при равном времени")
+    void getUserAlerts_shouldWalkFeedByCursor() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        for (int i = 0; i < 7; i++) {
+            // Пары алертов с одинаковым временем проверяют сравнение по id
+            saveAlert("bob", "b" + i, now.minusSeconds(i / 2), false);
+        }
+        saveAlert("carol", "c0", now, false);
+
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            AlertPage page = notificationService.getUserAlerts("bob", cursor, 3);
+            page.getAlerts().forEach(alert -> ids.add(alert.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(ids).containsExactly("b1", "b0", "b3", "b2", "b5", "b4", "b6");
+    }
+
+    @Test
+    @DisplayName("Лента непрочитанных исключает прочитанные алерты")
+    void getUnreadAlerts_shouldSkipReadAlerts() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        saveAlert("dave", "d0", now, false);
+        saveAlert("dave", "d1", now.minusSeconds(1), false);
+        saveAlert("dave", "d2", now.minusSeconds(2), true);
+
+        assertThat(notificationService.markAsRead("dave", "d0")).isTrue();
+        assertThat(notificationService.markAsRead("eve", "d1")).isFalse();
+
+        assertThat(notificationService.getUnreadAlerts("dave", null, 20).getAlerts())
+                .extracting(Alert::getId)
+                .containsExactly("d1");
+        assertThat(notificationService.markAllAsRead("dave")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Поврежденный курсор отклоняется")
+    void getUserAlerts_shouldRejectInvalidCursor() {
+        assertThatThrownBy(() -> notificationService.getUserAlerts("alice", "not-a-cursor", 20))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Retention удаляет пачками только алерты старше границы")
+    void deleteCreatedBefore_shouldRemoveExpiredAlertsInBatches() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        for (int i = 0; i < 5; i++) {
+            saveAlert("frank", "old" + i, now.minusDays(40), false);
+        }
+        saveAlert("frank", "fresh", now, false);
+
+        int removed = alertRetentionJob.deleteCreatedBefore(now.minusDays(30));
+
+        assertThat(removed).isEqualTo(5);
+        assertThat(notificationAlertRepository.findAll())
+                .extracting(NotificationAlert::getId)
+                .containsExactly("fresh");
+    }
+
+    private static NotificationRequest request(String userId, String type, String title) {
+        return NotificationRequest.builder()
+                .userId(userId)
+                .type(type)
+                .title(title)
+                .message(title)
+                .source("ACCOUNTS")
+                .build();
+    }
+
+    private void saveAlert(String userId, String id, LocalDateTime createdAt, boolean read) {
+        notificationAlertRepository.save(NotificationAlert.builder()
+                .id(id)
+                .userId(userId)
+                .type("INFO")
+                .title("t")
+                .message("m")
+                .source("TEST")
+                .createdAt(createdAt)
+                .read(read)
+                .build());
+    }
+}
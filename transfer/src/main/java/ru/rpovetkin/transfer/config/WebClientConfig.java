@@ -0,0 +1,18 @@
+package ru.rpovetkin.transfer.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
+import ru.rpovetkin.http.WebClientFactory;
+
+@Configuration
+public class WebClientConfig {
+
+    /**
+     * WebClient на общем пуле соединений (настройки - bankapp.http-client)
+     */
+    @Bean
+    public WebClient webClient(WebClientFactory webClientFactory) {
+        return webClientFactory.webClient();
+    }
+}
@@ -0,0 +1,21 @@
+package ru.rpovetkin.transfer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Баланс одного счета из accounts (GET /api/accounts/{login}/{currency})
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountBalanceDto {
+    private Long id;
+    private String currency;
+    private BigDecimal balance;
+}
@@ -0,0 +1,22 @@
+package ru.rpovetkin.transfer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Счет пользователя из списка всех его счетов в accounts (GET /api/accounts/{login})
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountDto {
+    private Long id;
+    private String currency;
+    private BigDecimal balance;
+    private boolean exists;
+}
@@ -0,0 +1,21 @@
+package ru.rpovetkin.transfer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountTransferRequest {
+    private String fromLogin;
+    private String toLogin;
+    private String fromCurrency;
+    private String toCurrency;
+    private BigDecimal amountFrom;
+    private BigDecimal amountTo;
+}
@@ -0,0 +1,23 @@
+package ru.rpovetkin.transfer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountTransferResponse {
+    private boolean success;
+    private String message;
+    private List<String> errors;
+    /**
+     * Результат неизвестен (таймаут, обрыв связи): accounts мог провести перевод.
+     * Повтор с тем же Idempotency-Key вернет фактический результат
+     */
+    private boolean pending;
+}
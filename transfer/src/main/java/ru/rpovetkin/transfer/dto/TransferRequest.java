@@ -1,5 +1,6 @@
 package ru.rpovetkin.transfer.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -23,4 +24,10 @@ public class TransferRequest {
     private BigDecimal amountFrom;
     private BigDecimal amountTo;
     private String description;
+
+    /**
+     * Значение заголовка Idempotency-Key; передается в сервис счетов
+     */
+    @JsonIgnore
+    private String idempotencyKey;
 }
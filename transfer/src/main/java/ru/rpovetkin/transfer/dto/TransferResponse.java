@@ -16,4 +16,9 @@ public class TransferResponse {
     private String message;
     private List<String> errors;
     private String transferId;
+    /**
+     * Результат перевода неизвестен; повторить запрос нужно с тем же idempotencyKey
+     */
+    private boolean pending;
+    private String idempotencyKey;
 }
@@ -3,9 +3,18 @@ package ru.rpovetkin.transfer.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import ru.rpovetkin.http.DownstreamGuard;
+import ru.rpovetkin.http.ServiceTokenManager;
+import ru.rpovetkin.transfer.dto.AccountBalanceDto;
+import ru.rpovetkin.transfer.dto.AccountDto;
+import ru.rpovetkin.transfer.dto.AccountTransferRequest;
+import ru.rpovetkin.transfer.dto.AccountTransferResponse;
 
 import java.math.BigDecimal;
 import java.util.Map;
@@ -15,147 +24,136 @@ import java.util.Map;
 @Slf4j
 public class AccountsIntegrationService {
 
-    private final WebClient.Builder webClientBuilder;
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
 
-    @Value("${services.accounts.url:http://bankapp-accounts:8081}")
-    private String accountsServiceUrl;
-
-    @Value("${spring.security.oauth2.client.provider.keycloak.token-uri:http://keycloak:8080/realms/bankapp/protocol/openid-connect/token}")
-    private String tokenUri;
+    private static final String ACCOUNTS = "accounts";
 
-    @Value("${spring.security.oauth2.client.registration.transfer-service.client-id:transfer-service}")
-    private String clientId;
+    private final WebClient webClient;
+    private final ServiceTokenManager serviceTokenManager;
+    private final DownstreamGuard downstreamGuard;
 
-    @Value("${spring.security.oauth2.client.registration.transfer-service.client-secret:transfer-secret-key-12345}")
-    private String clientSecret;
+    @Value("${services.accounts.url:http://bankapp-accounts:8081}")
+    private String accountsServiceUrl;
 
     /**
-     * Выполняет операцию со счетом пользователя
+     * Выполняет перевод между счетами одним вызовом accounts (списание и зачисление в одной транзакции)
      */
-    public Mono<Boolean> performAccountOperation(String login, String currency, BigDecimal amount, String operationType) {
-        log.info("Performing account operation: {} {} {} for user {}",
-                operationType, amount, currency, login);
-        
+    public Mono<AccountTransferResponse> transfer(AccountTransferRequest request, String idempotencyKey) {
+        log.info("Performing atomic transfer: {} {} from {} to {}",
+                request.getAmountFrom(), request.getFromCurrency(), request.getFromLogin(), request.getToLogin());
+
         return fetchServiceAccessToken()
-                .flatMap(accessToken -> {
-                    WebClient webClient = webClientBuilder.build();
-                    
-                    Map<String, Object> request = Map.of(
-                        "login", login,
-                        "currency", currency,
-                        "amount", amount.abs() // Используем абсолютное значение
-                    );
-                    
-                    // Определяем endpoint на основе типа операции
-                    String endpoint;
-                    if (operationType.contains("DEBIT") || amount.compareTo(BigDecimal.ZERO) < 0) {
-                        endpoint = "/api/accounts/withdraw";
+                .flatMap(accessToken -> downstreamGuard.protect(ACCOUNTS, webClient
+                        .post()
+                        .uri(accountsServiceUrl + "/api/accounts/transfer")
+                        .headers(h -> { if (!accessToken.isEmpty()) h.setBearerAuth(accessToken); })
+                        .header(IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+                        .bodyValue(request)
+                        .retrieve()
+                        // 400 содержит описание отказа (недостаточно средств, нет счета), 422 - отказ по
+                        // Idempotency-Key; разбираем как обычный ответ
+                        .onStatus(status -> status.value() == HttpStatus.BAD_REQUEST.value()
+                                        || status.value() == HttpStatus.UNPROCESSABLE_ENTITY.value(),
+                                response -> Mono.empty())
+                        .bodyToMono(AccountTransferResponse.class)))
+                // с Idempotency-Key повтор после таймаута безопасен: accounts вернет записанный результат
+                .retryWhen(Retry.max(2).filter(error -> !DownstreamGuard.isRejected(error)
+                        && !(error instanceof WebClientResponseException response && response.getStatusCode().is4xxClientError())))
+                .map(response -> {
+                    if (response.isSuccess()) {
+                        log.info("Atomic transfer successful: {} -> {}", request.getFromLogin(), request.getToLogin());
                     } else {
-                        endpoint = "/api/accounts/deposit";
+                        log.warn("Atomic transfer rejected: {} -> {} - {}",
+                                request.getFromLogin(), request.getToLogin(), response.getMessage());
                     }
-                    
-                    return Mono.just(accountsServiceUrl)
-                            .flatMap(serviceUrl -> webClient
-                                    .post()
-                                    .uri(serviceUrl + endpoint)
-                                    .headers(h -> { if (accessToken != null) h.setBearerAuth(accessToken); })
-                                    .bodyValue(request)
-                                    .retrieve()
-                                    .bodyToMono(new org.springframework.core.ParameterizedTypeReference<Map<String, Object>>() {})
-                                    .onErrorReturn(Map.of("success", false, "message", "Service unavailable")))
-                            .map(response -> {
-                                if (response != null && Boolean.TRUE.equals(response.get("success"))) {
-                                    log.info("Account operation successful: {} for user {}", operationType, login);
-                                    return true;
-                                } else {
-                                    log.warn("Account operation failed: {} for user {} - {}", 
-                                            operationType, login, response != null ? response.get("message") : "Unknown error");
-                                    return false;
-                                }
-                            });
+                    return response;
                 })
-                .doOnError(error -> log.error("Error performing account operation: {}", error.getMessage(), error))
-                .onErrorReturn(false);
+                .doOnError(error -> log.error("Error performing atomic transfer: {}", error.getMessage(), error))
+                .onErrorResume(error -> Mono.just(isDefiniteFailure(error)
+                        ? AccountTransferResponse.builder()
+                                .success(false)
+                                .message("Service unavailable")
+                                .build()
+                        : AccountTransferResponse.builder()
+                                .success(false)
+                                .pending(true)
+                                .message("Результат перевода неизвестен")
+                                .build()));
+    }
+
+    /**
+     * Запрос точно не выполнен: не был отправлен (открыт circuit breaker, переполнен bulkhead)
+     * или отклонен accounts с 4xx. После таймаута, обрыва связи, 5xx или 409 (операция с ключом еще выполняется)
+     * accounts мог провести перевод, поэтому его результат неизвестен
+     */
+    private static boolean isDefiniteFailure(Throwable error) {
+        if (DownstreamGuard.isRejected(error)) {
+            return true;
+        }
+        return error instanceof WebClientResponseException response
+                && response.getStatusCode().is4xxClientError()
+                && response.getStatusCode().value() != HttpStatus.CONFLICT.value();
     }
 
     /**
-     * Проверяет баланс пользователя
+     * Баланс счета пользователя в валюте одним типизированным запросом; -1, если счета нет.
+     * Ошибка accounts передается вызывающему: ее нельзя выдавать за отсутствие счета или средств
      */
     public Mono<BigDecimal> getUserBalance(String login, String currency) {
         log.info("Getting balance for user {} in currency {}", login, currency);
         
         return fetchServiceAccessToken()
-                .flatMap(accessToken -> {
-                    WebClient webClient = webClientBuilder.build();
-                    
-                    return Mono.just(accountsServiceUrl)
-                            .flatMap(serviceUrl -> webClient
-                                    .get()
-                                    .uri(serviceUrl + "/api/accounts/" + login)
-                                    .headers(h -> { if (accessToken != null) h.setBearerAuth(accessToken); })
-                                    .retrieve()
-                                    .bodyToMono(Object[].class)
-                                    .onErrorReturn(new Object[0]))
-                            .map(accounts -> {
-                                if (accounts != null) {
-                                    for (Object accountObj : accounts) {
-                                        if (accountObj instanceof Map<?, ?>) {
-                                            @SuppressWarnings("unchecked")
-                                            Map<String, Object> account = (Map<String, Object>) accountObj;
-
-                                            // currency может прийти как строка ("USD") или как объект { name: "USD", title: "..." }
-                                            Object currencyObj = account.get("currency");
-                                            String accountCurrency = null;
-                                            if (currencyObj instanceof String) {
-                                                accountCurrency = (String) currencyObj;
-                                            } else if (currencyObj instanceof Map<?, ?>) {
-                                                Object name = ((Map<?, ?>) currencyObj).get("name");
-                                                if (name != null) {
-                                                    accountCurrency = String.valueOf(name);
-                                                }
-                                            }
+                .flatMap(accessToken -> downstreamGuard.protect(ACCOUNTS, webClient
+                        .get()
+                        .uri(accountsServiceUrl + "/api/accounts/{login}/{currency}", login, currency)
+                        .headers(h -> { if (!accessToken.isEmpty()) h.setBearerAuth(accessToken); })
+                        .retrieve()
+                        .bodyToMono(AccountBalanceDto.class)))
+                .map(account -> {
+                    log.info("Found balance {} {} for user {}", account.getBalance(), currency, login);
+                    return account.getBalance();
+                })
+                // 404 - у пользователя нет счета в этой валюте
+                .onErrorResume(WebClientResponseException.NotFound.class, error -> Mono.empty())
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    log.warn("No account found for user {} in currency {}", login, currency);
+                    return BigDecimal.valueOf(-1);
+                }))
+                .doOnError(error -> log.error("Error getting user balance: {}", error.getMessage(), error));
+    }
 
-                                            Boolean exists = (Boolean) account.get("exists");
+    /**
+     * Балансы всех существующих счетов пользователя одним запросом (валюта -> баланс).
+     * Ошибка accounts передается вызывающему
+     */
+    public Mono<Map<String, BigDecimal>> getUserBalances(String login) {
+        log.info("Getting balances for user {}", login);
 
-                                            if (accountCurrency != null && currency.equals(accountCurrency) && Boolean.TRUE.equals(exists)) {
-                                                Object balanceObj = account.get("balance");
-                                                if (balanceObj != null) {
-                                                    BigDecimal balance = new BigDecimal(balanceObj.toString());
-                                                    log.info("Found balance {} {} for user {}", balance, currency, login);
-                                                    return balance;
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                                
-                                log.warn("No account found for user {} in currency {}", login, currency);
-                                return BigDecimal.valueOf(-1);
-                            });
-                })
-                .doOnError(error -> log.error("Error getting user balance: {}", error.getMessage(), error))
-                .onErrorReturn(BigDecimal.valueOf(-1));
+        return fetchServiceAccessToken()
+                .flatMap(accessToken -> downstreamGuard.protect(ACCOUNTS, webClient
+                        .get()
+                        .uri(accountsServiceUrl + "/api/accounts/{login}", login)
+                        .headers(h -> { if (!accessToken.isEmpty()) h.setBearerAuth(accessToken); })
+                        .retrieve()
+                        .bodyToFlux(AccountDto.class)
+                        .filter(account -> account.isExists() && account.getBalance() != null)
+                        .collectMap(AccountDto::getCurrency, AccountDto::getBalance)))
+                .doOnError(error -> log.error("Error getting user balances: {}", error.getMessage(), error));
     }
 
     /**
-     * Проверяет, есть ли у пользователя счет в указанной валюте
+     * Проверяет, есть ли у пользователя счет в указанной валюте; ошибка accounts передается вызывающему
      */
     public Mono<Boolean> hasAccount(String login, String currency) {
         return getUserBalance(login, currency)
-                .map(balance -> balance.compareTo(BigDecimal.ZERO) >= 0) // Счет существует, если баланс >= 0
-                .doOnError(error -> log.error("Error checking account existence: {}", error.getMessage(), error))
-                .onErrorReturn(false);
+                .map(balance -> balance.compareTo(BigDecimal.ZERO) >= 0); // Счет существует, если баланс >= 0
     }
 
+    /**
+     * Токен сервиса или пустая строка, если его не удалось получить: запрос уходит без Authorization
+     */
     private Mono<String> fetchServiceAccessToken() {
-        String form = "grant_type=client_credentials&client_id=" + clientId + "&client_secret=" + clientSecret;
-        return webClientBuilder.build().post()
-                .uri(tokenUri)
-                .header("Content-Type", "application/x-www-form-urlencoded")
-                .bodyValue(form)
-                .retrieve()
-                .bodyToMono(java.util.Map.class)
-                .map(m -> (String) m.get("access_token"))
+        return serviceTokenManager.getAccessToken()
                 .doOnError(error -> log.warn("Failed to fetch service access token for accounts: {}", error.getMessage()))
                 .onErrorResume(error -> Mono.just(""));
     }
@@ -6,6 +6,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import ru.rpovetkin.http.DownstreamGuard;
+import ru.rpovetkin.http.ServiceTokenManager;
 import ru.rpovetkin.transfer.dto.TransferCheckRequest;
 import ru.rpovetkin.transfer.dto.TransferCheckResponse;
 
@@ -14,19 +16,12 @@ import ru.rpovetkin.transfer.dto.TransferCheckResponse;
 @Slf4j
 public class BlockerIntegrationService {
     
-    private final WebClient.Builder webClientBuilder;
+    private final WebClient webClient;
+    private final ServiceTokenManager serviceTokenManager;
+    private final DownstreamGuard downstreamGuard;
     
     @Value("${services.blocker.url:http://bankapp-blocker:8086}")
     private String blockerServiceUrl;
-
-    @Value("${spring.security.oauth2.client.provider.keycloak.token-uri:http://keycloak:8080/realms/bankapp/protocol/openid-connect/token}")
-    private String tokenUri;
-
-    @Value("${spring.security.oauth2.client.registration.transfer-service.client-id:transfer-service}")
-    private String clientId;
-
-    @Value("${spring.security.oauth2.client.registration.transfer-service.client-secret:transfer-secret-key-12345}")
-    private String clientSecret;
     
     /**
      * Проверить перевод в blocker сервисе
@@ -37,16 +32,15 @@ public class BlockerIntegrationService {
         
         return fetchServiceAccessToken()
                 .flatMap(accessToken -> {
-                    WebClient webClient = webClientBuilder.build();
                     
                     return Mono.just(blockerServiceUrl)
-                            .flatMap(serviceUrl -> webClient
+                            .flatMap(serviceUrl -> downstreamGuard.protect("blocker", webClient
                                     .post()
                                     .uri(serviceUrl + "/api/blocker/check-transfer")
-                                    .headers(h -> { if (accessToken != null) h.setBearerAuth(accessToken); })
+                                    .headers(h -> { if (!accessToken.isEmpty()) h.setBearerAuth(accessToken); })
                                     .bodyValue(request)
                                     .retrieve()
-                                    .bodyToMono(TransferCheckResponse.class))
+                                    .bodyToMono(TransferCheckResponse.class)))
                             .map(response -> {
                                 if (response != null) {
                                     log.info("Blocker check result: blocked={}, reason={}, checkId={}", 
@@ -62,15 +56,11 @@ public class BlockerIntegrationService {
                 .onErrorReturn(createAllowResponse("Blocker service unavailable"));
     }
 
+    /**
+     * Токен сервиса или пустая строка, если его не удалось получить: запрос уходит без Authorization
+     */
     private Mono<String> fetchServiceAccessToken() {
-        String form = "grant_type=client_credentials&client_id=" + clientId + "&client_secret=" + clientSecret;
-        return webClientBuilder.build().post()
-                .uri(tokenUri)
-                .header("Content-Type", "application/x-www-form-urlencoded")
-                .bodyValue(form)
-                .retrieve()
-                .bodyToMono(java.util.Map.class)
-                .map(m -> (String) m.get("access_token"))
+        return serviceTokenManager.getAccessToken()
                 .doOnError(error -> log.warn("Failed to fetch service access token for blocker: {}", error.getMessage()))
                 .onErrorResume(error -> Mono.just(""));
     }
@@ -5,13 +5,16 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
+import ru.rpovetkin.transfer.dto.AccountTransferRequest;
 import ru.rpovetkin.transfer.dto.TransferCheckRequest;
+import ru.rpovetkin.transfer.dto.TransferCheckResponse;
 import ru.rpovetkin.transfer.dto.TransferRequest;
 import ru.rpovetkin.transfer.dto.TransferResponse;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
@@ -51,8 +54,29 @@ public class TransferService {
                 .description(request.getDescription())
                 .build();
         
-        return blockerIntegrationService.checkTransfer(blockerRequest)
-                .flatMap(blockerResponse -> {
+        // Извлекаем параметры с учетом обратной совместимости
+        String fromCurrency = request.getFromCurrency() != null ? request.getFromCurrency() : request.getCurrency();
+        String toCurrency = request.getToCurrency() != null ? request.getToCurrency() : request.getCurrency();
+        BigDecimal amountFrom = request.getAmountFrom() != null ? request.getAmountFrom() : request.getAmount();
+        BigDecimal amountTo = request.getAmountTo() != null ? request.getAmountTo() : request.getAmount();
+        
+        // Проверка blocker, баланс отправителя и счет получателя независимы - запрашиваем параллельно,
+        // каждый счет - отдельным запросом по логину и валюте. Для перевода между своими счетами
+        // оба счета берутся из одного запроса всех счетов пользователя
+        Mono<BigDecimal> fromBalanceLookup;
+        Mono<Boolean> toAccountLookup;
+        if (request.getFromUser().equals(request.getToUser())) {
+            Mono<Map<String, BigDecimal>> balances = accountsIntegrationService.getUserBalances(request.getFromUser()).cache();
+            fromBalanceLookup = balances.map(userBalances -> userBalances.getOrDefault(fromCurrency, BigDecimal.valueOf(-1)));
+            toAccountLookup = balances.map(userBalances -> userBalances.containsKey(toCurrency));
+        } else {
+            fromBalanceLookup = accountsIntegrationService.getUserBalance(request.getFromUser(), fromCurrency);
+            toAccountLookup = accountsIntegrationService.hasAccount(request.getToUser(), toCurrency);
+        }
+        
+        return Mono.zip(blockerIntegrationService.checkTransfer(blockerRequest), fromBalanceLookup, toAccountLookup)
+                .flatMap(checks -> {
+                    TransferCheckResponse blockerResponse = checks.getT1();
                     if (blockerResponse.isBlocked()) {
                         // Отправляем уведомления о блокировке обоим пользователям
                         notificationService.sendBlockedNotification(
@@ -68,96 +92,91 @@ public class TransferService {
                                 .build());
                     }
                     
-                    // Извлекаем параметры с учетом обратной совместимости
-                    String fromCurrency = request.getFromCurrency() != null ? request.getFromCurrency() : request.getCurrency();
-                    String toCurrency = request.getToCurrency() != null ? request.getToCurrency() : request.getCurrency();
-                    BigDecimal amountFrom = request.getAmountFrom() != null ? request.getAmountFrom() : request.getAmount();
-                    BigDecimal amountTo = request.getAmountTo() != null ? request.getAmountTo() : request.getAmount();
-
                     // Проверяем балансы и счета
-                    return accountsIntegrationService.getUserBalance(request.getFromUser(), fromCurrency)
-                            .flatMap(fromBalance -> {
-                                if (fromBalance.compareTo(amountFrom) < 0) {
-                                    return Mono.just(TransferResponse.builder()
+                    BigDecimal fromBalance = checks.getT2();
+                    if (fromBalance.compareTo(amountFrom) < 0) {
+                        return Mono.just(TransferResponse.builder()
+                                .success(false)
+                                .message("Недостаточно средств на счете")
+                                .errors(List.of("Доступно: " + fromBalance + " " + fromCurrency))
+                                .build());
+                    }
+                    
+                    if (!checks.getT3()) {
+                        return Mono.just(TransferResponse.builder()
+                                .success(false)
+                                .message("У получателя нет счета в указанной валюте")
+                                .errors(List.of("Валюта: " + toCurrency))
+                                .build());
+                    }
+                    
+                    // Выполняем перевод: списание и зачисление одной транзакцией в accounts
+                    AccountTransferRequest accountTransfer = AccountTransferRequest.builder()
+                            .fromLogin(request.getFromUser())
+                            .toLogin(request.getToUser())
+                            .fromCurrency(fromCurrency)
+                            .toCurrency(toCurrency)
+                            .amountFrom(amountFrom)
+                            .amountTo(amountTo)
+                            .build();
+                    
+                    String idempotencyKey = idempotencyKey(request);
+                    return accountsIntegrationService.transfer(accountTransfer, idempotencyKey)
+                            .map(transferResult -> {
+                                if (transferResult.isPending()) {
+                                    log.warn("Transfer outcome unknown: {} (Idempotency-Key {})", request, idempotencyKey);
+                                    return TransferResponse.builder()
                                             .success(false)
-                                            .message("Недостаточно средств на счете")
-                                            .errors(List.of("Доступно: " + fromBalance + " " + fromCurrency))
-                                            .build());
+                                            .pending(true)
+                                            .idempotencyKey(idempotencyKey)
+                                            .message("Результат перевода пока неизвестен")
+                                            .errors(List.of("Проверьте баланс или повторите перевод с теми же данными: "
+                                                    + "повтор не спишет средства дважды"))
+                                            .build();
                                 }
+                                if (!transferResult.isSuccess()) {
+                                    return TransferResponse.builder()
+                                            .success(false)
+                                            .message("Ошибка при выполнении перевода")
+                                            .errors(transferResult.getErrors() != null
+                                                    ? transferResult.getErrors()
+                                                    : List.of(String.valueOf(transferResult.getMessage())))
+                                            .build();
+                                }
+                                
+                                String transferId = UUID.randomUUID().toString();
+                                log.info("Transfer completed successfully: {} (ID: {})", request, transferId);
                                 
-                                return accountsIntegrationService.hasAccount(request.getToUser(), toCurrency)
-                                        .flatMap(hasAccount -> {
-                                            if (!hasAccount) {
-                                                return Mono.just(TransferResponse.builder()
-                                                        .success(false)
-                                                        .message("У получателя нет счета в указанной валюте")
-                                                        .errors(List.of("Валюта: " + toCurrency))
-                                                        .build());
-                                            }
-                                            
-                                            // Выполняем перевод: списываем с отправителя
-                                            return accountsIntegrationService.performAccountOperation(
-                                                request.getFromUser(),
-                                                fromCurrency,
-                                                amountFrom.negate(),
-                                                "TRANSFER_DEBIT"
-                                            ).flatMap(debitSuccess -> {
-                                                if (!debitSuccess) {
-                                                    return Mono.just(TransferResponse.builder()
-                                                            .success(false)
-                                                            .message("Ошибка при списании средств со счета отправителя")
-                                                            .build());
-                                                }
-                                                
-                                                // Зачисляем получателю
-                                                return accountsIntegrationService.performAccountOperation(
-                                                    request.getToUser(),
-                                                    toCurrency,
-                                                    amountTo,
-                                                    "TRANSFER_CREDIT"
-                                                ).flatMap(creditSuccess -> {
-                                                    if (!creditSuccess) {
-                                                        // Откатываем списание
-                                                        accountsIntegrationService.performAccountOperation(
-                                                            request.getFromUser(),
-                                                            fromCurrency,
-                                                            amountFrom,
-                                                            "TRANSFER_ROLLBACK"
-                                                        ).subscribe();
-                                                        
-                                                        return Mono.just(TransferResponse.builder()
-                                                                .success(false)
-                                                                .message("Ошибка при зачислении средств получателю")
-                                                                .build());
-                                                    }
-                                                    
-                                                    String transferId = UUID.randomUUID().toString();
-                                                    log.info("Transfer completed successfully: {} (ID: {})", request, transferId);
-                                                    
-                                                    // Отправляем уведомления о успешном переводе
-                                                    notificationService.sendSuccessNotification(
-                                                        request.getFromUser(),
-                                                        "Перевод отправлен",
-                                                        String.format("Перевод %s %s пользователю %s выполнен успешно", 
-                                                            amountFrom, fromCurrency, request.getToUser())
-                                                    );
-                                                    
-                                                    notificationService.sendSuccessNotification(
-                                                        request.getToUser(),
-                                                        "Получен перевод",
-                                                        String.format("Вы получили перевод %s %s от пользователя %s", 
-                                                            amountTo, toCurrency, request.getFromUser())
-                                                    );
-                                                    
-                                                    return Mono.just(TransferResponse.builder()
-                                                            .success(true)
-                                                            .message("Перевод выполнен успешно")
-                                                            .transferId(transferId)
-                                                            .build());
-                                                });
-                                            });
-                                        });
+                                // Отправляем уведомления о успешном переводе
+                                notificationService.sendSuccessNotification(
+                                    request.getFromUser(),
+                                    "Перевод отправлен",
+                                    String.format("Перевод %s %s пользователю %s выполнен успешно", 
+                                        amountFrom, fromCurrency, request.getToUser())
+                                );
+                                
+                                notificationService.sendSuccessNotification(
+                                    request.getToUser(),
+                                    "Получен перевод",
+                                    String.format("Вы получили перевод %s %s от пользователя %s", 
+                                        amountTo, toCurrency, request.getFromUser())
+                                );
+                                
+                                return TransferResponse.builder()
+                                        .success(true)
+                                        .message("Перевод выполнен успешно")
+                                        .transferId(transferId)
+                                        .build();
                             });
+                })
+                // Чтение счетов не удалось (accounts недоступен): это ошибка сервиса, а не нехватка средств
+                .onErrorResume(error -> {
+                    log.error("Transfer pre-checks failed: {} - {}", request, error.getMessage());
+                    return Mono.just(TransferResponse.builder()
+                            .success(false)
+                            .message("Сервис счетов временно недоступен")
+                            .errors(List.of("Перевод не выполнен, повторите попытку позже"))
+                            .build());
                 });
     }
     
@@ -184,4 +203,12 @@ public class TransferService {
         
         return errors;
     }
+
+    /**
+     * Ключ клиента или новый на этот перевод: повторы запроса к сервису счетов не проведут его дважды
+     */
+    private static String idempotencyKey(TransferRequest request) {
+        String key = request.getIdempotencyKey();
+        return key != null && !key.isBlank() ? key : UUID.randomUUID().toString();
+    }
 }
@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 import ru.rpovetkin.transfer.dto.TransferRequest;
 import ru.rpovetkin.transfer.dto.TransferResponse;
+import ru.rpovetkin.transfer.service.AccountsIntegrationService;
 import ru.rpovetkin.transfer.service.TransferService;
 
 @RestController
@@ -22,15 +23,21 @@ public class TransferController {
      * Выполнить перевод между пользователями
      */
     @PostMapping("/execute")
-    public Mono<ResponseEntity<TransferResponse>> executeTransfer(@RequestBody TransferRequest request) {
+    public Mono<ResponseEntity<TransferResponse>> executeTransfer(
+            @RequestBody TransferRequest request,
+            @RequestHeader(value = AccountsIntegrationService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         log.info("Received transfer request: {} -> {} for {} {}", 
                 request.getFromUser(), request.getToUser(), 
                 request.getAmount(), request.getCurrency());
         
+        request.setIdempotencyKey(idempotencyKey);
         return transferService.processTransfer(request)
                 .map(response -> {
                     if (response.isSuccess()) {
                         return ResponseEntity.ok(response);
+                    } else if (response.isPending()) {
+                        // Перевод мог быть проведен: клиент повторяет запрос с тем же Idempotency-Key
+                        return ResponseEntity.accepted().body(response);
                     } else {
                         return ResponseEntity.badRequest().body(response);
                     }
@@ -0,0 +1,74 @@
+package ru.rpovetkin.transfer.service;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import ru.rpovetkin.http.DownstreamGuard;
+import ru.rpovetkin.http.ServiceTokenManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+class AccountsIntegrationServiceTest {
+
+    private final List<ClientRequest> requests = new ArrayList<>();
+    private ServiceTokenManager tokenManager;
+    private AccountsIntegrationService accounts;
+
+    @BeforeEach
+    void setUp() {
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    requests.add(request);
+                    return Mono.just(ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body("{\"id\":1,\"currency\":\"RUB\",\"balance\":100}")
+                            .build());
+                })
+                .build();
+        tokenManager = mock(ServiceTokenManager.class);
+        DownstreamGuard downstreamGuard = new DownstreamGuard(
+                CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(), TimeLimiterRegistry.ofDefaults());
+
+        accounts = new AccountsIntegrationService(webClient, tokenManager, downstreamGuard);
+        ReflectionTestUtils.setField(accounts, "accountsServiceUrl", "http://accounts");
+    }
+
+    @Test
+    @DisplayName("Полученный токен сервиса передается в Authorization")
+    void getUserBalance_shouldSendServiceToken() {
+        given(tokenManager.getAccessToken()).willReturn(Mono.just("service-token"));
+
+        BigDecimal balance = accounts.getUserBalance("alice", "RUB").block();
+
+        assertThat(balance).isEqualByComparingTo("100");
+        assertThat(requests.get(0).headers().getFirst(HttpHeaders.AUTHORIZATION)).isEqualTo("Bearer service-token");
+    }
+
+    @Test
+    @DisplayName("Без токена запрос уходит без Authorization, а не с пустым Bearer")
+    void getUserBalance_tokenFailure_shouldOmitAuthorization() {
+        given(tokenManager.getAccessToken()).willReturn(Mono.error(new IllegalStateException("keycloak down")));
+
+        accounts.getUserBalance("alice", "RUB").block();
+
+        assertThat(requests).hasSize(1);
+        assertThat(requests.get(0).headers().containsKey(HttpHeaders.AUTHORIZATION)).isFalse();
+    }
+}
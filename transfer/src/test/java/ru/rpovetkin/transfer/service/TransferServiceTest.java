@@ -0,0 +1,150 @@
+package ru.rpovetkin.transfer.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import ru.rpovetkin.transfer.dto.AccountTransferRequest;
+import ru.rpovetkin.transfer.dto.AccountTransferResponse;
+import ru.rpovetkin.transfer.dto.TransferCheckRequest;
+import ru.rpovetkin.transfer.dto.TransferCheckResponse;
+import ru.rpovetkin.transfer.dto.TransferRequest;
+import ru.rpovetkin.transfer.dto.TransferResponse;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class TransferServiceTest {
+
+    private static final Duration CALL_LATENCY = Duration.ofMillis(300);
+
+    private BlockerIntegrationService blocker;
+    private AccountsIntegrationService accounts;
+    private NotificationIntegrationService notifications;
+    private TransferService transferService;
+
+    @BeforeEach
+    void setUp() {
+        blocker = mock(BlockerIntegrationService.class);
+        accounts = mock(AccountsIntegrationService.class);
+        notifications = mock(NotificationIntegrationService.class);
+        transferService = new TransferService(blocker, notifications, accounts);
+
+        given(blocker.checkTransfer(any(TransferCheckRequest.class))).willReturn(
+                Mono.delay(CALL_LATENCY).thenReturn(TransferCheckResponse.builder().blocked(false).build()));
+        given(accounts.getUserBalance(anyString(), anyString())).willReturn(
+                Mono.delay(CALL_LATENCY).thenReturn(new BigDecimal("1000")));
+        given(accounts.hasAccount(anyString(), anyString())).willReturn(
+                Mono.delay(CALL_LATENCY).thenReturn(true));
+        given(accounts.transfer(any(AccountTransferRequest.class), anyString())).willReturn(
+                Mono.just(AccountTransferResponse.builder().success(true).build()));
+    }
+
+    @Test
+    @DisplayName("Проверка blocker и чтение счетов выполняются параллельно")
+    void processTransfer_shouldIssueIndependentReadsConcurrently() {
+        long start = System.nanoTime();
+        TransferResponse response = transferService.processTransfer(request("alice", "bob")).block();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertThat(response.isSuccess()).isTrue();
+        // Последовательно три вызова заняли бы 3 * CALL_LATENCY
+        assertThat(elapsed).isLessThan(CALL_LATENCY.multipliedBy(2));
+        verify(accounts).getUserBalance("alice", "RUB");
+        verify(accounts).hasAccount("bob", "RUB");
+    }
+
+    @Test
+    @DisplayName("Перевод между своими счетами читает счета пользователя одним запросом")
+    void processTransfer_sameUser_shouldFetchAccountsOnce() {
+        given(accounts.getUserBalances("alice")).willReturn(Mono.delay(CALL_LATENCY)
+                .thenReturn(Map.of("RUB", new BigDecimal("1000"), "USD", new BigDecimal("10"))));
+        TransferRequest request = request("alice", "alice");
+        request.setFromCurrency("RUB");
+        request.setToCurrency("USD");
+
+        TransferResponse response = transferService.processTransfer(request).block();
+
+        assertThat(response.isSuccess()).isTrue();
+        verify(accounts, times(1)).getUserBalances("alice");
+        verify(accounts, never()).getUserBalance(anyString(), anyString());
+        verify(accounts, never()).hasAccount(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("Перевод между своими счетами без счета в целевой валюте отклоняется")
+    void processTransfer_sameUserWithoutTargetAccount_shouldFail() {
+        given(accounts.getUserBalances("alice")).willReturn(Mono.just(Map.of("RUB", new BigDecimal("1000"))));
+        TransferRequest request = request("alice", "alice");
+        request.setFromCurrency("RUB");
+        request.setToCurrency("USD");
+
+        TransferResponse response = transferService.processTransfer(request).block();
+
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(response.getMessage()).isEqualTo("У получателя нет счета в указанной валюте");
+        verify(accounts, never()).transfer(any(AccountTransferRequest.class), anyString());
+    }
+
+    @Test
+    @DisplayName("Недоступность accounts при чтении счетов - ошибка сервиса, а не нехватка средств")
+    void processTransfer_accountsUnavailable_shouldReportServiceError() {
+        given(accounts.getUserBalance("alice", "RUB")).willReturn(Mono.error(new IllegalStateException("timeout")));
+
+        TransferResponse response = transferService.processTransfer(request("alice", "bob")).block();
+
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(response.getMessage()).isEqualTo("Сервис счетов временно недоступен");
+        verify(accounts, never()).transfer(any(AccountTransferRequest.class), anyString());
+    }
+
+    @Test
+    @DisplayName("Отсутствие счета получателя в валюте отклоняет перевод без вызова перевода в accounts")
+    void processTransfer_recipientWithoutAccount_shouldFail() {
+        given(accounts.hasAccount("bob", "RUB")).willReturn(Mono.just(false));
+
+        TransferResponse response = transferService.processTransfer(request("alice", "bob")).block();
+
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(response.getMessage()).isEqualTo("У получателя нет счета в указанной валюте");
+        verify(accounts, times(0)).transfer(any(AccountTransferRequest.class), anyString());
+    }
+
+    @Test
+    @DisplayName("Неизвестный результат перевода в accounts возвращается как pending с ключом клиента, без уведомлений")
+    void processTransfer_unknownOutcome_shouldBePending() {
+        given(accounts.transfer(any(AccountTransferRequest.class), anyString())).willReturn(
+                Mono.just(AccountTransferResponse.builder().success(false).pending(true).build()));
+        TransferRequest request = request("alice", "bob");
+        request.setIdempotencyKey("form-42");
+
+        TransferResponse response = transferService.processTransfer(request).block();
+
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(response.isPending()).isTrue();
+        assertThat(response.getIdempotencyKey()).isEqualTo("form-42");
+        verify(accounts).transfer(any(AccountTransferRequest.class), eq("form-42"));
+        verifyNoInteractions(notifications);
+    }
+
+    private TransferRequest request(String from, String to) {
+        return TransferRequest.builder()
+                .fromUser(from)
+                .toUser(to)
+                .currency("RUB")
+                .amount(new BigDecimal("100"))
+                .build();
+    }
+}